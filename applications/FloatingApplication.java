@@ -35,6 +35,7 @@ import routing.FloatingContentRouter;
  * @author jo
  */
 public class FloatingApplication extends Application {
+	private static final long serialVersionUID = 42L;
     /** Destination address */
     public static final String FLOATING_DESTINATION = "destination";
     /** Seed for the app's random number generator */
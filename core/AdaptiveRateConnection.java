@@ -0,0 +1,156 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import routing.MessageRouter;
+
+/**
+ * A connection whose transmission rate depends on the distance between
+ * the nodes (see {@link LinkRateModel}). The rate changes only when the
+ * distance crosses a boundary of the model's rate table; the end time of
+ * a transfer is computed from the predicted rate profile of the link when
+ * the transfer starts. Only one message at a time can be transferred.
+ */
+public class AdaptiveRateConnection extends Connection {
+	private static final long serialVersionUID = 42L;
+	/** maximum speed of the link (bytes/s) */
+	private int maxSpeed;
+	private LinkRateModel model;
+	private double transferStartTime;
+	private double transferDoneTime;
+	/** the rate profile the current transfer was started with */
+	private RateProfile transferProfile;
+
+	/**
+	 * Creates a new connection between nodes and sets the connection
+	 * state to "up".
+	 * @param fromNode The node that initiated the connection
+	 * @param fromInterface The interface that initiated the connection
+	 * @param toNode The node in the other side of the connection
+	 * @param toInterface The interface in the other side of the connection
+	 * @param maxSpeed Transfer speed of the connection (Bps) with the best
+	 *  modulation and coding
+	 * @param model The link rate model
+	 */
+	public AdaptiveRateConnection(DTNHost fromNode,
+			NetworkInterface fromInterface, DTNHost toNode,
+			NetworkInterface toInterface, int maxSpeed, LinkRateModel model) {
+		super(fromNode, fromInterface, toNode, toInterface);
+		this.maxSpeed = maxSpeed;
+		this.model = model;
+	}
+
+	/**
+	 * Resets a connection that has gone down for a new contact between the
+	 * same nodes (see {@link LinkRegistry#reuse(int, int, Class)}) and sets
+	 * the connection state to "up".
+	 * @param fromNode The node that initiated the connection
+	 * @param fromInterface The interface that initiated the connection
+	 * @param toNode The node in the other side of the connection
+	 * @param toInterface The interface in the other side of the connection
+	 * @param maxSpeed Transfer speed of the connection (Bps) with the best
+	 *  modulation and coding
+	 */
+	public void reset(DTNHost fromNode, NetworkInterface fromInterface,
+			DTNHost toNode, NetworkInterface toInterface, int maxSpeed) {
+		super.reset(fromNode, fromInterface, toNode, toInterface);
+		this.maxSpeed = maxSpeed;
+		this.transferDoneTime = 0;
+		this.transferProfile = null;
+	}
+
+	/**
+	 * Sets a message that this connection is currently transferring.
+	 * @param from The host sending the message
+	 * @param m The message
+	 * @return The value returned by
+	 * {@link MessageRouter#receiveMessage(Message, DTNHost)}
+	 */
+	public int startTransfer(DTNHost from, Message m) {
+		assert this.msgOnFly == null : "Already transferring " +
+			this.msgOnFly + " from " + this.msgFromNode + " to " +
+			this.getOtherNode(this.msgFromNode) + ". Can't " +
+			"start transfer of " + m + " from " + from;
+
+		this.msgFromNode = from;
+		Message newMessage = m.replicate();
+		int retVal = getOtherNode(from).receiveMessage(newMessage, from);
+
+		if (retVal == MessageRouter.RCV_OK) {
+			this.msgOnFly = newMessage;
+			this.transferProfile = getProfile();
+			this.transferStartTime = SimClock.getTime();
+			this.transferDoneTime = this.transferProfile.getTransferEnd(
+					this.transferStartTime, m.getSize(), this.maxSpeed);
+		}
+
+		return retVal;
+	}
+
+	/**
+	 * Returns true if the connection is up, no message is being transferred
+	 * and the nodes are close enough for some modulation and coding
+	 */
+	@Override
+	public boolean isReadyForTransfer() {
+		return super.isReadyForTransfer() && getSpeed() > 0;
+	}
+
+	/**
+	 * Aborts the transfer of the currently transferred message.
+	 */
+	public void abortTransfer() {
+		assert msgOnFly != null : "No message to abort at " + msgFromNode;
+		getOtherNode(msgFromNode).messageAborted(this.msgOnFly.getId(),
+				msgFromNode, getRemainingByteCount());
+		clearMsgOnFly();
+		this.transferDoneTime = 0;
+		this.transferProfile = null;
+	}
+
+	/**
+	 * Returns true if the current message transfer is done.
+	 * @return True if the transfer is done, false if not
+	 */
+	public boolean isMessageTransferred() {
+		return this.msgOnFly == null ||
+			this.transferDoneTime <= SimClock.getTime();
+	}
+
+	/**
+	 * Returns the current speed of the connection
+	 */
+	public double getSpeed() {
+		return getProfile().getFactor(SimClock.getTime()) * this.maxSpeed;
+	}
+
+	/**
+	 * Returns the amount of bytes to be transferred before ongoing transfer
+	 * is ready or 0 if there's no ongoing transfer or it has finished
+	 * already
+	 * @return the amount of bytes to be transferred
+	 */
+	public int getRemainingByteCount() {
+		if (this.msgOnFly == null ||
+				this.transferDoneTime <= SimClock.getTime()) {
+			return 0;
+		}
+		double sent = this.transferProfile.getBytes(this.transferStartTime,
+				SimClock.getTime(), this.maxSpeed);
+		return Math.max(0, (int)(this.msgOnFly.getSize() - sent));
+	}
+
+	private RateProfile getProfile() {
+		return this.model.getProfile(this.fromNode, this.toNode);
+	}
+
+	/**
+	 * Returns a String presentation of the connection.
+	 */
+	public String toString() {
+		return super.toString() + (isTransferring() ?
+				" until " + String.format("%.2f", this.transferDoneTime) : "");
+	}
+}
@@ -4,6 +4,8 @@
  */
 package core;
 
+import java.io.Serializable;
+
 /**
  * This class presents a simple arithmetic condition: is value smaller than,
  * bigger than, or equal to another value. The condition is given in text
@@ -11,7 +13,8 @@ package core;
  * condition.
  * @author Ari
  */
-public class ArithmeticCondition {
+public class ArithmeticCondition implements Serializable {
+	private static final long serialVersionUID = 42L;
 
 	private static final String VALID_OPERATORS = "><=";
 	private char operator;
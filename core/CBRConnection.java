@@ -10,6 +10,7 @@ import routing.MessageRouter;
  * A constant bit-rate connection between two DTN nodes.
  */
 public class CBRConnection extends Connection {
+	private static final long serialVersionUID = 42L;
 	private int speed;
 	private double transferDoneTime;
 
@@ -31,6 +32,24 @@ public class CBRConnection extends Connection {
 
 	}
 
+	/**
+	 * Resets a connection that has gone down for a new contact between the
+	 * same nodes (see {@link LinkRegistry#reuse(int, int, Class)}) and sets
+	 * the connection state to "up".
+	 * @param fromNode The node that initiated the connection
+	 * @param fromInterface The interface that initiated the connection
+	 * @param toNode The node in the other side of the connection
+	 * @param toInterface The interface in the other side of the connection
+	 * @param connectionSpeed Transfer speed of the connection (Bps) when
+	 *  the connection is initiated
+	 */
+	public void reset(DTNHost fromNode, NetworkInterface fromInterface,
+			DTNHost toNode, NetworkInterface toInterface, int connectionSpeed) {
+		super.reset(fromNode, fromInterface, toNode, toInterface);
+		this.speed = connectionSpeed;
+		this.transferDoneTime = 0;
+	}
+
 	/**
 	 * Sets a message that this connection is currently transferring. If message
 	 * passing is controlled by external events, this method is not needed
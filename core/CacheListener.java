@@ -0,0 +1,69 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+/**
+ * Interface for classes that want to be informed about the file requests
+ * and the file caches of the hosts
+ */
+public interface CacheListener {
+
+	/**
+	 * Method is called when a host requests a file
+	 * @param requester The host requesting the file
+	 * @param fileId Identifier of the file
+	 * @param size Size of the file
+	 * @param localHit True if the file was already in the requester's own
+	 * file buffer (no request message is created)
+	 */
+	public void fileRequested(DTNHost requester, String fileId, int size,
+			boolean localHit);
+
+	/**
+	 * Method is called when a file request is looked up from the file buffer
+	 * of a host that is not the origin of the file
+	 * @param host The host whose cache was looked up
+	 * @param fileId Identifier of the file
+	 * @param size Size of the file
+	 * @param hit True if the file was found and the request served from the
+	 * cache
+	 */
+	public void cacheLookup(DTNHost host, String fileId, int size,
+			boolean hit);
+
+	/**
+	 * Method is called when a file request is served by the origin of the
+	 * file
+	 * @param origin The origin host
+	 * @param fileId Identifier of the file
+	 * @param size Size of the file
+	 */
+	public void originServed(DTNHost origin, String fileId, int size);
+
+	/**
+	 * Method is called when all the chunks of a file have been received and
+	 * the file is reassembled into the file buffer of a host
+	 * @param host The host where the file was reassembled
+	 * @param fileId Identifier of the file
+	 * @param size Size of the file
+	 */
+	public void fileReassembled(DTNHost host, String fileId, int size);
+
+	/**
+	 * Method is called when the received chunks of a file are discarded
+	 * before the file could be reassembled
+	 * @param host The host where the chunks were discarded
+	 * @param fileId Identifier of the file
+	 */
+	public void reassemblyFailed(DTNHost host, String fileId);
+
+	/**
+	 * Method is called when a file is evicted from the file buffer of a host
+	 * @param host The host whose file buffer the file was evicted from
+	 * @param fileId Identifier of the file
+	 * @param size Size of the file
+	 */
+	public void fileEvicted(DTNHost host, String fileId, int size);
+}
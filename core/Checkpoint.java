@@ -0,0 +1,231 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.concurrent.Callable;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Saves the complete state of a simulation run to a checkpoint file and
+ * restores runs from it. The saved state is the {@link SimContext} of the
+ * run, i.e., the clock, the scenario with the world, the hosts, their
+ * routers, movement models and interfaces, the event queues, the random
+ * number generators and the per-run state of other classes, and an
+ * optional state object of the caller (e.g., the reports of the run).
+ * Several runs can be forked from one checkpoint: every restore creates an
+ * independent copy of the state for the run that restores it.
+ * <P>The checkpoint file starts with a fixed size header (magic number,
+ * format version, simulation time and run index of the saved run) and
+ * continues with the deflate compressed serialized state. Components
+ * whose state can't be serialized (e.g., event queues that read events
+ * from a file) can't be checkpointed, and the static state of the classes
+ * that register for resetting (see {@link DTNSim#registerForReset(String)})
+ * is not part of the checkpoint.</P>
+ * <P>When a run is restored from the checkpoint of a run with another run
+ * index, the settings of the restoring run are applied to the routers,
+ * interfaces and event generators of the scenario and the movement models'
+ * random number generator is seeded again (see
+ * {@link SimScenario#fork(int)}), so the forked runs may differ, e.g., in
+ * their router settings. The runs must have the same number of hosts and
+ * the same classes of routers, interfaces and event generators; movement
+ * models and the world keep the state of the checkpointed run. Reports
+ * read their output settings again when they are reopened.</P>
+ */
+public class Checkpoint {
+	/** Checkpoint time -setting id ({@value}). Double, namespace
+	 * {@link SimScenario#SCENARIO_NS}. If defined, batch runs share the
+	 * simulation up to this time: the first run's state is saved to a
+	 * checkpoint at this time and all the runs are forked from it. */
+	public static final String CHECKPOINT_TIME_S = "checkpointTime";
+	/** Checkpoint file -setting id ({@value}). String, namespace
+	 * {@link SimScenario#SCENARIO_NS}. Default is
+	 * {@link #DEF_CHECKPOINT_FILE}. */
+	public static final String CHECKPOINT_FILE_S = "checkpointFile";
+	/** Default checkpoint file name ({@value}) */
+	public static final String DEF_CHECKPOINT_FILE = "checkpoint.bin";
+
+	/** magic number of checkpoint files ("ONEC") */
+	private static final int MAGIC = 0x4F4E4543;
+	/** version of the checkpoint format */
+	private static final int VERSION = 1;
+	/** size of the header: magic, version, sim time and run index */
+	private static final int HEADER_SIZE = 4 + 4 + 8 + 4;
+	/** buffer size of the compressed stream */
+	private static final int BUFFER_SIZE = 64 * 1024;
+	/** stack size of the thread that (de)serializes the object graph */
+	private static final long STACK_SIZE = 256L * 1024 * 1024;
+
+	private Checkpoint() {}
+
+	/**
+	 * Saves the state of the current run to a checkpoint file
+	 * @param fileName Path of the checkpoint file
+	 * @param state State of the caller that is saved with the run's state
+	 * (or null)
+	 * @throws SimError if the state can't be saved
+	 */
+	public static void save(final String fileName, final Serializable state) {
+		final SimContext context = SimContext.getInstance();
+		runWithLargeStack(new Callable<Object>() {
+			public Object call() throws Exception {
+				write(fileName, context, state);
+				return null;
+			}
+		}, "Can't save checkpoint '" + fileName + "'");
+	}
+
+	/**
+	 * Restores a run from a checkpoint file. The restored state replaces
+	 * the current context and keeps the run index of the current context.
+	 * If the run index differs from the checkpointed run's, the settings of
+	 * the current run are applied to the restored scenario.
+	 * @param fileName Path of the checkpoint file
+	 * @return The state of the caller that was saved with the run's state
+	 * @throws SimError if the state can't be restored
+	 */
+	public static Object restore(final String fileName) {
+		final SimContext current = SimContext.getInstance();
+		final Object[] restored = (Object[])runWithLargeStack(
+				new Callable<Object>() {
+			public Object call() throws Exception {
+				return read(fileName);
+			}
+		}, "Can't restore checkpoint '" + fileName + "'");
+
+		SimContext context = (SimContext)restored[0];
+		int savedRun = context.runIndex;
+		context.runIndex = current.runIndex;
+		context.writtenSettings = new HashSet<String>();
+		SimContext.replaceInstance(context);
+		if (context.scenario != null && savedRun != context.runIndex) {
+			context.scenario.fork(savedRun);
+		}
+		return restored[1];
+	}
+
+	/**
+	 * Writes the header and the serialized state to a checkpoint file
+	 */
+	private static void write(String fileName, SimContext context,
+			Serializable state) throws IOException {
+		FileChannel channel = FileChannel.open(Paths.get(fileName),
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		try {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(MAGIC).putInt(VERSION);
+			header.putDouble(context.clockTime).putInt(context.runIndex);
+			header.flip();
+			while (header.hasRemaining()) {
+				channel.write(header);
+			}
+
+			ObjectOutputStream out = new ObjectOutputStream(
+					new BufferedOutputStream(new DeflaterOutputStream(
+					Channels.newOutputStream(channel),
+					new Deflater(Deflater.BEST_SPEED), BUFFER_SIZE),
+					BUFFER_SIZE));
+			out.writeObject(context);
+			out.writeObject(state);
+			out.close();
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Reads the context and the caller's state from a checkpoint file
+	 * @return The context and the state in an array
+	 */
+	private static Object[] read(String fileName) throws IOException,
+			ClassNotFoundException {
+		FileChannel channel = FileChannel.open(Paths.get(fileName),
+				StandardOpenOption.READ);
+		try {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			while (header.hasRemaining() && channel.read(header) >= 0);
+			header.flip();
+			if (header.remaining() < HEADER_SIZE ||
+					header.getInt() != MAGIC) {
+				throw new IOException("not a checkpoint file");
+			}
+			int version = header.getInt();
+			if (version != VERSION) {
+				throw new IOException("unsupported checkpoint version " +
+						version);
+			}
+
+			ObjectInputStream in = new ObjectInputStream(
+					new BufferedInputStream(new InflaterInputStream(
+					Channels.newInputStream(channel)), BUFFER_SIZE));
+			Object[] restored = {in.readObject(), in.readObject()};
+			in.close();
+			return restored;
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Runs a (de)serialization task in a thread with a large stack. The
+	 * object graph of a run is deep (hosts refer to other hosts through
+	 * routers, messages and connections) and the serialization recurses it
+	 * depth first.
+	 * @param task The task to run
+	 * @param errorMsg Message of the error thrown if the task fails
+	 * @return The return value of the task
+	 * @throws SimError if the task fails
+	 */
+	private static Object runWithLargeStack(final Callable<Object> task,
+			String errorMsg) {
+		final Object[] result = new Object[1];
+		final Throwable[] error = new Throwable[1];
+		Thread t = new Thread(null, new Runnable() {
+			public void run() {
+				try {
+					result[0] = task.call();
+				} catch (Throwable e) {
+					error[0] = e;
+				}
+			}
+		}, "checkpoint", STACK_SIZE);
+
+		t.start();
+		try {
+			t.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SimError(errorMsg + ": interrupted", e);
+		}
+
+		if (error[0] instanceof NotSerializableException) {
+			throw new SimError(errorMsg + ": " + error[0].getMessage() +
+					" is not serializable", (Exception)error[0]);
+		}
+		if (error[0] instanceof Exception) {
+			throw new SimError(errorMsg + ": " + error[0].getMessage(),
+					(Exception)error[0]);
+		}
+		if (error[0] != null) {
+			throw new SimError(errorMsg + ": " + error[0]);
+		}
+		return result[0];
+	}
+}
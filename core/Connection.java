@@ -4,12 +4,15 @@
  */
 package core;
 
+import java.io.Serializable;
+
 import routing.MessageRouter;
 
 /**
  * A connection between two DTN nodes.
  */
-public abstract class Connection {
+public abstract class Connection implements Serializable {
+	private static final long serialVersionUID = 42L;
 	protected DTNHost toNode;
 	protected NetworkInterface toInterface;
 	protected DTNHost fromNode;
@@ -17,9 +20,11 @@ public abstract class Connection {
 	protected DTNHost msgFromNode;
 
 	private boolean isUp;
-	protected Message msgOnFly;//·connectionڴϢ
+	protected Message msgOnFly;//此链路connection中正在传输的信息
 	/** how many bytes this connection has transferred */
 	protected int bytesTransferred;
+	/** simulation time when the current contact began */
+	private double startTime;
 
 	/**
 	 * Creates a new connection between nodes and sets the connection
@@ -37,9 +42,43 @@ public abstract class Connection {
 		this.toInterface = toInterface;
 		this.isUp = true;
 		this.bytesTransferred = 0;
+		this.startTime = SimClock.getTime();
+	}
+
+	/**
+	 * Resets a connection that has gone down for a new contact and sets the
+	 * connection state to "up". The connection must not have transfers
+	 * left.
+	 * @param fromNode The node that initiated the connection
+	 * @param fromInterface The interface that initiated the connection
+	 * @param toNode The node in the other side of the connection
+	 * @param toInterface The interface in the other side of the connection
+	 */
+	protected void reset(DTNHost fromNode, NetworkInterface fromInterface,
+			DTNHost toNode, NetworkInterface toInterface) {
+		assert !this.isUp && this.msgOnFly == null : "Can't reset " + this;
+		this.fromNode = fromNode;
+		this.fromInterface = fromInterface;
+		this.toNode = toNode;
+		this.toInterface = toInterface;
+		this.isUp = true;
+		this.bytesTransferred = 0;
+		this.startTime = SimClock.getTime();
+		clearMsgOnFly();
 	}
 
 
+	/**
+	 * Returns the time when the current contact of the connection began. A
+	 * connection that is reused for a new contact (see
+	 * {@link LinkRegistry#reuse(int, int, Class)}) keeps its identity, so
+	 * per-contact state should be keyed with this time too.
+	 * @return The start time of the contact
+	 */
+	public double getStartTime() {
+		return this.startTime;
+	}
+
 	/**
 	 * Returns true if the connection is up
 	 * @return state of the connection
@@ -107,6 +146,17 @@ public abstract class Connection {
 		clearMsgOnFly();
 	}	
 
+	/**
+	 * Aborts the transfer of a message that the given host is sending. Only
+	 * connections that can have several messages in flight need to
+	 * separate the senders; by default this is the same as
+	 * {@link #abortTransfer()}.
+	 * @param from The sending host
+	 */
+	public void abortTransfer(DTNHost from) {
+		abortTransfer();
+	}
+
 	/**
 	 * Returns the amount of bytes to be transferred before ongoing transfer
 	 * is ready or 0 if there's no ongoing transfer or it has finished
@@ -141,12 +191,31 @@ public abstract class Connection {
 		clearMsgOnFly();
 	}
 
+	/**
+	 * Finalizes the transfer of a message that the given host is sending.
+	 * By default the same as {@link #finalizeTransfer()}.
+	 * @param from The sending host
+	 */
+	public void finalizeTransfer(DTNHost from) {
+		finalizeTransfer();
+	}
+
 	/**
 	 * Returns true if the current message transfer is done 
 	 * @return True if the transfer is done, false if not
 	 */
 	public abstract boolean isMessageTransferred();
 
+	/**
+	 * Returns true if the transfer of the message that the given host is
+	 * sending is done. By default the same as {@link #isMessageTransferred()}.
+	 * @param from The sending host
+	 * @return True if the transfer is done, false if not
+	 */
+	public boolean isMessageTransferred(DTNHost from) {
+		return isMessageTransferred();
+	}
+
 	/**
 	 * Returns true if the connection is ready to transfer a message (connection
 	 * is up and there is no message being transferred).
@@ -156,6 +225,16 @@ public abstract class Connection {
 		return this.isUp && this.msgOnFly == null; 
 	}
 
+	/**
+	 * Returns true if the connection is ready for the given host to start a
+	 * new transfer. By default the same as {@link #isReadyForTransfer()}.
+	 * @param from The sending host
+	 * @return true if the host can start a transfer
+	 */
+	public boolean isReadyForTransfer(DTNHost from) {
+		return isReadyForTransfer();
+	}
+
 	/**
 	 * Gets the message that this connection is currently transferring.
 	 * @return The message or null if no message is being transferred
@@ -164,6 +243,16 @@ public abstract class Connection {
 		return this.msgOnFly;
 	}
 
+	/**
+	 * Gets the message that the given host is transferring using this
+	 * connection. By default the same as {@link #getMessage()}.
+	 * @param from The sending host
+	 * @return The message or null if no message is being transferred
+	 */
+	public Message getMessage(DTNHost from) {
+		return getMessage();
+	}
+
 	/** 
 	 * Gets the current connection speed
 	 */
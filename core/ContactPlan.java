@@ -0,0 +1,374 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import util.LongHashMap;
+
+/**
+ * Orbit-predicted contact plan of the hosts. Predicts the next time any
+ * link between two hosts can come up or go down by evaluating the orbits of
+ * the hosts (see {@link DTNHost#getCoordinate(double)}) ahead of the
+ * simulation, one time step at a time. A link is up when the hosts have
+ * interfaces of the same type within the range of each other and, if the
+ * Earth occlusion is on, a line of sight (see {@link LineOfSight}), like in
+ * the connectivity checks of the interfaces.
+ * <P>Only the pairs of hosts that can get within range during a window of
+ * {@value #WINDOW_STEPS} time steps are evaluated. They are found with a
+ * grid whose cell size is the longest range plus twice the distance a host
+ * can move during the window. The predicted link states are kept between
+ * the calls, so every time step is evaluated at most once while the
+ * simulation advances.</P>
+ * <P>Hosts without an orbit are expected to stay where they are. If such
+ * a host has moved since the previous prediction, no change is predicted
+ * ahead until the hosts have stayed in place over a prediction, so the
+ * world advances at the update interval while they move.</P>
+ */
+public class ContactPlan implements Serializable {
+	private static final long serialVersionUID = 42L;
+	/** number of time steps the candidate pairs are selected for */
+	public static final int WINDOW_STEPS = 100;
+	/** safety factor of the distance a host can move during a window */
+	private static final double MARGIN_FACTOR = 2;
+
+	private final List<DTNHost> hosts;
+	private final double step;
+	private final LineOfSight lineOfSight;
+
+	/** the hosts and the link ranges (sorted) of the candidate pairs */
+	private int[] pairA;
+	private int[] pairB;
+	private double[][] pairRanges;
+	private int nrofPairs;
+	/** link states of the candidate pairs at the sample time: the number
+	 * of the pair's ranges the hosts are within */
+	private int[] states;
+
+	/** host locations at the sample time and at the next sample time */
+	private double[][] locations;
+	private double[][] nextLocations;
+	/** host locations when the candidate pairs were selected */
+	private double[][] baseLocations;
+	/** how far the hosts may move from the base locations before the
+	 * candidate pairs must be selected again */
+	private double margin;
+
+	/** locations of the hosts without an orbit at the previous prediction
+	 * or null if not checked yet */
+	private double[][] fixedLocations;
+
+	/** time of the latest evaluated time step or NaN if none */
+	private double sampleTime;
+	/** time of the predicted link state change or MAX_VALUE if none has
+	 * been found after the latest change that was passed */
+	private double changeTime;
+
+	/**
+	 * Creates a new contact plan
+	 * @param hosts The hosts
+	 * @param step Length of the time step (seconds); link state changes are
+	 * predicted at this resolution
+	 */
+	public ContactPlan(List<DTNHost> hosts, double step) {
+		this.hosts = hosts;
+		this.step = step;
+		this.lineOfSight = LineOfSight.getInstance();
+		int n = hosts.size();
+		this.locations = new double[3][n];
+		this.nextLocations = new double[3][n];
+		this.baseLocations = new double[3][n];
+		this.sampleTime = Double.NaN;
+		this.changeTime = Double.MAX_VALUE;
+	}
+
+	/**
+	 * Returns the earliest time after the current time when a link between
+	 * two hosts can come up or go down. The prediction is made up to a time
+	 * limit; a change after the limit may be left unnoticed.
+	 * @param now The current time
+	 * @param until The time limit of the prediction
+	 * @return The time of the next link state change, or a time after the
+	 * limit if no change happens before it
+	 */
+	public double getNextChange(double now, double until) {
+		if (fixedHostsMoved()) {
+			/* the earlier prediction is invalid */
+			this.sampleTime = Double.NaN;
+			this.changeTime = Double.MAX_VALUE;
+			return now;
+		}
+		if (this.changeTime <= now) {
+			this.changeTime = Double.MAX_VALUE; /* the world has caught up */
+		}
+		if (this.changeTime < Double.MAX_VALUE) {
+			return this.changeTime;
+		}
+		if (Double.isNaN(this.sampleTime) || now > this.sampleTime) {
+			boolean first = Double.isNaN(this.sampleTime);
+			locate(now, this.locations);
+			this.sampleTime = now;
+			this.states = null; /* select the candidate pairs again */
+			if (first) {
+				return now; /* the connections are not set up yet */
+			}
+		}
+
+		while (this.sampleTime < until) {
+			double time = this.sampleTime + this.step;
+			locate(time, this.nextLocations);
+			if (this.states == null || !withinMargin(this.nextLocations)) {
+				selectPairs();
+			}
+			boolean changed = false;
+			for (int i = 0; i < this.nrofPairs; i++) {
+				int state = linkState(i, this.nextLocations);
+				if (state != this.states[i]) {
+					this.states[i] = state;
+					changed = true;
+				}
+			}
+			double[][] tmp = this.locations;
+			this.locations = this.nextLocations;
+			this.nextLocations = tmp;
+			this.sampleTime = time;
+			if (changed) {
+				this.changeTime = time;
+				return time;
+			}
+		}
+		return Double.MAX_VALUE;
+	}
+
+	/**
+	 * Checks if some host without an orbit has moved since the previous
+	 * check and stores the current locations of those hosts
+	 * @return True if some host without an orbit has moved
+	 */
+	private boolean fixedHostsMoved() {
+		boolean first = this.fixedLocations == null;
+		if (first) {
+			this.fixedLocations = new double[3][this.hosts.size()];
+		}
+		boolean moved = false;
+		for (int i = 0, n = this.hosts.size(); i < n; i++) {
+			DTNHost host = this.hosts.get(i);
+			if (host.getParameters()[0] != 0) {
+				continue;
+			}
+			Coord c = host.getLocation();
+			if (!first && (c.getX() != this.fixedLocations[0][i] ||
+					c.getY() != this.fixedLocations[1][i] ||
+					c.getZ() != this.fixedLocations[2][i])) {
+				moved = true;
+			}
+			this.fixedLocations[0][i] = c.getX();
+			this.fixedLocations[1][i] = c.getY();
+			this.fixedLocations[2][i] = c.getZ();
+		}
+		return moved;
+	}
+
+	/**
+	 * Stores the locations of the hosts at a time. Hosts without an orbit
+	 * (semi-major axis 0) are assumed to stay where they are.
+	 */
+	private void locate(double time, double[][] dest) {
+		for (int i = 0, n = this.hosts.size(); i < n; i++) {
+			DTNHost host = this.hosts.get(i);
+			Coord c = host.getParameters()[0] == 0 ? host.getLocation() :
+				host.getCoordinate(time);
+			dest[0][i] = c.getX();
+			dest[1][i] = c.getY();
+			dest[2][i] = c.getZ();
+		}
+	}
+
+	/**
+	 * Returns true if no host is farther from its base location than the
+	 * margin
+	 */
+	private boolean withinMargin(double[][] loc) {
+		double margin2 = this.margin * this.margin;
+		for (int i = 0, n = this.hosts.size(); i < n; i++) {
+			if (distance2(loc, i, this.baseLocations, i) > margin2) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Selects the pairs of hosts that can get within range while the hosts
+	 * stay within the margin of their current locations and computes their
+	 * link states at the sample time. The margin is set from the distance
+	 * the hosts move during the next time step.
+	 */
+	private void selectPairs() {
+		int n = this.hosts.size();
+		double stepMove = 0;
+		for (int i = 0; i < n; i++) {
+			stepMove = Math.max(stepMove, Math.sqrt(
+					distance2(this.locations, i, this.nextLocations, i)));
+		}
+		this.margin = Math.max(MARGIN_FACTOR * stepMove * WINDOW_STEPS,
+				Double.MIN_NORMAL);
+		for (int d = 0; d < 3; d++) {
+			System.arraycopy(this.locations[d], 0, this.baseLocations[d], 0,
+					n);
+		}
+
+		List<List<NetworkInterface>> interfaces = getInterfaces();
+		double maxRange = 0;
+		for (List<NetworkInterface> l : interfaces) {
+			for (NetworkInterface ni : l) {
+				maxRange = Math.max(maxRange, ni.getTransmitRange());
+			}
+		}
+		double reach = 2 * this.margin;
+		double cellSize = maxRange + reach;
+
+		/* hosts by grid cell */
+		LongHashMap<List<Integer>> cells = new LongHashMap<List<Integer>>();
+		long[] keys = new long[n];
+		int[][] cellIndexes = new int[n][3];
+		for (int i = 0; i < n; i++) {
+			for (int d = 0; d < 3; d++) {
+				cellIndexes[i][d] = (int)Math.floor(
+						this.locations[d][i] / cellSize);
+			}
+			keys[i] = cellKey(cellIndexes[i][0], cellIndexes[i][1],
+					cellIndexes[i][2]);
+			List<Integer> cell = cells.get(keys[i]);
+			if (cell == null) {
+				cell = new ArrayList<Integer>();
+				cells.put(keys[i], cell);
+			}
+			cell.add(i);
+		}
+
+		this.nrofPairs = 0;
+		this.pairA = new int[Math.max(this.pairA == null ? 0 :
+			this.pairA.length, n)];
+		this.pairB = new int[this.pairA.length];
+		this.pairRanges = new double[this.pairA.length][];
+		for (int i = 0; i < n; i++) {
+			int[] c = cellIndexes[i];
+			for (int dx = -1; dx <= 1; dx++) {
+				for (int dy = -1; dy <= 1; dy++) {
+					for (int dz = -1; dz <= 1; dz++) {
+						List<Integer> cell = cells.get(cellKey(c[0] + dx,
+								c[1] + dy, c[2] + dz));
+						if (cell == null) {
+							continue;
+						}
+						for (int j : cell) {
+							if (j <= i) {
+								continue;
+							}
+							double[] ranges = linkRanges(interfaces.get(i),
+									interfaces.get(j));
+							double limit = ranges.length == 0 ? -1 :
+								ranges[ranges.length - 1] + reach;
+							if (distance2(this.locations, i,
+									this.locations, j) <= limit * limit) {
+								addPair(i, j, ranges);
+							}
+						}
+					}
+				}
+			}
+		}
+
+		this.states = new int[this.nrofPairs];
+		for (int i = 0; i < this.nrofPairs; i++) {
+			this.states[i] = linkState(i, this.locations);
+		}
+	}
+
+	private List<List<NetworkInterface>> getInterfaces() {
+		List<List<NetworkInterface>> interfaces =
+			new ArrayList<List<NetworkInterface>>(this.hosts.size());
+		for (DTNHost host : this.hosts) {
+			interfaces.add(host.getInterfaces());
+		}
+		return interfaces;
+	}
+
+	/**
+	 * Returns the ranges of the possible links between two hosts, one for
+	 * every pair of interfaces of the same type (the smaller range of the
+	 * two), in ascending order
+	 */
+	private static double[] linkRanges(List<NetworkInterface> a,
+			List<NetworkInterface> b) {
+		double[] ranges = new double[a.size() * b.size()];
+		int n = 0;
+		for (NetworkInterface ia : a) {
+			for (NetworkInterface ib : b) {
+				if (ia.interfacetype.equals(ib.interfacetype) &&
+						ia.getTransmitRange() > 0 &&
+						ib.getTransmitRange() > 0) {
+					ranges[n++] = Math.min(ia.getTransmitRange(),
+							ib.getTransmitRange());
+				}
+			}
+		}
+		ranges = Arrays.copyOf(ranges, n);
+		Arrays.sort(ranges);
+		return ranges;
+	}
+
+	private void addPair(int a, int b, double[] ranges) {
+		if (this.nrofPairs == this.pairA.length) {
+			int size = Math.max(this.nrofPairs * 2, 16);
+			this.pairA = Arrays.copyOf(this.pairA, size);
+			this.pairB = Arrays.copyOf(this.pairB, size);
+			this.pairRanges = Arrays.copyOf(this.pairRanges, size);
+		}
+		this.pairA[this.nrofPairs] = a;
+		this.pairB[this.nrofPairs] = b;
+		this.pairRanges[this.nrofPairs] = ranges;
+		this.nrofPairs++;
+	}
+
+	/**
+	 * Returns the link state of a candidate pair: the number of the pair's
+	 * link ranges the hosts are within, or 0 if they have no line of sight
+	 */
+	private int linkState(int pair, double[][] loc) {
+		int a = this.pairA[pair];
+		int b = this.pairB[pair];
+		double[] ranges = this.pairRanges[pair];
+		double d2 = distance2(loc, a, loc, b);
+		int state = 0;
+		for (int i = ranges.length - 1; i >= 0 &&
+				d2 <= ranges[i] * ranges[i]; i--) {
+			state++;
+		}
+		if (state > 0 && this.lineOfSight != null &&
+				!this.lineOfSight.isVisible(loc[0][a], loc[1][a], loc[2][a],
+						loc[0][b], loc[1][b], loc[2][b])) {
+			return 0;
+		}
+		return state;
+	}
+
+	private static double distance2(double[][] l1, int i, double[][] l2,
+			int j) {
+		double dx = l1[0][i] - l2[0][j];
+		double dy = l1[1][i] - l2[1][j];
+		double dz = l1[2][i] - l2[2][j];
+		return dx*dx + dy*dy + dz*dz;
+	}
+
+	private static long cellKey(int x, int y, int z) {
+		return ((long)(x & 0x1FFFFF) << 42) | ((long)(y & 0x1FFFFF) << 21) |
+			(z & 0x1FFFFF);
+	}
+}
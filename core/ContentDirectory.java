@@ -0,0 +1,343 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Global content directory. Keeps track of which hosts hold a replica of
+ * each file in their file buffer and resolves file requests to the replica
+ * that is predicted to deliver the file with the smallest delay. The
+ * directory is updated by {@link DTNHost} whenever a file enters or leaves
+ * its file buffer. The directory also keeps exponentially decaying request
+ * popularity statistics and the recent requesters of each file.
+ */
+public class ContentDirectory implements Serializable {
+	private static final long serialVersionUID = 42L;
+	/** Content directory settings namespace ({@value}) */
+	public static final String CONTENT_DIRECTORY_NS = "ContentDirectory";
+	/**
+	 * Resolve requests to the nearest replica -setting id ({@value}).
+	 * Boolean. If false, requests are always sent to the origin of the file.
+	 * Default is true.
+	 */
+	public static final String NEAREST_REPLICA_S = "nearestReplica";
+	/**
+	 * Half-life of the request popularity statistics -setting id
+	 * ({@value}). Seconds. Default is 600.
+	 */
+	public static final String POPULARITY_HALF_LIFE_S = "popularityHalfLife";
+
+	/** speed of light (m/s) used for the propagation delay estimate */
+	private static final double SPEEDOFLIGHT = 299792458;
+
+	/** file id -> hosts holding a replica of the file */
+	private HashMap<String, Set<DTNHost>> replicas;
+	/** is the nearest replica resolution enabled */
+	private boolean nearestReplica;
+	/** transmit range of the interfaces (used for hop count estimates) */
+	private double transmitRange;
+	/** file id -> {decayed request count, time of the last update} */
+	private HashMap<String, double[]> popularity;
+	/** file id -> requester -> time of the latest request */
+	private HashMap<String, HashMap<DTNHost, Double>> requesters;
+	/** half-life of the popularity statistics (seconds) */
+	private double halfLife;
+
+	/**
+	 * Creates a new content directory based on the settings.
+	 */
+	private ContentDirectory() {
+		Settings s = new Settings(CONTENT_DIRECTORY_NS);
+		this.replicas = new HashMap<String, Set<DTNHost>>();
+		this.popularity = new HashMap<String, double[]>();
+		this.requesters = new HashMap<String, HashMap<DTNHost, Double>>();
+		this.nearestReplica = true;
+		if (s.contains(NEAREST_REPLICA_S)) {
+			this.nearestReplica = s.getBoolean(NEAREST_REPLICA_S);
+		}
+		this.halfLife = 600;
+		if (s.contains(POPULARITY_HALF_LIFE_S)) {
+			this.halfLife = s.getDouble(POPULARITY_HALF_LIFE_S);
+			s.ensurePositiveValue(this.halfLife, POPULARITY_HALF_LIFE_S);
+		}
+
+		Settings is = new Settings(Neighbors.INTERFACENAME_S);
+		this.transmitRange = is.getDouble(Neighbors.TRANSMIT_RANGE_S);
+	}
+
+	/**
+	 * Returns the content directory of the simulation
+	 * @return the content directory
+	 */
+	public static ContentDirectory getInstance() {
+		SimContext c = SimContext.getInstance();
+		if (c.contentDirectory == null) {
+			c.contentDirectory = new ContentDirectory();
+		}
+		return c.contentDirectory;
+	}
+
+	/**
+	 * Resets the directory between simulation runs
+	 */
+	public static void reset() {
+		SimContext.getInstance().contentDirectory = null;
+	}
+
+	/**
+	 * Records that a host has a replica of a file in its file buffer
+	 * @param fileId Identifier of the file
+	 * @param host The host holding the replica
+	 */
+	public void addReplica(String fileId, DTNHost host) {
+		Set<DTNHost> holders = this.replicas.get(fileId);
+		if (holders == null) {
+			holders = new LinkedHashSet<DTNHost>();
+			this.replicas.put(fileId, holders);
+		}
+		holders.add(host);
+	}
+
+	/**
+	 * Records that a host no longer has a replica of a file
+	 * @param fileId Identifier of the file
+	 * @param host The host that dropped the replica
+	 */
+	public void removeReplica(String fileId, DTNHost host) {
+		Set<DTNHost> holders = this.replicas.get(fileId);
+		if (holders == null) {
+			return;
+		}
+		holders.remove(host);
+		if (holders.isEmpty()) {
+			this.replicas.remove(fileId);
+		}
+	}
+
+	/**
+	 * Returns the hosts that currently hold a replica of a file
+	 * @param fileId Identifier of the file
+	 * @return The replica holders (an empty collection if none)
+	 */
+	public Collection<DTNHost> getReplicas(String fileId) {
+		Set<DTNHost> holders = this.replicas.get(fileId);
+		if (holders == null) {
+			return Collections.emptySet();
+		}
+		return Collections.unmodifiableSet(holders);
+	}
+
+	/**
+	 * Records a request for a file
+	 * @param fileId Identifier of the requested file
+	 * @param requester The requesting host
+	 */
+	public void recordRequest(String fileId, DTNHost requester) {
+		double now = SimClock.getTime();
+		double[] p = this.popularity.get(fileId);
+		if (p == null) {
+			p = new double[] {0, now};
+			this.popularity.put(fileId, p);
+		}
+		p[0] = decay(p, now) + 1;
+		p[1] = now;
+
+		HashMap<DTNHost, Double> reqs = this.requesters.get(fileId);
+		if (reqs == null) {
+			reqs = new HashMap<DTNHost, Double>();
+			this.requesters.put(fileId, reqs);
+		}
+		reqs.put(requester, now);
+	}
+
+	/**
+	 * Returns the (exponentially decayed) request popularity of a file
+	 * @param fileId Identifier of the file
+	 * @return The popularity of the file
+	 */
+	public double getPopularity(String fileId) {
+		double[] p = this.popularity.get(fileId);
+		if (p == null) {
+			return 0;
+		}
+		return decay(p, SimClock.getTime());
+	}
+
+	/**
+	 * Returns the identifiers of the most popular files in the order of
+	 * decreasing popularity
+	 * @param n Maximum number of files to return
+	 * @return The most popular files
+	 */
+	public List<String> getPopularFiles(int n) {
+		final double now = SimClock.getTime();
+		List<String> ids = new ArrayList<String>(this.popularity.keySet());
+		Collections.sort(ids, new Comparator<String>() {
+			public int compare(String a, String b) {
+				int c = Double.compare(decay(popularity.get(b), now),
+						decay(popularity.get(a), now));
+				return c != 0 ? c : a.compareTo(b);
+			}
+		});
+		return ids.size() > n ? new ArrayList<String>(ids.subList(0, n)) : ids;
+	}
+
+	/**
+	 * Returns the hosts that have requested a file recently
+	 * @param fileId Identifier of the file
+	 * @param since Only the requesters whose latest request is not older
+	 * than this time are returned
+	 * @return The recent requesters of the file
+	 */
+	public List<DTNHost> getRequesters(String fileId, double since) {
+		List<DTNHost> recent = new ArrayList<DTNHost>();
+		HashMap<DTNHost, Double> reqs = this.requesters.get(fileId);
+		if (reqs == null) {
+			return recent;
+		}
+		for (Map.Entry<DTNHost, Double> e : reqs.entrySet()) {
+			if (e.getValue() >= since) {
+				recent.add(e.getKey());
+			}
+		}
+		Collections.sort(recent);
+		return recent;
+	}
+
+	/**
+	 * Returns a popularity value decayed to the given time
+	 */
+	private double decay(double[] p, double time) {
+		return p[0] * Math.pow(0.5, (time - p[1]) / this.halfLife);
+	}
+
+	/**
+	 * Returns true if nearest replica resolution is enabled
+	 * @return true if requests should be sent to the nearest replica
+	 */
+	public boolean isNearestReplicaEnabled() {
+		return this.nearestReplica;
+	}
+
+	/**
+	 * Resolves the host a request for a file should be sent to. If nearest
+	 * replica resolution is enabled, the replica holder with the smallest
+	 * predicted delivery delay is returned. Otherwise, or if no other host
+	 * has a replica, the origin host is returned.
+	 * @param requester The host requesting the file
+	 * @param fileId Identifier of the file
+	 * @param size Size of the file (bytes)
+	 * @param origin The origin host of the file
+	 * @return The host the request should be sent to
+	 */
+	public DTNHost resolve(DTNHost requester, String fileId, int size,
+			DTNHost origin) {
+		if (!this.nearestReplica) {
+			return origin;
+		}
+
+		DTNHost best = origin;
+		double bestDelay = (origin == null || origin == requester) ?
+				Double.MAX_VALUE : predictDelay(requester, origin, size);
+		for (DTNHost holder : getReplicas(fileId)) {
+			if (holder == requester || holder == origin) {
+				continue;
+			}
+			double delay = predictDelay(requester, holder, size);
+			if (delay < bestDelay) {
+				best = holder;
+				bestDelay = delay;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Returns the replica holders of a file (including the origin) ordered
+	 * by the predicted delivery delay to the requester
+	 * @param requester The host requesting the file
+	 * @param fileId Identifier of the file
+	 * @param size Size of the file (bytes)
+	 * @param origin The origin host of the file
+	 * @param n Maximum number of holders to return
+	 * @return Up to n replica holders, the best one first
+	 */
+	public List<DTNHost> rankReplicas(DTNHost requester, String fileId,
+			int size, DTNHost origin, int n) {
+		List<DTNHost> holders = new ArrayList<DTNHost>(getReplicas(fileId));
+		if (origin != null && !holders.contains(origin)) {
+			holders.add(origin);
+		}
+		holders.remove(requester);
+		final Map<DTNHost, Double> delays = new HashMap<DTNHost, Double>();
+		for (DTNHost h : holders) {
+			delays.put(h, predictDelay(requester, h, size));
+		}
+		Collections.sort(holders, new Comparator<DTNHost>() {
+			public int compare(DTNHost a, DTNHost b) {
+				return Double.compare(delays.get(a), delays.get(b));
+			}
+		});
+		return holders.size() > n ?
+			new ArrayList<DTNHost>(holders.subList(0, n)) : holders;
+	}
+
+	/**
+	 * Predicts the delay of delivering a file from a replica holder to the
+	 * requester. Current neighbors are reached in one hop, predicted
+	 * neighbors (from the contact plan of {@link Neighbors}) in one hop
+	 * after waiting for the contact, and others over the number of hops
+	 * the straight line distance requires.
+	 * @param requester The host requesting the file
+	 * @param holder The replica holder
+	 * @param size Size of the file (bytes)
+	 * @return The predicted delivery delay (seconds)
+	 */
+	public double predictDelay(DTNHost requester, DTNHost holder, int size) {
+		double now = SimClock.getTime();
+		double distance = requester.getLocation().distance(
+				holder.getLocation());
+		double txTime = size / (double)getTransmitSpeed(requester, holder);
+		double propagation = distance * 1000 / SPEEDOFLIGHT;
+
+		Neighbors nei = requester.getNeighbors();
+		if (nei != null && nei.getNeighbors().contains(holder)) {
+			return txTime + propagation;
+		}
+
+		int hops = (int)Math.ceil(distance / this.transmitRange);
+		double delay = Math.max(hops, 1) * txTime + propagation;
+
+		if (nei != null) {
+			double[] contact = nei.getPotentialNeighborsStartTime().get(holder);
+			if (contact != null && contact[0] >= now) {
+				double waitDelay = contact[0] - now + txTime +
+						this.transmitRange * 1000 / SPEEDOFLIGHT;
+				delay = Math.min(delay, waitDelay);
+			}
+		}
+		return delay;
+	}
+
+	/**
+	 * Returns the smaller of the transmit speeds of the hosts' first
+	 * interfaces
+	 */
+	private int getTransmitSpeed(DTNHost a, DTNHost b) {
+		int speedA = a.getInterface(1).getTransmitSpeed();
+		int speedB = b.getInterface(1).getTransmitSpeed();
+		return Math.max(1, Math.min(speedA, speedB));
+	}
+}
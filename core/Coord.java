@@ -4,13 +4,15 @@
  */
 package core;
 
+import java.io.Serializable;
 import java.util.Random;
 import jat.orbit.SatelliteOrbit;
 /**
  * Class to hold 2D coordinates and perform simple arithmetics and
  * transformations
  */
-public class Coord implements Cloneable, Comparable<Coord> {
+public class Coord implements Cloneable, Comparable<Coord>, Serializable {
+	private static final long serialVersionUID = 42L;
 	private double x;
 	private double y;
 	private double z;
@@ -62,8 +64,8 @@ public class Coord implements Cloneable, Comparable<Coord> {
 		double dx = this.x - other.x;
 		double dy = this.y - other.y;
 		double dz = this.z - other.z;
-		//return Math.sqrt(dx*dx + dy*dy ); //此处注释
-		return Math.sqrt(dx*dx + dy*dy +dz*dz); //此处注释
+		//return Math.sqrt(dx*dx + dy*dy ); //姝ゅ娉ㄩ噴
+		return Math.sqrt(dx*dx + dy*dy +dz*dz); //姝ゅ娉ㄩ噴
 
 		//double a=400000000;
 	//	return a;
@@ -78,9 +80,9 @@ public class Coord implements Cloneable, Comparable<Coord> {
 		double dx = this.x - other.x;
 		double dy = this.y - other.y;
 		double dz = this.z - other.z;
-		//return (dx*dx + dy*dy ); //此处注释
-		return (dx*dx + dy*dy +dz*dz);////此处注释
-		// 扩展
+		//return (dx*dx + dy*dy ); //姝ゅ娉ㄩ噴
+		return (dx*dx + dy*dy +dz*dz);////姝ゅ娉ㄩ噴
+		// 鎵╁睍
 
 	}
 
@@ -112,7 +114,7 @@ public class Coord implements Cloneable, Comparable<Coord> {
 		return this.y;
 	}
 	
-	public double getZ() {//
+	public double getZ() {//新增函数
 		return this.z;
 	}
 	
@@ -190,7 +192,7 @@ public class Coord implements Cloneable, Comparable<Coord> {
 		}
 	}
 
-	//×××××××××××××××我的扩展x
+	//脳脳脳脳脳脳脳脳脳脳脳脳脳脳脳鎴戠殑鎵╁睍x
 	public void my_Test(double time,double time_0,double []t) {
 /*
 		int max=360;
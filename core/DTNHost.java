@@ -6,6 +6,7 @@ package core;
 
 import jat.orbit.SatelliteOrbit;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -20,8 +21,8 @@ import routing.util.RoutingInfo;
 /**
  * A DTN capable host.
  */
-public class DTNHost implements Comparable<DTNHost> {
-	private static int nextAddress = 0;
+public class DTNHost implements Comparable<DTNHost>, Serializable {
+	private static final long serialVersionUID = 42L;
 	private int address;
 
 	private Coord location; 	// where is the host
@@ -39,40 +40,38 @@ public class DTNHost implements Comparable<DTNHost> {
 	private ModuleCommunicationBus comBus;
 	
 	
-	/*޸ĺ!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!*/
+	/*修改函数部分!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!*/
 	private  double []parameters= new double[6];
-	private Neighbors nei;//;
+	private Neighbors nei;//新增;
 	
 	/** namespace for host group settings ({@value})*/
 	public static final String GROUP_NS = "Group";
 	/** number of hosts in the group -setting id ({@value})*/
 	public static final String NROF_HOSTS_S = "nrofHosts";
-	//private static final int NROF_PLANE = 32;//ƽ
-	//private static final int NROF_SATELLITES = 1024;//ܽڵ
-	//private static final int NROF_S_EACHPLANE = NROF_SATELLITES/NROF_PLANE;//ÿƽϵĽڵ
+	//private static final int NROF_PLANE = 32;//轨道平面数
+	//private static final int NROF_SATELLITES = 1024;//总节点数
+	//private static final int NROF_S_EACHPLANE = NROF_SATELLITES/NROF_PLANE;//每个轨道平面上的节点数
 	
 	private List<DTNHost> hosts;
-	private int totalSatellites;//ܽڵ
-	private int totalPlane;//ƽ
-	private int nrofPlane;//ƽ
-	private int nrofSatelliteINPlane;//ڹƽڵı
-	/*޸Ĳ!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!*/
+	private int totalSatellites;//总节点数
+	private int totalPlane;//总平面数
+	private int nrofPlane;//卫星所属轨道平面编号
+	private int nrofSatelliteINPlane;//卫星在轨道平面内的编号
+	/*修改参数部分!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!*/
 	
-	/**------------------------------    DTNHost ӵı       --------------------------------*/
+	/**------------------------------   对 DTNHost 添加的变量       --------------------------------*/
 
-	/** fileоЯ */
+	/** file中具体携带的内容 */
 	private HashMap<String,Integer> files;	
-	/** һFileBuffer ݽд洢 */
+	/** 做一个FileBuffer 对数据进行存储 */
 	private HashMap<String,file> FileBuffer;
-	/** һChunkBuffer ݽл */
+	/** 做一个ChunkBuffer 对数据进行缓存 */
 	private HashMap<String, HashMap<String,file>> ChunkBuffer = new HashMap<String, HashMap<String,file>>();
+	/** listeners of the file request and cache events */
+	private List<CacheListener> cacheListeners = new ArrayList<CacheListener>();
 	
-	/**------------------------------     DTNHost ӵı       --------------------------------*/
+	/**------------------------------   对  DTNHost 添加的变量       --------------------------------*/
 	
-	static {
-		DTNSim.registerForReset(DTNHost.class.getCanonicalName());
-		reset();
-	}
 	/**
 	 * Creates a new DTNHost.
 	 * @param msgLs Message listeners
@@ -87,11 +86,12 @@ public class DTNHost implements Comparable<DTNHost> {
 			List<MovementListener> movLs,
 			String groupId, List<NetworkInterface> interf,
 			ModuleCommunicationBus comBus, 
-			MovementModel mmProto, MessageRouter mRouterProto) {//޸ģwalkerĳʼ
+			MovementModel mmProto, MessageRouter mRouterProto) {//修改，增加walker星座的初始化变量！！！！！！！！！！！！！！！！！！！！！！！！！！！！！！！！！！
 		this.comBus = comBus;
 		this.location = new Coord(0,0);
 		this.address = getNextAddress();
 		this.name = groupId+address;
+		LinkRegistry.getInstance().addHost(this);
 		this.net = new ArrayList<NetworkInterface>();
 		
 		for (NetworkInterface i : interf) {
@@ -125,15 +125,15 @@ public class DTNHost implements Comparable<DTNHost> {
 	 * subsequent calls.
 	 * @return The next address.
 	 */
-	private synchronized static int getNextAddress() {
-		return nextAddress++;	
+	private static int getNextAddress() {
+		return SimContext.getInstance().nextHostAddress++;
 	}
 
 	/**
 	 * Reset the host and its interfaces
 	 */
 	public static void reset() {
-		nextAddress = 0;
+		SimContext.getInstance().nextHostAddress = 0;
 	}
 
 	/**
@@ -206,7 +206,7 @@ public class DTNHost implements Comparable<DTNHost> {
 		List<Connection> lc = new ArrayList<Connection>();
 
 		for (NetworkInterface i : net) {
-			lc.addAll(i.getConnections());//addAllָеԪضӵǰϵУÿiӶӵlc,һļһhostֻһ
+			lc.addAll(i.getConnections());//addAll把指定集合中的所有元素都添加到当前集合当中，即把每个网卡i的连接都添加到lc当中,一般配置文件里一个host只绑定一个网卡
 		}
 
 		return lc;
@@ -235,6 +235,17 @@ public class DTNHost implements Comparable<DTNHost> {
 	 */
 	public void setLocation(Coord location) {
 		this.location = location.clone();
+		SimContext.getInstance().locationVersion++;
+	}
+
+	/**
+	 * Returns a number that changes whenever any host of the run moves.
+	 * Locations that are cached by other objects (e.g., the connectivity
+	 * grids) are valid as long as this number stays the same.
+	 * @return The location version
+	 */
+	public static long getLocationVersion() {
+		return SimContext.getInstance().locationVersion;
 	}
 
 	/**
@@ -357,8 +368,8 @@ public class DTNHost implements Comparable<DTNHost> {
 	 * Updates node's network layer and router.
 	 * @param simulateConnections Should network layer be updated too
 	 */
-	public void update(boolean simulateConnections) {//Ӳഫһڵھб
-		//this.neighbors=neighbors;//µǰµھӽڵб
+	public void update(boolean simulateConnections) {//增加参数，多传入了一个本节点的邻居列表
+		//this.neighbors=neighbors;//更新当前最新的邻居节点列表
 		if (!isRadioActive()) {
 			// Make sure inactive nodes don't have connections
 			tearDownAllConnections();
@@ -525,7 +536,7 @@ public class DTNHost implements Comparable<DTNHost> {
 		return this.getAddress() - h.getAddress();
 	}
 	
-	/*޸ĺ!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!*/
+	/*修改函数部分!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!*/
 	/**
 	 * Moves the node towards the next waypoint or waits if it is
 	 * not time to move yet
@@ -548,6 +559,7 @@ public class DTNHost implements Comparable<DTNHost> {
 		
 		
 		this.location.my_Test(SimClock.getTime(),timeIncrement,this.parameters);
+		SimContext.getInstance().locationVersion++;
 		
 		/*
 		possibleMovement = timeIncrement * speed;
@@ -571,37 +583,38 @@ public class DTNHost implements Comparable<DTNHost> {
 		this.location.translate(dx, dy);
 		*/
 	}	
-	/**/
+	/*新增函数*/
 	public void setSatelliteParameters(int totalSatellites, int totalPlane, int nrofPlane, int nrofSatelliteInPlane, double[] parameters){
 		
 		for (int i = 0; i < 6; i++){
 			this.parameters[i] = parameters[i];
 		}
 		
-		this.nei = new Neighbors(this);//
+		this.nei = new Neighbors(this);//新增
 		
-		/**/
-		this.totalSatellites = totalSatellites;//ܽڵ
-		this.totalPlane = totalPlane;//ƽ
-		this.nrofPlane = nrofPlane;//ƽ
-		this.nrofSatelliteINPlane = nrofSatelliteInPlane;//ڹƽڵı
+		/*新增参数*/
+		this.totalSatellites = totalSatellites;//总节点数
+		this.totalPlane = totalPlane;//轨道平面数
+		this.nrofPlane = nrofPlane;//卫星所属轨道平面编号
+		this.nrofSatelliteINPlane = nrofSatelliteInPlane;//卫星在轨道平面内的编号
 		
-		this.location.my_Test(0.0,0.0,this.parameters);//޸Ľڵĳʼλú,ȡt=0ʱ̵λ
+		this.location.my_Test(0.0,0.0,this.parameters);//修改节点的初始化位置函数,获取t=0时刻的位置
+		SimContext.getInstance().locationVersion++;
 	}
 	/**
-	 * ƽŲ
+	 * 返回卫星所属轨道平面编号参数
 	 */
 	public int getNrofPlane(){
 		return this.nrofPlane;
 	}
 	/**
-	 * ڹƽڵı
+	 * 返回卫星在轨道平面内的编号
 	 */
 	public int getNrofSatelliteINPlane(){
 		return this.nrofSatelliteINPlane;
 	}
 	/**
-	 * Neighborsھӽڵʱʱ
+	 * 用于Neighbors进行邻居节点生存时间时用
 	 * @param time
 	 * @return
 	 */
@@ -617,7 +630,7 @@ public class DTNHost implements Comparable<DTNHost> {
 		return c;
 	}
 	/**
-	 * ھݿ
+	 * 新增函数，返回新增的邻居数据库
 	 * @return
 	 */
 	public Neighbors getNeighbors(){
@@ -625,7 +638,7 @@ public class DTNHost implements Comparable<DTNHost> {
 	}
 
 	/**
-	 * ǹ
+	 * 新增函数，返回新增的卫星轨道参数
 	 * @return
 	 */
 	public double[] getParameters(){
@@ -636,35 +649,52 @@ public class DTNHost implements Comparable<DTNHost> {
 		 this.hosts = hosts;
 	}
 	public void updateLocation(double timeNow){
-		this.location.my_Test(0.0,timeNow,this.parameters);//޸Ľڵλ,ȡtimeNowʱ̵λ
+		this.location.my_Test(0.0,timeNow,this.parameters);//修改节点的位置,获取timeNow时刻的位置
+		SimContext.getInstance().locationVersion++;
 	}
 	
-	/**------------------------------     DTNHost ӵĺ       --------------------------------*/	
+	/**------------------------------   对  DTNHost 添加的函数方法       --------------------------------*/	
 	
-	/** ȡDTNHostеchunkBuffer*/
+	/** 获取DTNHost中的chunkBuffer*/
 	public HashMap<String, HashMap<String,file>> getChunkBuffer() {
 		return ChunkBuffer;
 	}
 	
-	/** Զıд*/
+	/** 对定义的表进行处理*/
 	public void setFiles(HashMap<String, Integer> files) {
 		this.files = files;
 	}
-	/** ȡڵдŵĹfileı*/
+	/** 获取节点中存放的关于file的表*/
 	public HashMap<String, Integer> getFiles() {
 		return files;
 	}
 
-	/** ԶĻд*/
+	/** 对定义的缓存区进行处理*/
 	public void setFileBuffer(HashMap<String, file> FileBuffer) {
 		this.FileBuffer = FileBuffer;
 	}
-	/** ȡļĻ*/
+	/** 获取文件的缓存*/
 	public HashMap<String, file> getFileBuffer() {
 		return FileBuffer;
 	}
+
+	/**
+	 * Sets the listeners of the file request and cache events of this host
+	 * @param cacheListeners The listeners
+	 */
+	public void setCacheListeners(List<CacheListener> cacheListeners) {
+		this.cacheListeners = cacheListeners;
+	}
+
+	/**
+	 * Returns the listeners of the file request and cache events of this host
+	 * @return the listeners
+	 */
+	public List<CacheListener> getCacheListeners() {
+		return this.cacheListeners;
+	}
 	
-	/** FileBufferûļ  */
+	/** 看缓存FileBuffer中有没有文件  */
 	public file getFileBufferForFile(Message aMessage) {
 
 		if (this.FileBuffer.containsKey(aMessage.getFilename()))
@@ -673,30 +703,30 @@ public class DTNHost implements Comparable<DTNHost> {
 			return null;
 		//return this.FileBuffer.get(aMessage.getFilename());
 	}
-	/** gyq_test 2016/07/08     ڵõǰڵ㻺ʣռ  */
+	/** gyq_test 2016/07/08     用于得到当前节点缓存的剩余空间  */
 	public int getFreeFileBufferSize(){
 		int occupancy = 0;		
 		
 		//Settings s = new Settings("Group");
 		//int bufferSize = s.getInt("filebuffersize");
 		//System.out.println(bufferSize);
-		if (this.router.getBufferSize() == Integer.MAX_VALUE) {
+		if (this.router.getFileBufferSize() == Integer.MAX_VALUE) {
 		//if (bufferSize == Integer.MAX_VALUE){
 			return Integer.MAX_VALUE;
 		}
 		for (file File: getFileCollection()){
 			occupancy += File.getSize();
 		}
-		// FileBufferSizeMessageBufferSizeһС     //޸֮ĴСһ
+		// 这里FileBufferSize与Message的BufferSize一样大小     //修改之后的大小不再一样。
 		return this.router.getFileBufferSize() - occupancy;
 	}
 	
-	/** õǴļfileBuffersize  */
+	/** 得到的是存放文件的fileBuffersize  */
 	public int getFileBufferSize(){
 		return this.router.getFileBufferSize();
 	}
 	
-	/** gyq_test 2016/07/08   ɾбʱõļ  */
+	/** gyq_test 2016/07/08   用于删除缓存中被请求时间最久的文件  */
 	public boolean makeRoomForNewFile(int size){
 		if (size > this.router.getFileBufferSize()) {
 			return false; 										// message too big for the buffer
@@ -715,17 +745,17 @@ public class DTNHost implements Comparable<DTNHost> {
 		return true;
 	}
 	
-	/** gyq_test 2016/07/08    ҵʱļΪһƳļ   */
+	/** gyq_test 2016/07/08    找到被请求时间最长的文件，作为下一个待移除文件   */
 	protected file getNextFileToRemove(boolean excludeMsgBeingSent){
 		Collection<file> filebuffer = this.getFileCollection();
 		file oldest = null;
 		for (file f: filebuffer){
-			//жϵǰļǷڱ䣿
+			//判断当前文件是否正在被传输？？？
 			//if (excludeMsgBeingSent && isSending(f.getId())) {
 			//	continue; // skip the message(s) that router is sending
 			//}
 			
-			if(!f.getInitFile()){          // ǳʼļִ
+			if(!f.getInitFile()){          // 如果不是初始化放入的文件，继续执行
 				if (oldest == null ) {
 					oldest = f;
 				}
@@ -737,32 +767,51 @@ public class DTNHost implements Comparable<DTNHost> {
 		return oldest;
 	}
 	
-	/**  gyq_test 2016/07/08    ɾڵbufferļ    */
+	/**  gyq_test 2016/07/08    删除节点buffer中文件    */
 	public void deleteFile(String id, boolean drop) {
 		file removed = removeFromFileBuffer(id);
 		if (removed == null) throw new SimError("no file for id " +
 				id + " to remove at " + this.getAddress());
-		
-		//for (MessageListener ml : this.mListeners) {
-		//ml.messageDeleted(removed, this.getAddress(), drop);
-		//}														                      // ʱ
+
+		if (drop) {
+			for (CacheListener cl : this.cacheListeners) {
+				cl.fileEvicted(this, id, removed.getSize());
+			}
+		}
 	}
 	
-	/** gyq_test 2016/07/08    ڴӵǰڵ㻺ռɾļ   */
+	/** gyq_test 2016/07/08    用于从当前节点缓存空间中删除文件   */
 	public file removeFromFileBuffer(String id){
 		file f= this.FileBuffer.remove(id);
+		if (f != null) {
+			ContentDirectory.getInstance().removeReplica(id, this);
+			this.router.fileBufferChanged(id, false);
+		}
 		return f;
 	}
 	
-	/**ŵǰϢȷϢб  */
+	/**
+	 * Puts a file to the file buffer of this host, registers the replica
+	 * to the content directory and updates the router's cache summary.
+	 * @param f The file to put
+	 */
+	public void putIntoFileBuffer(file f){
+		file old = this.FileBuffer.put(f.getId(), f);
+		ContentDirectory.getInstance().addReplica(f.getId(), this);
+		if (old == null) {
+			this.router.fileBufferChanged(f.getId(), true);
+		}
+	}
+	
+	/**　放当前消息进入待确认消息列表里  */
 	public void putIntoJudgeForRetransfer(Message m){
 		this.router.putJudgeForRetransfer(m);
 	}
 	
-	/** gyq_test 2016/07/08      ڵõǰڵfileCollection */
+	/** gyq_test 2016/07/08      用于得到当前节点的fileCollection */
 	public Collection<file> getFileCollection(){
 		return this.FileBuffer.values();
 	}
 	
-	/**------------------------------     DTNHost ӵĺ       --------------------------------*/	
+	/**------------------------------   对  DTNHost 添加的函数方法       --------------------------------*/	
 }
@@ -8,6 +8,11 @@ import gui.DTNSimGUI;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import ui.DTNSimTextUI;
 
@@ -20,12 +25,24 @@ public class DTNSim {
 	public static final String BATCH_MODE_FLAG = "-b";
 	/** Delimiter for batch mode index range values (colon) */
 	public static final String RANGE_DELIMETER = ":";
+	/**
+	 * Number of batch runs executed concurrently -setting id ({@value}).
+	 * Integer. Zero means one concurrent run per available processor.
+	 * Default is 1, i.e., the runs are executed one after another. Each
+	 * concurrent run has its own {@link SimContext}, but the classes that
+	 * register for resetting (see {@link #registerForReset(String)}) keep
+	 * their state in static fields shared by all the runs, so scenarios
+	 * that use them should be run one run at a time.
+	 */
+	public static final String BATCH_THREADS_S = "Scenario.batchThreads";
 	
 	/** Name of the static method that all resettable classes must have
 	 * @see #registerForReset(String) */
 	public static final String RESET_METHOD_NAME = "reset";
 	/** List of class names that should be reset between batch runs */
 	private static List<Class<?>> resetList = new ArrayList<Class<?>>();
+	/** are batch runs executed concurrently */
+	private static boolean concurrentRuns = false;
 	
 	/**
 	 * Starts the user interface with given arguments.
@@ -78,11 +95,22 @@ public class DTNSim {
 		
 		if (batchMode) {
 			long startTime = System.currentTimeMillis();
-			for (int i=nrofRuns[0]; i<nrofRuns[1]; i++) {
-				print("Run " + (i+1) + "/" + nrofRuns[1]);
-				Settings.setRunIndex(i);
-				resetForNextRun();
-				new DTNSimTextUI().start();
+			int nrofThreads = new Settings().getInt(BATCH_THREADS_S, 1);
+			if (nrofThreads <= 0) {
+				nrofThreads = Runtime.getRuntime().availableProcessors();
+			}
+			nrofThreads = Math.min(nrofThreads, nrofRuns[1] - nrofRuns[0]);
+			String checkpoint = createCheckpoint(nrofRuns);
+			if (nrofThreads > 1) {
+				runConcurrently(nrofRuns, nrofThreads, checkpoint);
+			}
+			else {
+				for (int i=nrofRuns[0]; i<nrofRuns[1]; i++) {
+					print("Run " + (i+1) + "/" + nrofRuns[1]);
+					SimContext.resetDefault(i);
+					resetForNextRun();
+					startRun(checkpoint);
+				}
 			}
 			double duration = (System.currentTimeMillis() - startTime)/1000.0;
 			print("---\nAll done in " + String.format("%.2f", duration) + "s");
@@ -93,6 +121,99 @@ public class DTNSim {
 		}
 	}
 	
+	/**
+	 * Executes batch runs concurrently. Every run has its own simulation
+	 * context and is executed in one of the worker threads.
+	 * @param nrofRuns The first and (last_run_index - 1)
+	 * @param nrofThreads Number of worker threads
+	 * @param checkpoint Path of the checkpoint the runs are forked from or
+	 * null if the runs start from the beginning
+	 */
+	private static void runConcurrently(final int[] nrofRuns,
+			int nrofThreads, final String checkpoint) {
+		concurrentRuns = true;
+		if (resetList.size() > 0) {
+			print("Warning: " + resetList + " keep state shared by the " +
+					"concurrent runs");
+		}
+		print("Executing runs " + (nrofRuns[0]+1) + "-" + nrofRuns[1] +
+				" in " + nrofThreads + " threads");
+
+		List<Callable<Void>> runs = new ArrayList<Callable<Void>>();
+		for (int i=nrofRuns[0]; i<nrofRuns[1]; i++) {
+			final int runIndex = i;
+			runs.add(new Callable<Void>() {
+				public Void call() {
+					SimContext.setInstance(new SimContext(runIndex));
+					try {
+						print("Run " + (runIndex+1) + "/" + nrofRuns[1]);
+						startRun(checkpoint);
+					} finally {
+						SimContext.setInstance(null);
+					}
+					return null;
+				}
+			});
+		}
+
+		ExecutorService pool = Executors.newFixedThreadPool(nrofThreads);
+		try {
+			for (Future<Void> f : pool.invokeAll(runs)) {
+				try {
+					f.get();
+				} catch (ExecutionException e) {
+					System.err.println("Batch run failed");
+					e.getCause().printStackTrace();
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Runs the part of the simulation that the batch runs share and saves
+	 * its state to a checkpoint, if a checkpoint time is defined (see
+	 * {@link Checkpoint#CHECKPOINT_TIME_S}). The runs are then forked from
+	 * the checkpoint instead of simulating the shared part again. The
+	 * shared part is simulated with the first run's settings, and the
+	 * settings of each run are applied to its state when it is restored
+	 * (see {@link SimScenario#fork(int)}).
+	 * @param nrofRuns The first and (last_run_index - 1)
+	 * @return Path of the checkpoint file or null if no checkpoint time is
+	 * defined
+	 */
+	private static String createCheckpoint(int[] nrofRuns) {
+		Settings s = new Settings(SimScenario.SCENARIO_NS);
+		if (!s.contains(Checkpoint.CHECKPOINT_TIME_S)) {
+			return null;
+		}
+		double time = s.getDouble(Checkpoint.CHECKPOINT_TIME_S);
+		String file = s.getSetting(Checkpoint.CHECKPOINT_FILE_S,
+				Checkpoint.DEF_CHECKPOINT_FILE);
+		print("Creating checkpoint at " + time + "s to " + file);
+		SimContext.resetDefault(nrofRuns[0]);
+		resetForNextRun();
+		new DTNSimTextUI().createCheckpoint(time, file);
+		return file;
+	}
+	
+	/**
+	 * Starts a batch run with the text UI
+	 * @param checkpoint Path of the checkpoint to fork the run from or null
+	 * to start the run from the beginning
+	 */
+	private static void startRun(String checkpoint) {
+		if (checkpoint == null) {
+			new DTNSimTextUI().start();
+		}
+		else {
+			new DTNSimTextUI().start(checkpoint);
+		}
+	}
+
 	/**
 	 * Initializes Settings
 	 * @param confFiles File name paths where to read additional settings 
@@ -140,7 +261,7 @@ public class DTNSim {
 	 * @param className Full name (i.e., containing the packet path) 
 	 * of the class to register. For example: <code>core.SimClock</code> 
 	 */
-	public static void registerForReset(String className) {
+	public static synchronized void registerForReset(String className) {
 		Class<?> c = null;
 		try {
 			c = Class.forName(className);
@@ -156,6 +277,10 @@ public class DTNSim {
 			" for resetting; class doesn't contain resetting method");
 			System.exit(-1);
 		}
+		if (concurrentRuns) {
+			print("Warning: " + className + " keeps state shared by the " +
+					"concurrent runs");
+		}
 		resetList.add(c);
 	}
 	
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.io.Serializable;
+
+/**
+ * Line-of-sight test against the Earth. Two locations can see each other
+ * only if the line segment between them doesn't pass through the Earth or
+ * the lowest layer of the atmosphere, i.e., through a sphere whose radius
+ * is the Earth radius plus a grazing margin. The test is done for the
+ * closest point of the segment to the center of the sphere, in closed
+ * form.
+ * <P>The locations are in the simulation coordinates, where the orbit
+ * coordinates (in kilometers) are scaled by 1/10 and moved to
+ * {@link #DEF_EARTH_CENTER} (see {@link DTNHost#getCoordinate(double)}).
+ * The test is meant for links between satellites: locations inside the
+ * sphere (e.g., ground stations below the grazing margin) never have a
+ * line of sight.</P>
+ */
+public final class LineOfSight implements Serializable {
+	private static final long serialVersionUID = 42L;
+	/** Earth occlusion -setting id ({@value}). Boolean, namespace
+	 * {@link World#USERSETTINGNAME_S}. If true, links that go through the
+	 * Earth are not possible. Default is false (the orbits of the default
+	 * scenario are partly inside the Earth radius). */
+	public static final String EARTH_OCCLUSION_S = "earthOcclusion";
+	/** Earth radius -setting id ({@value}). Double, namespace
+	 * {@link World#USERSETTINGNAME_S}, in the simulation units (orbit
+	 * kilometers divided by 10). Required if the Earth occlusion is on.
+	 * The real Earth radius would be 637.1, but it must be smaller than the
+	 * orbit radii of the scenario minus the grazing margin or no link is
+	 * ever possible: the default scenario draws the semi-major axes from
+	 * 2000-4000 km, i.e., orbit radii 200-400, so e.g. 150 fits it. */
+	public static final String EARTH_RADIUS_S = "earthRadius";
+	/** Grazing margin -setting id ({@value}). Double, namespace
+	 * {@link World#USERSETTINGNAME_S}, in the simulation units. The lowest
+	 * height above the Earth surface a link may pass at. Default is
+	 * {@link #DEF_GRAZING_MARGIN}. */
+	public static final String GRAZING_MARGIN_S = "grazingMargin";
+	/** Earth center -setting id ({@value}). Three comma separated values,
+	 * namespace {@link World#USERSETTINGNAME_S}. Default is
+	 * {@link #DEF_EARTH_CENTER}. */
+	public static final String EARTH_CENTER_S = "earthCenter";
+
+	/** default grazing margin (80 km) */
+	public static final double DEF_GRAZING_MARGIN = 8;
+	/** default Earth center */
+	public static final double[] DEF_EARTH_CENTER = {2000, 2000, 2000};
+
+	private final double centerX;
+	private final double centerY;
+	private final double centerZ;
+	/** squared radius of the occluding sphere */
+	private final double radiusSquared;
+
+	/**
+	 * Creates a new line-of-sight test
+	 * @param center Center of the occluding sphere (x, y and z)
+	 * @param radius Radius of the occluding sphere
+	 */
+	public LineOfSight(double[] center, double radius) {
+		this.centerX = center[0];
+		this.centerY = center[1];
+		this.centerZ = center[2];
+		this.radiusSquared = radius * radius;
+	}
+
+	/**
+	 * Returns the line-of-sight test of the current run
+	 * @return The test or null if the Earth occlusion is off
+	 * @throws SettingsError if the settings are invalid
+	 */
+	public static LineOfSight getInstance() {
+		SimContext c = SimContext.getInstance();
+		Object state = c.getClassState(LineOfSight.class);
+		if (state == null) {
+			state = load();
+			c.setClassState(LineOfSight.class, state);
+		}
+		return state instanceof LineOfSight ? (LineOfSight)state : null;
+	}
+
+	/**
+	 * Creates the test from the settings
+	 * @return The test, or {@link Boolean#FALSE} if the Earth occlusion is
+	 * off
+	 */
+	private static Object load() {
+		Settings s = new Settings(World.USERSETTINGNAME_S);
+		if (!s.getBoolean(EARTH_OCCLUSION_S, false)) {
+			return Boolean.FALSE;
+		}
+		double radius = s.getDouble(EARTH_RADIUS_S);
+		double margin = s.getDouble(GRAZING_MARGIN_S, DEF_GRAZING_MARGIN);
+		s.ensurePositiveValue(radius, EARTH_RADIUS_S);
+		s.ensurePositiveValue(margin, GRAZING_MARGIN_S);
+		double[] center = DEF_EARTH_CENTER;
+		if (s.contains(EARTH_CENTER_S)) {
+			center = s.getCsvDoubles(EARTH_CENTER_S, 3);
+		}
+		return new LineOfSight(center, radius + margin);
+	}
+
+	/**
+	 * Returns true if there is a line of sight between two locations
+	 * @param c1 The first location
+	 * @param c2 The second location
+	 * @return True if the segment between the locations doesn't intersect
+	 * the occluding sphere
+	 */
+	public boolean isVisible(Coord c1, Coord c2) {
+		return isVisible(c1.getX(), c1.getY(), c1.getZ(),
+				c2.getX(), c2.getY(), c2.getZ());
+	}
+
+	/**
+	 * Returns true if there is a line of sight between two locations
+	 * @return True if the segment between the locations doesn't intersect
+	 * the occluding sphere
+	 */
+	public boolean isVisible(double x1, double y1, double z1,
+			double x2, double y2, double z2) {
+		/* segment p(t) = a + t*d, t in [0,1]; f = a - center */
+		double dx = x2 - x1;
+		double dy = y2 - y1;
+		double dz = z2 - z1;
+		double fx = x1 - this.centerX;
+		double fy = y1 - this.centerY;
+		double fz = z1 - this.centerZ;
+
+		double dd = dx*dx + dy*dy + dz*dz;
+		double fd = fx*dx + fy*dy + fz*dz;
+		/* parameter of the closest point, clamped to the segment (the
+		 * segment is a point if dd == 0; then -fd == 0 too) */
+		double t = Math.min(1, Math.max(0, -fd / (dd + Double.MIN_VALUE)));
+
+		double px = fx + t * dx;
+		double py = fy + t * dy;
+		double pz = fz + t * dz;
+		return px*px + py*py + pz*pz > this.radiusSquared;
+	}
+}
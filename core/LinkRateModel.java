@@ -0,0 +1,318 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import util.LongHashMap;
+
+/**
+ * Distance-dependent transmission rate of the satellite links. The
+ * signal-to-noise ratio of a link is its link budget minus the free-space
+ * path loss of the distance, and the rate is taken from a table of
+ * modulation and coding schemes: each scheme has the lowest SNR it works
+ * at and its rate as a fraction of the maximum transmission speed of the
+ * link. Links below the lowest SNR can't transfer anything.
+ * <P>Because the SNR only depends on the distance, the table maps to
+ * distance bands. The rate of a pair of hosts is predicted from their
+ * orbits as a {@link RateProfile} and the profile is computed again only
+ * when the distance crosses the first band boundary (or the prediction
+ * horizon is reached), so the rates are not evaluated on every update.
+ * </P>
+ */
+public final class LinkRateModel implements Serializable {
+	private static final long serialVersionUID = 42L;
+	/** Link rate model -setting id ({@value}). Boolean, namespace
+	 * {@link World#USERSETTINGNAME_S}. If true, the satellite links use the
+	 * model. Default is false. */
+	public static final String LINK_RATE_MODEL_S = "linkRateModel";
+	/** Carrier frequency -setting id ({@value}). Double, namespace
+	 * {@link World#USERSETTINGNAME_S}, in Hz. Default is
+	 * {@link #DEF_FREQUENCY}. */
+	public static final String FREQUENCY_S = "linkFrequency";
+	/** Link budget -setting id ({@value}). Double, namespace
+	 * {@link World#USERSETTINGNAME_S}, in dB. The SNR without the path loss
+	 * (EIRP + receiver G/T - Boltzmann constant - noise bandwidth). Default
+	 * is {@link #DEF_LINK_BUDGET}. */
+	public static final String LINK_BUDGET_S = "linkBudget";
+	/** SNR thresholds -setting id ({@value}). Comma separated values in
+	 * increasing order, namespace {@link World#USERSETTINGNAME_S}, in dB.
+	 * Default is {@link #DEF_SNR_THRESHOLDS}. */
+	public static final String SNR_THRESHOLDS_S = "linkSnrThresholds";
+	/** Rate factors -setting id ({@value}). Comma separated values,
+	 * namespace {@link World#USERSETTINGNAME_S}. The rate of each SNR
+	 * threshold as a fraction of the maximum speed. Default is
+	 * {@link #DEF_RATE_FACTORS}. */
+	public static final String RATE_FACTORS_S = "linkRateFactors";
+	/** Prediction horizon -setting id ({@value}). Double, namespace
+	 * {@link World#USERSETTINGNAME_S}, in seconds. Default is
+	 * {@link #DEF_PREDICTION_HORIZON}. */
+	public static final String PREDICTION_HORIZON_S =
+		"linkPredictionHorizon";
+	/** Prediction step -setting id ({@value}). Double, namespace
+	 * {@link World#USERSETTINGNAME_S}, in seconds. Default is
+	 * {@link #DEF_PREDICTION_STEP}. */
+	public static final String PREDICTION_STEP_S = "linkPredictionStep";
+	/** Meters per distance unit -setting id ({@value}). Double, namespace
+	 * {@link World#USERSETTINGNAME_S}. Default is
+	 * {@link #DEF_METERS_PER_UNIT}. */
+	public static final String METERS_PER_UNIT_S = "metersPerUnit";
+
+	/** default carrier frequency (Ka band) */
+	public static final double DEF_FREQUENCY = 26e9;
+	/** default link budget */
+	public static final double DEF_LINK_BUDGET = 190;
+	/** default SNR thresholds (DVB-S2 QPSK 1/4 - 32APSK 3/4) */
+	public static final double[] DEF_SNR_THRESHOLDS =
+		{-2.35, 1.0, 4.03, 6.62, 8.97, 12.73};
+	/** default rate factors (spectral efficiencies of the schemes relative
+	 * to the best one) */
+	public static final double[] DEF_RATE_FACTORS =
+		{0.13, 0.27, 0.40, 0.54, 0.71, 1.0};
+	/** default prediction horizon */
+	public static final double DEF_PREDICTION_HORIZON = 600;
+	/** default prediction step */
+	public static final double DEF_PREDICTION_STEP = 10;
+	/** default meters per distance unit (the orbit coordinates in
+	 * kilometers are scaled by 1/10) */
+	public static final double DEF_METERS_PER_UNIT = 10000;
+
+	/** number of bisection steps for the band boundary crossing times */
+	private static final int NROF_BISECTIONS = 8;
+	/** free-space path loss constant: 20*log10(4*pi/c) */
+	private static final double FSPL_CONSTANT = -147.55;
+
+	/** largest distance of each band, decreasing, in simulation units */
+	private final double[] maxDistances;
+	private final double[] factors;
+	private final double horizon;
+	private final double step;
+	/** host address pair -> rate profile */
+	private final LongHashMap<RateProfile> profiles;
+
+	/**
+	 * Creates a new link rate model
+	 * @param frequency Carrier frequency (Hz)
+	 * @param linkBudget Link budget (dB)
+	 * @param snrThresholds SNR thresholds of the schemes in increasing
+	 * order (dB)
+	 * @param factors Rate factors of the schemes
+	 * @param metersPerUnit Length of one simulation distance unit in meters
+	 * @param horizon Prediction horizon (seconds)
+	 * @param step Prediction step (seconds)
+	 */
+	public LinkRateModel(double frequency, double linkBudget,
+			double[] snrThresholds, double[] factors, double metersPerUnit,
+			double horizon, double step) {
+		this.maxDistances = new double[snrThresholds.length];
+		for (int i = 0; i < snrThresholds.length; i++) {
+			/* the distance where the path loss is budget - threshold */
+			double pathLoss = linkBudget - snrThresholds[i];
+			double meters = Math.pow(10, (pathLoss - FSPL_CONSTANT -
+					20 * Math.log10(frequency)) / 20);
+			this.maxDistances[i] = meters / metersPerUnit;
+		}
+		this.factors = factors.clone();
+		this.horizon = horizon;
+		this.step = step;
+		this.profiles = new LongHashMap<RateProfile>();
+	}
+
+	/**
+	 * Returns the link rate model of the current run
+	 * @return The model or null if the model is not in use
+	 * @throws SettingsError if the settings are invalid
+	 */
+	public static LinkRateModel getInstance() {
+		SimContext c = SimContext.getInstance();
+		Object state = c.getClassState(LinkRateModel.class);
+		if (state == null) {
+			state = load();
+			c.setClassState(LinkRateModel.class, state);
+		}
+		return state instanceof LinkRateModel ? (LinkRateModel)state : null;
+	}
+
+	/**
+	 * Reads the model from the settings
+	 * @return The model, or {@link Boolean#FALSE} if the model is not in
+	 * use
+	 */
+	private static Object load() {
+		Settings s = new Settings(World.USERSETTINGNAME_S);
+		if (!s.getBoolean(LINK_RATE_MODEL_S, false)) {
+			return Boolean.FALSE;
+		}
+		double[] thresholds = DEF_SNR_THRESHOLDS;
+		double[] factors = DEF_RATE_FACTORS;
+		if (s.contains(SNR_THRESHOLDS_S) || s.contains(RATE_FACTORS_S)) {
+			thresholds = s.getCsvDoubles(SNR_THRESHOLDS_S);
+			factors = s.getCsvDoubles(RATE_FACTORS_S, thresholds.length);
+		}
+		for (int i = 1; i < thresholds.length; i++) {
+			if (thresholds[i] < thresholds[i - 1]) {
+				throw new SettingsError(s.getFullPropertyName(
+						SNR_THRESHOLDS_S) + " must be in increasing order");
+			}
+		}
+		double frequency = s.getDouble(FREQUENCY_S, DEF_FREQUENCY);
+		double metersPerUnit = s.getDouble(METERS_PER_UNIT_S,
+				DEF_METERS_PER_UNIT);
+		double horizon = s.getDouble(PREDICTION_HORIZON_S,
+				DEF_PREDICTION_HORIZON);
+		double step = s.getDouble(PREDICTION_STEP_S, DEF_PREDICTION_STEP);
+		s.ensurePositiveValue(frequency, FREQUENCY_S);
+		s.ensurePositiveValue(metersPerUnit, METERS_PER_UNIT_S);
+		s.ensurePositiveValue(horizon, PREDICTION_HORIZON_S);
+		if (step <= 0) {
+			throw new SettingsError("Invalid value for " +
+					s.getFullPropertyName(PREDICTION_STEP_S) + ": " + step);
+		}
+		return new LinkRateModel(frequency,
+				s.getDouble(LINK_BUDGET_S, DEF_LINK_BUDGET), thresholds,
+				factors, metersPerUnit, horizon, step);
+	}
+
+	/**
+	 * Returns the rate factor of a distance
+	 * @param distance The distance (simulation units)
+	 * @return The rate as a fraction of the maximum speed (0 if the link is
+	 * too long for any scheme)
+	 */
+	public double getFactor(double distance) {
+		int band = getBand(distance);
+		return band < 0 ? 0 : this.factors[band];
+	}
+
+	/**
+	 * Returns the predicted rate profile of a link between two hosts. The
+	 * profile starts at the current time or earlier and is cached until
+	 * the rate changes the first time.
+	 * @param host1 Host in one end of the link
+	 * @param host2 Host in the other end of the link
+	 * @return The profile
+	 */
+	public RateProfile getProfile(DTNHost host1, DTNHost host2) {
+		double now = SimClock.getTime();
+		long key = key(host1.getAddress(), host2.getAddress());
+		RateProfile profile = this.profiles.get(key);
+		if (profile == null || profile.getFirstChange() <= now) {
+			profile = predict(host1, host2, now);
+			this.profiles.put(key, profile);
+		}
+		return profile;
+	}
+
+	/**
+	 * Returns the predicted time to transmit a message over a link
+	 * @param host1 The sending host
+	 * @param host2 The receiving host
+	 * @param bytes Size of the message
+	 * @param start Time when the transmission starts (at least the current
+	 * time)
+	 * @param speed Maximum transmission speed of the link (bytes/s)
+	 * @return The transmission time (seconds), or
+	 * {@link Double#POSITIVE_INFINITY} if the link can't transfer the
+	 * message
+	 */
+	public double getTransmissionTime(DTNHost host1, DTNHost host2,
+			int bytes, double start, double speed) {
+		return getProfile(host1, host2).getTransferEnd(start, bytes, speed)
+			- start;
+	}
+
+	/**
+	 * Predicts the rate profile of a link from the orbits of the hosts.
+	 * The distance is sampled every prediction step and the band boundary
+	 * crossings between the samples are found by bisection. Hosts without
+	 * an orbit (semi-major axis 0) are assumed to stay where they are.
+	 */
+	private RateProfile predict(DTNHost host1, DTNHost host2, double now) {
+		double end = now + this.horizon;
+		if (host1.getParameters()[0] == 0 && host2.getParameters()[0] == 0) {
+			/* no orbit to predict from: use the current distance until the
+			 * next step */
+			double distance = host1.getLocation().distance(
+					host2.getLocation());
+			return new RateProfile(new double[] {now},
+					new double[] {getFactor(distance)}, now + this.step);
+		}
+
+		double[] times = new double[8];
+		double[] factors = new double[8];
+		int n = 0;
+		int band = getBand(now, host1, host2);
+		times[n] = now;
+		factors[n++] = band < 0 ? 0 : this.factors[band];
+
+		double previous = now;
+		for (double t = now + this.step; t <= end; t += this.step) {
+			int newBand = getBand(t, host1, host2);
+			if (newBand == band) {
+				previous = t;
+				continue;
+			}
+
+			/* find the crossing time of the band boundary */
+			double lo = previous;
+			double hi = t;
+			for (int i = 0; i < NROF_BISECTIONS; i++) {
+				double mid = (lo + hi) / 2;
+				if (getBand(mid, host1, host2) == band) {
+					lo = mid;
+				}
+				else {
+					hi = mid;
+				}
+			}
+			if (n == times.length) {
+				times = Arrays.copyOf(times, n * 2);
+				factors = Arrays.copyOf(factors, n * 2);
+			}
+			band = newBand;
+			times[n] = hi;
+			factors[n++] = band < 0 ? 0 : this.factors[band];
+			previous = t;
+		}
+		return new RateProfile(Arrays.copyOf(times, n),
+				Arrays.copyOf(factors, n), end);
+	}
+
+	/** returns the band of two hosts at the given time */
+	private int getBand(double time, DTNHost host1, DTNHost host2) {
+		return getBand(getLocation(host1, time).distance(
+				getLocation(host2, time)));
+	}
+
+	/** returns the location of a host at the given time */
+	private static Coord getLocation(DTNHost host, double time) {
+		return host.getParameters()[0] == 0 ? host.getLocation() :
+			host.getCoordinate(time);
+	}
+
+	/**
+	 * Returns the index of the best scheme for a distance or -1 if the
+	 * distance is too long for all schemes
+	 */
+	private int getBand(double distance) {
+		for (int i = this.maxDistances.length - 1; i >= 0; i--) {
+			if (distance <= this.maxDistances[i]) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the key of the link between two hosts (the same in both
+	 * directions)
+	 */
+	private static long key(int address1, int address2) {
+		int min = Math.min(address1, address2);
+		int max = Math.max(address1, address2);
+		return ((long)min << 32) | (max & 0xFFFFFFFFL);
+	}
+}
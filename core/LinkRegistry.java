@@ -0,0 +1,167 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import util.LongHashMap;
+
+/**
+ * Registry of the hosts and the links of a simulation run. Hosts are
+ * indexed by their address and links by the addresses of the hosts in
+ * their ends, so finding the host of an address or the connection between
+ * two hosts doesn't need to go through host or connection lists. The
+ * interfaces register the connections when they come up and go down.
+ * <P>Connections that have gone down are kept in the registry so that
+ * they can be reused when the same hosts meet again (satellites meet the
+ * same neighbors over and over). A connection is reused only if it has no
+ * transfers left and it went down before the current update, i.e., the
+ * routers of both hosts have already dropped it.</P>
+ */
+public final class LinkRegistry implements Serializable {
+	private static final long serialVersionUID = 42L;
+	/** hosts by address */
+	private DTNHost[] hosts;
+	/** host address pair -> connection that is up */
+	private LongHashMap<Connection> links;
+	/** host address pair -> connection that has gone down */
+	private LongHashMap<DownLink> downLinks;
+
+	private LinkRegistry() {
+		this.hosts = new DTNHost[16];
+		this.links = new LongHashMap<Connection>();
+		this.downLinks = new LongHashMap<DownLink>();
+	}
+
+	/**
+	 * Returns the registry of the current run
+	 * @return The registry
+	 */
+	public static LinkRegistry getInstance() {
+		SimContext c = SimContext.getInstance();
+		LinkRegistry registry =
+			(LinkRegistry)c.getClassState(LinkRegistry.class);
+		if (registry == null) {
+			registry = new LinkRegistry();
+			c.setClassState(LinkRegistry.class, registry);
+		}
+		return registry;
+	}
+
+	/**
+	 * Returns the key of the link between two hosts (the same in both
+	 * directions)
+	 */
+	private static long key(int address1, int address2) {
+		int min = Math.min(address1, address2);
+		int max = Math.max(address1, address2);
+		return ((long)min << 32) | (max & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Adds a host to the registry
+	 * @param host The host
+	 */
+	public void addHost(DTNHost host) {
+		int address = host.getAddress();
+		if (address >= this.hosts.length) {
+			this.hosts = Arrays.copyOf(this.hosts,
+					Math.max(address + 1, this.hosts.length * 2));
+		}
+		this.hosts[address] = host;
+	}
+
+	/**
+	 * Returns the host of an address
+	 * @param address The address
+	 * @return The host or null if there's no host with the address
+	 */
+	public DTNHost getHost(int address) {
+		return address >= 0 && address < this.hosts.length ?
+				this.hosts[address] : null;
+	}
+
+	/**
+	 * Returns a connection between two hosts that is up
+	 * @param address1 Address of one host
+	 * @param address2 Address of the other host
+	 * @return The connection or null if the hosts are not connected
+	 */
+	public Connection getConnection(int address1, int address2) {
+		return this.links.get(key(address1, address2));
+	}
+
+	/**
+	 * Registers a connection that came up
+	 * @param con The connection
+	 */
+	void linkUp(Connection con) {
+		long key = key(con.fromNode.getAddress(), con.toNode.getAddress());
+		this.links.put(key, con);
+		DownLink down = this.downLinks.get(key);
+		if (down != null && down.connection == con) {
+			this.downLinks.remove(key);
+		}
+	}
+
+	/**
+	 * Registers a connection that went down. If the hosts still have
+	 * another connection (using other interfaces), that one becomes the
+	 * registered connection between them.
+	 * @param con The connection
+	 */
+	void linkDown(Connection con) {
+		long key = key(con.fromNode.getAddress(), con.toNode.getAddress());
+		if (this.links.get(key) == con) {
+			this.links.remove(key);
+			for (Connection other : con.fromNode.getConnections()) {
+				if (other != con && other.isUp() &&
+						other.getOtherNode(con.fromNode) == con.toNode) {
+					this.links.put(key, other);
+					break;
+				}
+			}
+		}
+		this.downLinks.put(key, new DownLink(con, SimClock.getTime()));
+	}
+
+	/**
+	 * Returns a connection between two hosts that has gone down and can be
+	 * reused for a new contact between them. The connection is removed from
+	 * the registry; it must be reset (see {@link CBRConnection#reset}) and
+	 * connected again.
+	 * @param address1 Address of one host
+	 * @param address2 Address of the other host
+	 * @param type Required type of the connection
+	 * @return The connection or null if there's no reusable connection
+	 */
+	public <T extends Connection> T reuse(int address1, int address2,
+			Class<T> type) {
+		long key = key(address1, address2);
+		DownLink down = this.downLinks.get(key);
+		if (down == null || down.connection.getClass() != type ||
+				down.connection.isUp() || down.connection.isTransferring() ||
+				down.downTime >= SimClock.getTime()) {
+			return null;
+		}
+		this.downLinks.remove(key);
+		return type.cast(down.connection);
+	}
+
+	/**
+	 * A connection that has gone down and the time when it went down
+	 */
+	private static class DownLink implements Serializable {
+		private static final long serialVersionUID = 42L;
+		private final Connection connection;
+		private final double downTime;
+
+		private DownLink(Connection connection, double downTime) {
+			this.connection = connection;
+			this.downTime = downTime;
+		}
+	}
+}
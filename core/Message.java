@@ -5,6 +5,7 @@
 package core;
 
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -14,12 +15,12 @@ import java.util.Set;
 /**
  * A message that is created at a node or passed between nodes.
  */
-public class Message implements Comparable<Message> {
+public class Message implements Comparable<Message>, Serializable {
+	private static final long serialVersionUID = 42L;
 	/** Time-to-live (TTL) as seconds -setting id ({@value}). Boolean valued.
 	 * If set to true, the TTL is interpreted as seconds instead of minutes. 
 	 * Default=false. */
 	public static final String TTL_SECONDS_S = "Scenario.ttlSeconds";
-	private static boolean ttlAsSeconds = false;
 	
 	/** Value for infinite TTL of message */
 	public static final int INFINITE_TTL = -1;
@@ -32,7 +33,6 @@ public class Message implements Comparable<Message> {
 	/** List of nodes this message has passed */
 	private List<DTNHost> path; 
 	/** Next unique identifier to be given */
-	private static int nextUniqueId;
 	/** Unique ID of this message */
 	private int uniqueId;
 	/** The time this message was received */
@@ -56,26 +56,22 @@ public class Message implements Comparable<Message> {
 	/** Application ID of the application that created the message */
 	private String	appID;
 	
-	/**------------------------------   Messageӵı       --------------------------------*/
+	/**------------------------------   对Message添加的变量       --------------------------------*/
 	
-	/** ӲϢĳʼIDڴӦưʱõ*/
+	/** 添加参量，保留消息的初始ID，在处理响应包，控制包时会用到*/
 	private String  initMsgID;	
-	/** fileزֱfileʵڴļ*/
+	/** 添加与file相关参量，直接用file类的实例来代替正在传输的文件。*/
 	private  String filename;
-	/**ļЯchunkID*/
+	/**　文件中携带chunk的ID*/
 	private  String chunkID;
-	/** ϢЯļ */
+	/** 消息中携带的文件 */
 	private  file data;	
-	/** bitMapڶchunkIDӳ    */
+	/** bitMap用于对chunkID进行映射    */
 	private ArrayList<Integer> bitMap = new ArrayList<Integer>();
-	/** жϰ */
+	/** 用于判断包的类型 */
 	public static final String SelectLabel = "SelectLabel";
 
-	/**------------------------------   Messageӵı       --------------------------------*/
-	static {
-		reset();
-		DTNSim.registerForReset(Message.class.getCanonicalName());
-	}
+	/**------------------------------   对Message添加的变量       --------------------------------*/
 	
 	/**
 	 * Returns the node this message is originally from
@@ -154,7 +150,7 @@ public class Message implements Comparable<Message> {
 			return Integer.MAX_VALUE;
 		}
 		else {
-			if (ttlAsSeconds) {
+			if (isTtlAsSeconds()) {
 				return (int)(this.initTtl -
 						(SimClock.getTime()-this.timeCreated) );				
 			} else {
@@ -164,6 +160,18 @@ public class Message implements Comparable<Message> {
 		}
 	}
 	
+	/**
+	 * Returns the simulation time when the TTL of this message runs out
+	 * @return The expiry time or Double.MAX_VALUE if the TTL is infinite
+	 */
+	public double getExpiryTime() {
+		if (this.initTtl == INFINITE_TTL) {
+			return Double.MAX_VALUE;
+		}
+		return this.timeCreated + (isTtlAsSeconds() ? this.initTtl :
+			this.initTtl * 60.0);
+	}
+
 	/**
 	 * Sets the initial TTL (time-to-live) for this message. The initial
 	 * TTL is the TTL when the original message was created. The current TTL
@@ -299,7 +307,7 @@ public class Message implements Comparable<Message> {
 
 		this.properties.put(key, value);
 	}
-	public void removeProperty(String key){//
+	public void removeProperty(String key){//新增方法！！！！！！！！！！！！！！！！！！！！！！！！！！！！！！！！！！！！！！！！！！！！！！！
 		if (this.properties == null) {
 			/* lazy creation to prevent performance overhead for classes
 			   that don't use the property feature  */
@@ -321,9 +329,22 @@ public class Message implements Comparable<Message> {
 	 * Resets all static fields to default values
 	 */
 	public static void reset() {
-		nextUniqueId = 0;
-		Settings s = new Settings();
-		ttlAsSeconds = s.getBoolean(TTL_SECONDS_S, false);
+		SimContext c = SimContext.getInstance();
+		c.nextMessageId = 0;
+		c.ttlAsSeconds = null;
+	}
+
+	/**
+	 * Returns true if TTLs are in seconds (instead of minutes) in the
+	 * current run
+	 * @return true if TTLs are in seconds
+	 */
+	private static boolean isTtlAsSeconds() {
+		SimContext c = SimContext.getInstance();
+		if (c.ttlAsSeconds == null) {
+			c.ttlAsSeconds = new Settings().getBoolean(TTL_SECONDS_S, false);
+		}
+		return c.ttlAsSeconds;
 	}
 
 	/**
@@ -339,63 +360,63 @@ public class Message implements Comparable<Message> {
 	public void setAppID(String appID) {
 		this.appID = appID;
 	}
-	/**------------------------------   Messageӵĺ       --------------------------------*/
+	/**------------------------------   对Message添加的函数方法       --------------------------------*/
 	
-	/** bitMapԪ */
+	/** 对bitMap中所有元素置零操作 */
 	public void setZeroForBitMap(){
 		this.bitMap.clear();
 		for(int i=0;i<10;i++)
 			bitMap.add(0);
 	}
-	/** ȡϢʼID  */
+	/** 获取消息初始ID  */
 	public String getInitMsgId(){
 		return this.initMsgID;
 	}
-	/** ϢʼID  */
+	/** 设置消息初始ID  */
 	public void setInitMsgId(String s){
 		this.initMsgID = s;
 	}
-	/** õϢЯbitMap  */
+	/** 得到消息携带的bitMap  */
 	public ArrayList<Integer> getBitMap(){
 		return this.bitMap;
 	}
-	/** õӦڴļ      */
+	/** 得到响应函数中正在传输的文件      */
 	public file getFile(){
 		return this.data;
 	}
-    /** ļ      */
+    /** 对文件名操作      */
 	public String getFilename() {
 		return filename;
 	}
-    /** ļò      */
+    /** 对文件名设置操作      */
 	public void setFilename(String filename) {
 		this.filename = filename;
 	}
 	
-	/** ԷƬݽв  */
+	/** 对分片后的内容进行操作  */
 	public String getChunkID(){
 		return chunkID;
 	}
 	public void setChunkID(String chunkID){
 		this.chunkID=chunkID;		
 	}
-	/** bitmap   */
+	/** 对bitmap进行设置   */
 	public void setBitMap(ArrayList<Integer> bm){
 		this.bitMap = bm;
 		
 	}
-	/** ϢЯļ   */
+	/** 对消息携带的文件进行设置   */
 	public void setFile(file f){
 		this.data = f;
 	}
 
-	/**ϢĴʱʱ*/
+	/**　对消息的创建时间与接收时间进行设置*/
 	public void setTime(double timeC, double timeR){
 		this.timeCreated = timeC;
 		this.timeReceived = timeR;
 	}
 	
-	// Ƕԭеĺ޸ģȫд
+	// 这是对原有的函数做了修改，并不完全重写
 	
 	/**
 	 * Creates a new Message.
@@ -405,13 +426,13 @@ public class Message implements Comparable<Message> {
 	 * 	will be the same for all replicates of the message)
 	 * @param size Size of the message (in bytes)
 	 */
-	public Message(DTNHost from, DTNHost to, String id, int size) {			//	Ϣʼ
+	public Message(DTNHost from, DTNHost to, String id, int size) {			//	消息初始化过程
 		this.from = from;
 		this.to = to;
 		this.id = id;
 		this.size = size;
 		this.path = new ArrayList<DTNHost>();								
-		this.uniqueId = nextUniqueId;  										//	Ϣidʶ
+		this.uniqueId = SimContext.getInstance().nextMessageId++;  										//	消息id标识
 		this.initMsgID = id;
 		
 		this.timeCreated = SimClock.getTime();
@@ -421,18 +442,17 @@ public class Message implements Comparable<Message> {
 		this.requestMsg = null;
 		this.properties = null;
 		this.appID = null;			
-		this.setZeroForBitMap();											//	bitMapʼ
-		Message.nextUniqueId++;
+		this.setZeroForBitMap();											//	对bitMap初始化
 		addNodeOnPath(from);
 	}
-	/**  д캯ΪӦϢʱе*/
-	public Message(DTNHost from, DTNHost to, String id, int size, file Data) {	//Ϣʼ
+	/**  重写构造函数，当为响应消息时，进行调用*/
+	public Message(DTNHost from, DTNHost to, String id, int size, file Data) {	//消息初始化过程
 		this.from = from;
 		this.to = to;
 		this.id = id;
 		this.size = size;
 		this.path = new ArrayList<DTNHost>();								
-		this.uniqueId = nextUniqueId;  											//Ϣidʶ
+		this.uniqueId = SimContext.getInstance().nextMessageId++;  											//消息id标识
 		this.data= new file();
 		this.data= this.data.copyFrom(Data);
 		this.data.copyData(Data);		
@@ -445,7 +465,6 @@ public class Message implements Comparable<Message> {
 		this.requestMsg = null;
 		this.properties = null;
 		this.appID = null;
-		Message.nextUniqueId++;
 		addNodeOnPath(from);
 	}
 	/**
@@ -454,14 +473,14 @@ public class Message implements Comparable<Message> {
 	 */
 	public Message replicate() {
 		
-		if(this.getProperty(SelectLabel)!=(Object)1){									// ϢΪӦϢ
+		if(this.data == null){															// 当消息不携带文件（不为应答消息）
 			Message m = new Message(from, to, id, size);
 			m.copyFrom(this);
 			m.filename=this.filename;
 			m.bitMap=this.bitMap;
 			m.initMsgID = this.initMsgID;
 			return m;
-		} else{																			// ΪӦϢʱ
+		} else{																			// 当为响应消息时
 			Message m = new Message(from, to, id, size, data);			
 			m.copyFrom(this);
 			m.filename= this.filename;
@@ -483,7 +502,7 @@ public class Message implements Comparable<Message> {
 		this.requestMsg  = m.requestMsg;
 		this.appID = m.appID;
 		this.initTtl = m.initTtl;						
-		this.chunkID = m.chunkID;						//chunkIи
+		this.chunkID = m.chunkID;						//对chunkI进行复制
 
 		if (m.properties != null) {
 			Set<String> keys = m.properties.keySet();
@@ -494,5 +513,5 @@ public class Message implements Comparable<Message> {
 	}
 	
 	
-	/**------------------------------   Messageӵĺ       --------------------------------*/
+	/**------------------------------   对Message添加的函数方法       --------------------------------*/
 }
@@ -1,13 +1,16 @@
 package core;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 
 import jat.orbit.SatelliteOrbit;
+import util.DistanceKernel;
 
-public class Neighbors {
+public class Neighbors implements Serializable {
+	private static final long serialVersionUID = 42L;
 	/** interface name in the group -setting id ({@value})*/
 	public static final String INTERFACENAME_S = "Interface";
 	/** transmit range -setting id ({@value})*/
@@ -23,71 +26,73 @@ public class Neighbors {
 	
 	private DTNHost host;
 	private double simEndTime;
-	private double	transmitRange;//õĿͨоֵ
+	private double	transmitRange;//设置的可通行距离阈值
+	/** Earth occlusion test or null if the occlusion is off */
+	private LineOfSight lineOfSight;
 	private HashMap<DTNHost, double[]> neighborsLiveTime= new HashMap<DTNHost, double[]>();
 	private HashMap<DTNHost, double[]> potentialNeighborsStartTime= new HashMap<DTNHost, double[]>();
 	
-	private List<DTNHost> neighbors = new ArrayList<DTNHost>();//ھӽڵб 
-	private List<DTNHost> hosts = new ArrayList<DTNHost>();//ȫǽڵб
+	private List<DTNHost> neighbors = new ArrayList<DTNHost>();//邻居节点列表 
+	private List<DTNHost> hosts = new ArrayList<DTNHost>();//全局卫星节点列表
 	private List<NetworkInterface> potentialNeighbors = new ArrayList<NetworkInterface>();
 	/**
-	 * ʼ
+	 * 初始化函数
 	 * @param host
 	 */
 	public Neighbors(DTNHost host){
 		this.host = host;
-		Settings s = new Settings(INTERFACENAME_S);
-		transmitRange = s.getDouble(TRANSMIT_RANGE_S);//ļжȡ
-		Settings set = new Settings(SCENARIONAME_S);
-		simEndTime = set.getDouble(SIMULATION_END_TIME);
+		SimConfig config = SimConfig.getInstance();
+		transmitRange = config.getTransmitRange();
+		simEndTime = config.getEndTime();
+		lineOfSight = LineOfSight.getInstance();
 	}
 	public Neighbors(List<DTNHost> hosts){
 		this.hosts=hosts;
 	}
 	/**
-	 * ȫֽڵб
+	 * 返回全局节点列表
 	 * @return
 	 */
 	public List<DTNHost> getHosts(){
 		return this.hosts;
 	}
 	/**
-	 * ޸Ǳھӽڵ(δܳΪھӵĽڵ)бConnectivityGrid.javaеgetNearInterfaces()
+	 * 修改潜在邻居节点(即未来可能成为邻居的节点)列表，仅由ConnectivityGrid.java中的getNearInterfaces()函数调用
 	 * @param potentialNeighbors
 	 */
 	public void changePotentialNeighbors(List<NetworkInterface> potentialNeighbors){
 		this.potentialNeighbors = potentialNeighbors;
 	}
 	/**
-	 * ȫֽڵб
+	 * 更改全局节点列表
 	 * @param hosts
 	 */
 	public void changeHostsList(List<DTNHost> hosts){
 		this.hosts=hosts;
 	}
 	/**
-	 * صǰڵھӽڵб
+	 * 返回当前节点的所有邻居节点列表
 	 * @return
 	 */
 	public List<DTNHost> getNeighbors(){
 		return this.neighbors;
 	}
 	/**
-	 * Ԥھӽڵ㵽ھӷΧʱ
+	 * 返回预测邻居节点到达邻居范围的时间
 	 * @return
 	 */
 	public HashMap<DTNHost, double[]> getPotentialNeighborsStartTime(){
 		return this.potentialNeighborsStartTime;
 	}
 	/**
-	 * ھӽڵĴʱ
+	 * 返回邻居节点的存在时间
 	 * @return
 	 */
 	public HashMap<DTNHost, double[]> getNeighborsLiveTime(){
 		return this.neighborsLiveTime;
 	}
 	/**
-	 * ޸ھӽڵбԼӦʱ
+	 * 修改邻居节点列表，以及相应的生存时间
 	 * @param nei
 	 */
 	public void changeNeighbors(List<DTNHost> nei){
@@ -97,11 +102,11 @@ public class Neighbors {
 			double[] liveTime = new double[2];
 			liveTime[0] = SimClock.getTime();
 			liveTime[1] = SimClock.getTime();
-			this.neighborsLiveTime.put(host, liveTime);//µھӽڵб	
+			this.neighborsLiveTime.put(host, liveTime);//把新到来的邻居节点加入列表中	
 		}
 	}
 	/**
-	 * SatelliteLaserInterface.javaά뿪ھӽڵ
+	 * 在SatelliteLaserInterface.java里用于维护离开的邻居节点
 	 * @param host
 	 */
 	public void removeNeighbor(DTNHost host){
@@ -109,7 +114,7 @@ public class Neighbors {
 		this.neighborsLiveTime.remove(host);
 	}
 	/**
-	 * ӵǰڵھӽڵ
+	 * 添加当前节点的邻居节点
 	 * @param host
 	 */
 	public void addNeighbor(DTNHost host){
@@ -124,12 +129,12 @@ public class Neighbors {
 				double[] liveTime = new double[2];
 				liveTime[0] = SimClock.getTime();
 				liveTime[1] = SimClock.getTime();
-				this.neighborsLiveTime.put(host, liveTime);//µھӽڵб				
+				this.neighborsLiveTime.put(host, liveTime);//把新到来的邻居节点加入列表中				
 				}
 		}
 	}
 	/**
-	 * ھӽڵµڣʵʱ½ڵھӣԤھӽڵ
+	 * 邻居节点更新的入口，实时更新节点的邻居，并预测其它非邻居节点
 	 * @param ni
 	 * @param connections
 	 */
@@ -149,7 +154,7 @@ public class Neighbors {
 	*/
 	}
 	/**
-	 * ھӽڵδ뿪ʱ
+	 * 计算邻居节点未来离开的时间
 	 * @param host
 	 * @return
 	 */
@@ -157,18 +162,18 @@ public class Neighbors {
 		if (this.potentialNeighborsStartTime.containsKey(host)){
 			double[] liveTime = this.potentialNeighborsStartTime.get(host);
 			if (liveTime[0] != liveTime[1] && liveTime[1] > SimClock.getTime()){
-				changeNeighborsLiveTime(host, liveTime[1]);//˽ڵĵ֮ǰѾԤֱӰ
+				changeNeighborsLiveTime(host, liveTime[1]);//如果此节点的到来之前已经预测过就直接把它读出来
 			}
 		}
 		
 		double timeNow = SimClock.getTime();
 		int i = 0;
-		for (double time = timeNow; time < this.simEndTime; time += INTERVAL){//
-			if (JudgeNeighbors(this.host.getCoordinate(time), host.getCoordinate(time)) == false){//ȻھӷΧھͼʱ䣬
-				for (double var = time - INTERVAL; var <= time; var += 0.1){//ҵ˴ŷΧ֮ΪϸϵͳupdateIntervalΪ
+		for (double time = timeNow; time < this.simEndTime; time += INTERVAL){//粗搜索，搜索步长大
+			if (JudgeNeighbors(this.host.getCoordinate(time), host.getCoordinate(time)) == false){//如果仍然在邻居范围内就继续增加时间，暴力搜索
+				for (double var = time - INTERVAL; var <= time; var += 0.1){//找到了大概范围之后改为细搜索，按照系统的updateInterval作为搜索步长
 					if (JudgeNeighbors(this.host.getCoordinate(var), host.getCoordinate(var)) == false){
 						changeNeighborsLiveTime(host, var);
-						return true;//ѭ
+						return true;//跳出循环
 					}
 				}
 			}
@@ -176,7 +181,7 @@ public class Neighbors {
 		return false;
 	}
 	/**
-	 * ھӽڵ뿪ʱ
+	 * 计算邻居节点的离开时间
 	 * @param neighborsLiveTime
 	 */
 	public void updateNeighborsEndTime(HashMap<DTNHost, double[]> neighborsLiveTime){
@@ -185,11 +190,11 @@ public class Neighbors {
 			for (DTNHost host : this.neighbors){
 				double[] Time = neighborsLiveTime.get(host);
 				//double timeNow = SimClock.getTime();
-				if (Time[0] != Time[1] || Time[1] == this.simEndTime)//ΪҪظԤ⣬Ԥʱ䣬
+				if (Time[0] != Time[1] || Time[1] == this.simEndTime)//因为不需要重复预测，所以满足条件不用则更新预测时间，减少运算量
 					continue;
 				else{
 					if (getNeighborsLeaveTime(host) == false)
-						changeNeighborsLiveTime(host, this.simEndTime);//ȫʱ䶼ûҵ뿪ʱ䣬˽ڵһֱھӷΧ
+						changeNeighborsLiveTime(host, this.simEndTime);//如果搜索了全局时间都没能找到离开时间，表面此节点一直在邻居范围内
 					else
 						continue;
 				}	
@@ -198,17 +203,17 @@ public class Neighbors {
 		}
 	}
 	/**
-	 * ޸ھʱ뿪ʱ
+	 * 修改邻居生存时间里，离开的时间
 	 * @param time
 	 */
 	public void changeNeighborsLiveTime(DTNHost host, double time){
 		double[] liveTime = new double[2];
 		liveTime[0] = SimClock.getTime();
 		liveTime[1] = time;
-		this.neighborsLiveTime.put(host, liveTime);//ԭhostӦliveTimeֵ
+		this.neighborsLiveTime.put(host, liveTime);//更改原先host对应的liveTime值
 	}
 	/**
-	 * ޸ĵǰھӵĽڵ㣬䵽ͽʱ
+	 * 修改当前不是邻居的节点，其到达和结束的时间
 	 * @param time
 	 */
 	public void changePotentialNeighborsTime(DTNHost host, double time1, double time2){
@@ -218,48 +223,48 @@ public class Neighbors {
 		this.potentialNeighborsStartTime.put(host, liveTime);
 	}
 	/**
-	 * Ԥ⵽Ľڵ㼯УѾΪھӵĽڵƳ
+	 * 把预测到达的节点集合中，已经成为邻居的节点移除
 	 */
 	public void removeExistNeighbors(){
 		List<DTNHost> existNeighbors = new ArrayList<DTNHost>();
 		existNeighbors.clear();
 		Collection<DTNHost> potentialNeighborsStartTime = this.potentialNeighborsStartTime.keySet();
 		for (DTNHost host : potentialNeighborsStartTime){
-			if (this.potentialNeighborsStartTime.get(host)[0] <= SimClock.getTime())//ڵԤʱѳΪھӵĽڵƳ
+			if (this.potentialNeighborsStartTime.get(host)[0] <= SimClock.getTime())//对于到达预测时间且已成为邻居的节点就移除
 				if (this.neighbors.contains(host))
 					existNeighbors.add(host);
 				else
-					assert false : this.host+" Ԥʱ䵫ǻûгΪھӽڵ "+ host;
+					assert false : this.host+" 到达预测时间但是还没有成为邻居节点 "+ host;
 		}
 		for (DTNHost host : existNeighbors){
 			this.potentialNeighborsStartTime.remove(host);
 		}
 	}
 	/**
-	 * ԤȫڵΪھӵʱ
+	 * 用于预测全部节点成为邻居的时间
 	 */
 	public void predictAllStartTime(){
 
 		//List<DTNHost> hosts = new ArrayList<DTNHost>(); 
 		//hosts = this.hosts;
-		//hosts.removeAll(this.neighbors);//ȥھӽڵ
+		//hosts.removeAll(this.neighbors);//去掉邻居节点
 		
-		removeExistNeighbors();//ȥѳΪھӵԤڵ!!!
+		removeExistNeighbors();//去掉已成为邻居的预测节点!!!
 		
 		boolean findLabel = false;
 		for (DTNHost host : this.hosts){
 			findLabel = false;
-			if (this.neighbors.contains(host) || host.getAddress() == this.host.getAddress()){//ѾھӽڵԤ
+			if (this.neighbors.contains(host) || host.getAddress() == this.host.getAddress()){//已经是邻居节点无需预测
 				continue;
 			}
 			else{
-				if (this.potentialNeighborsStartTime.containsKey(host) == false){//ѾԤľͲ	
+				if (this.potentialNeighborsStartTime.containsKey(host) == false){//已经预测过的就不用再算了	
 					for (double time = SimClock.getTime(); time < this.simEndTime; time += INTERVAL){
 						if (JudgeNeighbors(this.host.getCoordinate(time) , 
-								host.getCoordinate(time)) == true){//жʲôʱŻΪھ
+								host.getCoordinate(time)) == true){//判断什么时候才会成为邻居
 							for (double var = time - INTERVAL; var < time; var += 0.1){
 								if (JudgeNeighbors(this.host.getCoordinate(time) , 
-										host.getCoordinate(time)) == true){//жʲôʱŻΪھ
+										host.getCoordinate(time)) == true){//判断什么时候才会成为邻居
 									if (var > 0){
 										findLabel = true;
 										changePotentialNeighborsTime(host, time, time);
@@ -275,7 +280,7 @@ public class Neighbors {
 					if (findLabel == true)
 						continue;
 					else {
-						changePotentialNeighborsTime(host, -1, -1);//ȫҲûҵ˲ܳΪھӽڵ
+						changePotentialNeighborsTime(host, -1, -1);//代表历遍全局也没找到，因此不可能成为邻居节点
 						//System.out.println(this.host+"   "+host+"  NeighborsStartTime is -1  "+this.potentialNeighborsStartTime);
 					}
 				}
@@ -284,22 +289,22 @@ public class Neighbors {
 
 	}
 	/**
-	 * ԤܳΪھӵĽڵ뿪ʱ
+	 * 预测可能成为邻居的节点其离开的时间
 	 */
 	public void predictAllEndTime(){
 		boolean findLabel = false;
 		for (DTNHost host : this.potentialNeighborsStartTime.keySet()){
 			findLabel = false;
-			assert !this.neighbors.contains(host) : "Ԥڵ㱻ھӽڵ";
+			assert !this.neighbors.contains(host) : "预测节点被包含在了邻居节点中";
 			if (this.potentialNeighborsStartTime.get(host)[0] == 
 					this.potentialNeighborsStartTime.get(host)[1] && 
-					this.potentialNeighborsStartTime.get(host)[0] > 0){//֤δܳΪھӵĽڵ㲻ظԤ⣬ͬʱҲҪųܳΪھӵĽڵ
+					this.potentialNeighborsStartTime.get(host)[0] > 0){//保证对未来可能成为邻居的节点不会重复预测，同时也要排除不可能成为邻居的节点
 				for (double time = this.potentialNeighborsStartTime.get(host)[0]; time < this.simEndTime; time += INTERVAL){
 					if (JudgeNeighbors(this.host.getCoordinate(time), 
-							host.getCoordinate(time)) == false){//жʲôʱŻ뿪
+							host.getCoordinate(time)) == false){//判断什么时候才会离开
 						for (double var = time - INTERVAL; var < time; var += 0.1){
 							if (JudgeNeighbors(this.host.getCoordinate(time), 
-									host.getCoordinate(time)) == false){//жʲôʱŻ뿪
+									host.getCoordinate(time)) == false){//判断什么时候才会离开
 								if (var > 0){
 									findLabel = true;
 									changePotentialNeighborsTime(host, 
@@ -316,20 +321,20 @@ public class Neighbors {
 					continue;
 				else 			
 					changePotentialNeighborsTime(host, 
-							this.potentialNeighborsStartTime.get(host)[0], simEndTime);//˵ȫʱδĳʱΪھӺ󲻻뿪				
+							this.potentialNeighborsStartTime.get(host)[0], simEndTime);//说明在全局时间里其在未来某个时间成为邻居后不会再离开了				
 			}
 		}
 	}
 	/**
-	 * ԤЩеھӽڵ
+	 * 预测那些在相邻网格中但还不是邻居节点的卫星
 	 * @param potentialNeighbors
 	 */
 	public void updatePotentialNeighborsStartTime(List<NetworkInterface> potentialNeighbors){	
 		double endTime = SimClock.getTime() + PREDICT_TIME;
 		//for (DTNHost host : this.neighbors){
-		//	potentialNeighbors.remove(host.getInterface(0));//ȥЩѾھӽڵ
+		//	potentialNeighbors.remove(host.getInterface(0));//去掉那些已经是邻居节点的
 		//}
-		Collection<DTNHost> potentialNeighborsStartTime = this.potentialNeighborsStartTime.keySet();//ʱľͰ޳ 
+		Collection<DTNHost> potentialNeighborsStartTime = this.potentialNeighborsStartTime.keySet();//超时的就把它剔除 
 		for (DTNHost host : potentialNeighborsStartTime){
 			if (this.potentialNeighborsStartTime.get(host)[0] > SimClock.getIntTime())
 				this.potentialNeighborsStartTime.remove(host);
@@ -337,10 +342,10 @@ public class Neighbors {
 		
 		for (NetworkInterface ni : potentialNeighbors){
 			if (!this.potentialNeighborsStartTime.containsKey(ni.getHost()) && 
-					!this.neighborsLiveTime.containsKey(ni.getHost())){//֤ÿڵֻԤһԤ⣬ѾھӵĽڵ㲻Ԥ
+					!this.neighborsLiveTime.containsKey(ni.getHost())){//保证每个节点只会预测一次预测，且已经是邻居的节点不用预测
 				for (double time = SimClock.getTime(); time < endTime; time += INTERVAL){
 					if (JudgeNeighbors(this.host.getCoordinate(time) , 
-							ni.getHost().getCoordinate(time))){//жʲôʱŻΪھ
+							ni.getHost().getCoordinate(time))){//判断什么时候才会成为邻居
 						for (double var = time - INTERVAL; var < time; var += 0.1){
 							if (JudgeNeighbors(this.host.getCoordinate(var) , 
 									ni.getHost().getCoordinate(var))){
@@ -350,22 +355,22 @@ public class Neighbors {
 								this.potentialNeighborsStartTime.put(ni.getHost(), liveTime);
 								System.out.print(this.host+"   "+ni.getHost()+"  potentialNeighborsStartTime is ");
 								System.out.println(liveTime[0]);
-								break;//ѭ
+								break;//跳出循环
 							}
 						}
 					}
-					break;//ڶѭ
+					break;//跳出第二层循环
 				}
 			}	
 		}	
 		//HashMap<DTNHost,double[]> potentialNeighborsTime = new HashMap<DTNHost,double[]>();
 		for (DTNHost host : this.neighbors){
-			this.potentialNeighborsStartTime.remove(host);//ѾΪھӽڵԤɾ
+			this.potentialNeighborsStartTime.remove(host);//已经成为邻居节点的预测可以删除
 			//System.out.println("test!");
 		}	
 	}	
 	/**
-	 * ʱtʱǽڵھӽڵ㲢洢neighbors
+	 * 计算在时刻t时，卫星节点的邻居节点并存储在neighbors中
 	 * @param parameters
 	 * @param t
 	 */
@@ -378,25 +383,25 @@ public class Neighbors {
 		int index=this.hosts.indexOf(host);
 		ChangeMyHost(index);
 		
-		for(int n=1;n<nrofhosts;n++){//бнڵnrofhostsĩβǸǱڵ㣬Բ
+		for(int n=1;n<nrofhosts;n++){//列表中节点的总数是nrofhosts个，末尾那个是本节点，所以不用算
 			if(JudgeNeighbors(GetCoordinate(hosts.get(n).getParameters(),t),myCoordinate)){
 				neighbors.add(hosts.get(n));
 			}
 		}
-		//System.out.print(hosts.get(index));//ϵͳӡھӵĽڵ
+		//System.out.print(hosts.get(index));//系统输出打印是邻居的节点
 		//System.out.println(neighbors);
 	}
 	/**
-	 * ббDTNHostŵ̬ĩβȥֻڵ֮ľ
+	 * 把列表中本DTNHost放到动态数组的末尾去，只计算与其它节点之间的距离
 	 * @param index
 	 */
 	public void ChangeMyHost(int index){
 		DTNHost host=this.hosts.get(index);
 		this.hosts.remove(index);
-		this.hosts.add(host);//ı䱾DTNHostڱе˳
+		this.hosts.add(host);//改变本DTNHost在表中的顺序
 	}
 	/**
-	 * ʱ䣬õӦάλãά[1][3]
+	 * 输入轨道参数和时间，得到对应三维坐标位置，二维数组[1][3]
 	 * @param parameters
 	 * @param t
 	 * @return
@@ -408,21 +413,45 @@ public class Neighbors {
 		return myCoordinate;
 	}
 	/**
-	 * Coordо
+	 * 对Coord类坐标进行距离计算
 	 * @param c1
 	 * @param c2
 	 * @return
 	 */
 	public boolean JudgeNeighbors(Coord c1,Coord c2){
 
-		double distance = c1.distance(c2);
-		if (distance <= this.transmitRange)
-			return true;
+		if (c1.distance2(c2) <= this.transmitRange * this.transmitRange)
+			return lineOfSight == null || lineOfSight.isVisible(c1, c2);
 		else
 			return false;
 	}	
 	/**
-	 * trueھӽڵ㣬ͨŷΧڣfalseͨŷΧ֮
+	 * Tests which of the candidate locations are in range of a location
+	 * with one batch distance computation. The results are left in the
+	 * kernel (see {@link DistanceKernel#isInRange(int)}) and are the same
+	 * as {@link #JudgeNeighbors(Coord, Coord)} would give for each
+	 * candidate.
+	 * @param c The location
+	 * @param candidates The candidate locations
+	 * @return The number of candidates that are neighbors
+	 */
+	public int JudgeNeighbors(Coord c, DistanceKernel candidates){
+		int count = candidates.withinRange(c.getX(), c.getY(), c.getZ(),
+				this.transmitRange);
+		if (lineOfSight == null || count == 0)
+			return count;
+		for (int i = 0, n = candidates.size(); i < n; i++){
+			if (candidates.isInRange(i) && !lineOfSight.isVisible(
+					candidates.getX(i), candidates.getY(i), candidates.getZ(i),
+					c.getX(), c.getY(), c.getZ())){
+				candidates.setInRange(i, false);
+				count--;
+			}
+		}
+		return count;
+	}
+	/**
+	 * 返回true代表是邻居节点，在通信范围内，返回false则在通信范围之外
 	 * @param c1
 	 * @param c2
 	 * @return
@@ -431,8 +460,10 @@ public class Neighbors {
 		double var;
 		var=(c1[0][0]-c2[0][0])*(c1[0][0]-c2[0][0])+(c1[0][1]-c2[0][1])*(c1[0][1]-c2[0][1])+(c1[0][2]-c2[0][2])*(c1[0][2]-c2[0][2]);
 		var=EnsurePositive(var);
-		if (Math.sqrt(var) <= this.transmitRange)
-			return true;
+		if (var <= this.transmitRange * this.transmitRange)
+			return lineOfSight == null || lineOfSight.isVisible(
+					c1[0][0]/10+2000, c1[0][1]/10+2000, c1[0][2]/10+2000,
+					c2[0][0]/10+2000, c2[0][1]/10+2000, c2[0][2]/10+2000);//轨道坐标换算为仿真坐标，同DTNHost.getCoordinate()
 		else 
 			return false;
 	}
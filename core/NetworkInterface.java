@@ -6,7 +6,9 @@ package core;
 
 import interfaces.ConnectivityGrid;
 import interfaces.ConnectivityOptimizer;
+import interfaces.SphericalConnectivityGrid;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -18,7 +20,8 @@ import util.ActivenessHandler;
 /**
  * Network interface of a DTNHost. Takes care of connectivity among hosts.
  */
-abstract public class NetworkInterface implements ModuleCommunicationListener {
+abstract public class NetworkInterface implements ModuleCommunicationListener, Serializable {
+	private static final long serialVersionUID = 42L;
 	/** transmit range -setting id ({@value})*/
 	public static final String TRANSMIT_RANGE_S = "transmitRange";
 	/** transmit speed -setting id ({@value})*/
@@ -49,7 +52,6 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	private static final int CON_UP = 1;
 	private static final int CON_DOWN = 2;
 
-	private static Random rng;
 	protected DTNHost host = null;
 
 	protected String interfacetype;
@@ -59,6 +61,10 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	protected double transmitRange;
 	protected double oldTransmitRange;
 	protected int transmitSpeed;
+	/** Earth occlusion test or null if the occlusion is off */
+	protected LineOfSight lineOfSight;
+	/** registry of the links of the run */
+	protected LinkRegistry linkRegistry;
 	protected ConnectivityOptimizer optimizer = null;
 	/** scanning interval, or 0.0 if n/a */
 	private double scanInterval;
@@ -71,16 +77,16 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	/** this interface's activeness jitter value */
 	private int activenessJitterValue;
 	
-	/***/
-	protected HashMap<DTNHost,HashMap<DTNHost, double[]>> neighborsList = new HashMap<DTNHost,HashMap<DTNHost, double[]>>();//
+	/**新增参数*/
+	protected HashMap<DTNHost,HashMap<DTNHost, double[]>> neighborsList = new HashMap<DTNHost,HashMap<DTNHost, double[]>>();//新增
 	protected HashMap<DTNHost,HashMap<DTNHost, double[]>> predictList = new HashMap<DTNHost,HashMap<DTNHost, double[]>>();
-	public HashMap<DTNHost,HashMap<DTNHost, double[]>> getNeighborsList(){//
+	public HashMap<DTNHost,HashMap<DTNHost, double[]>> getNeighborsList(){//新增
 		return this.neighborsList;
 	}
-	public HashMap<DTNHost,HashMap<DTNHost, double[]>> getPredictList(){//
+	public HashMap<DTNHost,HashMap<DTNHost, double[]>> getPredictList(){//新增
 		return this.predictList;
 	}
-	/**/
+	/*新增函数*/
 	public ConnectivityOptimizer predictionUpdate(){
 		if (optimizer == null) {
 			return null; /* nothing to do */
@@ -90,16 +96,20 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		
 	}
 	
-	static {
-		DTNSim.registerForReset(NetworkInterface.class.getCanonicalName());
-		reset();
-	}
-	
 	/**
-	 * Resets the static fields of the class
+	 * Resets the rng of the interfaces in the current run
 	 */
 	public static void reset() {
-		rng = new Random(0);
+		SimContext.getInstance().interfaceRng = new Random(0);
+	}
+
+	/** returns the rng of the interfaces in the current run */
+	private static Random getRng() {
+		SimContext c = SimContext.getInstance();
+		if (c.interfaceRng == null) {
+			c.interfaceRng = new Random(0);
+		}
+		return c.interfaceRng;
 	}
 	
 	/**
@@ -113,6 +123,8 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		this.transmitSpeed = s.getInt(TRANSMIT_SPEED_S);
 		ensurePositiveValue(transmitRange, TRANSMIT_RANGE_S);
 		ensurePositiveValue(transmitSpeed, TRANSMIT_SPEED_S);
+		this.lineOfSight = LineOfSight.getInstance();
+		this.linkRegistry = LinkRegistry.getInstance();
 	}
 	
 	/**
@@ -121,6 +133,7 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	public NetworkInterface() {
 		this.interfacetype = "Default";
 		this.connections = new ArrayList<Connection>();
+		this.linkRegistry = LinkRegistry.getInstance();
 	}
 	
 	/**
@@ -133,18 +146,21 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		this.interfacetype = ni.interfacetype;
 		this.transmitRange = ni.transmitRange;
 		this.transmitSpeed = ni.transmitSpeed;
+		this.lineOfSight = ni.lineOfSight;
+		this.linkRegistry = ni.linkRegistry;
 		this.scanInterval = ni.scanInterval;
 		this.ah = ni.ah;
 		
 		if (ni.activenessJitterMax > 0) {
-			this.activenessJitterValue = rng.nextInt(ni.activenessJitterMax);
+			this.activenessJitterValue =
+				getRng().nextInt(ni.activenessJitterMax);
 		} else {
 			this.activenessJitterValue = 0;
 		}
 		
 		this.scanInterval = ni.scanInterval;
 		/* draw lastScanTime of [0 -- scanInterval] */
-		this.lastScanTime = rng.nextDouble() * this.scanInterval;
+		this.lastScanTime = getRng().nextDouble() * this.scanInterval;
 	}
 
 	/**
@@ -172,14 +188,48 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 			comBus.subscribe(SPEED_ID, this);
 		}
 		
+		setOptimizer();
+	}
+
+	/**
+	 * Adds the interface to the connectivity optimizer of its type and
+	 * range
+	 */
+	private void setOptimizer() {
 		if (transmitRange > 0) {
-			optimizer = ConnectivityGrid.ConnectivityGridFactory(
-					this.interfacetype.hashCode(), transmitRange);
+			if (SphericalConnectivityGrid.isEnabled()) {
+				optimizer = SphericalConnectivityGrid.
+					SphericalConnectivityGridFactory(
+							this.interfacetype.hashCode(), transmitRange);
+			}
+			else {
+				optimizer = ConnectivityGrid.ConnectivityGridFactory(
+						this.interfacetype.hashCode(), transmitRange);
+			}
 			optimizer.addInterface(this);
 		} else {
 			optimizer = null;
 		}
 	}
+
+	/**
+	 * Takes the transmit range and speed into use after the settings of
+	 * another run were applied to the interface (see
+	 * {@link SimScenario#fork(int)}). If the range changed, the interface
+	 * moves to the connectivity optimizer of the new range; the interfaces
+	 * of the same type are expected to change their range together.
+	 * @param oldRange The range before the settings were applied
+	 */
+	void settingsForked(double oldRange) {
+		ModuleCommunicationBus comBus = this.host.getComBus();
+		if (this.host.getInterfaces().get(0) == this) {
+			comBus.updateProperty(SPEED_ID, this.transmitSpeed);
+			comBus.updateProperty(RANGE_ID, this.transmitRange);
+		}
+		if (this.transmitRange != oldRange) {
+			setOptimizer();
+		}
+	}
 	
 	/**
 	 * Sets group-based settings for the network interface
@@ -332,6 +382,8 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		// set up bidirectional connection
 		anotherInterface.getConnections().add(con);
 
+		this.linkRegistry.linkUp(con);
+
 		// inform routers about the connection
 		this.host.connectionUp(con);
 		anotherInterface.getHost().connectionUp(con);
@@ -353,13 +405,15 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 					anotherInterface);	
 		}
 
+		this.linkRegistry.linkDown(con);
 		this.host.connectionDown(con);
 		anotherInterface.getHost().connectionDown(con);
 	}
 
 	/**
 	 * Returns true if another interface is within radio range of this interface
-	 * and this interface is also within radio range of the another interface.
+	 * and this interface is also within radio range of the another interface,
+	 * and the Earth doesn't block the line of sight between them.
 	 * @param anotherInterface The another interface
 	 * @return True if the interface is within range, false if not
 	 */
@@ -370,8 +424,11 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 			smallerRange = myRange;
 		}
 
-		return this.host.getLocation().distance(
-				anotherInterface.getHost().getLocation()) <= smallerRange;
+		Coord myLoc = this.host.getLocation();
+		Coord otherLoc = anotherInterface.getHost().getLocation();
+		return myLoc.distance(otherLoc) <= smallerRange &&
+			(this.lineOfSight == null ||
+			this.lineOfSight.isVisible(myLoc, otherLoc));
 	}
 	
 	/**
@@ -380,6 +437,16 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	 * @return True if the two hosts are connected
 	 */
 	protected boolean isConnected(NetworkInterface netinterface) {
+		Connection con = this.linkRegistry.getConnection(
+				this.host.getAddress(), netinterface.getHost().getAddress());
+		if (con == null) {
+			return false; // the hosts are not connected at all
+		}
+		if (con.getOtherInterface(this) == netinterface) {
+			return true;
+		}
+
+		// the hosts are connected using some other interfaces
 		for (int i = 0; i < this.connections.size(); i++) {
 			if (this.connections.get(i).getOtherInterface(this) == 
 				netinterface) {
@@ -494,6 +561,7 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 					anotherNode);   
 		}
 
+		this.linkRegistry.linkDown(con);
 		this.host.connectionDown(con);
 		anotherNode.connectionDown(con);
 
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.io.Serializable;
+
+/**
+ * Predicted transmission rate of a link as a function of time. The profile
+ * consists of segments with a constant rate factor (a fraction of the
+ * maximum transmission speed of the link); the last segment is assumed to
+ * last forever. Profiles are immutable.
+ * @see LinkRateModel
+ */
+public class RateProfile implements Serializable {
+	private static final long serialVersionUID = 42L;
+	/** start times of the segments, in increasing order */
+	private final double[] times;
+	/** rate factors of the segments */
+	private final double[] factors;
+	/** end of the prediction */
+	private final double horizon;
+
+	/**
+	 * Creates a new profile
+	 * @param times Start times of the segments in increasing order
+	 * @param factors Rate factors of the segments (0 - 1)
+	 * @param horizon Time until which the profile was predicted
+	 */
+	public RateProfile(double[] times, double[] factors, double horizon) {
+		assert times.length == factors.length && times.length > 0 :
+			"Invalid rate profile";
+		this.times = times;
+		this.factors = factors;
+		this.horizon = horizon;
+	}
+
+	/**
+	 * Returns the time when the rate factor changes the first time
+	 * @return The end time of the first segment, or the end of the
+	 * prediction if the rate doesn't change before that
+	 */
+	public double getFirstChange() {
+		return this.times.length > 1 ? this.times[1] : this.horizon;
+	}
+
+	/**
+	 * Returns the rate factor at the given time
+	 * @param time The time
+	 * @return The rate factor
+	 */
+	public double getFactor(double time) {
+		return this.factors[getSegment(time)];
+	}
+
+	/**
+	 * Returns the number of bytes a link can transfer in a time interval
+	 * @param start Start of the interval
+	 * @param end End of the interval
+	 * @param speed Maximum transmission speed of the link (bytes/s)
+	 * @return The number of bytes
+	 */
+	public double getBytes(double start, double end, double speed) {
+		double bytes = 0;
+		for (int i = getSegment(start); i < this.times.length &&
+				start < end; i++) {
+			double segmentEnd = i + 1 < this.times.length ?
+					Math.min(end, this.times[i + 1]) : end;
+			bytes += (segmentEnd - start) * this.factors[i] * speed;
+			start = segmentEnd;
+		}
+		return bytes;
+	}
+
+	/**
+	 * Returns the time when a link has transferred the given number of bytes
+	 * @param start Time when the transfer starts
+	 * @param bytes Number of bytes to transfer
+	 * @param speed Maximum transmission speed of the link (bytes/s)
+	 * @return The end time of the transfer or
+	 * {@link Double#POSITIVE_INFINITY} if the rate drops to zero before
+	 * the transfer is done
+	 */
+	public double getTransferEnd(double start, double bytes, double speed) {
+		double left = bytes;
+		for (int i = getSegment(start); i < this.times.length; i++) {
+			double rate = this.factors[i] * speed;
+			double segmentEnd = i + 1 < this.times.length ?
+					this.times[i + 1] : Double.POSITIVE_INFINITY;
+			if (rate > 0 && left <= (segmentEnd - start) * rate) {
+				return start + left / rate;
+			}
+			left -= (segmentEnd - start) * rate;
+			start = segmentEnd;
+		}
+		return Double.POSITIVE_INFINITY;
+	}
+
+	/** returns the index of the segment of a time */
+	private int getSegment(double time) {
+		int i = 0;
+		while (i + 1 < this.times.length && this.times[i + 1] <= time) {
+			i++;
+		}
+		return i;
+	}
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+
+/**
+ * Applies the settings of another run to the components of a run that was
+ * restored from a checkpoint (see {@link SimScenario#fork(int)}). A
+ * component is compared with two prototypes that are created from the
+ * settings of the checkpointed run and of the restoring run: the fields
+ * whose values differ between the prototypes are the ones that depend on
+ * the differing settings, and only they are set to the values of the
+ * restoring run's prototype. The other fields, i.e., the state of the
+ * component, are kept.
+ * <P>Fields that refer to objects of the simulator's own classes are
+ * compared and applied field by field, so that, e.g., the state of a
+ * router's helper object is kept when only its settings change. Objects of
+ * the Java classes (collections, random number generators etc.) are
+ * compared by their contents and replaced as a whole.</P>
+ */
+final class RunFork {
+	private RunFork() {}
+
+	/**
+	 * Applies the settings of the restoring run to a component
+	 * @param target The component of the restored run
+	 * @param from Prototype created from the settings of the checkpointed
+	 * run
+	 * @param to Prototype created from the settings of the restoring run.
+	 * The values of the differing fields are taken from it, so it should
+	 * not be shared by several components.
+	 * @return True if some field of the component changed
+	 * @throws SettingsError if the prototypes are of different classes
+	 */
+	static boolean apply(Object target, Object from, Object to) {
+		if (from.getClass() != to.getClass() ||
+				target.getClass() != to.getClass()) {
+			throw new SettingsError("Can't fork a run with " +
+					to.getClass().getSimpleName() + " from a checkpoint " +
+					"of a run with " + from.getClass().getSimpleName() +
+					" (" + target.getClass().getSimpleName() + ")");
+		}
+		return applyFields(target, from, to);
+	}
+
+	private static boolean applyFields(Object target, Object from,
+			Object to) {
+		boolean changed = false;
+		for (Class<?> c = to.getClass(); c != null && c != Object.class;
+				c = c.getSuperclass()) {
+			for (Field f : c.getDeclaredFields()) {
+				if (isSkipped(f)) {
+					continue;
+				}
+				f.setAccessible(true);
+				Object fromValue = get(f, from);
+				Object toValue = get(f, to);
+				if (isEqual(fromValue, toValue,
+						new IdentityHashMap<Object, Object>())) {
+					continue;
+				}
+				changed = true;
+				Object value = get(f, target);
+				if (value != null && fromValue != null &&
+						value.getClass() == toValue.getClass() &&
+						fromValue.getClass() == toValue.getClass() &&
+						isComposite(toValue.getClass())) {
+					applyFields(value, fromValue, toValue);
+				}
+				else {
+					set(f, target, toValue);
+				}
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Returns true if the values are equal. Objects of the simulator's own
+	 * classes are compared field by field.
+	 * @param visited Objects that are being compared (to stop at cycles)
+	 */
+	private static boolean isEqual(Object a, Object b,
+			IdentityHashMap<Object, Object> visited) {
+		if (a == b) {
+			return true;
+		}
+		if (a == null || b == null || a.getClass() != b.getClass()) {
+			return false;
+		}
+		Class<?> c = a.getClass();
+		if (c.isArray()) {
+			int n = Array.getLength(a);
+			if (n != Array.getLength(b)) {
+				return false;
+			}
+			for (int i = 0; i < n; i++) {
+				if (!isEqual(Array.get(a, i), Array.get(b, i), visited)) {
+					return false;
+				}
+			}
+			return true;
+		}
+		if (!isComposite(c)) {
+			if (hasEquals(c) || !(a instanceof Serializable)) {
+				return a.equals(b);
+			}
+			/* e.g., random number generators */
+			return Arrays.equals(serialize(a), serialize(b));
+		}
+		if (visited.put(a, b) != null) {
+			return true; /* already being compared */
+		}
+		for (; c != null && c != Object.class; c = c.getSuperclass()) {
+			for (Field f : c.getDeclaredFields()) {
+				if (isSkipped(f)) {
+					continue;
+				}
+				f.setAccessible(true);
+				if (!isEqual(get(f, a), get(f, b), visited)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns true for the classes of the simulator whose objects are
+	 * compared and applied field by field
+	 */
+	private static boolean isComposite(Class<?> c) {
+		return !c.isArray() && !c.isEnum() && !c.isPrimitive() &&
+			!c.getName().startsWith("java.") &&
+			!c.getName().startsWith("javax.");
+	}
+
+	/**
+	 * Returns true if the class compares its objects by their contents
+	 */
+	private static boolean hasEquals(Class<?> c) {
+		try {
+			return c.getMethod("equals", Object.class).getDeclaringClass() !=
+				Object.class;
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+
+	private static boolean isSkipped(Field f) {
+		int mod = f.getModifiers();
+		return Modifier.isStatic(mod) || Modifier.isTransient(mod) ||
+			f.isSynthetic();
+	}
+
+	private static byte[] serialize(Object o) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try {
+			ObjectOutputStream out = new ObjectOutputStream(bytes);
+			out.writeObject(o);
+			out.close();
+		} catch (IOException e) {
+			throw new SimError("Can't compare " + o + ": " + e.getMessage(),
+					e);
+		}
+		return bytes.toByteArray();
+	}
+
+	private static Object get(Field f, Object o) {
+		try {
+			return f.get(o);
+		} catch (IllegalAccessException e) {
+			throw new SimError("Can't read " + f, e);
+		}
+	}
+
+	private static void set(Field f, Object o, Object value) {
+		try {
+			f.set(o, value);
+		} catch (IllegalAccessException e) {
+			throw new SimError("Can't set " + f, e);
+		}
+	}
+}
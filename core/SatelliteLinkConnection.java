@@ -0,0 +1,318 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.io.Serializable;
+import java.util.ArrayDeque;
+
+import routing.MessageRouter;
+
+/**
+ * A constant bit-rate inter-satellite link with propagation delay. A
+ * message is first serialized to the link (size / speed) and then
+ * propagates to the other end at the speed of light, so it is delivered
+ * only after the light time of the distance between the hosts. Both ends
+ * can have several messages in flight at the same time: a new message is
+ * serialized right after the previous one of the same sender, so a long
+ * link is filled back-to-back instead of waiting for every message to
+ * arrive before sending the next one.
+ * <P>The number of messages in flight is limited per direction by the
+ * window size. Routers should use the methods that take the sending host
+ * as a parameter (e.g., {@link #getMessage(DTNHost)}); the methods
+ * without it refer to the oldest message in flight in either
+ * direction.</P>
+ */
+public class SatelliteLinkConnection extends Connection {
+	private static final long serialVersionUID = 42L;
+	/** speed of light in vacuum (m/s) */
+	public static final double SPEED_OF_LIGHT = 299792458;
+
+	private int speed;
+	private int window;
+	private double metersPerUnit;
+	/** messages in flight from fromNode and from toNode, in start order */
+	private ArrayDeque<Transfer> fromTransfers;
+	private ArrayDeque<Transfer> toTransfers;
+
+	/**
+	 * Creates a new connection between nodes and sets the connection
+	 * state to "up".
+	 * @param fromNode The node that initiated the connection
+	 * @param fromInterface The interface that initiated the connection
+	 * @param toNode The node in the other side of the connection
+	 * @param toInterface The interface in the other side of the connection
+	 * @param connectionSpeed Transfer speed of the connection (Bps) when
+	 *  the connection is initiated
+	 * @param window Maximum number of messages in flight per direction
+	 * @param metersPerUnit Length of one simulation distance unit in meters
+	 */
+	public SatelliteLinkConnection(DTNHost fromNode,
+			NetworkInterface fromInterface, DTNHost toNode,
+			NetworkInterface toInterface, int connectionSpeed, int window,
+			double metersPerUnit) {
+		super(fromNode, fromInterface, toNode, toInterface);
+		this.speed = connectionSpeed;
+		this.window = window;
+		this.metersPerUnit = metersPerUnit;
+		this.fromTransfers = new ArrayDeque<Transfer>(window);
+		this.toTransfers = new ArrayDeque<Transfer>(window);
+	}
+
+	/**
+	 * Resets a connection that has gone down for a new contact between the
+	 * same nodes (see {@link LinkRegistry#reuse(int, int, Class)}) and sets
+	 * the connection state to "up".
+	 * @param fromNode The node that initiated the connection
+	 * @param fromInterface The interface that initiated the connection
+	 * @param toNode The node in the other side of the connection
+	 * @param toInterface The interface in the other side of the connection
+	 * @param connectionSpeed Transfer speed of the connection (Bps) when
+	 *  the connection is initiated
+	 */
+	public void reset(DTNHost fromNode, NetworkInterface fromInterface,
+			DTNHost toNode, NetworkInterface toInterface, int connectionSpeed) {
+		super.reset(fromNode, fromInterface, toNode, toInterface);
+		this.speed = connectionSpeed;
+		this.fromTransfers.clear();
+		this.toTransfers.clear();
+	}
+
+	/**
+	 * Starts the transfer of a message from a host. The message is
+	 * serialized after the sender's earlier messages that are still being
+	 * serialized.
+	 * @param from The host sending the message
+	 * @param m The message
+	 * @return The value returned by
+	 * {@link MessageRouter#receiveMessage(Message, DTNHost)}
+	 */
+	public int startTransfer(DTNHost from, Message m) {
+		ArrayDeque<Transfer> transfers = getTransfers(from);
+		assert transfers.size() < this.window : "Window of " + from +
+			" is full in " + this + ". Can't start transfer of " + m;
+
+		Message newMessage = m.replicate();
+		int retVal = getOtherNode(from).receiveMessage(newMessage, from);
+
+		if (retVal == MessageRouter.RCV_OK) {
+			double start = SimClock.getTime();
+			Transfer last = transfers.peekLast();
+			if (last != null && last.sentTime > start) {
+				start = last.sentTime;
+			}
+			double sentTime = start + (1.0 * m.getSize()) / this.speed;
+			transfers.add(new Transfer(newMessage, from, sentTime,
+					sentTime + getPropagationDelay()));
+			updateMsgOnFly();
+		}
+
+		return retVal;
+	}
+
+	/**
+	 * Returns the current light time between the hosts
+	 * @return The propagation delay (seconds)
+	 */
+	public double getPropagationDelay() {
+		return this.fromNode.getLocation().distance(this.toNode.getLocation())
+			* this.metersPerUnit / SPEED_OF_LIGHT;
+	}
+
+	/**
+	 * Returns true if the connection is up and the given host can start a
+	 * new transfer (its window is not full)
+	 * @param from The sending host
+	 * @return true if the host can start a transfer
+	 */
+	@Override
+	public boolean isReadyForTransfer(DTNHost from) {
+		return isUp() && getTransfers(from).size() < this.window;
+	}
+
+	/**
+	 * Returns true if the connection is up and neither direction's window
+	 * is full
+	 */
+	@Override
+	public boolean isReadyForTransfer() {
+		return isUp() && this.fromTransfers.size() < this.window &&
+			this.toTransfers.size() < this.window;
+	}
+
+	/**
+	 * Returns the oldest message in flight from the given host
+	 * @param from The sending host
+	 * @return The message or null if the host has no messages in flight
+	 */
+	@Override
+	public Message getMessage(DTNHost from) {
+		Transfer t = getTransfers(from).peek();
+		return t == null ? null : t.msg;
+	}
+
+	/**
+	 * Returns true if the oldest message in flight from the given host has
+	 * arrived at the other end (or the host has no messages in flight)
+	 * @param from The sending host
+	 * @return True if the transfer is done, false if not
+	 */
+	@Override
+	public boolean isMessageTransferred(DTNHost from) {
+		Transfer t = getTransfers(from).peek();
+		return t == null || t.arrivalTime <= SimClock.getTime();
+	}
+
+	/**
+	 * Returns true if the oldest message in flight has arrived at the
+	 * other end (or there are no messages in flight)
+	 */
+	public boolean isMessageTransferred() {
+		return this.msgFromNode == null ||
+			isMessageTransferred(this.msgFromNode);
+	}
+
+	/**
+	 * Finalizes the transfer of the oldest message in flight from the given
+	 * host
+	 * @param from The sending host
+	 */
+	@Override
+	public void finalizeTransfer(DTNHost from) {
+		Transfer t = getTransfers(from).poll();
+		assert t != null : "Nothing to finalize from " + from + " in " + this;
+
+		this.bytesTransferred += t.msg.getSize();
+		getOtherNode(from).messageTransferred(t.msg.getId(), from);
+		updateMsgOnFly();
+	}
+
+	/**
+	 * Finalizes the transfer of the oldest message in flight
+	 */
+	@Override
+	public void finalizeTransfer() {
+		assert this.msgFromNode != null : "Nothing to finalize in " + this;
+		finalizeTransfer(this.msgFromNode);
+	}
+
+	/**
+	 * Aborts the transfer of the oldest message in flight from the given
+	 * host
+	 * @param from The sending host
+	 */
+	@Override
+	public void abortTransfer(DTNHost from) {
+		Transfer t = getTransfers(from).poll();
+		assert t != null : "No message to abort at " + from;
+
+		int bytesRemaining = getRemainingByteCount(t);
+		this.bytesTransferred += t.msg.getSize() - bytesRemaining;
+		getOtherNode(from).messageAborted(t.msg.getId(), from,
+				bytesRemaining);
+		updateMsgOnFly();
+	}
+
+	/**
+	 * Aborts the transfer of the oldest message in flight
+	 */
+	@Override
+	public void abortTransfer() {
+		assert this.msgFromNode != null : "No message to abort in " + this;
+		abortTransfer(this.msgFromNode);
+	}
+
+	/**
+	 * Returns the amount of bytes of the oldest message in flight that are
+	 * not serialized to the link yet
+	 * @return the amount of bytes to be transferred
+	 */
+	public int getRemainingByteCount() {
+		if (this.msgFromNode == null) {
+			return 0;
+		}
+		return getRemainingByteCount(getTransfers(this.msgFromNode).peek());
+	}
+
+	private int getRemainingByteCount(Transfer t) {
+		int remaining = (int)((t.sentTime - SimClock.getTime()) * this.speed);
+		return Math.max(0, Math.min(remaining, t.msg.getSize()));
+	}
+
+	/**
+	 * Returns the total amount of bytes this connection has transferred so
+	 * far, including the serialized parts of the messages in flight
+	 */
+	@Override
+	public int getTotalBytesTransferred() {
+		int total = this.bytesTransferred;
+		for (Transfer t : this.fromTransfers) {
+			total += t.msg.getSize() - getRemainingByteCount(t);
+		}
+		for (Transfer t : this.toTransfers) {
+			total += t.msg.getSize() - getRemainingByteCount(t);
+		}
+		return total;
+	}
+
+	/**
+	 * returns the current speed of the connection
+	 */
+	public double getSpeed() {
+		return this.speed;
+	}
+
+	private ArrayDeque<Transfer> getTransfers(DTNHost from) {
+		return from == this.fromNode ? this.fromTransfers : this.toTransfers;
+	}
+
+	/**
+	 * Sets the oldest message in flight (in either direction) as the
+	 * message that the methods without a sending host refer to
+	 */
+	private void updateMsgOnFly() {
+		Transfer from = this.fromTransfers.peek();
+		Transfer to = this.toTransfers.peek();
+		Transfer oldest = from;
+		if (oldest == null || (to != null && to.sentTime < from.sentTime)) {
+			oldest = to;
+		}
+		if (oldest == null) {
+			clearMsgOnFly();
+		}
+		else {
+			this.msgOnFly = oldest.msg;
+			this.msgFromNode = oldest.from;
+		}
+	}
+
+	/**
+	 * Returns a String presentation of the connection.
+	 */
+	public String toString() {
+		return super.toString() + " (" + this.fromTransfers.size() + "+" +
+			this.toTransfers.size() + " in flight)";
+	}
+
+	/**
+	 * A message in flight
+	 */
+	private static class Transfer implements Serializable {
+		private static final long serialVersionUID = 42L;
+		private final Message msg;
+		private final DTNHost from;
+		/** time when the last bit is serialized to the link */
+		private final double sentTime;
+		/** time when the last bit arrives at the other end */
+		private final double arrivalTime;
+
+		private Transfer(Message msg, DTNHost from, double sentTime,
+				double arrivalTime) {
+			this.msg = msg;
+			this.from = from;
+			this.sentTime = sentTime;
+			this.arrivalTime = arrivalTime;
+		}
+	}
+}
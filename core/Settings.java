@@ -12,10 +12,8 @@ import java.io.PrintStream;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.Properties;
 import java.util.Scanner;
-import java.util.Set;
 import java.util.Stack;
 
 import util.Range;
@@ -55,10 +53,7 @@ public class Settings {
 	
 	/** Stream where all read settings are written to */
 	private static PrintStream out = null;
-	private static Set<String> writtenSettings = new HashSet<String>();
 	
-	/** run index for run-specific settings */
-	private static int runIndex = 0;
 	private String namespace = null; // namespace to look the settings from
 	private String secondaryNamespace = null;
 	private Stack<String> oldNamespaces;
@@ -99,8 +94,9 @@ public class Settings {
 	 * -1 to disable run indexing
 	 */
 	public static void setRunIndex(int index) {
-		runIndex = index;
-		writtenSettings.clear();
+		SimContext c = SimContext.getInstance();
+		c.runIndex = index;
+		c.writtenSettings.clear();
 	}
 	
 	/**
@@ -300,12 +296,18 @@ public class Settings {
 	 * @param setting The string to write
 	 */
 	private static void outputSetting(String setting) {
-		if (out != null && !writtenSettings.contains(setting)) {
-			if (writtenSettings.size() == 0) {
-				out.println("# Settings for run " + (runIndex + 1));
+		if (out == null) {
+			return;
+		}
+		SimContext c = SimContext.getInstance();
+		if (!c.writtenSettings.contains(setting)) {
+			synchronized (out) {
+				if (c.writtenSettings.size() == 0) {
+					out.println("# Settings for run " + (c.runIndex + 1));
+				}
+				out.println(setting);
 			}
-			out.println(setting);
-			writtenSettings.add(setting);
+			c.writtenSettings.add(setting);
 		}
 	}
 	
@@ -415,6 +417,7 @@ public class Settings {
 		final String RUN_ARRAY_END = "]";
 		final String RUN_ARRAY_DELIM = ";";
 		final int MIN_LENGTH = 3; // minimum run is one value. e.g. "[v]"
+		int runIndex = SimContext.getInstance().runIndex;
 		
 		if (!value.startsWith(RUN_ARRAY_START) || 
 			!value.endsWith(RUN_ARRAY_END) || 
@@ -4,28 +4,23 @@
  */
 package core;
 
+import java.io.Serializable;
+
 /**
- * Wall clock for checking the simulation time.
+ * Wall clock for checking the simulation time. The time is kept in the
+ * current {@link SimContext}.
  */
-public class SimClock {
-	private static double clockTime = 0.0;
-	private static SimClock clock = null;
+public class SimClock implements Serializable {
+	private static final long serialVersionUID = 42L;
+	private static SimClock clock = new SimClock();
 	
 	private SimClock() {}
 	
-	static {
-		DTNSim.registerForReset(SimClock.class.getCanonicalName());
-		reset();
-	}
-	
 	/**
 	 * Get the instance of the class that can also change the time.
 	 * @return The instance of this clock
 	 */
 	public static SimClock getInstance() {
-		if (clock == null) {
-			clock = new SimClock();
-		}
 		return clock;
 	}
 	
@@ -34,7 +29,7 @@ public class SimClock {
 	 * @return Time as a double
 	 */
 	public static double getTime() {
-		return clockTime;
+		return SimContext.getInstance().clockTime;
 	}
 	
 	/**
@@ -42,7 +37,7 @@ public class SimClock {
 	 * @return Time as integer
 	 */
 	public static int getIntTime() {
-		return (int)Math.round(clockTime);
+		return (int)Math.round(getTime());
 	}
 	
 	/**
@@ -52,7 +47,7 @@ public class SimClock {
 	 * @return The sim time
 	 */
 	public static String getFormattedTime(int decimals) {
-		return String.format("%." + decimals + "f", clockTime);
+		return String.format("%." + decimals + "f", getTime());
 	}
 	
 	/**
@@ -60,7 +55,7 @@ public class SimClock {
 	 * @param time Nrof seconds to increase the time
 	 */
 	public void advance(double time) {
-		clockTime += time;
+		SimContext.getInstance().clockTime += time;
 	}
 	
 	/**
@@ -68,7 +63,7 @@ public class SimClock {
 	 * @param time the time to set
 	 */
 	public void setTime(double time) {
-		clockTime = time;
+		SimContext.getInstance().clockTime = time;
 	}
 	
 	/**
@@ -76,13 +71,21 @@ public class SimClock {
 	 * @return the current simulation time in a string 
 	 */
 	public String toString() {
-		return "SimTime: " + clockTime;
+		return "SimTime: " + getTime();
+	}
+	
+	/**
+	 * Returns the shared instance instead of a deserialized copy
+	 * @return The instance of this clock
+	 */
+	private Object readResolve() {
+		return clock;
 	}
 	
 	/**
-	 * Resets the static fields of the class
+	 * Resets the time of the current context
 	 */
 	public static void reset() {
-		clockTime = 0;
+		SimContext.getInstance().clockTime = 0;
 	}
 }
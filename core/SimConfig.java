@@ -0,0 +1,125 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.io.Serializable;
+
+/**
+ * Compiled, typed snapshot of the settings that the world, the satellite
+ * interfaces and the satellite routers use while the simulation runs. The
+ * snapshot is compiled (and validated) once when the scenario is loaded and
+ * the components copy the values they need to fields when they are
+ * created, so no setting lookups are done during the simulation. The
+ * snapshot is immutable and kept in the {@link SimContext} of the run.
+ */
+public final class SimConfig implements Serializable {
+	private static final long serialVersionUID = 42L;
+	/** Router mode -setting id ({@value}). Integer, namespace
+	 * {@link World#USERSETTINGNAME_S}. Valid values are
+	 * {@link #ROUTER_MODE_DIJSKTRA} and
+	 * {@link #ROUTER_MODE_SIMPLE_CONNECTIVITY}. */
+	public static final String ROUTER_MODE_S = World.ROUTERMODENAME_S;
+	/** Router mode where the interfaces connect to all hosts in range
+	 * ({@value}) */
+	public static final int ROUTER_MODE_DIJSKTRA = 1;
+	/** Router mode where the world connects the closest hosts ({@value}) */
+	public static final int ROUTER_MODE_SIMPLE_CONNECTIVITY = 2;
+	/** Namespace of the message path label setting ({@value}) */
+	public static final String GROUP_NS = "Group";
+	/** Should the satellite routers write the routing path to the messages
+	 * -setting id ({@value}). Boolean, namespace {@link #GROUP_NS}. */
+	public static final String MSG_PATH_LABEL_S = "msgPathLabel";
+
+	private final int routerMode;
+	/** message path label or null if not set */
+	private final Boolean msgPathLabel;
+	private final double transmitRange;
+	private final double endTime;
+
+	/**
+	 * Compiles the snapshot from the current settings
+	 * @throws SettingsError if a setting is missing or invalid
+	 */
+	private SimConfig() {
+		Settings s = new Settings(World.USERSETTINGNAME_S);
+		this.routerMode = s.getInt(ROUTER_MODE_S);
+		if (this.routerMode != ROUTER_MODE_DIJSKTRA &&
+				this.routerMode != ROUTER_MODE_SIMPLE_CONNECTIVITY) {
+			throw new SettingsError("Invalid value " + this.routerMode +
+					" for " + s.getFullPropertyName(ROUTER_MODE_S));
+		}
+
+		s = new Settings(GROUP_NS);
+		this.msgPathLabel = s.contains(MSG_PATH_LABEL_S) ?
+				s.getBoolean(MSG_PATH_LABEL_S) : null;
+
+		s = new Settings(Neighbors.INTERFACENAME_S);
+		this.transmitRange = s.getDouble(Neighbors.TRANSMIT_RANGE_S);
+		s.ensurePositiveValue(this.transmitRange, Neighbors.TRANSMIT_RANGE_S);
+
+		s = new Settings(SimScenario.SCENARIO_NS);
+		this.endTime = s.getDouble(SimScenario.END_TIME_S);
+	}
+
+	/**
+	 * Compiles the snapshot of the current settings for the current run
+	 * @return The compiled snapshot
+	 * @throws SettingsError if a setting is missing or invalid
+	 */
+	public static SimConfig load() {
+		SimConfig config = new SimConfig();
+		SimContext.getInstance().config = config;
+		return config;
+	}
+
+	/**
+	 * Returns the snapshot of the current run. The snapshot is compiled if
+	 * the scenario hasn't done it yet.
+	 * @return The snapshot of the current run
+	 */
+	public static SimConfig getInstance() {
+		SimConfig config = SimContext.getInstance().config;
+		return config != null ? config : load();
+	}
+
+	/**
+	 * Returns the router mode
+	 * @return {@link #ROUTER_MODE_DIJSKTRA} or
+	 * {@link #ROUTER_MODE_SIMPLE_CONNECTIVITY}
+	 */
+	public int getRouterMode() {
+		return this.routerMode;
+	}
+
+	/**
+	 * Returns true if the satellite routers should write the routing path to
+	 * the messages
+	 * @return The value of the message path label setting
+	 * @throws SettingsError if the setting is not defined
+	 */
+	public boolean getMsgPathLabel() {
+		if (this.msgPathLabel == null) {
+			throw new SettingsError("Can't find setting " + GROUP_NS + "." +
+					MSG_PATH_LABEL_S);
+		}
+		return this.msgPathLabel;
+	}
+
+	/**
+	 * Returns the transmit range of the interfaces
+	 * @return The transmit range
+	 */
+	public double getTransmitRange() {
+		return this.transmitRange;
+	}
+
+	/**
+	 * Returns the end time of the simulation
+	 * @return The end time
+	 */
+	public double getEndTime() {
+		return this.endTime;
+	}
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * State of one simulation run: the clock, the run-specific settings state,
+ * the address and ID allocators, the random number generators and the
+ * singletons of the run. Classes that used to keep this state in static
+ * fields (e.g. {@link SimClock}, {@link DTNHost}, {@link Message}) keep it
+ * in the current context instead, so several runs can execute concurrently
+ * in different threads of the same JVM.
+ * <P>The current context is per thread. A thread that has not set its own
+ * context (e.g., the GUI threads) uses the shared default context, so
+ * single-run and sequential use work exactly as before.</P>
+ * <P>The context is serializable so that the state of a run can be saved
+ * to a {@link Checkpoint}.</P>
+ */
+public class SimContext implements Serializable {
+	private static final long serialVersionUID = 42L;
+	/** the context used by threads that haven't set their own */
+	private static SimContext defaultContext = new SimContext(0);
+	private static final ThreadLocal<SimContext> current =
+		new ThreadLocal<SimContext>();
+
+	/** current simulation time */
+	double clockTime;
+	/** run index for run-specific settings */
+	int runIndex;
+	/** settings already written to the settings output during this run */
+	Set<String> writtenSettings;
+	/** network address of the next host */
+	int nextHostAddress;
+	/** unique ID of the next message */
+	int nextMessageId;
+	/** number of host location changes (see
+	 * {@link DTNHost#getLocationVersion()}) */
+	long locationVersion;
+	/** is the message TTL in seconds (or null if not read yet) */
+	Boolean ttlAsSeconds;
+	/** rng of the network interfaces */
+	Random interfaceRng;
+	/** the scenario of the run */
+	SimScenario scenario;
+	/** the content directory of the run */
+	ContentDirectory contentDirectory;
+	/** compiled settings of the run */
+	SimConfig config;
+	/** per-run state of other classes (class -> state) */
+	private HashMap<Class<?>, Object> classStates;
+
+	/**
+	 * Creates a new context for a run
+	 * @param runIndex Run index of the run (see
+	 * {@link Settings#setRunIndex(int)})
+	 */
+	public SimContext(int runIndex) {
+		this.runIndex = runIndex;
+		this.writtenSettings = new HashSet<String>();
+		this.classStates = new HashMap<Class<?>, Object>();
+	}
+
+	/**
+	 * Returns the context of the current thread
+	 * @return The context of the current thread or the default context if
+	 * the thread hasn't set its own
+	 */
+	public static SimContext getInstance() {
+		SimContext c = current.get();
+		return c != null ? c : defaultContext;
+	}
+
+	/**
+	 * Sets the context of the current thread
+	 * @param context The context or null to use the default context
+	 */
+	public static void setInstance(SimContext context) {
+		if (context == null) {
+			current.remove();
+		} else {
+			current.set(context);
+		}
+	}
+
+	/**
+	 * Replaces the context of the current thread, or the default context
+	 * if the thread uses it
+	 * @param context The new context
+	 */
+	static void replaceInstance(SimContext context) {
+		if (current.get() != null) {
+			current.set(context);
+		} else {
+			defaultContext = context;
+		}
+	}
+
+	/**
+	 * Replaces the default context with a new context for a run. Used when
+	 * runs are executed one after another in the same thread.
+	 * @param runIndex Run index of the next run
+	 */
+	public static void resetDefault(int runIndex) {
+		defaultContext = new SimContext(runIndex);
+	}
+
+	/**
+	 * Returns the run index of this context
+	 * @return the run index of this context
+	 */
+	public int getRunIndex() {
+		return this.runIndex;
+	}
+
+	/**
+	 * Returns the per-run state a class has stored to this context
+	 * @param owner The class whose state to return
+	 * @return The state or null if the class hasn't stored any
+	 */
+	public Object getClassState(Class<?> owner) {
+		return this.classStates.get(owner);
+	}
+
+	/**
+	 * Stores per-run state of a class to this context
+	 * @param owner The class whose state this is
+	 * @param state The state
+	 */
+	public void setClassState(Class<?> owner, Object state) {
+		this.classStates.put(owner, state);
+	}
+}
@@ -26,7 +26,6 @@ import routing.MessageRouter;
 public class SimScenario implements Serializable {
 	
 	/** a way to get a hold of this... */	
-	private static SimScenario myinstance=null;
 
 	/** namespace of scenario settings ({@value})*/
 	public static final String SCENARIO_NS = "Scenario";
@@ -42,6 +41,9 @@ public class SimScenario implements Serializable {
 	public static final String UP_INT_S = "updateInterval";
 	/** simulate connections -setting id ({@value})*/
 	public static final String SIM_CON_S = "simulateConnections";
+	/** number of files created at the origins when the scenario is
+	 * created -setting id ({@value}). Default is 20. */
+	public static final String NROF_FILES_S = "nrofFiles";
 
 	/** namespace for interface type settings ({@value}) */
 	public static final String INTTYPE_NS = "Interface";
@@ -88,7 +90,7 @@ public class SimScenario implements Serializable {
 	/** user setting in the sim -setting id ({@value})*/
 	public static final String USERSETTINGNAME_S = "userSetting";
 	/** hosts mode in the sim -setting id ({@value})*/
-	public static final String HOSTSMODENAME_S = "hostsMode";//
+	public static final String HOSTSMODENAME_S = "hostsMode";//新增！！！！
 	/** user setting in the sim -setting id ({@value})*/
 	public static final String CLUSTER_S = "cluster";
 	/** user setting in the sim -setting id ({@value})*/
@@ -113,6 +115,8 @@ public class SimScenario implements Serializable {
 	private double endTime;
 	/** Update interval of sim time */
 	private double updateInterval;
+	/** Number of files created at the start of the simulation */
+	private int nrofFiles;
 	/** External events queue */
 	private EventQueueHandler eqHandler;
 	/** Should connections between hosts be simulated */
@@ -130,26 +134,26 @@ public class SimScenario implements Serializable {
 	private List<UpdateListener> updateListeners;
 	/** Global application event listeners */
 	private List<ApplicationListener> appListeners;
+	/** Global file request and cache event listeners */
+	private List<CacheListener> cacheListeners;
 	
-	/*޸ĺ!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!*/
+	/*修改函数部分!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!*/
 	private int worldSizeX;
 	/** Height of the world */
 	private int worldSizeY;
-	private int worldSizeZ;//ά
-	/*޸ĺ!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!*/
+	private int worldSizeZ;//新增参数，三维坐标
+	/*修改函数部分!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!*/
 	
-	/** ļбtest*/
+	/** 文件列表（test）*/
 	private HashMap<String,Integer> FileHosts;
-	/** ռ  */
+	/** 缓存空间  */
 	private HashMap<String,file> FileBuffer;
 	
-	static {
-		DTNSim.registerForReset(SimScenario.class.getCanonicalName());
-		reset();
-	}
-	
+	/**
+	 * Discards the scenario of the current run
+	 */
 	public static void reset() {
-		myinstance = null;
+		SimContext.getInstance().scenario = null;
 	}
 
 	/**
@@ -161,10 +165,11 @@ public class SimScenario implements Serializable {
 	 * Returns the SimScenario instance and creates one if it doesn't exist yet
 	 */
 	public static SimScenario getInstance() {
-		if (myinstance == null) {
-			myinstance = new SimScenario();
+		SimContext c = SimContext.getInstance();
+		if (c.scenario == null) {
+			c.scenario = new SimScenario();
 		}
-		return myinstance;
+		return c.scenario;
 	}
 
 
@@ -298,6 +303,14 @@ public class SimScenario implements Serializable {
 	public List<ApplicationListener> getApplicationListeners() {
 		return this.appListeners;
 	}
+
+	/**
+	 * Adds a new file request and cache event listener for all nodes
+	 * @param cl The listener
+	 */
+	public void addCacheListener(CacheListener cl) {
+		this.cacheListeners.add(cl);
+	}
 	/**
 	 * Returns the list of nodes for this scenario.
 	 * @return the list of nodes for this scenario.
@@ -306,6 +319,14 @@ public class SimScenario implements Serializable {
 		return this.hosts;
 	}
 	
+	/**
+	 * Returns the number of files created at the start of the simulation
+	 * @return the number of files
+	 */
+	public int getNrofFiles() {
+		return this.nrofFiles;
+	}
+	
 	/**
 	 * Returns the World object of this scenario
 	 * @return the World object
@@ -314,8 +335,9 @@ public class SimScenario implements Serializable {
 		return this.world;
 	}
 	
-	/*޸ĺ!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!*/
+	/*修改函数部分!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!*/
 	protected SimScenario() {
+		SimConfig.load();
 		Settings s = new Settings(SCENARIO_NS);
 		nrofGroups = s.getInt(NROF_GROUPS_S);
 
@@ -323,8 +345,10 @@ public class SimScenario implements Serializable {
 		this.endTime = s.getDouble(END_TIME_S);
 		this.updateInterval = s.getDouble(UP_INT_S);
 		this.simulateConnections = s.getBoolean(SIM_CON_S);
+		this.nrofFiles = s.contains(NROF_FILES_S) ? s.getInt(NROF_FILES_S) : 20;
 
 		s.ensurePositiveValue(nrofGroups, NROF_GROUPS_S);
+		s.ensurePositiveValue(nrofFiles, NROF_FILES_S);
 		s.ensurePositiveValue(endTime, END_TIME_S);
 		s.ensurePositiveValue(updateInterval, UP_INT_S);
 
@@ -336,14 +360,15 @@ public class SimScenario implements Serializable {
 		this.movementListeners = new ArrayList<MovementListener>();
 		this.updateListeners = new ArrayList<UpdateListener>();
 		this.appListeners = new ArrayList<ApplicationListener>();
+		this.cacheListeners = new ArrayList<CacheListener>();
 		this.eqHandler = new EventQueueHandler();
 
 		/* TODO: check size from movement models */
 		s.setNameSpace(MovementModel.MOVEMENT_MODEL_NS);
-		int [] worldSize = s.getCsvInts(MovementModel.WORLD_SIZE, 2);//2ά޸Ϊ3ά
+		int [] worldSize = s.getCsvInts(MovementModel.WORLD_SIZE, 2);//从2维修改为3维
 		this.worldSizeX = worldSize[0];
 		this.worldSizeY = worldSize[1];
-		this.worldSizeZ = worldSize[1];//!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!
+		this.worldSizeZ = worldSize[1];//新增！！！!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!
 		createHosts();
 		
 		this.world = new World(hosts, worldSizeX, worldSizeY, updateInterval, 
@@ -360,8 +385,7 @@ public class SimScenario implements Serializable {
 		for (int i=1; i<=nrofGroups; i++) {
 			List<NetworkInterface> interfaces = 
 				new ArrayList<NetworkInterface>();
-			Settings s = new Settings(GROUP_NS+i);
-			s.setSecondaryNamespace(GROUP_NS);
+			Settings s = getGroupSettings(i);
 			String gid = s.getSetting(GROUP_ID_S);
 			int nrofHosts = s.getInt(NROF_HOSTS_S);
 			int nrofInterfaces = s.getInt(NROF_INTERF_S);
@@ -371,9 +395,7 @@ public class SimScenario implements Serializable {
 			MovementModel mmProto = 
 				(MovementModel)s.createIntializedObject(MM_PACKAGE + 
 						s.getSetting(MOVEMENT_MODEL_S));
-			MessageRouter mRouterProto = 
-				(MessageRouter)s.createIntializedObject(ROUTING_PACKAGE + 
-						s.getSetting(ROUTER_S));
+			MessageRouter mRouterProto = createRouter(s);
 			
 			/* checks that these values are positive (throws Error if not) */
 			s.ensurePositiveValue(nrofHosts, NROF_HOSTS_S);
@@ -381,14 +403,7 @@ public class SimScenario implements Serializable {
 
 			// setup interfaces
 			for (int j=1;j<=nrofInterfaces;j++) {
-				String intName = s.getSetting(INTERFACENAME_S + j);
-				Settings intSettings = new Settings(intName); 
-				NetworkInterface iface = 
-					(NetworkInterface)intSettings.createIntializedObject(
-							INTTYPE_PACKAGE +intSettings.getSetting(INTTYPE_S));
-				iface.setClisteners(connectionListeners);
-				iface.setGroupSettings(s);
-				interfaces.add(iface);
+				interfaces.add(createInterface(s, j));
 			}
 
 			// setup applications
@@ -425,15 +440,15 @@ public class SimScenario implements Serializable {
 				this.simMap = ((MapBasedMovement)mmProto).getMap();
 			}
 			
-			/*޸*/
-			/**/
-			Settings setting = new Settings(USERSETTINGNAME_S);//ȡãжǷҪִ
+			/*修改*/
+			/*新增参数*/
+			Settings setting = new Settings(USERSETTINGNAME_S);//读取设置，判断是否需要分簇
 			String string = setting.getSetting(HOSTSMODENAME_S);
 			
 			Settings sat = new Settings(GROUP_NS);
-			int TOTAL_SATELLITES = sat.getInt(NROF_HOSTS_S);//ܽڵ
-			int TOTAL_PLANE = setting.getInt(NROFPLANE_S);//ƽ
-			int NROF_S_EACHPLANE = TOTAL_SATELLITES/TOTAL_PLANE;//ÿƽϵĽڵ
+			int TOTAL_SATELLITES = sat.getInt(NROF_HOSTS_S);//总节点数
+			int TOTAL_PLANE = setting.getInt(NROFPLANE_S);//轨道平面数
+			int NROF_S_EACHPLANE = TOTAL_SATELLITES/TOTAL_PLANE;//每个轨道平面上的节点数
 						
 			switch(string){
 			case CLUSTER_S:
@@ -449,8 +464,9 @@ public class SimScenario implements Serializable {
 					DTNHost host = new DTNHost(this.messageListeners, 
 							this.movementListeners,	gid, interfaces, comBus, 
 							mmProto, mRouterProto);
-					FileBuffer =new HashMap<String,file>(); // ÿڵĻ
+					FileBuffer =new HashMap<String,file>(); // 定义每个节点的缓存区
 					host.setFileBuffer(FileBuffer);
+					host.setCacheListeners(this.cacheListeners);
 					
 					int nrofPlane = j/NROF_S_EACHPLANE + 1;
 					int nrofSatelliteINPlane = j - (nrofPlane - 1) * NROF_S_EACHPLANE;
@@ -459,59 +475,210 @@ public class SimScenario implements Serializable {
 					
 					hosts.add(host);			
 				}
-				for (DTNHost host : this.hosts){//ȫб
+				for (DTNHost host : this.hosts){//新增，传入全局列表参数
 					host.changeHostsList(hosts);
 				}
-				break;//˳
+				break;//退出
 			default:
 				assert false : "the setting of hostsMode error!";
 			}
 			
-			//ӵļб
-			Settings ss = new Settings(GROUP_NS+1);//ÿһһö󣬾Ŀܺռй
+			//我们添加的文件列表部分
+			Settings ss = new Settings(GROUP_NS+1);//每一个主机组有一个配置对象，具体的可能和命名空间有关
 			ss.setSecondaryNamespace(GROUP_NS);
 			int num = ss.getInt(NROF_HOSTS_S);
-			this.FileHosts =new HashMap<String,Integer>();				//ӣһļб
-			this.FileBuffer =new HashMap<String,file>(); 				// ÿڵĻ
-			for(int ii=0; ii<20;ii++){
+			this.FileHosts =new HashMap<String,Integer>();				//（添加）一个文件列表
+			this.FileBuffer =new HashMap<String,file>(); 				// 定义每个节点的缓存区
+			for(int ii=0; ii<this.nrofFiles;ii++){
 				//file ee= new  file(ii, num*nrofGroups);
-				/** ȵõhost */
+				/** 这里先得到随机的host */
 				file ee= new  file(ii, num*nrofGroups);      			//System.out.print(ee.getFromAddressID()+ "\n");
 				this.FileHosts.put(ee.getId(),ee.getFromAddressID());
 				
-				//ӦڵĻռзļ
+				//往对应节点的缓存空间中放入文件
 				for(int j=0; j<num*nrofGroups; j++){
 					if(j==ee.getFromAddressID()){
-						this.hosts.get(j).getFileBuffer().put(ee.getId(),ee);
+						this.hosts.get(j).putIntoFileBuffer(ee);
 						//break;
 					}
 				}
 			}
-			//Ҫÿڵ㶼ȫֵļԵõʼÿڵű
+			//还要对每个节点都放入全局的文件表，测试得到初始化后每个节点存在这张表
 			for(int j=0; j<num*nrofGroups; j++){
-				this.hosts.get(j).setFiles(this.FileHosts);         	//ÿڵű
+				this.hosts.get(j).setFiles(this.FileHosts);         	//对每个节点设置总体的这张表
 			}
-			//test  ֤ʼ󻺴ȷʵļ
+			//test  证明初始化后缓存中确实加入了文件
 			/**for(int j=0; j<num*nrofGroups; j++){
 				System.out.print(this.hosts.get(j).getFileBuffer()+ "\n");
 			}*/
 		}
 	}
 
-	
+	/**
+	 * Returns the settings of a host group
+	 * @param i Index of the group (1...nrofGroups)
+	 */
+	private static Settings getGroupSettings(int i) {
+		Settings s = new Settings(GROUP_NS+i);
+		s.setSecondaryNamespace(GROUP_NS);
+		return s;
+	}
+
+	/**
+	 * Creates the prototype of a host group's routers
+	 * @param s The settings of the group
+	 */
+	private MessageRouter createRouter(Settings s) {
+		return (MessageRouter)s.createIntializedObject(ROUTING_PACKAGE + 
+				s.getSetting(ROUTER_S));
+	}
+
+	/**
+	 * Creates the prototype of a host group's interface
+	 * @param s The settings of the group
+	 * @param j Index of the interface in the group (1...nrofInterfaces)
+	 */
+	private NetworkInterface createInterface(Settings s, int j) {
+		String intName = s.getSetting(INTERFACENAME_S + j);
+		Settings intSettings = new Settings(intName); 
+		NetworkInterface iface = 
+			(NetworkInterface)intSettings.createIntializedObject(
+					INTTYPE_PACKAGE +intSettings.getSetting(INTTYPE_S));
+		iface.setClisteners(connectionListeners);
+		iface.setGroupSettings(s);
+		return iface;
+	}
+
+	/**
+	 * Applies the settings of the current run to a scenario that was
+	 * restored from the checkpoint of another run. The routers, interfaces
+	 * and event generators are compared with prototypes created from the
+	 * settings of both runs, and the values that depend on differing
+	 * settings are taken from the prototypes of the current run (see
+	 * {@link RunFork}); the rest of their state is kept. The movement
+	 * models' random number generator is seeded again if its seed differs,
+	 * and the name and the end time of the scenario are read again.
+	 * <P>The movement models, the applications and the world are kept as
+	 * they were in the checkpointed run.</P>
+	 * @param fromRun Index of the checkpointed run
+	 * @throws SettingsError if the runs have different numbers of hosts or
+	 * interfaces, or different router, interface or event generator
+	 * classes
+	 */
+	void fork(int fromRun) {
+		int run = SimContext.getInstance().getRunIndex();
+
+		Settings.setRunIndex(fromRun);
+		SimConfig.load();
+		List<MessageRouter> fromRouters = new ArrayList<MessageRouter>();
+		List<List<NetworkInterface>> fromInterfaces =
+			new ArrayList<List<NetworkInterface>>();
+		createForkPrototypes(fromRouters, fromInterfaces);
+		List<EventQueue> fromGenerators = EventQueueHandler.createGenerators();
+		Settings s = new Settings(MovementModel.MOVEMENT_MODEL_NS);
+		String fromSeed = s.getSetting(MovementModel.RNG_SEED, "0");
+
+		Settings.setRunIndex(run);
+		SimConfig.load();
+		List<MessageRouter> toRouters = new ArrayList<MessageRouter>();
+		List<List<NetworkInterface>> toInterfaces =
+			new ArrayList<List<NetworkInterface>>();
+		createForkPrototypes(toRouters, toInterfaces);
+		List<EventQueue> toGenerators = EventQueueHandler.createGenerators();
+		s = new Settings(MovementModel.MOVEMENT_MODEL_NS);
+		if (!s.getSetting(MovementModel.RNG_SEED, "0").equals(fromSeed)) {
+			MovementModel.reset();
+		}
+
+		if (fromRouters.size() != this.hosts.size() ||
+				toRouters.size() != this.hosts.size()) {
+			throw new SettingsError("Can't fork run " + (run + 1) +
+					" from a checkpoint of run " + (fromRun + 1) + ": " +
+					"the number of hosts differs");
+		}
+		for (int i=0; i<this.hosts.size(); i++) {
+			DTNHost host = this.hosts.get(i);
+			RunFork.apply(host.getRouter(), fromRouters.get(i).replicate(),
+					toRouters.get(i).replicate());
+
+			List<NetworkInterface> ifaces = host.getInterfaces();
+			if (ifaces.size() != toInterfaces.get(i).size()) {
+				throw new SettingsError("Can't fork run " + (run + 1) +
+						" from a checkpoint of run " + (fromRun + 1) + ": " +
+						"the number of interfaces of " + host + " differs");
+			}
+			/* the prototypes aren't replicated because replicating draws
+			 * from the interfaces' random number generator; the hosts of a
+			 * group share the values like the replicates of a prototype */
+			for (int j=0; j<ifaces.size(); j++) {
+				NetworkInterface ni = ifaces.get(j);
+				double oldRange = ni.getTransmitRange();
+				if (RunFork.apply(ni, fromInterfaces.get(i).get(j),
+						toInterfaces.get(i).get(j))) {
+					ni.settingsForked(oldRange);
+				}
+			}
+		}
+
+		double now = SimClock.getTime();
+		List<EventQueue> queues = this.eqHandler.getEventQueues();
+		for (int i=0; i<queues.size(); i++) {
+			if (toGenerators.get(i) == null) {
+				continue; // events from a file
+			}
+			EventQueue eq = queues.get(i);
+			if (RunFork.apply(eq, fromGenerators.get(i),
+					toGenerators.get(i))) {
+				/* skips the events the generator would have created */
+				while (eq.nextEventsTime() < now) {
+					eq.nextEvent();
+				}
+			}
+		}
+		this.world.setNextEventQueue();
+
+		s = new Settings(SCENARIO_NS);
+		this.name = s.valueFillString(s.getSetting(NAME_S));
+		this.endTime = s.getDouble(END_TIME_S);
+		s.ensurePositiveValue(endTime, END_TIME_S);
+	}
+
+	/**
+	 * Creates router and interface prototypes of the current run's
+	 * settings for every host
+	 * @param routers The list where the routers are added
+	 * @param interfaces The list where the interfaces are added
+	 */
+	private void createForkPrototypes(List<MessageRouter> routers,
+			List<List<NetworkInterface>> interfaces) {
+		for (int i=1; i<=nrofGroups; i++) {
+			Settings s = getGroupSettings(i);
+			MessageRouter router = createRouter(s);
+			List<NetworkInterface> groupInterfaces =
+				new ArrayList<NetworkInterface>();
+			for (int j=1; j<=s.getInt(NROF_INTERF_S); j++) {
+				groupInterfaces.add(createInterface(s, j));
+			}
+			for (int j=0; j<s.getInt(NROF_HOSTS_S); j++) {
+				routers.add(router);
+				interfaces.add(groupInterfaces);
+			}
+		}
+	}
+
 	public double[] initSatelliteParameters(int m, int NROF_SATELLITES, int NROF_PLANE){
 		
 		double[] parameters = new double[6];
-		/**/
+		/*新增参数*/
 		//Settings s = new Settings(GROUP_NS);
-		//int NROF_SATELLITES = s.getInt(NROF_HOSTS_S);//ܽڵ
-		//int NROF_PLANE = 3;//ƽ
-		int NROF_S_EACHPLANE = NROF_SATELLITES/NROF_PLANE;//ÿƽϵĽڵ
+		//int NROF_SATELLITES = s.getInt(NROF_HOSTS_S);//总节点数
+		//int NROF_PLANE = 3;//轨道平面数
+		int NROF_S_EACHPLANE = NROF_SATELLITES/NROF_PLANE;//每个轨道平面上的节点数
 		
 		Random random = new Random();
 		parameters[0]= random.nextInt(9000)%(2000+1) + 2000;
 		//this.parameters[0]=8000.0;
-		parameters[1]= 0;//0.1ƫʣӰϴ,e=c/a
+		parameters[1]= 0;//0.1偏心率，影响较大,e=c/a
 		//parameters[2]= (360/NROF_PLANE)*(m/NROF_S_EACHPLANE);
 		parameters[2] = random.nextInt(15);
 		parameters[3] = random.nextInt(15);
@@ -520,8 +687,8 @@ public class SimScenario implements Serializable {
 		parameters[5]= 0.0;//0.0;
 		
 		System.out.println(m);
-		//nrofPlane = m/NROF_S_EACHPLANE + 1;//ƽ
-		//nrofSatelliteINPlane = m - (nrofPlane - 1) * NROF_S_EACHPLANE;//ڹƽڵı
+		//nrofPlane = m/NROF_S_EACHPLANE + 1;//卫星所属轨道平面编号
+		//nrofSatelliteINPlane = m - (nrofPlane - 1) * NROF_S_EACHPLANE;//卫星在轨道平面内的编号
 		
 		return parameters;
 	}
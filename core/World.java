@@ -6,24 +6,29 @@ package core;
 
 import input.EventQueue;
 import input.ExternalEvent;
+import input.MergedEventQueue;
 import input.ScheduledUpdatesQueue;
 import interfaces.ConnectivityOptimizer;
 import interfaces.SimpleSatelliteInterface;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.PriorityQueue;
 import java.util.Random;
 
+import util.KdTree;
 import util.Tuple;
 
 /**
  * World contains all the nodes and is responsible for updating their
  * location and connections.
  */
-public class World {
+public class World implements Serializable {
+	private static final long serialVersionUID = 42L;
 	/** name space of optimization settings ({@value})*/
 	public static final String OPTIMIZATION_SETTINGS_NS = "Optimization";
 
@@ -43,13 +48,46 @@ public class World {
 	 */
 	public static final String SIMULATE_CON_ONCE_S = "simulateConnectionsOnce";
 
+	/**
+	 * Should the world advance adaptively -setting id ({@value}). Boolean
+	 * (true/false) variable. If true, the world jumps directly to the next
+	 * time something can happen (next external event, router timer or
+	 * possible contact change) when no transfers are running and no messages
+	 * are waiting for the current neighbors, instead of advancing by the
+	 * update interval. Default is false.
+	 */
+	public static final String ADAPTIVE_STEP_S = "adaptiveTimeStep";
+	/**
+	 * Longest time step of the adaptive time advance -setting id ({@value}).
+	 * Seconds. Default is {@link #DEF_MAX_TIME_STEP}.
+	 */
+	public static final String MAX_TIME_STEP_S = "maxTimeStep";
+	/** default value for the longest adaptive time step ({@value}) */
+	public static final double DEF_MAX_TIME_STEP = 600;
+	/**
+	 * Should the events that are due at the same time be processed as one
+	 * batch -setting id ({@value}). Boolean (true/false) variable. If true,
+	 * all events due within {@link #EVENT_BATCH_EPSILON_S} seconds from the
+	 * first event of the batch are processed before the hosts are updated
+	 * once. If false, the hosts are updated after every event. Default is
+	 * false.
+	 */
+	public static final String EVENT_BATCHING_S = "eventBatching";
+	/**
+	 * Length of an event batch -setting id ({@value}). Seconds. Events that
+	 * are due at most this long after the first event of a batch are
+	 * processed in the same batch. Default is 0, i.e., only the events with
+	 * exactly the same time are batched.
+	 */
+	public static final String EVENT_BATCH_EPSILON_S = "eventBatchEpsilon";
+
 	private int sizeX;
 	private int sizeY;
-	private List<EventQueue> eventQueues;//Ŀǰͨʼ趨¼ͺͲǰɺгʼ¼ҪmessageĲ¼
 	private double updateInterval;
 	private SimClock simClock;
 	private double nextQueueEventTime;
-	private EventQueue nextEventQueue;
+	/** the scheduled updates and the event queues merged in time order */
+	private MergedEventQueue mergedQueues;
 	/** list of nodes; nodes are indexed by their network address */
 	private List<DTNHost> hosts;
 	private boolean simulateConnections;
@@ -63,17 +101,25 @@ public class World {
 	private ScheduledUpdatesQueue scheduledUpdates;
 	private boolean simulateConOnce;
 	private boolean isConSimulated;
+	/** router mode (see {@link SimConfig#getRouterMode()}) */
+	private int routerMode;
+	private boolean adaptiveStep;
+	private double maxTimeStep;
+	private double endTime;
+	private boolean eventBatching;
+	private double eventBatchEpsilon;
+	/** predicted contacts of the hosts for the adaptive time advance */
+	private ContactPlan contactPlan;
 	
-	/*޸Ĳ!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!*/
-	private Neighbors neighbor;//
-	private HashMap<DTNHost, DTNHost> connectedHosts = new HashMap<DTNHost, DTNHost>();
+	/*修改参数部分!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!*/
+	private Neighbors neighbor;//新增
 	/** router mode in the sim -setting id ({@value})*/
 	public static final String USERSETTINGNAME_S = "userSetting";
 	/** router mode in the sim -setting id ({@value})*/
 	public static final String ROUTERMODENAME_S = "routerMode";
 	public static final String DIJSKTRA_S = "dijsktra";
-	public static final String SIMPLECONNECTIVITY_S = "simpleConnectivity";//
-	/*޸Ĳ!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!*/
+	public static final String SIMPLECONNECTIVITY_S = "simpleConnectivity";//新增
+	/*修改参数部分!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!*/
 	/**
 	 * Constructor.
 	 */
@@ -86,14 +132,17 @@ public class World {
 		this.updateInterval = updateInterval;
 		this.updateListeners = updateListeners;
 		this.simulateConnections = simulateConnections;
-		this.eventQueues = eventQueues;
 		
 		this.simClock = SimClock.getInstance();
 		this.scheduledUpdates = new ScheduledUpdatesQueue();
+		List<EventQueue> queues = new ArrayList<EventQueue>();
+		queues.add(this.scheduledUpdates);
+		queues.addAll(eventQueues);
+		this.mergedQueues = new MergedEventQueue(queues);
 		this.isCancelled = false;
 		this.isConSimulated = false;
 
-		//this.neighbor=new Neighbors(hosts);//ʼɵDTNHostбNeighbors
+		//this.neighbor=new Neighbors(hosts);//新增，将初始化生成的DTNHost列表传入Neighbors当中
 		
 		setNextEventQueue();
 		initSettings();
@@ -110,6 +159,23 @@ public class World {
 			randomizeUpdates = s.getBoolean(RANDOMIZE_UPDATES_S);
 		}
 		simulateConOnce = s.getBoolean(SIMULATE_CON_ONCE_S, false);
+		adaptiveStep = s.getBoolean(ADAPTIVE_STEP_S, false);
+		maxTimeStep = DEF_MAX_TIME_STEP;
+		if (s.contains(MAX_TIME_STEP_S)) {
+			maxTimeStep = s.getDouble(MAX_TIME_STEP_S);
+			s.ensurePositiveValue(maxTimeStep, MAX_TIME_STEP_S);
+		}
+		eventBatching = s.getBoolean(EVENT_BATCHING_S, false);
+		eventBatchEpsilon = s.getDouble(EVENT_BATCH_EPSILON_S, 0);
+		if (eventBatching) {
+			s.ensurePositiveValue(eventBatchEpsilon, EVENT_BATCH_EPSILON_S);
+		}
+		SimConfig config = SimConfig.getInstance();
+		routerMode = config.getRouterMode();
+		if (adaptiveStep) {
+			endTime = config.getEndTime();
+			contactPlan = new ContactPlan(this.hosts, this.updateInterval);
+		}
 		
 		if(randomizeUpdates) {
 			// creates the update order array that can be shuffled
@@ -143,24 +209,35 @@ public class World {
 	}
 
 	/**
-	 * Goes through all event Queues and sets the 
-	 * event queue that has the next event.
+	 * Re-keys all event queues and sets the time of the next event. Between
+	 * the calls the next event is found from the merged queues in O(log q)
+	 * time per event.
 	 */
 	public void setNextEventQueue() {
-		//EventQueueһӿ,ͨʵӿڵʵ
-		EventQueue nextQueue = scheduledUpdates;//ScheduledUpdatesQueue scheduledUpdates;
-		double earliest = nextQueue.nextEventsTime();
-
-		/* find the queue that has the next event */
-		for (EventQueue eq : eventQueues) {//ÿeventQueuesҵҪ¼
-			if (eq.nextEventsTime() < earliest){
-				nextQueue = eq;	
-				earliest = eq.nextEventsTime();//ҵ¼д¼¼ŵһдnextEventQueue
-			}
+		/* re-key all queues in case some queue's next event got earlier */
+		this.mergedQueues.updateAll();
+		this.nextQueueEventTime = this.mergedQueues.nextEventsTime();
+	}
+
+	/**
+	 * Processes the events that are due until the given time. The hosts are
+	 * updated after every event, or after every batch of events if event
+	 * batching is enabled.
+	 * @param runUntil The time until which the events are processed
+	 */
+	private void processEvents(double runUntil) {
+		while (this.nextQueueEventTime <= runUntil) {
+			double batchEnd = this.eventBatching ?
+					Math.min(this.nextQueueEventTime + this.eventBatchEpsilon,
+							runUntil) : this.nextQueueEventTime;
+			do {
+				simClock.setTime(this.nextQueueEventTime);
+				ExternalEvent ee = this.mergedQueues.nextEvent();//nextEvent产生下一个消息事件，但注意，只有此时间被处理之后才真正产生了一个消息
+				ee.processEvent(this);
+				this.nextQueueEventTime = this.mergedQueues.nextEventsTime();
+			} while (this.eventBatching && this.nextQueueEventTime <= batchEnd);
+			updateHosts(); // update all hosts after every event (batch)
 		}
-		
-		this.nextEventQueue = nextQueue;//EventQueue nextEventQueue;
-		this.nextQueueEventTime = earliest;
 	}
 
 	/** 
@@ -169,21 +246,19 @@ public class World {
 	 * this method is called and after one update interval.
 	 */
 	public void update () {
+		if (this.adaptiveStep) {
+			adaptiveUpdate();
+			return;
+		}
 		double runUntil = SimClock.getTime() + this.updateInterval;
 		
-		setNextEventQueue();//һϢ¼ϢʵϻûвͬʱҪ¼ó
+		setNextEventQueue();//产生下一个消息事件（但消息实际上还没有产生），同时把最早需要处理的事件队列拿出来
 
-		//this.neighbor=new Neighbors(this.hosts);//
+		//this.neighbor=new Neighbors(this.hosts);//新增函数
 		
-		//ѭһڵ¼
+		//此循环处理在一个更新周期内的事件
 		/* process all events that are due until next interval update */
-		while (this.nextQueueEventTime <= runUntil) {
-			simClock.setTime(this.nextQueueEventTime);
-			ExternalEvent ee = this.nextEventQueue.nextEvent();//nextEventһϢ¼ע⣬ֻдʱ䱻֮һϢ
-			ee.processEvent(this);
-			updateHosts(); // update all hosts after every event
-			setNextEventQueue();//ÿeventQueuesҵҪ¼ֻҪڸ¼ʱڣͽд
-		}
+		processEvents(runUntil);
 
 		moveHosts(this.updateInterval);
 		simClock.setTime(runUntil);
@@ -195,22 +270,82 @@ public class World {
 			ul.updated(this.hosts);
 		}
 	}
+
+	/**
+	 * Update with the adaptive time advance. Works like {@link #update()},
+	 * but when no host needs to be updated on every update interval, the
+	 * world is advanced directly to the next time something can happen:
+	 * the next external event, the next router timer (see
+	 * {@link routing.MessageRouter#getNextUpdateTime()}) or the earliest time
+	 * any connection can come up or go down according to the orbits of the
+	 * hosts (see {@link ContactPlan}), whichever comes first. Update
+	 * listeners are informed once per step, after the hosts are updated.
+	 */
+	private void adaptiveUpdate() {
+		double now = SimClock.getTime();
+		setNextEventQueue();
+
+		double runUntil = getNextStepTime(now);
+		if (runUntil <= now + this.updateInterval) {
+			runUntil = now + this.updateInterval;
+			/* process all events that are due until the end of the step */
+			processEvents(runUntil);
+			moveHosts(runUntil - SimClock.getTime());
+			simClock.setTime(runUntil);
+		}
+		else {
+			/* nothing is due before the end of a longer step, so the hosts
+			 * are moved there before the events of that time are processed */
+			moveHosts(runUntil - now);
+			simClock.setTime(runUntil);
+			processEvents(runUntil);
+		}
+
+		updateHosts();
+
+		/* inform all update listeners */
+		for (UpdateListener ul : this.updateListeners) {
+			ul.updated(this.hosts);
+		}
+	}
+
+	/**
+	 * Returns the time the world can be advanced to without skipping
+	 * anything that needs an update in between
+	 * @param now The current time
+	 * @return The end time of the next step
+	 */
+	private double getNextStepTime(double now) {
+		double next = Math.min(now + this.maxTimeStep, this.endTime);
+		next = Math.min(next, this.nextQueueEventTime);
+		for (int i=0, n = hosts.size(); i < n; i++) {
+			next = Math.min(next, hosts.get(i).getRouter().getNextUpdateTime());
+			if (next <= now + this.updateInterval) {
+				return next;
+			}
+		}
+		if (this.simulateConnections) {
+			next = Math.min(next, this.contactPlan.getNextChange(now, next));
+		}
+		return next;
+	}
+
 	/*test!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!*/
-	public void test(){//Ż
+	public void test(){//网格法优化用
 		LinkedMap<Double, ConnectivityOptimizer> map = new LinkedMap<Double, ConnectivityOptimizer>();
 		double endTime = 60000;
 		List<ConnectivityOptimizer> optList = new ArrayList<ConnectivityOptimizer>();
 		for (double time = 0; time < endTime; time += this.updateInterval){
 			for (int i = 0; i < this.hosts.size(); i++){
-				hosts.get(i).updateLocation(time);//ѭеĽڵλ
+				hosts.get(i).updateLocation(time);//循环遍历更新所有的节点位置
 			}
 			hosts.get(0).getInterface(1).predictionUpdate();
 		}
 		for (double time = 0; time < endTime; time += this.updateInterval){
 			for (int i = 0; i < this.hosts.size(); i++){
-				hosts.get(i).updateLocation(time);//ѭеĽڵλ
+				hosts.get(i).updateLocation(time);//循环遍历更新所有的节点位置
 				for (NetworkInterface inter : hosts.get(i).getInterfaces()){
-					ConnectivityOptimizer conOpt = inter.predictionUpdate();//¸ڵλ
+					ConnectivityOptimizer conOpt = inter.predictionUpdate();//更新各个节点的网格位置
 					optList.add(conOpt);
 					
 					System.out.println(conOpt.getAllInterfaces());
@@ -219,7 +354,7 @@ public class World {
 		}
 
 	}
-	/*!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!*/
+	/*新增函数!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!*/
 	public double calculateDistance(Coord c1,Coord c2){
 		double distance = c1.distance(c2);
 		return distance;
@@ -227,71 +362,169 @@ public class World {
 	private HashMap<Tuple<DTNHost, DTNHost>, Tuple<Double, Double>> linkExistList =
 				new HashMap<Tuple<DTNHost, DTNHost>, Tuple<Double, Double>>();
 	
+	/** number of nearest candidates first looked up for every free host
+	 * when the laser links are matched */
+	private static final int LINK_CANDIDATES = 4;
+
+	/**
+	 * Updates the laser interfaces (interface 1) of all hosts and connects
+	 * the free ones pairwise. Every satellite has a single laser terminal,
+	 * so a host can have at most one link. The links that are still in
+	 * range are kept and the free hosts are matched greedily, closest pair
+	 * first: the nearest free hosts of every free host are looked up from
+	 * a k-d tree and the candidate links are taken from a priority queue
+	 * in the order of their length. This gives the same matching as
+	 * repeatedly connecting the closest free pair, in O(n log n) time.
+	 */
 	public void updateAllHostsInterface(){
-		double timeNow = SimClock.getTime();
-		
-		removeAllConnections();//ҪƳӣ
-		this.connectedHosts.clear();//ÿռ¼ѽӵĽڵ
-		
 		for (int i=0, n = hosts.size();i < n; i++) {
 			if (this.isCancelled) {
 				break;
-			}	
-			hosts.get(i).getInterface(1).update();//DTNHostINTERFACEóֻλãͳһ
+			}
+			hosts.get(i).getInterface(1).update();//updates the location and drops the links that went out of range
 		}
-		
-		for (int i=0, n = hosts.size();i < n; i++) {//ѭ㽨ȫĽڵ
-			Tuple<DTNHost, DTNHost> t = getClosedHosts();
-			if (t != null){
-				DTNHost from = t.getKey();
-				DTNHost to = t.getValue();
-				from.getInterface(1).connect(to.getInterface(1));//
-				this.connectedHosts.put(from, to);//¼ѾӵĽڵ
-				/*Tuple<DTNHost, DTNHost> link = new Tuple<DTNHost, DTNHost>(from, to);
-				if (linkExistList.containsKey(link)){
-					if (linkExistList.get(link).getValue() < timeNow){//Ҫ
-						Tuple<Double, Double> existTime = new Tuple<Double, Double>(linkExistList.get(link).getKey(), timeNow);//·ʱ
-						linkExistList.put(link, existTime);
-					}
-				}*/
+
+		List<NetworkInterface> free = new ArrayList<NetworkInterface>();
+		for (DTNHost host : hosts) {
+			NetworkInterface ni = host.getInterface(1);
+			if (ni.getConnections().isEmpty()) {
+				free.add(ni);
 			}
-			else
-				assert false : "error!";
 		}
-	}
-	public Tuple<DTNHost, DTNHost> getClosedHosts(){
-		
-		double minDistance = 1000000;
-		Tuple<DTNHost, DTNHost> closedHosts = new Tuple<DTNHost, DTNHost>(hosts.get(0), hosts.get(1));//ʼ
-		boolean changeLabel = false;
-		for (int i=0, n = hosts.size();i < n - 1; i++) {
-			DTNHost from = hosts.get(i);
-			
-			if (from.getConnections().size() > 0){//ÿǽڵֻһͷͬʱֻһ
+		int n = free.size();
+		if (n < 2) {
+			return;
+		}
+
+		double[] x = new double[n];
+		double[] y = new double[n];
+		double[] z = new double[n];
+		for (int i = 0; i < n; i++) {
+			Coord c = free.get(i).getLocation();
+			x[i] = c.getX();
+			y[i] = c.getY();
+			z[i] = c.getZ();
+		}
+		LinkMatching matching = new LinkMatching(new KdTree(x, y, z), x, y, z);
+		for (int i = 0; i < n; i++) {
+			matching.addCandidates(i, free.get(i).getTransmitRange());
+		}
+
+		LinkCandidate link;
+		while ((link = matching.candidates.poll()) != null) {
+			if (matching.matched[link.from]) {
 				continue;
 			}
-			for (int j = 0; j < n; j++) {//עѭ߽磡
-				if (i == j)
-					continue;//ֱ
-				DTNHost to = hosts.get(j);
-				double distance = calculateDistance(from.getLocation(), to.getLocation());
-				System.out.println(from+"  "+to+"  "+ minDistance+"  "+distance);
-				if (minDistance > distance){
-					if (this.connectedHosts.containsKey(from)){//ÿǽڵֻһͷͬʱֻһ
-						continue;
-					}					
-					closedHosts = new Tuple<DTNHost, DTNHost>(from, to);
-					minDistance = distance;
-					changeLabel = true;
-				}				
+			if (!matching.matched[link.to]) {
+				NetworkInterface from = free.get(link.from);
+				from.connect(free.get(link.to));
+				if (!from.getConnections().isEmpty()) {
+					matching.matched[link.from] = true;
+					matching.matched[link.to] = true;
+					continue;
+				}
 			}
+			/* the other end was taken or the link couldn't be created */
+			matching.addNextCandidate(link.from);
 		}
-		if (changeLabel == true)
-			return closedHosts;
-		else 
-			return null;
-	}	
-	/*!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!*/
+	}
+
+	/**
+	 * Candidate link between two free hosts of the link matching
+	 */
+	private static class LinkCandidate implements Comparable<LinkCandidate> {
+		private final double distance;
+		private final int from;
+		private final int to;
+
+		private LinkCandidate(double distance, int from, int to) {
+			this.distance = distance;
+			this.from = from;
+			this.to = to;
+		}
+
+		public int compareTo(LinkCandidate other) {
+			if (this.distance != other.distance) {
+				return Double.compare(this.distance, other.distance);
+			}
+			int from1 = Math.min(this.from, this.to);
+			int from2 = Math.min(other.from, other.to);
+			if (from1 != from2) {
+				return from1 - from2;
+			}
+			return Math.max(this.from, this.to) - Math.max(other.from, other.to);
+		}
+	}
+
+	/**
+	 * State of one link matching round: the nearest neighbors of every free
+	 * host that have been looked up so far and the queue of candidate links.
+	 * Every free host has one candidate in the queue at a time; when the
+	 * candidate is used up, the next nearest neighbor is queued. When the
+	 * looked up neighbors run out, twice as many are looked up.
+	 */
+	private static class LinkMatching {
+		private final KdTree tree;
+		private final double[] x, y, z;
+		private final double[] ranges;
+		private final int[][] neighbors;
+		private final int[] nextNeighbor;
+		/** how many neighbors were asked for in the last lookup */
+		private final int[] lookedUp;
+		private final boolean[] matched;
+		private final PriorityQueue<LinkCandidate> candidates =
+			new PriorityQueue<LinkCandidate>();
+
+		private LinkMatching(KdTree tree, double[] x, double[] y, double[] z) {
+			int n = x.length;
+			this.tree = tree;
+			this.x = x;
+			this.y = y;
+			this.z = z;
+			this.ranges = new double[n];
+			this.neighbors = new int[n][];
+			this.nextNeighbor = new int[n];
+			this.lookedUp = new int[n];
+			this.matched = new boolean[n];
+		}
+
+		private void addCandidates(int host, double range) {
+			this.ranges[host] = range;
+			this.lookedUp[host] = LINK_CANDIDATES;
+			this.neighbors[host] = tree.nearest(x[host], y[host], z[host],
+					LINK_CANDIDATES, range, host);
+			addNextCandidate(host);
+		}
+
+		private void addNextCandidate(int host) {
+			while (true) {
+				int[] hostNeighbors = this.neighbors[host];
+				int next = this.nextNeighbor[host];
+				while (next < hostNeighbors.length &&
+						this.matched[hostNeighbors[next]]) {
+					next++;
+				}
+				if (next < hostNeighbors.length) {
+					this.nextNeighbor[host] = next + 1;
+					int other = hostNeighbors[next];
+					double dx = x[host] - x[other];
+					double dy = y[host] - y[other];
+					double dz = z[host] - z[other];
+					candidates.add(new LinkCandidate(
+							Math.sqrt(dx*dx + dy*dy + dz*dz), host, other));
+					return;
+				}
+				this.nextNeighbor[host] = next;
+				if (hostNeighbors.length < this.lookedUp[host]) {
+					return; /* all the hosts within range have been tried */
+				}
+				this.lookedUp[host] *= 2;
+				this.neighbors[host] = tree.nearest(x[host], y[host], z[host],
+						this.lookedUp[host], ranges[host], host);
+			}
+		}
+	}
+	/*新增函数!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!*/
 
 	/**
 	 * Updates all hosts (calls update for every one of them). If update
@@ -300,16 +533,14 @@ public class World {
 	 */
 	private void updateHosts() {
 
-		//test();//Ż
+		//test();//网格法优化用
 		//assert false: "test";
 		
-		Settings s = new Settings(USERSETTINGNAME_S);
-		int mode = s.getInt(ROUTERMODENAME_S);//ļжȡ·ģʽ
-		switch(mode){
-		case 1:	//ȫ·㷨,dijsktra
+		switch(this.routerMode){
+		case 1:	//全局最优路由算法,dijsktra
 			break;
 		case 2 ://simpleConnectivity;
-			updateAllHostsInterface();//,ͨѭȫĽڵ!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!
+			updateAllHostsInterface();//新增,通过三层循环，建立全局所需的节点间连接!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!
 			break;
 		}
 		
@@ -318,7 +549,7 @@ public class World {
 				if (this.isCancelled) {
 					break;
 				}			
-				//this.neighbor.CalculateNeighbor(this.hosts.get(i), SimClock.getTime());//ÿǵھӽڵб
+				//this.neighbor.CalculateNeighbor(this.hosts.get(i), SimClock.getTime());//新增函数，更新每个卫星的邻居节点列表
 							
 				hosts.get(i).update(simulateConnections);
 			}
@@ -332,7 +563,7 @@ public class World {
 				if (this.isCancelled) {
 					break;
 				}
-				//this.neighbor.CalculateNeighbor(this.updateOrder.get(i), SimClock.getTime());//ÿǵھӽڵб
+				//this.neighbor.CalculateNeighbor(this.updateOrder.get(i), SimClock.getTime());//新增函数，更新每个卫星的邻居节点列表
 				this.updateOrder.get(i).update(simulateConnections);
 			}			
 		}
@@ -409,5 +640,6 @@ public class World {
 	 */
 	public void scheduleUpdate(double simTime) {
 		scheduledUpdates.addUpdate(simTime);
+		mergedQueues.update(scheduledUpdates);
 	}
 }
@@ -1,19 +1,21 @@
 package core;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Random;
 
 /**
  * Created by ustc on 2016/6/24.
  */
-public class file {
+public class file implements Serializable {
+	private static final long serialVersionUID = 42L;
     private String id;
     private int size;
     private int fromAddressID;
     private double timeRequest;
-    private boolean initFile;             							//	жǷΪʼ֮뻺еļ
-    private ArrayList<Integer> data = new ArrayList<Integer>();    	//	ö̬ʾļ
-    private int dataSize=100;										//	ݴСΪ100
+    private boolean initFile;             							//	用于判断是否为初始化之后放入缓存中的文件
+    private ArrayList<Integer> data = new ArrayList<Integer>();    	//	用动态链表来表示文件中数据
+    private int dataSize=100;										//	数据大小为100
     
     public String getId() {
         return id;
@@ -44,7 +46,7 @@ public class file {
     }
     
     /**
-     * ļĸƺԭǲϣôݲ
+     * 对文件的复制函数，原因是不希望按引用传递参数。
      * @param File
      * @return
      */
@@ -60,7 +62,7 @@ public class file {
 		return f;
 	}
     
-    public void setSize(int max) {						//ļĴСõ
+    public void setSize(int max) {						//文件的大小是随机设置的
         /**Random random = new Random();
         //int max=5000;
         int min=1000;
@@ -83,30 +85,48 @@ public class file {
     
     
     /**
-     * ļгʼ
-     * @param XΪļID
-     * @param nrofHostsΪڵĸ
+     * 对文件进行初始化
+     * @param X为文件的ID
+     * @param nrofHosts为节点的个数
      */
     public file(int X, int nrofHosts){
         this.id="filename"+X;
-        this.timeRequest= SimClock.getTime();			// ļڴʱʱΪǰļʱ䡣
+        this.timeRequest= SimClock.getTime();			// 文件在创建的时候，请求时间就为当前文件创建时间。
         this.initFile= true;
         setSize(5000);
-        setFromAddressID(nrofHosts);					// һڵҲ
+        setFromAddressID(nrofHosts);					// 具体放在哪一个节点上也是随机的
         
         for(int i=0;i<dataSize;i++){
         	int m;
-        	m=getRandomInt(100);						// dataд洢Ҳ
+        	m=getRandomInt(100);						// data数据中存储的也是随机数
         	data.add(i, m);
         }
     }
     
+    /**
+     * Creates a file with a known origin and size
+     * @param X Identifier (catalogue index) of the file
+     * @param fromAddressID Address of the origin host
+     * @param size Size of the file (bytes)
+     */
+    public file(int X, int fromAddressID, int size){
+        this.id="filename"+X;
+        this.timeRequest= SimClock.getTime();
+        this.initFile= true;
+        this.size= size;
+        this.fromAddressID= fromAddressID;
+        
+        for(int i=0;i<dataSize;i++){
+        	data.add(i, getRandomInt(100));
+        }
+    }
+    
     public file(){    }
     
     /**
-     * dataҪ洢
-     * @param max Ϊֵ
-     * @return 
+     * 用于生成data数据中要存储的随机数
+     * @param max 为最大值
+     * @return 返回随机数
      */
     public int getRandomInt(int max){					
     	int m;
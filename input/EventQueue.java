@@ -4,14 +4,17 @@
  */
 package input;
 
+import java.io.Serializable;
+
 /**
  * Interface for event queues. Any class that is not a movement model or a 
  * routing module but wishes to provide events for the simulation (like creating
  * messages) must implement this interface and register itself to the 
  * simulator. See the {@link EventQueueHandler} class for configuration 
- * instructions.
+ * instructions. Event queues are serializable so that their position can
+ * be saved to a {@link core.Checkpoint}.
  */
-public interface EventQueue {
+public interface EventQueue extends Serializable {
 	
 	/**
 	 * Returns the next event in the queue or ExternalEvent with time of 
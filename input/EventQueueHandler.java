@@ -4,6 +4,7 @@
  */
 package input;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -32,7 +33,8 @@ import core.Settings;
  * is loaded when the name of the class is defined with 
  * <code>CLASS_SETTING</code>. 
  */
-public class EventQueueHandler  {
+public class EventQueueHandler implements Serializable {
+	private static final long serialVersionUID = 42L;
 	/** Event queue settings main namespace ({@value})*/
 	public static final String SETTINGS_NAMESPACE = "Events";
 	/** number of event queues -setting id ({@value})*/
@@ -67,21 +69,55 @@ public class EventQueueHandler  {
 				int preload = 0;
 				String path = "";
 				if (s.contains(PRELOAD_SETTING)) {
-					preload = s.getInt(PRELOAD_SETTING);//ⲿ¼룬ļ·ʽ
+					preload = s.getInt(PRELOAD_SETTING);//外部事件导入，以文件路径的形式导入
 				}
 				path = s.getSetting(PATH_SETTING);
 
 				queues.add(new ExternalEventsQueue(path, preload));
 			}
 			else if (s.contains(CLASS_SETTING)) { // event generator class
-				String className = CLASS_PACKAGE + "." + //ָͨ¼ƺͲڲ¼
-					s.getSetting(CLASS_SETTING);//input.class
-				EventQueue eq = (EventQueue)s.createIntializedObject(className);
+				EventQueue eq = createGenerator(s);//通过指定事件发生器名称和参数，定期产生事件
 				
 				queues.add(eq);
 			}
 		}
 	}
+
+	/**
+	 * Creates an event generator
+	 * @param s The settings of the generator
+	 * @return The generator
+	 */
+	private static EventQueue createGenerator(Settings s) {
+		String className = CLASS_PACKAGE + "." +
+			s.getSetting(CLASS_SETTING);//input.class
+		return (EventQueue)s.createIntializedObject(className);
+	}
+
+	/**
+	 * Creates the event generators of the current run's settings again,
+	 * e.g., to compare the settings of two runs. External event files are
+	 * not read.
+	 * @return The generators in the order of the event queues, with null
+	 * for the queues of external event files
+	 */
+	public static List<EventQueue> createGenerators() {
+		Settings settings = new Settings(SETTINGS_NAMESPACE);
+		int nrof = settings.getInt(NROF_SETTING);
+		List<EventQueue> generators = new ArrayList<EventQueue>();
+
+		for (int i=1; i <= nrof; i++) {
+			Settings s = new Settings(SETTINGS_NAMESPACE + i);
+
+			if (s.contains(PATH_SETTING)) {
+				generators.add(null);
+			}
+			else if (s.contains(CLASS_SETTING)) {
+				generators.add(createGenerator(s));
+			}
+		}
+		return generators;
+	}
 	
 	/** 
 	 * Returns all the loaded event queues
@@ -15,6 +15,7 @@ import core.Settings;
  * the events and preloading only a proper amount of them.
  */
 public class ExternalEventsQueue implements EventQueue {
+	private static final long serialVersionUID = 42L;
 	/** ExternalEvents namespace ({@value})*/
 	public static final String SETTINGS_NAMESPACE = "ExternalEvents";
 	/** number of event to preload -setting id ({@value})*/
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import core.DTNHost;
+import core.World;
+import core.file;
+
+/**
+ * External event for requesting a file of a (possibly large) file
+ * catalogue. Files of the catalogue are created at their origin hosts
+ * lazily, when they are requested for the first time.
+ */
+public class FileRequestEvent extends MessageCreateEvent {
+	private static final long serialVersionUID = 42L;
+	/** Prefix of the file identifiers */
+	public static final String FILE_ID_PREFIX = "filename";
+
+	private int fileIndex;
+	private int fileSize;
+
+	/**
+	 * Creates a file request event
+	 * @param from The requester of the file
+	 * @param origin The origin host of the file
+	 * @param id ID of the request message
+	 * @param size Size of the request message
+	 * @param time Time, when the request is created
+	 * @param fileIndex Catalogue index of the file
+	 * @param fileSize Size of the file (used if the file is created)
+	 */
+	public FileRequestEvent(int from, int origin, String id, int size,
+			double time, int fileIndex, int fileSize) {
+		super(from, origin, id, size, time, FILE_ID_PREFIX + fileIndex);
+		this.fileIndex = fileIndex;
+		this.fileSize = fileSize;
+	}
+
+	/**
+	 * Creates the file at its origin (if this is the first request for the
+	 * file) and the request message.
+	 */
+	@Override
+	public void processEvent(World world) {
+		DTNHost from = world.getNodeByAddress(this.fromAddr);
+		String fileId = getFileID();
+		if (!from.getFiles().containsKey(fileId)) {
+			file f = new file(this.fileIndex, this.toAddr, this.fileSize);
+			world.getNodeByAddress(this.toAddr).putIntoFileBuffer(f);
+			from.getFiles().put(fileId, this.toAddr);
+		}
+		super.processEvent(world);
+	}
+
+	@Override
+	public String toString() {
+		return super.toString() + " file:" + getFileID();
+	}
+}
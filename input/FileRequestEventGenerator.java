@@ -0,0 +1,301 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Random;
+import java.util.Scanner;
+
+import util.ParetoRNG;
+import util.ZipfRNG;
+import core.Settings;
+import core.SettingsError;
+import core.SimError;
+
+/**
+ * File request -external events generator. Creates requests for the files
+ * of a file catalogue whose popularity follows a Zipf distribution (or is
+ * replayed from a trace file). The origin and size of each catalogue file
+ * are derived deterministically from its index, so the catalogue is never
+ * materialized: a file is created at its origin when it's requested for the
+ * first time (see {@link FileRequestEvent}). The request rate can be
+ * modulated with a diurnal (sinusoidal) pattern. Events are generated one
+ * at a time, when they are asked for.
+ * <P>The request message size, interval, host (requester) range, prefix and
+ * time settings are the same as for {@link MessageEventGenerator}.</P>
+ */
+public class FileRequestEventGenerator extends MessageEventGenerator {
+	private static final long serialVersionUID = 42L;
+	/** Number of files in the catalogue -setting id ({@value}).
+	 * Default is 1000. */
+	public static final String CATALOGUE_SIZE_S = "catalogueSize";
+	/** Exponent of the Zipf popularity distribution -setting id ({@value}).
+	 * Default is 0.8. Zero gives uniform popularity. */
+	public static final String ZIPF_EXPONENT_S = "zipfExponent";
+	/** File size -setting id ({@value}). Can be either a single value or a
+	 * range (min, max). Default is 5000 bytes. */
+	public static final String FILE_SIZE_S = "fileSize";
+	/** File size distribution -setting id ({@value}). Either "uniform"
+	 * (default) or "pareto". With the Pareto distribution, the minimum of
+	 * the size range is the scale and the maximum the cut-off value. */
+	public static final String FILE_SIZE_DIST_S = "fileSizeDistribution";
+	/** Shape of the Pareto file size distribution -setting id ({@value}).
+	 * Default is 1.2 */
+	public static final String FILE_SIZE_SHAPE_S = "fileSizeShape";
+	/** Origin host address range -setting id ({@value}). The lower bound is
+	 * inclusive and upper bound exclusive. Default is the host range. */
+	public static final String ORIGIN_RANGE_S = "origins";
+	/** Requester addresses -setting id ({@value}). Comma separated list of
+	 * host addresses. If defined, requesters are drawn from this list
+	 * instead of the host range. */
+	public static final String REQUESTERS_S = "requesters";
+	/** Amplitude of the diurnal request rate modulation -setting id
+	 * ({@value}). Value in range [0, 1). Default is 0 (constant rate). */
+	public static final String DIURNAL_AMPLITUDE_S = "diurnalAmplitude";
+	/** Period of the diurnal modulation -setting id ({@value}). Seconds.
+	 * Default is 86400. */
+	public static final String DIURNAL_PERIOD_S = "diurnalPeriod";
+	/** Phase of the diurnal modulation -setting id ({@value}). Seconds.
+	 * Default is 0. */
+	public static final String DIURNAL_PHASE_S = "diurnalPhase";
+	/** Request trace file -setting id ({@value}). If defined, requests are
+	 * replayed from the file instead of drawing them. Each line of the file
+	 * has the request time, the catalogue index of the file and optionally
+	 * the requester address, separated by white space. Empty lines and lines
+	 * starting with '#' are skipped. */
+	public static final String TRACE_FILE_S = "traceFile";
+
+	/** value of the file size distribution setting for uniform sizes */
+	public static final String UNIFORM_DIST = "uniform";
+	/** value of the file size distribution setting for Pareto sizes */
+	public static final String PARETO_DIST = "pareto";
+
+	private int catalogueSize;
+	private ZipfRNG zipf;
+	private int[] fileSizeRange;
+	private boolean paretoSizes;
+	private double fileSizeShape;
+	private int[] originRange;
+	private int[] requesters;
+	private double diurnalAmplitude;
+	private double diurnalPeriod;
+	private double diurnalPhase;
+	/** seed for the per-file origin and size values */
+	private long catalogueSeed;
+
+	/** reader of the trace file (null if no trace is replayed) */
+	private BufferedReader trace;
+	/** next event read from the trace file */
+	private FileRequestEvent nextTraceEvent;
+
+	/**
+	 * Constructor.
+	 * @param s Settings for this generator.
+	 */
+	public FileRequestEventGenerator(Settings s) {
+		super(s);
+		this.catalogueSize = s.contains(CATALOGUE_SIZE_S) ?
+				s.getInt(CATALOGUE_SIZE_S) : 1000;
+		s.ensurePositiveValue(this.catalogueSize, CATALOGUE_SIZE_S);
+		double exponent = s.contains(ZIPF_EXPONENT_S) ?
+				s.getDouble(ZIPF_EXPONENT_S) : 0.8;
+		s.ensurePositiveValue(exponent, ZIPF_EXPONENT_S);
+		this.zipf = new ZipfRNG(this.rng, this.catalogueSize, exponent);
+
+		this.fileSizeRange = s.contains(FILE_SIZE_S) ?
+				s.getCsvInts(FILE_SIZE_S) : new int[] {5000};
+		if (this.fileSizeRange.length == 1) {
+			this.fileSizeRange = new int[] {this.fileSizeRange[0],
+					this.fileSizeRange[0]};
+		} else {
+			s.assertValidRange(this.fileSizeRange, FILE_SIZE_S);
+		}
+		String dist = s.contains(FILE_SIZE_DIST_S) ?
+				s.getSetting(FILE_SIZE_DIST_S) : UNIFORM_DIST;
+		if (PARETO_DIST.equals(dist)) {
+			this.paretoSizes = true;
+		} else if (!UNIFORM_DIST.equals(dist)) {
+			throw new SettingsError("Unknown value '" + dist + "' for " +
+					s.getFullPropertyName(FILE_SIZE_DIST_S));
+		}
+		this.fileSizeShape = s.contains(FILE_SIZE_SHAPE_S) ?
+				s.getDouble(FILE_SIZE_SHAPE_S) : 1.2;
+
+		this.originRange = s.contains(ORIGIN_RANGE_S) ?
+				s.getCsvInts(ORIGIN_RANGE_S, 2) : this.hostRange;
+		s.assertValidRange(this.originRange, ORIGIN_RANGE_S);
+		this.requesters = s.contains(REQUESTERS_S) ?
+				s.getCsvInts(REQUESTERS_S) : null;
+
+		this.diurnalAmplitude = s.contains(DIURNAL_AMPLITUDE_S) ?
+				s.getDouble(DIURNAL_AMPLITUDE_S) : 0;
+		if (this.diurnalAmplitude < 0 || this.diurnalAmplitude >= 1) {
+			throw new SettingsError(s.getFullPropertyName(
+					DIURNAL_AMPLITUDE_S) + " must be in range [0, 1)");
+		}
+		this.diurnalPeriod = s.contains(DIURNAL_PERIOD_S) ?
+				s.getDouble(DIURNAL_PERIOD_S) : 86400;
+		s.ensurePositiveValue(this.diurnalPeriod, DIURNAL_PERIOD_S);
+		this.diurnalPhase = s.contains(DIURNAL_PHASE_S) ?
+				s.getDouble(DIURNAL_PHASE_S) : 0;
+
+		this.catalogueSeed = this.idPrefix.hashCode();
+
+		if (s.contains(TRACE_FILE_S)) {
+			String path = s.valueFillString(s.getSetting(TRACE_FILE_S));
+			try {
+				this.trace = new BufferedReader(new FileReader(path));
+			} catch (IOException e) {
+				throw new SettingsError("Couldn't open request trace file " +
+						path + " (" + e.getMessage() + ")");
+			}
+			this.nextTraceEvent = readTraceEvent();
+			this.nextEventsTime = (this.nextTraceEvent == null ?
+					Double.MAX_VALUE : this.nextTraceEvent.getTime());
+		} else {
+			/* re-draw the first event's time with the diurnal modulation */
+			this.nextEventsTime = drawNextEventTime(
+					this.msgTime != null ? this.msgTime[0] : 0);
+		}
+	}
+
+	/**
+	 * Returns the next file request event
+	 * @see input.EventQueue#nextEvent()
+	 */
+	@Override
+	public ExternalEvent nextEvent() {
+		if (this.trace != null) {
+			FileRequestEvent e = this.nextTraceEvent;
+			this.nextTraceEvent = readTraceEvent();
+			this.nextEventsTime = (this.nextTraceEvent == null ?
+					Double.MAX_VALUE : this.nextTraceEvent.getTime());
+			return e;
+		}
+
+		int index = this.zipf.nextInt() - 1;
+		FileRequestEvent e = createRequest(drawRequester(), index,
+				this.nextEventsTime);
+
+		this.nextEventsTime = drawNextEventTime(this.nextEventsTime);
+		if (this.msgTime != null && this.nextEventsTime > this.msgTime[1]) {
+			/* next event would be later than the end time */
+			this.nextEventsTime = Double.MAX_VALUE;
+		}
+		return e;
+	}
+
+	/**
+	 * Creates a request event for a catalogue file
+	 * @param from Address of the requester
+	 * @param index Catalogue index of the file
+	 * @param time Time of the request
+	 * @return The request event
+	 */
+	protected FileRequestEvent createRequest(int from, int index,
+			double time) {
+		if (index < 0 || index >= this.catalogueSize) {
+			throw new SimError("File index " + index + " is not in the " +
+					"catalogue of " + this.catalogueSize + " files");
+		}
+		/* origin and size only depend on the index of the file */
+		Random fileRng = new Random(this.catalogueSeed * 31 + index);
+		int origin = drawHostAddress(this.originRange, fileRng);
+		return new FileRequestEvent(from, origin, getID(), drawMessageSize(),
+				time, index, drawFileSize(fileRng));
+	}
+
+	/**
+	 * Draws a requester address from the requester list or the host range
+	 * @return A requester address
+	 */
+	protected int drawRequester() {
+		if (this.requesters != null) {
+			return this.requesters[this.rng.nextInt(this.requesters.length)];
+		}
+		return drawHostAddress(this.hostRange);
+	}
+
+	/**
+	 * Draws the time of the next request. Candidate times are drawn with the
+	 * peak request rate and accepted with the probability of the current
+	 * rate relative to the peak rate (thinning).
+	 * @param time Time of the previous request
+	 * @return Time of the next request
+	 */
+	protected double drawNextEventTime(double time) {
+		double peak = 1 + this.diurnalAmplitude;
+		do {
+			time += drawNextEventTimeDiff() / peak;
+		} while (this.rng.nextDouble() * peak > getRateFactor(time));
+		return time;
+	}
+
+	/**
+	 * Returns the relative request rate at the given time
+	 * @param time The time
+	 * @return The rate relative to the mean rate
+	 */
+	protected double getRateFactor(double time) {
+		return 1 + this.diurnalAmplitude * Math.sin(2 * Math.PI *
+				(time - this.diurnalPhase) / this.diurnalPeriod);
+	}
+
+	private int drawHostAddress(int[] range, Random r) {
+		if (range[1] == range[0]) {
+			return range[0];
+		}
+		return range[0] + r.nextInt(range[1] - range[0]);
+	}
+
+	private int drawFileSize(Random r) {
+		int min = this.fileSizeRange[0];
+		int max = this.fileSizeRange[1];
+		if (min == max) {
+			return min;
+		}
+		if (this.paretoSizes) {
+			return (int)new ParetoRNG(r, this.fileSizeShape, min,
+					max).getDouble();
+		}
+		return min + r.nextInt(max - min);
+	}
+
+	/**
+	 * Reads the next request from the trace file
+	 * @return The next request or null if there are no more requests
+	 */
+	private FileRequestEvent readTraceEvent() {
+		String line;
+		try {
+			while ((line = this.trace.readLine()) != null) {
+				line = line.trim();
+				if (line.length() == 0 || line.startsWith("#")) {
+					continue;
+				}
+				Scanner sc = new Scanner(line);
+				double time = Double.parseDouble(sc.next());
+				int index = Integer.parseInt(sc.next());
+				int from = sc.hasNext() ? Integer.parseInt(sc.next()) :
+					drawRequester();
+				sc.close();
+				if (this.msgTime != null && time > this.msgTime[1]) {
+					break;
+				}
+				return createRequest(from, index, time);
+			}
+			this.trace.close();
+		} catch (IOException e) {
+			throw new SimError("Couldn't read request trace: " +
+					e.getMessage());
+		} catch (RuntimeException e) {
+			throw new SimError("Invalid request trace line (" +
+					e.getMessage() + ")");
+		}
+		return null;
+	}
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * Event queue that merges the events of several event queues into one
+ * queue in the order of their times. The queues are kept in a binary heap
+ * keyed by the time of their next event, so finding and taking the next
+ * event costs O(log q) for q queues instead of going through all of them.
+ * Events with the same time are taken from the queues in the order the
+ * queues were given to the constructor.
+ * <P>The heap assumes that the next event time of a queue changes only when
+ * an event is taken from it, or that it only grows otherwise. A queue
+ * whose next event can become earlier without that (e.g., when updates are
+ * added to a {@link ScheduledUpdatesQueue}) must be re-keyed with
+ * {@link #update(EventQueue)}, or all queues with {@link #updateAll()}.</P>
+ */
+public class MergedEventQueue implements EventQueue {
+	private static final long serialVersionUID = 42L;
+	/** the merged queues */
+	private EventQueue[] queues;
+	/** next event times of the queues as known by the heap */
+	private double[] times;
+	/** the heap (indexes of the queues) */
+	private int[] heap;
+	/** positions of the queues in the heap */
+	private int[] positions;
+	/** queue -> index of the queue */
+	private IdentityHashMap<EventQueue, Integer> indexes;
+
+	/**
+	 * Creates a new queue that merges the given queues
+	 * @param queues The queues to merge (at least one), in the order of
+	 * precedence for events that have the same time
+	 */
+	public MergedEventQueue(List<EventQueue> queues) {
+		int n = queues.size();
+		this.queues = queues.toArray(new EventQueue[n]);
+		this.times = new double[n];
+		this.heap = new int[n];
+		this.positions = new int[n];
+		this.indexes = new IdentityHashMap<EventQueue, Integer>();
+		for (int i = 0; i < n; i++) {
+			this.indexes.put(this.queues[i], i);
+			this.heap[i] = i;
+			this.positions[i] = i;
+		}
+		updateAll();
+	}
+
+	/**
+	 * Returns the next event of the queue that has the earliest event and
+	 * re-keys that queue. If all queues are empty, returns the (empty) event
+	 * of the first queue.
+	 * @return The next event
+	 */
+	public ExternalEvent nextEvent() {
+		nextEventsTime(); // makes sure that the head is up to date
+		int first = this.heap[0];
+		ExternalEvent ee = this.queues[first].nextEvent();
+		setTime(first, this.queues[first].nextEventsTime());
+		return ee;
+	}
+
+	/**
+	 * Returns the time of the earliest event in the merged queues
+	 * @return The next event's time or Double.MAX_VALUE if there are no
+	 * events left
+	 */
+	public double nextEventsTime() {
+		while (true) {
+			int first = this.heap[0];
+			double time = this.queues[first].nextEventsTime();
+			if (time == this.times[first]) {
+				return time;
+			}
+			setTime(first, time); // the head has moved on; re-key it
+		}
+	}
+
+	/**
+	 * Re-keys a queue whose next event time may have changed
+	 * @param queue The queue to re-key
+	 */
+	public void update(EventQueue queue) {
+		Integer index = this.indexes.get(queue);
+		if (index != null) {
+			setTime(index, queue.nextEventsTime());
+		}
+	}
+
+	/**
+	 * Re-keys all the queues and rebuilds the heap
+	 */
+	public void updateAll() {
+		for (int i = 0; i < this.queues.length; i++) {
+			this.times[i] = this.queues[i].nextEventsTime();
+		}
+		for (int pos = this.heap.length / 2 - 1; pos >= 0; pos--) {
+			siftDown(pos);
+		}
+	}
+
+	/**
+	 * Sets the heap key of a queue and restores the heap order
+	 * @param index Index of the queue
+	 * @param time The new key
+	 */
+	private void setTime(int index, double time) {
+		double old = this.times[index];
+		this.times[index] = time;
+		if (time < old) {
+			siftUp(this.positions[index]);
+		}
+		else {
+			siftDown(this.positions[index]);
+		}
+	}
+
+	private void siftUp(int pos) {
+		int index = this.heap[pos];
+		while (pos > 0) {
+			int parent = (pos - 1) / 2;
+			if (!isBefore(index, this.heap[parent])) {
+				break;
+			}
+			place(this.heap[parent], pos);
+			pos = parent;
+		}
+		place(index, pos);
+	}
+
+	private void siftDown(int pos) {
+		int index = this.heap[pos];
+		int n = this.heap.length;
+		while (2 * pos + 1 < n) {
+			int child = 2 * pos + 1;
+			if (child + 1 < n && isBefore(this.heap[child + 1],
+					this.heap[child])) {
+				child++;
+			}
+			if (!isBefore(this.heap[child], index)) {
+				break;
+			}
+			place(this.heap[child], pos);
+			pos = child;
+		}
+		place(index, pos);
+	}
+
+	private void place(int index, int pos) {
+		this.heap[pos] = index;
+		this.positions[index] = pos;
+	}
+
+	/**
+	 * Returns true if queue a's next event is before queue b's next event
+	 */
+	private boolean isBefore(int a, int b) {
+		return this.times[a] < this.times[b] ||
+			(this.times[a] == this.times[b] && a < b);
+	}
+}
@@ -6,8 +6,11 @@ package input;
 
 import java.util.Random;
 
+import core.CacheListener;
+import core.ContentDirectory;
 import core.DTNHost;
 import core.Message;
+import core.SimScenario;
 import core.World;
 
 /**
@@ -16,12 +19,12 @@ import core.World;
 public class MessageCreateEvent extends MessageEvent {
 	private int size;
 	private int responseSize;
-	/**------------------------------    MessageCreateEvent ӵĲ       --------------------------------*/
+	/**------------------------------   对 MessageCreateEvent 添加的参量       --------------------------------*/
 	
-	private String fileID; 			// ļID
+	private String fileID; 			// 添加了文件的ID名
 	public static final String SelectLabel = "SelectLabel";
 	
-	/**------------------------------    MessageCreateEvent ӵĲ       --------------------------------*/
+	/**------------------------------   对 MessageCreateEvent 添加的参量       --------------------------------*/
 	/**
 	 * Creates a message creation event with a optional response request
 	 * @param from The creator of the message
@@ -39,17 +42,35 @@ public class MessageCreateEvent extends MessageEvent {
 		this.responseSize = responseSize;
 	}
 
+	/**
+	 * Creates a file request event for a known file
+	 * @param from The requester of the file
+	 * @param to The origin of the file
+	 * @param id ID of the request message
+	 * @param size Size of the request message
+	 * @param time Time, when the request is created
+	 * @param fileID Identifier of the requested file
+	 */
+	public MessageCreateEvent(int from, int to, String id, int size,
+			double time, String fileID) {
+		this(from, to, id, size, 0, time);
+		this.fileID = fileID;
+	}
+
 	@Override
 	public String toString() {
 		return super.toString() + " [" + fromAddr + "->" + toAddr + "] " +
 		"size:" + size + " CREATE";
 	}
-/**------------------------------    MessageCreateEvent ӵĺ       --------------------------------*/
+/**------------------------------   对 MessageCreateEvent 添加的函数方法       --------------------------------*/
 	
-	/** йļ޸ĵĲ       */
+	/** 有关于文件相关修改的部分       */
 	public String getFileID() {
+		if (this.fileID != null) {
+			return this.fileID;
+		}
 		Random random = new Random();
-		int id =random.nextInt(20);
+		int id =random.nextInt(SimScenario.getInstance().getNrofFiles());
 		return "filename" +id;		//return filename;
 	}
 	/*
@@ -57,9 +78,9 @@ public class MessageCreateEvent extends MessageEvent {
 		DTNHost to = world.getNodeByAddress(this.toAddr);
 		DTNHost from = world.getNodeByAddress(this.fromAddr);			
 		
-		Message m = new Message(from, to, this.id, this.size);//µϢ
+		Message m = new Message(from, to, this.id, this.size);//产生新的消息
 		m.setResponseSize(this.responseSize);
-		from.createNewMessage(m);//²ϢŵӦڵrouter汣
+		from.createNewMessage(m);//把新产生的消息放到对应节点的router里面保存
 	}
 	 */
 	/**
@@ -70,22 +91,33 @@ public class MessageCreateEvent extends MessageEvent {
 		
         this.fileID=getFileID();
         DTNHost from = world.getNodeByAddress(this.fromAddr);
-		this.toAddr=from.getFiles().get(this.fileID);							// ޸
-		DTNHost to= world.getNodeByAddress(this.toAddr);
-		this.responseSize= to.getFileBuffer().get(this.fileID).getSize();		// responseSize趨ļĴС
+		DTNHost origin = world.getNodeByAddress(from.getFiles().get(this.fileID));	// 修改
+		this.responseSize= origin.getFileBuffer().get(this.fileID).getSize();	// responseSize设定的是文件的大小，
+		/* request the replica that is predicted to deliver the file first */
+		ContentDirectory directory = ContentDirectory.getInstance();
+		directory.recordRequest(this.fileID, from);
+		DTNHost to = directory.resolve(from, this.fileID, this.responseSize,
+				origin);
+		this.toAddr = to.getAddress();
 		
 		Message m = new Message(from, to, this.id, this.size);
 		m.setResponseSize(this.responseSize);
 		m.setFilename(this.fileID);
 		
-		m.updateProperty(SelectLabel, 0);													//ʶΪư
+		m.updateProperty(SelectLabel, 0);													//标识为控制包
+		
+		boolean localHit = this.toAddr == this.fromAddr ||
+			from.getFileBuffer().containsKey(this.fileID);
+		for (CacheListener cl : from.getCacheListeners()) {
+			cl.fileRequested(from, this.fileID, this.responseSize, localHit);
+		}
 		
-		// ĿĽڵԴڵ㲻ͬŴϢΪȡļģ     ͬʱڵ㻺ļٷ
-		if(this.toAddr!=this.fromAddr && !from.getFileBuffer().containsKey(this.fileID)) {	
-			from.createNewMessage(m); 														// ϢŽȥ
-			from.putIntoJudgeForRetransfer(m);												// ҪϢ뵽жϢǷشbuffer
+		// 如果目的节点和源节点不同，才创建消息，因为取得文件是随机的；     同时如果节点缓存有文件，不再发生请求。
+		if(!localHit && !from.getRouter().startMultiSourceFetch(m, origin)) {	
+			from.createNewMessage(m); 														// 把消息放进缓存中去
+			from.putIntoJudgeForRetransfer(m);												// 需要将消息放入到判断消息是否重传的buffer中
 		}
 	}
 	
-	/**------------------------------    MessageCreateEvent ӵĺ       --------------------------------*/
+	/**------------------------------   对 MessageCreateEvent 添加的函数方法       --------------------------------*/
 }
@@ -40,14 +40,14 @@ public class MessageDeleteEvent extends MessageEvent {
 		
 		if (id.equals(StandardEventsReader.ALL_MESSAGES_ID)) {
 			List<String> ids = new ArrayList<String>();
-			for (Message m : host.getMessageCollection()) {//hostڵѾϢ뵽˺
-				ids.add(m.getId());//Ȱѷ͵ϢidţһɾϢ
+			for (Message m : host.getMessageCollection()) {//host节点已经发送完信息，进入到此函数
+				ids.add(m.getId());//先把已发送的信息读出来，根据id号，一个个删除信息
 			}
 			for (String nextId : ids) {
 				host.deleteMessage(nextId, drop);
 			}
 		} else {
-			host.deleteMessage(id, drop);//ֻɾʾidϢ
+			host.deleteMessage(id, drop);//只删除标示id的信息
 		}
 	}
 
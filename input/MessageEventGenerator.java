@@ -15,6 +15,7 @@ import core.SettingsError;
  * be configured.
  */
 public class MessageEventGenerator implements EventQueue {
+	private static final long serialVersionUID = 42L;
 	/** Message size range -setting id ({@value}). Can be either a single
 	 * value or a range (min, max) of uniformly distributed random values.
 	 * Defines the message size (bytes). */
@@ -185,7 +186,7 @@ public class MessageEventGenerator implements EventQueue {
 	 * Returns the next message creation event
 	 * @see input.EventQueue#nextEvent()
 	 */
-	public ExternalEvent nextEvent() {//һϢ¼ע⣬ֻдʱ䱻֮һϢ
+	public ExternalEvent nextEvent() {//产生下一个消息事件，但注意，只有此时间被处理之后才真正产生了一个消息
 		int responseSize = 0; /* zero stands for one way messages */
 		int msgSize;
 		int interval;
@@ -197,14 +198,14 @@ public class MessageEventGenerator implements EventQueue {
 		to = drawToAddress(hostRange, from);
 		
 		msgSize = drawMessageSize();
-		interval = drawNextEventTimeDiff();//ļõϢInterval between messages (min, max)֮ѡȡһʱ
+		interval = drawNextEventTimeDiff();//会在配置文件中设置的消息产生间隔Interval between messages (min, max)之间随机选取一个时间
 		
 		/* Create event and advance to next event */
 		MessageCreateEvent mce = new MessageCreateEvent(from, to, this.getID(), 
 				msgSize, responseSize, this.nextEventsTime);
 		this.nextEventsTime += interval;	
 		
-		if (this.msgTime != null && this.nextEventsTime > this.msgTime[1]) {//msgTime Time range for message creation (min, max)  Ϣ¼ƵϽ磬൱Ϣʱ䲻Ҫ
+		if (this.msgTime != null && this.nextEventsTime > this.msgTime[1]) {//msgTime代表 Time range for message creation (min, max)  即超过了消息事件产生限制的上界，则相当于消息产生时间不符合要求
 			/* next event would be later than the end time */
 			this.nextEventsTime = Double.MAX_VALUE;
 		}
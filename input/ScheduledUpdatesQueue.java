@@ -13,6 +13,7 @@ import java.util.List;
  * are merged to a single update.
  */
 public class ScheduledUpdatesQueue implements EventQueue {
+	private static final long serialVersionUID = 42L;
 	/** Time of the event (simulated seconds) */
 	private ExternalEvent nextEvent;
 	private List<ExternalEvent> updates;
@@ -21,7 +22,7 @@ public class ScheduledUpdatesQueue implements EventQueue {
 	 * Constructor. Creates an empty update queue.
 	 */
 	public ScheduledUpdatesQueue(){
-		this.nextEvent = new ExternalEvent(Double.MAX_VALUE);//ʼֻһtimeֵ
+		this.nextEvent = new ExternalEvent(Double.MAX_VALUE);//初始化只赋予了一个time变量的值
 		this.updates = new ArrayList<ExternalEvent>();
 	}
 	
@@ -37,7 +38,7 @@ public class ScheduledUpdatesQueue implements EventQueue {
 			this.nextEvent = new ExternalEvent(Double.MAX_VALUE);
 		}
 		else {
-			this.nextEvent = this.updates.remove(0);//updatesбƳǸԪ
+			this.nextEvent = this.updates.remove(0);//返回updates中被移除的那个元素
 		}
 		
 		return event;
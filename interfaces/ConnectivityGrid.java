@@ -4,6 +4,7 @@
  */
 package interfaces;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -12,13 +13,14 @@ import java.util.List;
 import movement.MovementModel;
 import core.Coord;
 import core.DTNHost;
-import core.DTNSim;
 import core.Neighbors;
 import core.NetworkInterface;
 import core.Settings;
 import core.SettingsError;
 import core.SimClock;
+import core.SimContext;
 import core.World;
+import util.DistanceKernel;
 
 /**
  * <P>
@@ -43,6 +45,7 @@ import core.World;
  * from zero to conserve memory. 
  */
 public class ConnectivityGrid extends ConnectivityOptimizer {
+	private static final long serialVersionUID = 42L;
 
 	/**
 	 * Cell based optimization cell size multiplier -setting id ({@value}).
@@ -57,34 +60,45 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	/** default value for cell size multiplier ({@value}) */
 	public static final int DEF_CON_CELL_SIZE_MULT = 1;
 	
-	private GridCell[][][] cells;//GridCell࣬һʵһworldһά洢ÿִ洢˵ǰеhostnetworkinterface
+	private GridCell[][][] cells;//GridCell这个类，创建一个实例代表一个单独的网格，整个world创建了一个三维数组存储这个网格，每个网格内又存储了当前在其中的host的networkinterface
 	private HashMap<NetworkInterface, GridCell> ginterfaces;
 	private int cellSize;
 	private int rows;
 	private int cols;
-	private int zs;//ά
-	private static int worldSizeX;
-	private static int worldSizeY;
-	private static int worldSizeZ;//
-	private static int cellSizeMultiplier;
+	private int zs;//新增三维变量
+	private int worldSizeX;
+	private int worldSizeY;
+	private int worldSizeZ;//新增
 	
-	static HashMap<Integer,ConnectivityGrid> gridobjects;
+	/**
+	 * Discards the grid objects of the current run
+	 */
+	public static void reset() {
+		SimContext.getInstance().setClassState(ConnectivityGrid.class,
+				new HashMap<Integer, ConnectivityGrid>());
+	}
 
-	static {
-		DTNSim.registerForReset(ConnectivityGrid.class.getCanonicalName());
-		reset();
+	/**
+	 * Returns the grid objects of the current run
+	 * @return interface type hash -> grid object
+	 */
+	@SuppressWarnings("unchecked")
+	private static HashMap<Integer, ConnectivityGrid> getGridObjects() {
+		SimContext c = SimContext.getInstance();
+		if (c.getClassState(ConnectivityGrid.class) == null) {
+			reset();
+		}
+		return (HashMap<Integer, ConnectivityGrid>)c.getClassState(
+				ConnectivityGrid.class);
 	}
-	
-	public static void reset() {
-		gridobjects = new HashMap<Integer, ConnectivityGrid>();
 
-		Settings s = new Settings(MovementModel.MOVEMENT_MODEL_NS);
-		int [] worldSize = s.getCsvInts(MovementModel.WORLD_SIZE,2);//2ά޸Ϊ3ά
-		worldSizeX = worldSize[0];
-		worldSizeY = worldSize[1];
-		worldSizeZ = worldSize[1];//ά飡
-		
-		s.setNameSpace(World.OPTIMIZATION_SETTINGS_NS);		
+	/**
+	 * Reads the cell size multiplier setting
+	 * @return the cell size multiplier
+	 */
+	private static int getCellSizeMultiplier() {
+		int cellSizeMultiplier;
+		Settings s = new Settings(World.OPTIMIZATION_SETTINGS_NS);
 		if (s.contains(CELL_SIZE_MULT_S)) {
 			cellSizeMultiplier = s.getInt(CELL_SIZE_MULT_S);
 		}
@@ -96,6 +110,7 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 					") for " + World.OPTIMIZATION_SETTINGS_NS + 
 					"." + CELL_SIZE_MULT_S);
 		}
+		return cellSizeMultiplier;
 	}
 
 	/**
@@ -104,9 +119,14 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	 * 	radio coverage's diameter)
 	 */
 	private ConnectivityGrid(int cellSize) {
+		Settings s = new Settings(MovementModel.MOVEMENT_MODEL_NS);
+		int [] worldSize = s.getCsvInts(MovementModel.WORLD_SIZE,2);//参数从2维修改为3维
+		this.worldSizeX = worldSize[0];
+		this.worldSizeY = worldSize[1];
+		this.worldSizeZ = worldSize[1];//新增三维变量，待检查！！！！！！！！！！！！！！！！！！！！！！！！！！！！！！！！！！！！！！！！！！！！！！！
 		this.rows = worldSizeY/cellSize + 1;
 		this.cols = worldSizeX/cellSize + 1;
-		this.zs = worldSizeZ/cellSize + 1;//
+		this.zs = worldSizeZ/cellSize + 1;//新增
 		System.out.println(cellSize+"  "+this.rows+"  "+this.cols+"  "+this.zs);
 		// leave empty cells on both sides to make neighbor search easier 
 		this.cells = new GridCell[rows+2][cols+2][zs+2];
@@ -114,7 +134,7 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 
 		for (int i=0; i<rows+2; i++) {
 			for (int j=0; j<cols+2; j++) {
-				for (int n=0;n<zs+2; n++)//ά
+				for (int n=0;n<zs+2; n++)//新增三维变量
 					this.cells[i][j][n] = new GridCell();
 			}
 		}
@@ -130,12 +150,13 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	 */
 	public static ConnectivityGrid ConnectivityGridFactory(int key, 
 			double maxRange) {
+		HashMap<Integer, ConnectivityGrid> gridobjects = getGridObjects();
 		if (gridobjects.containsKey((Integer)key)) {
 			return (ConnectivityGrid)gridobjects.get((Integer)key);
 		} else {
 			ConnectivityGrid newgrid = 
 				new ConnectivityGrid((int)Math.ceil(maxRange * 
-						cellSizeMultiplier));//ÿһµConnectivityGridÿһڵӿ
+						getCellSizeMultiplier()));//每次生成一个新的网格ConnectivityGrid，分配给每一个节点的网络接口
 			gridobjects.put((Integer)key,newgrid);
 			return newgrid;
 		}
@@ -178,13 +199,13 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	 * @param ni The interface to update
 	 */
 	public void updateLocation(NetworkInterface ni) {
-		GridCell oldCell = (GridCell)ginterfaces.get(ni);//ginterfacesHashMap<NetworkInterface, GridCell>ӳ
-		GridCell newCell = cellFromCoord(ni.getLocation());//󶨵hostǰ꣬ٴתɶӦ
+		GridCell oldCell = (GridCell)ginterfaces.get(ni);//ginterfaces是HashMap<NetworkInterface, GridCell>映射
+		GridCell newCell = cellFromCoord(ni.getLocation());//返回其绑定的host当前所在坐标，再从坐标转换成对应网格
 
-		if (newCell != oldCell) {//һƶһУҪӦ
-			oldCell.moveInterface(ni, newCell);//˺ѴniӾɵƵµд洢
+		if (newCell != oldCell) {//一旦移动到了另一个网格当中，则需要相应更新
+			oldCell.moveInterface(ni, newCell);//此函数把此网卡ni从旧的网格当中移到新的网格当中存储
 			
-			ginterfaces.put(ni,newCell);//ӳжӦֵ
+			ginterfaces.put(ni,newCell);//更新映射表中对应的网格值
 		}
 	}
 
@@ -208,7 +229,7 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	 * @param col Column index of the cell
 	 * @return Array of neighboring Cells
 	 */
-	private GridCell[] getNeighborCells(int row, int col ,int z) {//ά
+	private GridCell[] getNeighborCells(int row, int col ,int z) {//新增三维变量
 		return new GridCell[] {
 			cells[row-1][col-1][z-1],cells[row-1][col-1][z],cells[row-1][col-1][z+1],//1st row,1st col
 			cells[row-1][col][z-1],cells[row-1][col][z],cells[row-1][col][z+1],//1st row,2nd col
@@ -257,34 +278,40 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	public Collection<NetworkInterface> getNearInterfaces(
 			NetworkInterface ni) {
 		ArrayList<NetworkInterface> niList = new ArrayList<NetworkInterface>();
-		GridCell loc = (GridCell)ginterfaces.get(ni);//ginterfacesHashMap<NetworkInterface, GridCell>ӳ
+		GridCell loc = (GridCell)ginterfaces.get(ni);//ginterfaces是HashMap<NetworkInterface, GridCell>映射
 		/**
-		 * дж䣬ڵȦҲҪͨŰ뾶ڲھ
+		 * 下面改写，加了判断语句，即便是相邻的圈内也要在通信半径内才算邻居
 		 */
-		Coord c = ni.getLocation();//ڵ㵱ǰλ
+		Coord c = ni.getLocation();//节点当前的位置坐标
 		
 		if (loc != null) {	
 			GridCell[] neighbors = 
-				getNeighborCellsByCoord(c);//õ뱾ڵΪھӵ9*9*9飬μЩڵ
+				getNeighborCellsByCoord(c);//得到可能与本节点成为邻居的9*9*9个相邻网格数组，依次检查这些数组内的
 			
-			//ni.getHost().getNeighbors()niӿڶӦhostھݿ
+			//ni.getHost().getNeighbors()即返回ni网络接口对应的host的邻居数据库
 			
 			List<NetworkInterface> potentialNeighbors = 
-					new ArrayList<NetworkInterface>(neighbors.length);//ǱھӶ󣬼9ڵǽڵ
+					new ArrayList<NetworkInterface>(neighbors.length);//潜在邻居对象，即相邻9个网格内的卫星节点
 			for (int i=0; i < neighbors.length; i++) {
-				for (NetworkInterface interf : neighbors[i].getInterfaces()){//ڽڵӿڣμǲھ뷶Χ֮									
-					if (ni.getHost().getNeighbors().JudgeNeighbors(interf.getHost().getLocation(), c))//жǷΪھ
-						niList.add(interf);//ȷھӽڵб
+				List<NetworkInterface> interfaces = neighbors[i].getInterfaces();//相邻网格内节点的网络接口，依次检查是不是在距离范围之内
+				if (interfaces.isEmpty())
+					continue;
+				/* range test of the whole cell with one batch computation */
+				DistanceKernel locations = neighbors[i].getLocations();
+				ni.getHost().getNeighbors().JudgeNeighbors(c, locations);//判断是否为邻居
+				for (int j = 0; j < interfaces.size(); j++) {
+					if (locations.isInRange(j))
+						niList.add(interfaces.get(j));//确认是邻居节点的列表
 					else
-						potentialNeighbors.add(interf);//ǱھӶ󣨵ھӶ󣩣9ڵǽڵ㣬Ԥ
+						potentialNeighbors.add(interfaces.get(j));//添加潜在邻居对象（但还不是邻居对象），即相邻9个网格内的卫星节点，做预测用
 				}
-				//niList.addAll(neighbors[i].getInterfaces());//ֱӰЩڵĽڵ㶼ھӽڵ???????????????????????????????????????????????????
+				//niList.addAll(neighbors[i].getInterfaces());//直接把这些网格内的节点都视作邻居节点加入?待改??????????????????????????????????????????????????
 			}
-			ni.getHost().getNeighbors().changePotentialNeighbors(potentialNeighbors);//¼ҪԤĽڵ
+			ni.getHost().getNeighbors().changePotentialNeighbors(potentialNeighbors);//放入记录的需要预测的节点
 		}
 		//System.out.print(this.host);
 		//System.out.print(SimClock.getTime());
-		//System.out.println(niList);//Networkinterfaceʾ  :return "net interface " + this.address + " of " + this.host + ". Connections: " +	this.connections;
+		//System.out.println(niList);//Networkinterface的显示函数  :return "net interface " + this.address + " of " + this.host + ". Connections: " +	this.connections;
 		
 		return niList;
 	}
@@ -303,10 +330,15 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	 * A single cell in the cell grid. Contains the interfaces that are 
 	 * currently in that part of the grid.
 	 */
-	public class GridCell {
+	public class GridCell implements Serializable {
+		private static final long serialVersionUID = 42L;
 		// how large array is initially chosen
 		private static final int EXPECTED_INTERFACE_COUNT = 5;
-		private ArrayList<NetworkInterface> interfaces;//GridCellάӿб¼ڴڵĽڵ㣬ȫ˵Ҫ֤ͬһӿڲͬʱGridCell
+		private ArrayList<NetworkInterface> interfaces;//GridCell就是依靠维护网络接口列表，来记录在此网格内的节点，对于全局网格来说，需要保证同一个网络接口不会同时出现在两个GridCell中
+		/** locations of the interfaces (created when first needed) */
+		private DistanceKernel locations;
+		/** the location version the locations were copied at */
+		private long locationsVersion = -1;
 
 		private GridCell() {
 			this.interfaces = new ArrayList<NetworkInterface>(
@@ -327,6 +359,7 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 		 */
 		public void addInterface(NetworkInterface ni) {
 			this.interfaces.add(ni);
+			this.locationsVersion = -1;
 		}
 
 		/**
@@ -335,6 +368,7 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 		 */
 		public void removeInterface(NetworkInterface ni) {
 			this.interfaces.remove(ni);
+			this.locationsVersion = -1;
 		}
 
 		/**
@@ -345,10 +379,34 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 		public void moveInterface(NetworkInterface ni, GridCell to) {
 			to.addInterface(ni);
 			boolean removeOk = this.interfaces.remove(ni); //ArrayList<NetworkInterface> interfaces;
+			this.locationsVersion = -1;
 			assert removeOk : "interface " + ni + 
 				" not found from cell with " + interfaces.toString();
 		}
 
+		/**
+		 * Returns the locations of the interfaces in this cell in the same
+		 * order as {@link #getInterfaces()}. The locations are copied
+		 * again only after some host has moved (see
+		 * {@link DTNHost#getLocationVersion()}).
+		 * @return the locations of the interfaces
+		 */
+		public DistanceKernel getLocations() {
+			long version = DTNHost.getLocationVersion();
+			if (this.locations == null) {
+				this.locations = new DistanceKernel();
+			}
+			if (this.locationsVersion != version) {
+				this.locations.clear();
+				for (NetworkInterface ni : this.interfaces) {
+					Coord c = ni.getLocation();
+					this.locations.add(c.getX(), c.getY(), c.getZ());
+				}
+				this.locationsVersion = version;
+			}
+			return this.locations;
+		}
+
 		/**
 		 * Returns a string representation of the cell
 		 * @return a string representation of the cell
@@ -359,7 +417,7 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 		}
 	}
 	/**
-	 * ڷִ·ɵ
+	 * 用于分簇路由的
 	 * @param ni
 	 * @param clusterHosts
 	 * @return
@@ -368,28 +426,34 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 			NetworkInterface ni, List<DTNHost> clusterHosts, List<DTNHost> hostsOfGEO) {
 		
 		ArrayList<NetworkInterface> niList = new ArrayList<NetworkInterface>();
-		GridCell loc = (GridCell)ginterfaces.get(ni);//ginterfacesHashMap<NetworkInterface, GridCell>ӳ
+		GridCell loc = (GridCell)ginterfaces.get(ni);//ginterfaces是HashMap<NetworkInterface, GridCell>映射
 		/**
-		 * дж䣬ڵȦҲҪͨŰ뾶ڲھ
+		 * 下面改写，加了判断语句，即便是相邻的圈内也要在通信半径内才算邻居
 		 */
-		Coord c = ni.getLocation();//ڵ㵱ǰλ
+		Coord c = ni.getLocation();//节点当前的位置坐标
 		
 		if (loc != null) {	
 			GridCell[] neighbors = 
-				getNeighborCellsByCoord(c);//õ뱾ڵΪھӵ9*9*9飬μЩڵ
+				getNeighborCellsByCoord(c);//得到可能与本节点成为邻居的9*9*9个相邻网格数组，依次检查这些数组内的
 			
 			List<NetworkInterface> potentialNeighbors = 
-					new ArrayList<NetworkInterface>(neighbors.length);//ǱھӶ󣬼9ڵǽڵ
+					new ArrayList<NetworkInterface>(neighbors.length);//潜在邻居对象，即相邻9个网格内的卫星节点
 			for (int i=0; i < neighbors.length; i++) {
-				for (NetworkInterface interf : neighbors[i].getInterfaces()){//ڽڵӿڣμǲھ뷶Χ֮									
-					if (ni.getHost().getNeighbors().JudgeNeighbors(interf.getHost().getLocation(), c))//жǷΪھ
-						if (clusterHosts.contains(interf.getHost()) || hostsOfGEO.contains(interf.getHost()))//ǷΪ֮ڵĽڵGEOڵ
-							niList.add(interf);//ȷھӽڵб
+				List<NetworkInterface> interfaces = neighbors[i].getInterfaces();//相邻网格内节点的网络接口，依次检查是不是在距离范围之内
+				if (interfaces.isEmpty())
+					continue;
+				DistanceKernel locations = neighbors[i].getLocations();
+				ni.getHost().getNeighbors().JudgeNeighbors(c, locations);//判断是否为邻居
+				for (int j = 0; j < interfaces.size(); j++) {
+					NetworkInterface interf = interfaces.get(j);
+					if (locations.isInRange(j))
+						if (clusterHosts.contains(interf.getHost()) || hostsOfGEO.contains(interf.getHost()))//且是否为本簇之内的节点或是GEO节点
+							niList.add(interf);//确认是邻居节点的列表
 					else
-						potentialNeighbors.add(interf);//ǱھӶ󣨵ھӶ󣩣9ڵǽڵ㣬Ԥ
+						potentialNeighbors.add(interf);//添加潜在邻居对象（但还不是邻居对象），即相邻9个网格内的卫星节点，做预测用
 				}
 			}
-			ni.getHost().getNeighbors().changePotentialNeighbors(potentialNeighbors);//¼ҪԤĽڵ
+			ni.getHost().getNeighbors().changePotentialNeighbors(potentialNeighbors);//放入记录的需要预测的节点
 		}
 		
 		return niList;
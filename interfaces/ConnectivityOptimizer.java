@@ -4,6 +4,7 @@
  */
 package interfaces;
 
+import java.io.Serializable;
 import java.util.Collection;
 
 import core.NetworkInterface;
@@ -12,7 +13,8 @@ import core.NetworkInterface;
  * A superclass for schemes for optimizing the location of possible contacts
  * with network interfaces of a specific range
  */
-abstract public class ConnectivityOptimizer {
+abstract public class ConnectivityOptimizer implements Serializable {
+	private static final long serialVersionUID = 42L;
 
 	/**
 	 * Adds a network interface to the optimizer (unless it is already present)
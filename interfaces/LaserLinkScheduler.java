@@ -0,0 +1,442 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package interfaces;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import util.KdTree;
+import util.LongHashMap;
+import core.Connection;
+import core.Coord;
+import core.DTNHost;
+import core.LineOfSight;
+import core.LinkRegistry;
+import core.NetworkInterface;
+import core.Settings;
+import core.SettingsError;
+import core.SimClock;
+import core.SimContext;
+import core.World;
+
+/**
+ * Assigns the laser terminals of the {@link SatelliteLaserInterface}s to
+ * links. Each interface has a limited number of terminals and a new link
+ * can carry traffic only after the terminals of both ends have pointed at
+ * each other and acquired the link (the acquisition time).
+ * <P>The assignment is done once per update interval for the terminals
+ * that are free: established links and links under acquisition are kept as
+ * long as the satellites stay within range. The candidate links of the
+ * free terminals (the nearest interfaces within range and line of sight)
+ * are weighted by their remaining contact time, predicted from the orbits,
+ * and assigned greedily, longest contact first. This is a greedy
+ * max-weight b-matching; because both ends of a link have the same
+ * weight for it, the result is also a stable matching.</P>
+ */
+public class LaserLinkScheduler implements Serializable {
+	private static final long serialVersionUID = 42L;
+	/**
+	 * Contact prediction horizon -setting id ({@value}). Double, namespace
+	 * {@link World#USERSETTINGNAME_S}. How far (seconds) the contacts are
+	 * predicted. Default is {@link #DEF_PREDICTION_HORIZON}.
+	 */
+	public static final String PREDICTION_HORIZON_S =
+		"laserPredictionHorizon";
+	/**
+	 * Contact prediction step -setting id ({@value}). Double, namespace
+	 * {@link World#USERSETTINGNAME_S}. Time step (seconds) of the contact
+	 * prediction. Default is {@link #DEF_PREDICTION_STEP}.
+	 */
+	public static final String PREDICTION_STEP_S = "laserPredictionStep";
+
+	/** default prediction horizon (one hour) */
+	public static final double DEF_PREDICTION_HORIZON = 3600;
+	/** default prediction step */
+	public static final double DEF_PREDICTION_STEP = 10;
+
+	/** number of candidate links looked up per terminal */
+	private static final int CANDIDATES_PER_TERMINAL = 4;
+
+	private List<SatelliteLaserInterface> interfaces;
+	/** number of pending acquisitions per interface index */
+	private int[] nrofAcquisitions;
+	/** interface index pair -> pending acquisition */
+	private LongHashMap<Acquisition> acquisitions;
+	/** pending acquisitions in start order */
+	private List<Acquisition> acquisitionList;
+	/** interface index pair -> predicted end of the current contact */
+	private LongHashMap<Contact> contacts;
+	/** contacts with a predicted end, in prediction order */
+	private List<Contact> contactList;
+	private LineOfSight lineOfSight;
+	private LinkRegistry linkRegistry;
+	private double lastUpdate;
+	private double predictionStep;
+	/** number of prediction steps in the horizon */
+	private int nrofPredictionSteps;
+	/** predicted locations per interface index and step, computed when
+	 * needed and valid for the current update */
+	private Coord[][] tracks;
+
+	private LaserLinkScheduler() {
+		Settings s = new Settings(World.USERSETTINGNAME_S);
+		double horizon = s.getDouble(PREDICTION_HORIZON_S,
+				DEF_PREDICTION_HORIZON);
+		this.predictionStep = s.getDouble(PREDICTION_STEP_S,
+				DEF_PREDICTION_STEP);
+		s.ensurePositiveValue(horizon, PREDICTION_HORIZON_S);
+		if (this.predictionStep <= 0) {
+			throw new SettingsError("Invalid value for " +
+					s.getFullPropertyName(PREDICTION_STEP_S) + ": " +
+					this.predictionStep);
+		}
+		this.nrofPredictionSteps = (int)(horizon / this.predictionStep);
+
+		this.interfaces = new ArrayList<SatelliteLaserInterface>();
+		this.nrofAcquisitions = new int[16];
+		this.acquisitions = new LongHashMap<Acquisition>();
+		this.acquisitionList = new ArrayList<Acquisition>();
+		this.contacts = new LongHashMap<Contact>();
+		this.contactList = new ArrayList<Contact>();
+		this.lineOfSight = LineOfSight.getInstance();
+		this.linkRegistry = LinkRegistry.getInstance();
+		this.lastUpdate = -1;
+	}
+
+	/**
+	 * Returns the scheduler of the current run
+	 * @return The scheduler
+	 */
+	public static LaserLinkScheduler getInstance() {
+		SimContext c = SimContext.getInstance();
+		LaserLinkScheduler scheduler =
+			(LaserLinkScheduler)c.getClassState(LaserLinkScheduler.class);
+		if (scheduler == null) {
+			scheduler = new LaserLinkScheduler();
+			c.setClassState(LaserLinkScheduler.class, scheduler);
+		}
+		return scheduler;
+	}
+
+	/**
+	 * Adds an interface whose terminals are assigned by this scheduler
+	 * @param ni The interface
+	 */
+	void addInterface(SatelliteLaserInterface ni) {
+		this.interfaces.add(ni);
+		if (this.interfaces.size() > this.nrofAcquisitions.length) {
+			this.nrofAcquisitions = Arrays.copyOf(this.nrofAcquisitions,
+					this.nrofAcquisitions.length * 2);
+		}
+		this.tracks = new Coord[this.interfaces.size()][];
+	}
+
+	/**
+	 * Updates the link assignment if it has not been updated yet at the
+	 * current simulation time. Called by the interfaces on every update.
+	 */
+	void update() {
+		double now = SimClock.getTime();
+		if (now == this.lastUpdate) {
+			return;
+		}
+		this.lastUpdate = now;
+		Arrays.fill(this.tracks, null);
+
+		endContacts(now);
+		finishAcquisitions(now);
+		assignFreeTerminals(now);
+	}
+
+	/**
+	 * Forgets the predicted ends of the contacts that have ended, either as
+	 * predicted or because the interfaces went out of range earlier. A
+	 * contact that forms again later gets a new prediction.
+	 */
+	private void endContacts(double now) {
+		int n = 0;
+		for (int i = 0, size = this.contactList.size(); i < size; i++) {
+			Contact c = this.contactList.get(i);
+			if (c.end > now && isLinkPossible(this.interfaces.get(c.from),
+					this.interfaces.get(c.to))) {
+				this.contactList.set(n++, c);
+			}
+			else {
+				this.contacts.remove(key(c.from, c.to));
+			}
+		}
+		this.contactList.subList(n, this.contactList.size()).clear();
+	}
+
+	/**
+	 * Connects the links whose acquisition is done and drops the ones whose
+	 * satellites went out of range during the acquisition
+	 */
+	private void finishAcquisitions(double now) {
+		for (Iterator<Acquisition> i = this.acquisitionList.iterator();
+				i.hasNext();) {
+			Acquisition a = i.next();
+			SatelliteLaserInterface from = this.interfaces.get(a.from);
+			SatelliteLaserInterface to = this.interfaces.get(a.to);
+			boolean ready = a.readyTime <= now;
+			if (!ready && isLinkPossible(from, to)) {
+				continue;
+			}
+
+			i.remove();
+			this.acquisitions.remove(key(a.from, a.to));
+			this.nrofAcquisitions[a.from]--;
+			this.nrofAcquisitions[a.to]--;
+			if (ready) {
+				from.connect(to); // checks the range again
+			}
+		}
+	}
+
+	/**
+	 * Assigns the free terminals to the candidate links with the longest
+	 * predicted contacts
+	 */
+	private void assignFreeTerminals(double now) {
+		int n = this.interfaces.size();
+		int[] free = new int[n];
+		List<Integer> withFree = new ArrayList<Integer>();
+		for (int i = 0; i < n; i++) {
+			free[i] = getNrofFreeTerminals(i);
+			if (free[i] > 0) {
+				withFree.add(i);
+			}
+		}
+		int m = withFree.size();
+		if (m < 2) {
+			return;
+		}
+
+		double[] x = new double[m];
+		double[] y = new double[m];
+		double[] z = new double[m];
+		for (int i = 0; i < m; i++) {
+			Coord c = this.interfaces.get(withFree.get(i)).getLocation();
+			x[i] = c.getX();
+			y[i] = c.getY();
+			z[i] = c.getZ();
+		}
+		KdTree tree = new KdTree(x, y, z);
+
+		List<LinkCandidate> candidates = new ArrayList<LinkCandidate>();
+		LongHashMap<LinkCandidate> found = new LongHashMap<LinkCandidate>();
+		for (int i = 0; i < m; i++) {
+			int from = withFree.get(i);
+			SatelliteLaserInterface ni = this.interfaces.get(from);
+			int[] near = tree.nearest(x[i], y[i], z[i],
+					CANDIDATES_PER_TERMINAL * ni.getNrofTerminals(),
+					ni.getTransmitRange(), i);
+			for (int j : near) {
+				int to = withFree.get(j);
+				long key = key(from, to);
+				if (found.get(key) != null || !isNewLinkPossible(from, to)) {
+					continue;
+				}
+				LinkCandidate c = new LinkCandidate(Math.min(from, to),
+						Math.max(from, to), getContactEnd(from, to, now));
+				found.put(key, c);
+				candidates.add(c);
+			}
+		}
+
+		Collections.sort(candidates);
+		for (LinkCandidate c : candidates) {
+			if (free[c.from] == 0 || free[c.to] == 0) {
+				continue;
+			}
+			free[c.from]--;
+			free[c.to]--;
+			SatelliteLaserInterface from = this.interfaces.get(c.from);
+			SatelliteLaserInterface to = this.interfaces.get(c.to);
+			double acquisitionTime = Math.max(from.getAcquisitionTime(),
+					to.getAcquisitionTime());
+			if (acquisitionTime <= 0) {
+				from.connect(to);
+			}
+			else {
+				Acquisition a = new Acquisition(c.from, c.to,
+						now + acquisitionTime);
+				this.acquisitions.put(key(c.from, c.to), a);
+				this.acquisitionList.add(a);
+				this.nrofAcquisitions[c.from]++;
+				this.nrofAcquisitions[c.to]++;
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of terminals of an interface that are not used by
+	 * a link within range or by an acquisition
+	 */
+	private int getNrofFreeTerminals(int index) {
+		SatelliteLaserInterface ni = this.interfaces.get(index);
+		if (!ni.isScanning()) {
+			return 0;
+		}
+		int used = this.nrofAcquisitions[index];
+		for (Connection con : ni.getConnections()) {
+			if (isLinkPossible(ni, con.getOtherInterface(ni))) {
+				used++;
+			}
+		}
+		return Math.max(0, ni.getNrofTerminals() - used);
+	}
+
+	/**
+	 * Returns true if two interfaces can start acquiring a new link
+	 */
+	private boolean isNewLinkPossible(int from, int to) {
+		SatelliteLaserInterface ni = this.interfaces.get(from);
+		SatelliteLaserInterface other = this.interfaces.get(to);
+		return ni.getInterfaceType().equals(other.getInterfaceType()) &&
+			this.acquisitions.get(key(from, to)) == null &&
+			this.linkRegistry.getConnection(ni.getHost().getAddress(),
+					other.getHost().getAddress()) == null &&
+			isLinkPossible(ni, other);
+	}
+
+	/**
+	 * Returns true if two interfaces are within range of each other, the
+	 * Earth doesn't block the line of sight and the other host is active
+	 */
+	private boolean isLinkPossible(SatelliteLaserInterface ni,
+			NetworkInterface other) {
+		if (!other.getHost().isRadioActive()) {
+			return false;
+		}
+		return isWithinRange(ni.getLocation(), other.getLocation(),
+				Math.min(ni.getTransmitRange(), other.getTransmitRange()));
+	}
+
+	private boolean isWithinRange(Coord c1, Coord c2, double range) {
+		return c1.distance2(c2) <= range * range && (this.lineOfSight == null ||
+				this.lineOfSight.isVisible(c1, c2));
+	}
+
+	/**
+	 * Returns the predicted end time of the contact between two interfaces
+	 * that are within range now. The prediction is kept until the contact
+	 * ends (see {@link #endContacts(double)}).
+	 */
+	private double getContactEnd(int from, int to, double now) {
+		long key = key(from, to);
+		Contact cached = this.contacts.get(key);
+		if (cached != null) {
+			return cached.end;
+		}
+
+		double range = Math.min(this.interfaces.get(from).getTransmitRange(),
+				this.interfaces.get(to).getTransmitRange());
+		int step = 1;
+		while (step <= this.nrofPredictionSteps &&
+				isWithinRange(getLocation(from, step, now),
+						getLocation(to, step, now), range)) {
+			step++;
+		}
+		Contact c = new Contact(from, to, now + step * this.predictionStep);
+		this.contacts.put(key, c);
+		this.contactList.add(c);
+		return c.end;
+	}
+
+	/**
+	 * Returns the predicted location of an interface after a number of
+	 * prediction steps. Hosts without an orbit (semi-major axis 0) are
+	 * assumed to stay where they are.
+	 */
+	private Coord getLocation(int index, int step, double now) {
+		DTNHost host = this.interfaces.get(index).getHost();
+		if (host.getParameters()[0] == 0) {
+			return host.getLocation();
+		}
+		if (this.tracks[index] == null) {
+			this.tracks[index] = new Coord[this.nrofPredictionSteps + 1];
+		}
+		Coord c = this.tracks[index][step];
+		if (c == null) {
+			c = host.getCoordinate(now + step * this.predictionStep);
+			this.tracks[index][step] = c;
+		}
+		return c;
+	}
+
+	/**
+	 * Returns the key of a link between two interfaces (the same in both
+	 * directions)
+	 */
+	private static long key(int index1, int index2) {
+		return ((long)Math.min(index1, index2) << 32) |
+			Math.max(index1, index2);
+	}
+
+	/**
+	 * A link whose terminals are pointing at each other
+	 */
+	private static class Acquisition implements Serializable {
+		private static final long serialVersionUID = 42L;
+		private final int from;
+		private final int to;
+		/** time when the link can be connected */
+		private final double readyTime;
+
+		private Acquisition(int from, int to, double readyTime) {
+			this.from = from;
+			this.to = to;
+			this.readyTime = readyTime;
+		}
+	}
+
+	/**
+	 * A contact between two interfaces and its predicted end
+	 */
+	private static class Contact implements Serializable {
+		private static final long serialVersionUID = 42L;
+		private final int from;
+		private final int to;
+		/** predicted end time of the contact */
+		private final double end;
+
+		private Contact(int from, int to, double end) {
+			this.from = from;
+			this.to = to;
+			this.end = end;
+		}
+	}
+
+	/**
+	 * A possible new link, ordered by the predicted end of the contact
+	 * (latest first) and then by the interface indexes
+	 */
+	private static class LinkCandidate implements Comparable<LinkCandidate> {
+		private final int from;
+		private final int to;
+		private final double contactEnd;
+
+		private LinkCandidate(int from, int to, double contactEnd) {
+			this.from = from;
+			this.to = to;
+			this.contactEnd = contactEnd;
+		}
+
+		public int compareTo(LinkCandidate other) {
+			if (this.contactEnd != other.contactEnd) {
+				return this.contactEnd > other.contactEnd ? -1 : 1;
+			}
+			if (this.from != other.from) {
+				return this.from - other.from;
+			}
+			return this.to - other.to;
+		}
+	}
+}
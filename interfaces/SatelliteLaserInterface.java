@@ -5,9 +5,11 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 
+import core.AdaptiveRateConnection;
 import core.CBRConnection;
 import core.Connection;
 import core.DTNHost;
+import core.LinkRateModel;
 import core.Neighbors;
 import core.NetworkInterface;
 import core.Settings;
@@ -15,17 +17,43 @@ import core.SimClock;
 
 /**
  * A simple Network Interface that provides a constant bit-rate service, where
- * one transmission can be on at a time.
+ * one transmission can be on at a time. With the {@link #NROF_TERMINALS_S}
+ * setting the interface has a limited number of laser terminals, which are
+ * assigned to links by the {@link LaserLinkScheduler}; otherwise the
+ * interface connects to all interfaces within range.
  */
 public class SatelliteLaserInterface  extends NetworkInterface {
-
-	
+	private static final long serialVersionUID = 42L;
+	/**
+	 * Number of laser terminals -setting id ({@value}). Integer. Maximum
+	 * number of links of the interface. Default is 0 (no limit and no link
+	 * scheduling).
+	 */
+	public static final String NROF_TERMINALS_S = "nrofTerminals";
+	/**
+	 * Acquisition time -setting id ({@value}). Double. Time (seconds) that
+	 * the terminals of a new link need for pointing and acquisition before
+	 * the link is up. Default is 0.
+	 */
+	public static final String ACQUISITION_TIME_S = "acquisitionTime";
+	private int nrofTerminals;
+	private double acquisitionTime;
+	/** the scheduler of the terminals or null if the links are not
+	 * scheduled */
+	private LaserLinkScheduler scheduler;
+	/** the link rate model or null if the links have a constant rate */
+	private LinkRateModel rateModel;
 
 	/**
 	 * Reads the interface settings from the Settings file
 	 */
 	public SatelliteLaserInterface(Settings s)	{
 		super(s);
+		this.nrofTerminals = s.getInt(NROF_TERMINALS_S, 0);
+		this.acquisitionTime = s.getDouble(ACQUISITION_TIME_S, 0);
+		ensurePositiveValue(this.nrofTerminals, NROF_TERMINALS_S);
+		ensurePositiveValue(this.acquisitionTime, ACQUISITION_TIME_S);
+		this.rateModel = LinkRateModel.getInstance();
 	}
 		
 	/**
@@ -34,12 +62,29 @@ public class SatelliteLaserInterface  extends NetworkInterface {
 	 */
 	public SatelliteLaserInterface(SatelliteLaserInterface ni) {
 		super(ni);
+		this.nrofTerminals = ni.nrofTerminals;
+		this.acquisitionTime = ni.acquisitionTime;
+		this.rateModel = ni.rateModel;
 	}
 
 	public NetworkInterface replicate()	{
 		return new SatelliteLaserInterface(this);
 	}
 
+	/**
+	 * Sets the host of the interface and, if the number of terminals is
+	 * limited, adds the interface to the link scheduler
+	 * @param host The host where the network interface is
+	 */
+	@Override
+	public void setHost(DTNHost host) {
+		super.setHost(host);
+		if (this.nrofTerminals > 0 && this.scheduler == null) {
+			this.scheduler = LaserLinkScheduler.getInstance();
+			this.scheduler.addInterface(this);
+		}
+	}
+
 	/**
 	 * Tries to connect this host to another host. The other host must be
 	 * active and within range of this host for the connection to succeed. 
@@ -53,14 +98,13 @@ public class SatelliteLaserInterface  extends NetworkInterface {
 				&& (this != anotherInterface)) {
 			// new contact within range
 			// connection speed is the lower one of the two speeds 
-			int conSpeed = anotherInterface.getTransmitSpeed();//˵ɽСһ
+			int conSpeed = anotherInterface.getTransmitSpeed();//连接两端的连接速率由较小的一个决定
 			if (conSpeed > this.transmitSpeed) {
 				conSpeed = this.transmitSpeed; 
 			}
 
-			Connection con = new CBRConnection(this.host, this, 
-					anotherInterface.getHost(), anotherInterface, conSpeed);
-			connect(con,anotherInterface);//˫hostڵ㣬ɵconб
+			Connection con = createConnection(anotherInterface, conSpeed);
+			connect(con,anotherInterface);//会访问连接双方的host节点，把这个新生成的连接con加入连接列表中
 		}
 	}
 
@@ -85,17 +129,22 @@ public class SatelliteLaserInterface  extends NetworkInterface {
 			// all connections should be up at this stage
 			assert con.isUp() : "Connection " + con + " was down!";
 
-			if (!isWithinRange(anotherInterface)) {//½ڵλú󣬼֮ǰάǷΪ̫Զϵ
+			if (!isWithinRange(anotherInterface)) {//更新节点位置后，检查之前维护的连接是否会因为太远而断掉
 				disconnect(con,anotherInterface);
 				connections.remove(i);
 				
-				//neighbors.removeNeighbor(con.getOtherNode(this.getHost()));//ڶϵӵͬʱƳھбھӽڵ㣬
+				//neighbors.removeNeighbor(con.getOtherNode(this.getHost()));//在断掉连接的同时移除在邻居列表里的邻居节点，新增！！！
 			}
 			else {
 				i++;
 			}
 		}
 
+		if (this.scheduler != null) {
+			this.scheduler.update(); // the scheduler creates the new links
+			return;
+		}
+
 		// Then find new possible connections
 		Collection<NetworkInterface> interfaces =
 			optimizer.getNearInterfaces(this);
@@ -105,9 +154,9 @@ public class SatelliteLaserInterface  extends NetworkInterface {
 		}
 		
 		//System.out.println(this.getHost()+"  interface  "+SimClock.getTime()+" this time  "+this.connections);
-		//this.getHost().getNeighbors().updateNeighbors(this.getHost(), this.connections);//ھӽڵݿ
+		//this.getHost().getNeighbors().updateNeighbors(this.getHost(), this.connections);//更新邻居节点数据库
 		
-		/*Դ룬֤neighborsconnectionsһ*/
+		/*测试代码，保证neighbors和connections的一致性*/
 	/*	List<DTNHost> conNeighbors = new ArrayList<DTNHost>();
 		for (Connection con : this.connections){
 			conNeighbors.add(con.getOtherNode(this.getHost()));
@@ -116,7 +165,7 @@ public class SatelliteLaserInterface  extends NetworkInterface {
 			assert conNeighbors.contains(host) : "connections is no the same as neighbors";
 		}
 		
-		/*Դ룬֤neighborsconnectionsһ*/
+		/*测试代码，保证neighbors和connections的一致性*/
 	}
 
 	
@@ -133,12 +182,46 @@ public class SatelliteLaserInterface  extends NetworkInterface {
 				conSpeed = this.transmitSpeed; 
 			}
 
-			Connection con = new CBRConnection(this.host, this, 
-					anotherInterface.getHost(), anotherInterface, conSpeed);
+			Connection con = createConnection(anotherInterface, conSpeed);
 			connect(con,anotherInterface);
 		}
 	}
 
+	/**
+	 * Creates a constant rate link to another interface, or a link whose
+	 * rate depends on the distance if the link rate model is in use
+	 * @param anotherInterface The interface in the other end
+	 * @param conSpeed Speed of the link (with the best modulation and
+	 * coding if the rate depends on the distance)
+	 * @return The new connection
+	 */
+	private Connection createConnection(NetworkInterface anotherInterface,
+			int conSpeed) {
+		if (this.rateModel != null) {
+			return new AdaptiveRateConnection(this.host, this,
+					anotherInterface.getHost(), anotherInterface, conSpeed,
+					this.rateModel);
+		}
+		return new CBRConnection(this.host, this,
+				anotherInterface.getHost(), anotherInterface, conSpeed);
+	}
+
+	/**
+	 * Returns the number of laser terminals
+	 * @return The number of terminals or 0 if it is not limited
+	 */
+	public int getNrofTerminals() {
+		return this.nrofTerminals;
+	}
+
+	/**
+	 * Returns the pointing and acquisition time of a new link
+	 * @return The acquisition time (seconds)
+	 */
+	public double getAcquisitionTime() {
+		return this.acquisitionTime;
+	}
+
 	/**
 	 * Returns a string representation of the object.
 	 * @return a string representation of the object.
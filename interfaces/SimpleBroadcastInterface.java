@@ -16,6 +16,7 @@ import core.Settings;
  * one transmission can be on at a time.
  */
 public class SimpleBroadcastInterface extends NetworkInterface {
+	private static final long serialVersionUID = 42L;
 	
 	/**
 	 * Reads the interface settings from the Settings file
@@ -5,33 +5,73 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 
+import core.AdaptiveRateConnection;
 import core.CBRConnection;
 import core.Connection;
 import core.DTNHost;
+import core.LinkRateModel;
 import core.Neighbors;
 import core.NetworkInterface;
+import core.SatelliteLinkConnection;
 import core.Settings;
+import core.SimConfig;
 import core.SimClock;
 
 /**
  * A simple Network Interface that provides a constant bit-rate service, where
- * one transmission can be on at a time.
+ * one transmission can be on at a time. With the {@link #LINK_WINDOW_S}
+ * setting the links model the propagation delay and carry several messages
+ * at a time.
  */
 public class SimpleSatelliteInterface  extends NetworkInterface {
+	private static final long serialVersionUID = 42L;
 	
-	//
+	//新增
 	/** router mode in the sim -setting id ({@value})*/
 	public static final String USERSETTINGNAME_S = "userSetting";
 	/** router mode in the sim -setting id ({@value})*/
 	public static final String ROUTERMODENAME_S = "routerMode";
 	public static final String DIJSKTRA_S = "dijsktra";
 	public static final String SIMPLECONNECTIVITY_S = "simpleConnectivity";
+	/**
+	 * Link window -setting id ({@value}). Integer. Maximum number of messages
+	 * in flight per direction on a link. If defined (and at least 1), the
+	 * links are {@link SatelliteLinkConnection}s that model the propagation
+	 * delay and pipeline the messages; otherwise the links are
+	 * {@link CBRConnection}s that transfer one message at a time.
+	 */
+	public static final String LINK_WINDOW_S = "linkWindow";
+	/**
+	 * Meters per simulation distance unit -setting id ({@value}). Double.
+	 * Used for the propagation delay of the pipelined links. Default is
+	 * {@link #DEF_METERS_PER_UNIT}.
+	 */
+	public static final String METERS_PER_UNIT_S = "metersPerUnit";
+	/** default meters per distance unit (the orbit coordinates in
+	 * kilometers are scaled by 1/10) */
+	public static final double DEF_METERS_PER_UNIT = 10000;
 
 	/**
 	 * Reads the interface settings from the Settings file
 	 */
+	/** router mode (see {@link SimConfig#getRouterMode()}) */
+	private int routerMode;
+	/** messages in flight per direction, or 0 for one at a time */
+	private int linkWindow;
+	private double metersPerUnit;
+	/** the link rate model or null if the links have a constant rate */
+	private LinkRateModel rateModel;
+
 	public SimpleSatelliteInterface(Settings s)	{
 		super(s);
+		this.routerMode = SimConfig.getInstance().getRouterMode();
+		this.linkWindow = s.getInt(LINK_WINDOW_S, 0);
+		this.metersPerUnit = s.getDouble(METERS_PER_UNIT_S,
+				DEF_METERS_PER_UNIT);
+		if (this.linkWindow > 0) {
+			s.ensurePositiveValue(this.metersPerUnit, METERS_PER_UNIT_S);
+		}
+		this.rateModel = LinkRateModel.getInstance();
 	}
 		
 	/**
@@ -40,6 +80,10 @@ public class SimpleSatelliteInterface  extends NetworkInterface {
 	 */
 	public SimpleSatelliteInterface(SimpleSatelliteInterface ni) {
 		super(ni);
+		this.routerMode = ni.routerMode;
+		this.linkWindow = ni.linkWindow;
+		this.metersPerUnit = ni.metersPerUnit;
+		this.rateModel = ni.rateModel;
 	}
 
 	public NetworkInterface replicate()	{
@@ -59,18 +103,17 @@ public class SimpleSatelliteInterface  extends NetworkInterface {
 				&& (this != anotherInterface)) {
 			// new contact within range
 			// connection speed is the lower one of the two speeds 
-			int conSpeed = anotherInterface.getTransmitSpeed();//˵ɽСһ
+			int conSpeed = anotherInterface.getTransmitSpeed();//连接两端的连接速率由较小的一个决定
 			if (conSpeed > this.transmitSpeed) {
 				conSpeed = this.transmitSpeed; 
 			}
 
-			Connection con = new CBRConnection(this.host, this, 
-					anotherInterface.getHost(), anotherInterface, conSpeed);
-			connect(con,anotherInterface);//˫hostڵ㣬ɵconб
+			Connection con = createConnection(anotherInterface, conSpeed);
+			connect(con,anotherInterface);//会访问连接双方的host节点，把这个新生成的连接con加入连接列表中
 		}
 	}
 
-	/**/
+	/*新增函数*/
 	public ConnectivityOptimizer predictionUpdate(){
 		if (optimizer == null) {
 			return null; /* nothing to do */
@@ -79,7 +122,7 @@ public class SimpleSatelliteInterface  extends NetworkInterface {
 		return optimizer;
 		
 	}
-	/**/
+	/*新增函数*/
 	/**
 	 * Updates the state of current connections (i.e. tears down connections
 	 * that are out of range and creates new ones).
@@ -99,22 +142,20 @@ public class SimpleSatelliteInterface  extends NetworkInterface {
 			// all connections should be up at this stage
 			assert con.isUp() : "Connection " + con + " was down!";
 
-			if (!isWithinRange(anotherInterface)) {//½ڵλú󣬼֮ǰάǷΪ̫Զϵ
+			if (!isWithinRange(anotherInterface)) {//更新节点位置后，检查之前维护的连接是否会因为太远而断掉
 				disconnect(con,anotherInterface);
 				connections.remove(i);
 				
-				//neighbors.removeNeighbor(con.getOtherNode(this.getHost()));//ڶϵӵͬʱƳھбھӽڵ㣬
+				//neighbors.removeNeighbor(con.getOtherNode(this.getHost()));//在断掉连接的同时移除在邻居列表里的邻居节点，新增！！！
 			}
 			else {
 				i++;
 			}
 		}
-		Settings s = new Settings(USERSETTINGNAME_S);
-		int mode = s.getInt(ROUTERMODENAME_S);//ļжȡ·ģʽ
-		switch(mode){
+		switch(this.routerMode){
 		case 1:
 			// Then find new possible connections
-			Collection<NetworkInterface> interfaces =//optimizer.getNearInterfaces(this)ȡھӽڵˣӵĽȫworldjavaн
+			Collection<NetworkInterface> interfaces =//无需调用optimizer.getNearInterfaces(this)来获取邻居节点了，现在连接的建立全部放在world。java当中进行
 				optimizer.getNearInterfaces(this);
 			for (NetworkInterface i : interfaces) {
 				connect(i);
@@ -123,8 +164,8 @@ public class SimpleSatelliteInterface  extends NetworkInterface {
 			break;
 		case 2 :
 			break;
-		/*case 3://ִģʽ
-			Collection<NetworkInterface> interfaces_ =//optimizer.getNearInterfaces(this)ȡھӽڵˣӵĽȫworldjavaн
+		/*case 3://分簇模式
+			Collection<NetworkInterface> interfaces_ =//无需调用optimizer.getNearInterfaces(this)来获取邻居节点了，现在连接的建立全部放在world。java当中进行
 				optimizer.getNearInterfaces(this, clusterHosts, hostsOfGEO);
 			for (NetworkInterface i : interfaces_) {
 				connect(i);
@@ -133,7 +174,7 @@ public class SimpleSatelliteInterface  extends NetworkInterface {
 		}
 
 		//System.out.println(this.getHost()+"  interface  "+SimClock.getTime()+" this time  "+this.connections);
-		//this.getHost().getNeighbors().updateNeighbors(this.getHost(), this.connections);//ھӽڵݿ
+		//this.getHost().getNeighbors().updateNeighbors(this.getHost(), this.connections);//更新邻居节点数据库
 		
 	}
 
@@ -151,12 +192,60 @@ public class SimpleSatelliteInterface  extends NetworkInterface {
 				conSpeed = this.transmitSpeed; 
 			}
 
-			Connection con = new CBRConnection(this.host, this, 
-					anotherInterface.getHost(), anotherInterface, conSpeed);
+			Connection con = createConnection(anotherInterface, conSpeed);
 			connect(con,anotherInterface);
 		}
 	}
 
+	/**
+	 * Creates a link of the configured type to another interface. With the
+	 * link rate model the rate of the link depends on the distance and
+	 * conSpeed is the rate with the best modulation and coding. An earlier
+	 * link between the same hosts that has gone down is reused if possible.
+	 * @param anotherInterface The interface in the other end
+	 * @param conSpeed Speed of the link
+	 * @return The new connection
+	 */
+	private Connection createConnection(NetworkInterface anotherInterface,
+			int conSpeed) {
+		DTNHost anotherHost = anotherInterface.getHost();
+		int from = this.host.getAddress();
+		int to = anotherHost.getAddress();
+		if (this.linkWindow > 0) {
+			SatelliteLinkConnection con = this.linkRegistry.reuse(from, to,
+					SatelliteLinkConnection.class);
+			if (con != null) {
+				con.reset(this.host, this, anotherHost, anotherInterface,
+						conSpeed);
+				return con;
+			}
+			return new SatelliteLinkConnection(this.host, this,
+					anotherHost, anotherInterface, conSpeed,
+					this.linkWindow, this.metersPerUnit);
+		}
+		if (this.rateModel != null) {
+			AdaptiveRateConnection con = this.linkRegistry.reuse(from, to,
+					AdaptiveRateConnection.class);
+			if (con != null) {
+				con.reset(this.host, this, anotherHost, anotherInterface,
+						conSpeed);
+				return con;
+			}
+			return new AdaptiveRateConnection(this.host, this,
+					anotherHost, anotherInterface, conSpeed, this.rateModel);
+		}
+
+		CBRConnection con = this.linkRegistry.reuse(from, to,
+				CBRConnection.class);
+		if (con != null) {
+			con.reset(this.host, this, anotherHost, anotherInterface,
+					conSpeed);
+			return con;
+		}
+		return new CBRConnection(this.host, this,
+				anotherHost, anotherInterface, conSpeed);
+	}
+
 	/**
 	 * Returns a string representation of the object.
 	 * @return a string representation of the object.
@@ -0,0 +1,400 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package interfaces;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+
+import core.Coord;
+import core.DTNHost;
+import core.NetworkInterface;
+import core.Settings;
+import core.SimContext;
+import core.World;
+import util.DistanceKernel;
+
+/**
+ * <P>Connectivity optimizer for satellites that move on spherical shells
+ * around the Earth. Instead of a Cartesian grid over the whole world, the
+ * interfaces are binned by their altitude shell and by an equal-area
+ * latitude/longitude cell of that shell.</P>
+ *
+ * <P>The shells are as thick as the largest radio range, so the interfaces
+ * that can be in range are in the same or the adjacent shells. Every shell
+ * is divided into latitude bands of equal height along the polar axis and
+ * every band into the same number of longitude sectors, which makes all
+ * the cells of the shell equal in area. The cell size of a shell is the
+ * angle the radio range covers at the inner surface of the shell. The
+ * candidate cells of an interface at distance r from the center are the
+ * cells within the angular radius asin(range/r), which bounds the angle
+ * between any two points at most the range apart. Only the cells that
+ * contain interfaces are stored, so the memory use doesn't depend on the
+ * world size.</P>
+ */
+public class SphericalConnectivityGrid extends ConnectivityOptimizer {
+	private static final long serialVersionUID = 42L;
+	/**
+	 * Should the interfaces use the spherical grid instead of
+	 * {@link ConnectivityGrid} -setting id ({@value}). Boolean. Used in
+	 * {@link World#OPTIMIZATION_SETTINGS_NS} name space. Default is false.
+	 */
+	public static final String SPHERICAL_GRID_S = "sphericalGrid";
+	/**
+	 * Center of the Earth in the simulation coordinates -setting id
+	 * ({@value}). Three comma separated values. Used in
+	 * {@link World#OPTIMIZATION_SETTINGS_NS} name space. Default is
+	 * {@link #DEF_SPHERE_CENTER} (the origin of the orbit coordinates after
+	 * the scaling in {@link Coord#my_Test(double, double, double[])}).
+	 */
+	public static final String SPHERE_CENTER_S = "sphereCenter";
+	/** default center of the Earth */
+	public static final double[] DEF_SPHERE_CENTER = {2000, 2000, 2000};
+
+	/** bits of the longitude and the latitude band indexes in cell keys */
+	private static final int INDEX_BITS = 21;
+
+	private HashMap<Long, SphereCell> cells;
+	private HashMap<NetworkInterface, SphereCell> ginterfaces;
+	/** thickness of the altitude shells */
+	private double shellSize;
+	private double centerX;
+	private double centerY;
+	private double centerZ;
+
+	/**
+	 * Discards the grid objects of the current run
+	 */
+	public static void reset() {
+		SimContext.getInstance().setClassState(SphericalConnectivityGrid.class,
+				new HashMap<Integer, SphericalConnectivityGrid>());
+	}
+
+	/**
+	 * Returns the grid objects of the current run
+	 * @return interface type hash -> grid object
+	 */
+	@SuppressWarnings("unchecked")
+	private static HashMap<Integer, SphericalConnectivityGrid>
+			getGridObjects() {
+		SimContext c = SimContext.getInstance();
+		if (c.getClassState(SphericalConnectivityGrid.class) == null) {
+			reset();
+		}
+		return (HashMap<Integer, SphericalConnectivityGrid>)c.getClassState(
+				SphericalConnectivityGrid.class);
+	}
+
+	/**
+	 * Returns true if the spherical grid should be used instead of the
+	 * Cartesian connectivity grid
+	 * @return The value of the {@link #SPHERICAL_GRID_S} setting
+	 */
+	public static boolean isEnabled() {
+		Settings s = new Settings(World.OPTIMIZATION_SETTINGS_NS);
+		return s.getBoolean(SPHERICAL_GRID_S, false);
+	}
+
+	/**
+	 * Creates a new spherical grid
+	 * @param shellSize Thickness of the altitude shells (must be at least
+	 * the largest radio range)
+	 */
+	private SphericalConnectivityGrid(double shellSize) {
+		Settings s = new Settings(World.OPTIMIZATION_SETTINGS_NS);
+		double[] center = DEF_SPHERE_CENTER;
+		if (s.contains(SPHERE_CENTER_S)) {
+			center = s.getCsvDoubles(SPHERE_CENTER_S, 3);
+		}
+		this.centerX = center[0];
+		this.centerY = center[1];
+		this.centerZ = center[2];
+		this.shellSize = shellSize;
+		this.cells = new HashMap<Long, SphereCell>();
+		this.ginterfaces = new HashMap<NetworkInterface, SphereCell>();
+	}
+
+	/**
+	 * Returns a spherical grid object based on a hash value
+	 * @param key A hash value that separates different interfaces from each
+	 * other
+	 * @param maxRange Maximum range used by the radio technology using this
+	 * grid
+	 * @return The grid object for a specific interface
+	 */
+	public static SphericalConnectivityGrid SphericalConnectivityGridFactory(
+			int key, double maxRange) {
+		HashMap<Integer, SphericalConnectivityGrid> gridobjects =
+			getGridObjects();
+		SphericalConnectivityGrid grid = gridobjects.get(key);
+		if (grid == null) {
+			grid = new SphericalConnectivityGrid(maxRange);
+			gridobjects.put(key, grid);
+		}
+		return grid;
+	}
+
+	/**
+	 * Adds a network interface to the grid
+	 * @param ni The new network interface
+	 */
+	public void addInterface(NetworkInterface ni) {
+		if (ginterfaces.containsKey(ni)) {
+			return;
+		}
+		SphereCell c = cellFromCoord(ni.getLocation());
+		c.interfaces.add(ni);
+		c.locationsVersion = -1;
+		ginterfaces.put(ni, c);
+	}
+
+	/**
+	 * Adds interfaces to the grid
+	 * @param interfaces Collection of interfaces to add
+	 */
+	public void addInterfaces(Collection<NetworkInterface> interfaces) {
+		for (NetworkInterface n : interfaces) {
+			addInterface(n);
+		}
+	}
+
+	/**
+	 * Checks and updates (if necessary) interface's cell
+	 * @param ni The interface to update
+	 */
+	public void updateLocation(NetworkInterface ni) {
+		SphereCell oldCell = ginterfaces.get(ni);
+		long key = getKey(ni.getLocation());
+		if (oldCell != null && oldCell.key == key) {
+			return;
+		}
+		if (oldCell != null) {
+			oldCell.interfaces.remove(ni);
+			oldCell.locationsVersion = -1;
+			if (oldCell.interfaces.isEmpty()) {
+				cells.remove(oldCell.key);
+			}
+		}
+		SphereCell newCell = getCell(key);
+		newCell.interfaces.add(ni);
+		newCell.locationsVersion = -1;
+		ginterfaces.put(ni, newCell);
+	}
+
+	/**
+	 * Returns all interfaces that use the same technology and channel
+	 */
+	public Collection<NetworkInterface> getAllInterfaces() {
+		return ginterfaces.keySet();
+	}
+
+	/**
+	 * Returns all interfaces that are in range of the given interface and
+	 * use the same technology and channel. The other interfaces of the
+	 * candidate cells are given to the host's neighbor database as the
+	 * potential neighbors, like {@link ConnectivityGrid} does.
+	 * @param ni The interface whose neighboring interfaces are returned
+	 * @return List of near interfaces
+	 */
+	public Collection<NetworkInterface> getNearInterfaces(
+			NetworkInterface ni) {
+		ArrayList<NetworkInterface> niList = new ArrayList<NetworkInterface>();
+		if (!ginterfaces.containsKey(ni)) {
+			return niList;
+		}
+
+		Coord c = ni.getLocation();
+		List<NetworkInterface> potentialNeighbors =
+			new ArrayList<NetworkInterface>();
+		for (SphereCell cell : getCandidateCells(c)) {
+			DistanceKernel locations = cell.getLocations();
+			ni.getHost().getNeighbors().JudgeNeighbors(c, locations);
+			for (int i = 0, n = cell.interfaces.size(); i < n; i++) {
+				if (locations.isInRange(i)) {
+					niList.add(cell.interfaces.get(i));
+				}
+				else {
+					potentialNeighbors.add(cell.interfaces.get(i));
+				}
+			}
+		}
+		ni.getHost().getNeighbors().changePotentialNeighbors(
+				potentialNeighbors);
+
+		return niList;
+	}
+
+	/**
+	 * Returns the (non-empty) cells whose interfaces may be in range of the
+	 * given location
+	 * @param c The location
+	 * @return The candidate cells
+	 */
+	private List<SphereCell> getCandidateCells(Coord c) {
+		List<SphereCell> candidates = new ArrayList<SphereCell>();
+		double x = c.getX() - centerX;
+		double y = c.getY() - centerY;
+		double z = c.getZ() - centerZ;
+		double r = Math.sqrt(x*x + y*y + z*z);
+		int shell = getShell(r);
+
+		/* angular radius of the range as seen from the center */
+		double radius = r > shellSize ? Math.asin(shellSize / r) : Math.PI;
+		double lat = r > 0 ? Math.asin(z / r) : 0;
+		double lon = Math.atan2(y, x);
+
+		for (int s = Math.max(0, shell - 1); s <= shell + 1; s++) {
+			int nrofBands = getNrofBands(s);
+			double bandHeight = 2.0 / nrofBands;
+			int firstBand = getBand(Math.sin(Math.max(-Math.PI / 2,
+					lat - radius)), nrofBands, bandHeight);
+			int lastBand = getBand(Math.sin(Math.min(Math.PI / 2,
+					lat + radius)), nrofBands, bandHeight);
+
+			int nrofSectors = 2 * nrofBands; // sectors per band
+			double sectorWidth = 2 * Math.PI / nrofSectors;
+			int firstSector = 0;
+			int nrofCandidateSectors = nrofSectors;
+			if (Math.abs(lat) + radius < Math.PI / 2) {
+				/* longitude half-width of the spherical cap */
+				double dLon = Math.asin(Math.sin(radius) / Math.cos(lat));
+				firstSector = (int)Math.floor((lon - dLon + Math.PI) /
+						sectorWidth);
+				int lastSector = (int)Math.floor((lon + dLon + Math.PI) /
+						sectorWidth);
+				nrofCandidateSectors = Math.min(nrofSectors,
+						lastSector - firstSector + 1);
+			}
+
+			for (int band = firstBand; band <= lastBand; band++) {
+				for (int i = 0; i < nrofCandidateSectors; i++) {
+					int sector = Math.floorMod(firstSector + i, nrofSectors);
+					SphereCell cell = cells.get(toKey(s, band, sector));
+					if (cell != null) {
+						candidates.add(cell);
+					}
+				}
+			}
+		}
+		return candidates;
+	}
+
+	/**
+	 * Returns the cell of a location, creating it if needed
+	 * @param c The location
+	 * @return The cell
+	 */
+	private SphereCell cellFromCoord(Coord c) {
+		return getCell(getKey(c));
+	}
+
+	private SphereCell getCell(long key) {
+		SphereCell cell = cells.get(key);
+		if (cell == null) {
+			cell = new SphereCell(key);
+			cells.put(key, cell);
+		}
+		return cell;
+	}
+
+	/**
+	 * Returns the key of the cell a location belongs to
+	 * @param c The location
+	 * @return The key of the cell
+	 */
+	private long getKey(Coord c) {
+		double x = c.getX() - centerX;
+		double y = c.getY() - centerY;
+		double z = c.getZ() - centerZ;
+		double r = Math.sqrt(x*x + y*y + z*z);
+		int shell = getShell(r);
+		int nrofBands = getNrofBands(shell);
+		int band = getBand(r > 0 ? z / r : 0, nrofBands, 2.0 / nrofBands);
+		int nrofSectors = 2 * nrofBands;
+		int sector = (int)Math.floor((Math.atan2(y, x) + Math.PI) /
+				(2 * Math.PI / nrofSectors));
+		return toKey(shell, band, Math.min(sector, nrofSectors - 1));
+	}
+
+	private int getShell(double r) {
+		return (int)(r / shellSize);
+	}
+
+	/**
+	 * Returns the number of latitude bands of a shell. Every band has twice
+	 * as many longitude sectors. At the equator the cells are about as high
+	 * as the angle the range covers at the inner surface of the shell.
+	 * @param shell Index of the shell
+	 * @return Number of bands
+	 */
+	private int getNrofBands(int shell) {
+		if (shell < 2) {
+			return 1;
+		}
+		double cellAngle = Math.asin(1.0 / shell);
+		return (int)Math.min(Math.floor(2.0 / cellAngle),
+				(1 << (INDEX_BITS - 1)) - 1);
+	}
+
+	private int getBand(double sinLat, int nrofBands, double bandHeight) {
+		int band = (int)Math.floor((sinLat + 1) / bandHeight);
+		return Math.max(0, Math.min(band, nrofBands - 1));
+	}
+
+	private static long toKey(int shell, int band, int sector) {
+		return ((long)shell << (2 * INDEX_BITS)) |
+			((long)band << INDEX_BITS) | sector;
+	}
+
+	/**
+	 * Returns a string representation of the grid
+	 * @return a string representation of the grid
+	 */
+	public String toString() {
+		return getClass().getSimpleName() + " with " + cells.size() +
+			" cells, shell size=" + this.shellSize;
+	}
+
+	/**
+	 * A single cell of the grid. Contains the interfaces that are currently
+	 * in that part of the shell.
+	 */
+	private static class SphereCell implements Serializable {
+		private static final long serialVersionUID = 42L;
+		private long key;
+		private ArrayList<NetworkInterface> interfaces;
+		/** locations of the interfaces (created when first needed) */
+		private DistanceKernel locations;
+		/** the location version the locations were copied at */
+		private long locationsVersion = -1;
+
+		private SphereCell(long key) {
+			this.key = key;
+			this.interfaces = new ArrayList<NetworkInterface>(2);
+		}
+
+		/**
+		 * Returns the locations of the interfaces in the same order as
+		 * the interface list, copied again only after some host has moved
+		 */
+		private DistanceKernel getLocations() {
+			long version = DTNHost.getLocationVersion();
+			if (this.locations == null) {
+				this.locations = new DistanceKernel();
+			}
+			if (this.locationsVersion != version) {
+				this.locations.clear();
+				for (NetworkInterface ni : this.interfaces) {
+					Coord c = ni.getLocation();
+					this.locations.add(c.getX(), c.getY(), c.getZ());
+				}
+				this.locationsVersion = version;
+			}
+			return this.locations;
+		}
+	}
+}
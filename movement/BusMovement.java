@@ -18,6 +18,7 @@ import core.Settings;
  * @author Frans Ekman
  */
 public class BusMovement extends MapRouteMovement {
+	private static final long serialVersionUID = 42L;
 	
 	private BusControlSystem controlSystem;
 	private int id;
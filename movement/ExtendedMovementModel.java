@@ -14,6 +14,7 @@ import core.Settings;
  * @author Frans Ekman
  */
 public abstract class ExtendedMovementModel extends MovementModel {
+	private static final long serialVersionUID = 42L;
 
 	private SwitchableMovement currentMovementModel;
 	private boolean getPathCalledOnce;
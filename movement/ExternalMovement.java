@@ -23,6 +23,7 @@ import core.SimClock;
  * Movement model that uses external data of node locations.
  */
 public class ExternalMovement extends MovementModel {
+	private static final long serialVersionUID = 42L;
 	/** Namespace for settings */
 	public static final String EXTERNAL_MOVEMENT_NS = "ExternalMovement";
 	/** external locations file's path -setting id ({@value})*/
@@ -26,6 +26,7 @@ import core.SimClock;
  */
 public class HomeActivityMovement extends MapBasedMovement 
 	implements SwitchableMovement {
+	private static final long serialVersionUID = 42L;
 
 	private static final int WALKING_HOME_MODE = 0;
 	private static final int AT_HOME_MODE = 1;
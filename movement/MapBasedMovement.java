@@ -29,6 +29,7 @@ import core.SimError;
  * roads of a SimMap. 
  */
 public class MapBasedMovement extends MovementModel implements SwitchableMovement {
+	private static final long serialVersionUID = 42L;
 	/** sim map for the model */
 	private SimMap map = null;
 	/** node where the last path ended or node next to initial placement */
@@ -21,6 +21,7 @@ import core.Settings;
  */
 public class MapRouteMovement extends MapBasedMovement implements 
 	SwitchableMovement {
+	private static final long serialVersionUID = 42L;
 	
 	/** Per node group setting used for selecting a route file ({@value}) */
 	public static final String ROUTE_FILE_S = "routeFile";
@@ -4,16 +4,17 @@
  */
 package movement;
 
+import java.io.Serializable;
 import java.util.Random;
 
 import util.ActivenessHandler;
 
 import core.Coord;
 import core.DTNHost;
-import core.DTNSim;
 import core.ModuleCommunicationBus;
 import core.Settings;
 import core.SimClock;
+import core.SimContext;
 import core.SimError;
 
 /**
@@ -26,7 +27,8 @@ import core.SimError;
  * {@link #getInitialLocation()} and {@link #getPath()} are worthwhile to 
  * override.</P>
  */
-public abstract class MovementModel {
+public abstract class MovementModel implements Serializable {
+	private static final long serialVersionUID = 42L;
 	/** node's speed CSV (min, max) -setting id ({@value})*/
 	public static final String SPEED = "speed";
 	/** node's wait time CSV (min, max) -setting id ({@value})*/
@@ -45,8 +47,9 @@ public abstract class MovementModel {
 	/** movement models' rng seed -setting id ({@value})*/
 	public static final String RNG_SEED = "rngSeed";
 	
-	/** common rng for all movement models in the simulation */
-	protected static Random rng; 
+	/** common rng for all movement models in the simulation (shared through
+	 * the simulation context of the run) */
+	protected Random rng;
 	
 	/** DTNHost to which this movement model is attached */
 	protected DTNHost host;
@@ -63,12 +66,7 @@ public abstract class MovementModel {
 	
 	protected ModuleCommunicationBus comBus;
 
-	// static initialization of all movement models' random number generator
-	static {
-		DTNSim.registerForReset(MovementModel.class.getCanonicalName());				
-		reset();
-	}
-	
+
 	/**
 	 * Checks that the minimum setting is not bigger than the maximum and
 	 * that both are positive
@@ -93,6 +91,7 @@ public abstract class MovementModel {
 	 */
 	public MovementModel() {
 		super();
+		this.rng = getSharedRng();
 	}
 	
 	/**
@@ -104,6 +103,7 @@ public abstract class MovementModel {
 		double[] times;
 		
 		ah = new ActivenessHandler(settings);
+		this.rng = getSharedRng();
 		
 		if (settings.contains(SPEED)) {
 			speeds = settings.getCsvDoubles(SPEED, 2);
@@ -149,6 +149,7 @@ public abstract class MovementModel {
 		this.maxY = mm.maxY;
 		this.ah = mm.ah;
 		this.comBus = null;
+		this.rng = getSharedRng();
 	}
 		
 	/**
@@ -272,10 +273,11 @@ public abstract class MovementModel {
 	public abstract MovementModel replicate();
 	
 	/**
-	 * Resets all static fields to default values
+	 * Resets the common rng of the movement models in the current run
 	 */
 	public static void reset() {
 		Settings s = new Settings(MOVEMENT_MODEL_NS);
+		Random rng;
 		if (s.contains(RNG_SEED)) {
 			int seed = s.getInt(RNG_SEED);
 			rng = new Random(seed);
@@ -283,6 +285,19 @@ public abstract class MovementModel {
 		else {
 			rng = new Random(0);
 		}
+		SimContext.getInstance().setClassState(MovementModel.class, rng);
+	}
+
+	/**
+	 * Returns the common rng of the movement models in the current run
+	 * @return the common rng
+	 */
+	protected static Random getSharedRng() {
+		SimContext c = SimContext.getInstance();
+		if (c.getClassState(MovementModel.class) == null) {
+			reset();
+		}
+		return (Random)c.getClassState(MovementModel.class);
 	}
 	
 }
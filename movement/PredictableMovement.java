@@ -8,6 +8,7 @@ import core.Settings;
  * simulation area.
  */
 public class PredictableMovement  extends MovementModel {
+	private static final long serialVersionUID = 42L;
 	/** how many waypoints should there be per path */
 	private static final int PATH_LENGTH = 1;
 	private Coord lastWaypoint;
@@ -13,6 +13,7 @@ import core.Settings;
  * @author Frans Ekman
  */
 public class RandomWalk extends MovementModel implements SwitchableMovement {
+	private static final long serialVersionUID = 42L;
 
 	private Coord lastWaypoint;
 	private double minDistance;
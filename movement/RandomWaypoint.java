@@ -12,6 +12,7 @@ import core.Settings;
  * simulation area.
  */
 public class RandomWaypoint extends MovementModel {
+	private static final long serialVersionUID = 42L;
 	/** how many waypoints should there be per path */
 	private static final int PATH_LENGTH = 1;
 	private Coord lastWaypoint;
@@ -0,0 +1,235 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writer that moves the encoding and writing of report output off the
+ * simulation thread. Every write call appends the text as a record to a
+ * bounded single producer, single consumer ring buffer; a background
+ * thread encodes the records into a large direct buffer and writes it to
+ * the file with a {@link FileChannel}. When the ring buffer is full, the
+ * writing thread waits until the background thread has made room, so the
+ * memory use stays bounded and no output is lost. {@link #flush()} returns
+ * only after everything written before it is in the file, and
+ * {@link #close()} flushes, stops the background thread and closes the
+ * file. The writer must be used by one thread at a time.
+ */
+public class AsyncReportWriter extends Writer {
+	/** size of the encoding buffer (bytes) */
+	private static final int BLOCK_SIZE = 1 << 20;
+	/** how long the writing thread waits at a time when the buffer is full
+	 * or a flush is going on (nanoseconds) */
+	private static final long WAIT_NANOS = 50000;
+	/** how long the background thread sleeps when it has nothing to do, if
+	 * it isn't woken up (nanoseconds) */
+	private static final long IDLE_NANOS = 1000000;
+
+	private final String[] records;
+	private final int mask;
+	/** number of pending records that makes the writing thread wake up the
+	 * background thread */
+	private final int wakeUpCount;
+	/** number of records appended (written only by the writing thread) */
+	private volatile long tail;
+	/** number of records taken by the background thread */
+	private volatile long head;
+	/** number of records that are in the file */
+	private volatile long written;
+	private volatile boolean closed;
+	private volatile boolean consumerWaiting;
+	/** error of the background thread or null */
+	private volatile IOException error;
+
+	private final FileChannel channel;
+	private final Thread consumer;
+
+	/**
+	 * Opens a file for writing
+	 * @param fileName Name (&path) of the file
+	 * @param append If true, the output is appended to the file, otherwise
+	 * the file is truncated
+	 * @param capacity Size of the ring buffer (records), rounded up to a
+	 * power of two
+	 * @throws IOException if the file can't be opened
+	 */
+	public AsyncReportWriter(String fileName, boolean append, int capacity)
+			throws IOException {
+		int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+		this.records = new String[size];
+		this.mask = size - 1;
+		this.wakeUpCount = Math.max(1, size / 4);
+		this.channel = append ?
+			FileChannel.open(Paths.get(fileName), StandardOpenOption.CREATE,
+					StandardOpenOption.WRITE, StandardOpenOption.APPEND) :
+			FileChannel.open(Paths.get(fileName), StandardOpenOption.CREATE,
+					StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING);
+
+		this.consumer = new Thread(new Runnable() {
+			public void run() {
+				consume();
+			}
+		}, "ReportWriter " + fileName);
+		this.consumer.setDaemon(true);
+		this.consumer.start();
+	}
+
+	@Override
+	public void write(String str, int off, int len) throws IOException {
+		append(off == 0 && len == str.length() ? str :
+			str.substring(off, off + len));
+	}
+
+	@Override
+	public void write(char[] cbuf, int off, int len) throws IOException {
+		append(new String(cbuf, off, len));
+	}
+
+	@Override
+	public void write(int c) throws IOException {
+		append(String.valueOf((char)c));
+	}
+
+	/**
+	 * Appends a record to the ring buffer, waiting for room if it is full
+	 */
+	private void append(String record) throws IOException {
+		checkState();
+		long t = this.tail;
+		while (t - this.head >= this.records.length) {
+			wakeConsumer();
+			LockSupport.parkNanos(WAIT_NANOS);
+			checkState();
+		}
+		this.records[(int)(t & this.mask)] = record;
+		this.tail = t + 1;
+		if (t + 1 - this.head >= this.wakeUpCount) {
+			wakeConsumer();
+		}
+	}
+
+	/**
+	 * Waits until all the records appended so far are in the file
+	 * @throws IOException if the background thread failed to write
+	 */
+	@Override
+	public void flush() throws IOException {
+		checkState();
+		long target = this.tail;
+		while (this.written < target) {
+			wakeConsumer();
+			LockSupport.parkNanos(WAIT_NANOS);
+			checkState();
+		}
+	}
+
+	/**
+	 * Flushes the output, stops the background thread and closes the file.
+	 * Closing a closed writer has no effect.
+	 * @throws IOException if the output couldn't be written
+	 */
+	@Override
+	public void close() throws IOException {
+		if (this.closed) {
+			return;
+		}
+		try {
+			flush();
+		} finally {
+			this.closed = true;
+			LockSupport.unpark(this.consumer);
+			try {
+				this.consumer.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			this.channel.close();
+		}
+		if (this.error != null) {
+			throw this.error;
+		}
+	}
+
+	private void checkState() throws IOException {
+		if (this.error != null) {
+			throw this.error;
+		}
+		if (this.closed) {
+			throw new IOException("Writer closed");
+		}
+	}
+
+	private void wakeConsumer() {
+		if (this.consumerWaiting) {
+			LockSupport.unpark(this.consumer);
+		}
+	}
+
+	/**
+	 * Main loop of the background thread: encodes the records as they
+	 * come and writes the encoding buffer when it is full or when all
+	 * records have been taken
+	 */
+	private void consume() {
+		CharsetEncoder encoder = Charset.defaultCharset().newEncoder()
+			.onMalformedInput(CodingErrorAction.REPLACE)
+			.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		ByteBuffer block = ByteBuffer.allocateDirect(BLOCK_SIZE);
+
+		try {
+			long h = this.head;
+			while (true) {
+				long t = this.tail;
+				if (h == t) {
+					writeBlock(block);
+					this.written = h;
+					if (this.closed) {
+						return;
+					}
+					this.consumerWaiting = true;
+					if (this.tail == h && !this.closed) {
+						LockSupport.parkNanos(this, IDLE_NANOS);
+					}
+					this.consumerWaiting = false;
+					continue;
+				}
+				for (; h < t; h++) {
+					int i = (int)(h & this.mask);
+					CharBuffer chars = CharBuffer.wrap(this.records[i]);
+					this.records[i] = null;
+					this.head = h + 1;
+					while (encoder.encode(chars, block, false) ==
+							CoderResult.OVERFLOW) {
+						writeBlock(block);
+					}
+				}
+			}
+		} catch (IOException e) {
+			this.error = e;
+		}
+	}
+
+	/** writes the contents of the encoding buffer to the file */
+	private void writeBlock(ByteBuffer block) throws IOException {
+		block.flip();
+		while (block.hasRemaining()) {
+			this.channel.write(block);
+		}
+		block.clear();
+	}
+}
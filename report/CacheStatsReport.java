@@ -0,0 +1,296 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import util.StreamingHistogram;
+import core.CacheListener;
+import core.DTNHost;
+
+/**
+ * Report for the performance of the file caches. Reports the global and
+ * per node hit ratio and byte hit ratio, eviction and reassembly failure
+ * counts, and the percentiles of the file fetch latency (time from the
+ * request to the reassembly of the file at the requester). Latencies are
+ * counted in a constant memory histogram, so the report can be used with
+ * any number of requests. A pending request is forgotten when its
+ * reassembly fails or when it has not completed within
+ * {@link #REQUEST_TIMEOUT_S}, so the memory use doesn't grow with the
+ * requests that never complete. Requests made during the warm up period
+ * are ignored.
+ * <P>Hit ratio is the fraction of the requests that were served from a
+ * cache (the requester's own or one on the way) instead of the origin of
+ * the file. Byte hit ratio is the same ratio weighted by the file sizes.</P>
+ */
+public class CacheStatsReport extends Report implements CacheListener {
+	private static final long serialVersionUID = 42L;
+	/** highest latency the histogram tells apart (ms) */
+	public static final long MAX_LATENCY_MS = 100L * 24 * 3600 * 1000;
+	/** number of significant digits of the latency histogram */
+	public static final int LATENCY_DIGITS = 3;
+	/** Request timeout -setting id ({@value}). Double, seconds. Requests
+	 * that haven't completed in this time are counted as timed out and
+	 * forgotten. Default is {@value #DEF_REQUEST_TIMEOUT} (the default
+	 * message TTL of 300 minutes). */
+	public static final String REQUEST_TIMEOUT_S = "requestTimeout";
+	/** Default request timeout (seconds) */
+	public static final double DEF_REQUEST_TIMEOUT = 18000;
+
+	/** how long a pending request is waited for (seconds) */
+	private double requestTimeout;
+
+	/** requester address and file id of the pending requests -> time,
+	 * in the order of the requests */
+	private LinkedHashMap<String, Double> requestTimes;
+	private StreamingHistogram latencies;
+	private Map<Integer, NodeStats> nodeStats;
+
+	private int nrofRequests;
+	private int nrofLocalHits;
+	private int nrofCacheHits;
+	private int nrofOriginServed;
+	private int nrofFetched;
+	private int nrofTimedOut;
+	private long requestedBytes;
+	private long localHitBytes;
+	private long cacheHitBytes;
+	private long originBytes;
+
+	/**
+	 * Constructor.
+	 */
+	public CacheStatsReport() {
+		this.requestTimeout = getSettings().getDouble(REQUEST_TIMEOUT_S,
+				DEF_REQUEST_TIMEOUT);
+		init();
+	}
+
+	@Override
+	protected void init() {
+		super.init();
+		this.requestTimes = new LinkedHashMap<String, Double>();
+		this.latencies = new StreamingHistogram(MAX_LATENCY_MS,
+				LATENCY_DIGITS);
+		this.nodeStats = new TreeMap<Integer, NodeStats>();
+
+		this.nrofRequests = 0;
+		this.nrofLocalHits = 0;
+		this.nrofCacheHits = 0;
+		this.nrofOriginServed = 0;
+		this.nrofFetched = 0;
+		this.nrofTimedOut = 0;
+		this.requestedBytes = 0;
+		this.localHitBytes = 0;
+		this.cacheHitBytes = 0;
+		this.originBytes = 0;
+	}
+
+	public void fileRequested(DTNHost requester, String fileId, int size,
+			boolean localHit) {
+		if (isWarmup()) {
+			return;
+		}
+		expireRequests();
+		this.nrofRequests++;
+		this.requestedBytes += size;
+		if (localHit) {
+			this.nrofLocalHits++;
+			this.localHitBytes += size;
+			getStats(requester).hit(size);
+		} else {
+			String key = requestKey(requester, fileId);
+			if (!this.requestTimes.containsKey(key)) {
+				this.requestTimes.put(key, getSimTime());
+			}
+		}
+	}
+
+	public void cacheLookup(DTNHost host, String fileId, int size,
+			boolean hit) {
+		if (isWarmup()) {
+			return;
+		}
+		NodeStats stats = getStats(host);
+		if (hit) {
+			this.nrofCacheHits++;
+			this.cacheHitBytes += size;
+			stats.hit(size);
+		} else {
+			stats.miss(size);
+		}
+	}
+
+	public void originServed(DTNHost origin, String fileId, int size) {
+		if (isWarmup()) {
+			return;
+		}
+		this.nrofOriginServed++;
+		this.originBytes += size;
+		getStats(origin).originServed++;
+	}
+
+	public void fileReassembled(DTNHost host, String fileId, int size) {
+		Double requestTime = this.requestTimes.remove(requestKey(host,
+				fileId));
+		if (requestTime == null) {
+			return; /* cached on the way or requested during the warm up */
+		}
+		this.nrofFetched++;
+		this.latencies.recordValue(Math.round(
+				(getSimTime() - requestTime) * 1000));
+	}
+
+	public void reassemblyFailed(DTNHost host, String fileId) {
+		/* a retry of the request is timed from its own request */
+		this.requestTimes.remove(requestKey(host, fileId));
+		if (isWarmup()) {
+			return;
+		}
+		getStats(host).failures++;
+	}
+
+	public void fileEvicted(DTNHost host, String fileId, int size) {
+		if (isWarmup()) {
+			return;
+		}
+		getStats(host).evictions++;
+	}
+
+	/**
+	 * Forgets the pending requests that have not completed within the
+	 * request timeout. The requests are in the order of their times, so
+	 * only the oldest ones need to be checked.
+	 */
+	private void expireRequests() {
+		double limit = getSimTime() - this.requestTimeout;
+		Iterator<Double> i = this.requestTimes.values().iterator();
+		while (i.hasNext() && i.next() < limit) {
+			i.remove();
+			this.nrofTimedOut++;
+		}
+	}
+
+	private String requestKey(DTNHost requester, String fileId) {
+		return requester.getAddress() + "@" + fileId;
+	}
+
+	private NodeStats getStats(DTNHost host) {
+		NodeStats stats = this.nodeStats.get(host.getAddress());
+		if (stats == null) {
+			stats = new NodeStats(host.toString());
+			this.nodeStats.put(host.getAddress(), stats);
+		}
+		return stats;
+	}
+
+	private double ratio(double part, double total) {
+		return total > 0 ? part / total : Double.NaN;
+	}
+
+	@Override
+	public void done() {
+		expireRequests();
+		write("Cache stats for scenario " + getScenarioName() +
+				"\nsim_time: " + format(getSimTime()));
+
+		int nrofServed = this.nrofLocalHits + this.nrofCacheHits +
+			this.nrofOriginServed;
+		long servedBytes = this.localHitBytes + this.cacheHitBytes +
+			this.originBytes;
+		int nrofEvictions = 0;
+		int nrofFailures = 0;
+		for (NodeStats stats : this.nodeStats.values()) {
+			nrofEvictions += stats.evictions;
+			nrofFailures += stats.failures;
+		}
+
+		String statsText = "requests: " + this.nrofRequests +
+			"\nrequested_bytes: " + this.requestedBytes +
+			"\nlocal_hits: " + this.nrofLocalHits +
+			"\ncache_hits: " + this.nrofCacheHits +
+			"\norigin_served: " + this.nrofOriginServed +
+			"\nhit_ratio: " + format(ratio(this.nrofLocalHits +
+					this.nrofCacheHits, nrofServed)) +
+			"\nbyte_hit_ratio: " + format(ratio(this.localHitBytes +
+					this.cacheHitBytes, servedBytes)) +
+			"\nevictions: " + nrofEvictions +
+			"\nreassembly_failures: " + nrofFailures +
+			"\nfetched: " + this.nrofFetched +
+			"\ntimed_out: " + this.nrofTimedOut +
+			"\nunfinished: " + this.requestTimes.size() +
+			"\nlatency_avg: " + format(this.latencies.getMean() / 1000) +
+			"\nlatency_min: " + latency(-1) +
+			"\nlatency_p50: " + latency(50) +
+			"\nlatency_p90: " + latency(90) +
+			"\nlatency_p95: " + latency(95) +
+			"\nlatency_p99: " + latency(99) +
+			"\nlatency_max: " + latency(101);
+		write(statsText);
+
+		write("\n# node lookups hits hit_ratio byte_hit_ratio " +
+				"origin_served evictions reassembly_failures");
+		for (NodeStats s : this.nodeStats.values()) {
+			write(s.name + " " + (s.hits + s.misses) + " " + s.hits + " " +
+					format(ratio(s.hits, s.hits + s.misses)) + " " +
+					format(ratio(s.hitBytes, s.hitBytes + s.missBytes)) +
+					" " + s.originServed + " " + s.evictions + " " +
+					s.failures);
+		}
+		super.done();
+	}
+
+	/**
+	 * Returns a latency percentile in seconds as a string. Negative
+	 * percentile returns the minimum and percentile over 100 the maximum.
+	 */
+	private String latency(double percentile) {
+		if (this.latencies.getTotalCount() == 0) {
+			return NAN;
+		}
+		long ms;
+		if (percentile < 0) {
+			ms = this.latencies.getMin();
+		} else if (percentile > 100) {
+			ms = this.latencies.getMax();
+		} else {
+			ms = this.latencies.getValueAtPercentile(percentile);
+		}
+		return format(ms / 1000.0);
+	}
+
+	/**
+	 * Cache statistics of a node
+	 */
+	private static class NodeStats implements Serializable {
+		private static final long serialVersionUID = 42L;
+		private String name;
+		private int hits;
+		private int misses;
+		private long hitBytes;
+		private long missBytes;
+		private int originServed;
+		private int evictions;
+		private int failures;
+
+		private NodeStats(String name) {
+			this.name = name;
+		}
+
+		private void hit(int size) {
+			this.hits++;
+			this.hitBytes += size;
+		}
+
+		private void miss(int size) {
+			this.misses++;
+			this.missBytes += size;
+		}
+	}
+}
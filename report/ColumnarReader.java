@@ -0,0 +1,370 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reader of the binary columnar report format (see {@link ColumnarWriter}).
+ * The rows are read one block at a time; the values of the current row
+ * are available with the typed getters after {@link #next()} has
+ * returned true. A truncated file is read up to its last complete block.
+ *
+ * <P>The class can also be run from the command line to convert a file to
+ * CSV:<BR>
+ * <CODE>java -cp . report.ColumnarReader input.col [output.csv]</CODE><BR>
+ * The output is written to the standard output if no output file is
+ * given.</P>
+ */
+public class ColumnarReader implements Closeable {
+	private final DataInputStream in;
+	private final String[] names;
+	private final int[] types;
+	private final int timeDecimals;
+	/** scale of the time values of the file */
+	private final double timeScale;
+	private final Inflater inflater;
+	private byte[] compressed = new byte[1024];
+	private byte[] raw = new byte[1024];
+
+	/** values of the current block, per column */
+	private long[][] longValues;
+	private double[][] doubleValues;
+	private int[][] stringValues;
+	private String[][] dictionaries;
+	private int blockRows;
+	/** index of the current row in the block */
+	private int row;
+
+	/**
+	 * Opens a file
+	 * @param fileName Name (&path) of the file
+	 * @throws IOException if the file can't be opened or it is not a
+	 * columnar report file
+	 */
+	public ColumnarReader(String fileName) throws IOException {
+		this.in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(fileName), 1 << 16));
+		try {
+			byte[] magic = new byte[ColumnarWriter.MAGIC.length];
+			this.in.readFully(magic);
+			if (!Arrays.equals(magic, ColumnarWriter.MAGIC)) {
+				throw new IOException(fileName +
+						" is not a columnar report file");
+			}
+			int version = this.in.readUnsignedByte();
+			if (version != ColumnarWriter.VERSION) {
+				throw new IOException("Unsupported version " + version +
+						" of " + fileName);
+			}
+			this.timeDecimals = this.in.readUnsignedByte();
+			this.timeScale = Math.pow(10, this.timeDecimals);
+			int n = this.in.readUnsignedShort();
+			this.names = new String[n];
+			this.types = new int[n];
+			for (int i = 0; i < n; i++) {
+				this.names[i] = this.in.readUTF();
+				this.types[i] = this.in.readUnsignedByte();
+			}
+		} catch (IOException e) {
+			this.in.close();
+			throw e;
+		}
+		this.longValues = new long[this.types.length][];
+		this.doubleValues = new double[this.types.length][];
+		this.stringValues = new int[this.types.length][];
+		this.dictionaries = new String[this.types.length][];
+		this.inflater = new Inflater();
+	}
+
+	/**
+	 * Returns the number of columns
+	 */
+	public int getNrofColumns() {
+		return this.types.length;
+	}
+
+	/**
+	 * Returns the name of a column
+	 * @param column Index of the column
+	 */
+	public String getColumnName(int column) {
+		return this.names[column];
+	}
+
+	/**
+	 * Returns the type of a column (see {@link ColumnarWriter#TIME} etc.)
+	 * @param column Index of the column
+	 */
+	public int getColumnType(int column) {
+		return this.types[column];
+	}
+
+	/**
+	 * Moves to the next row
+	 * @return True if there was a next row, false if the end of the file
+	 * has been reached
+	 * @throws IOException if the file can't be read or it is corrupted
+	 */
+	public boolean next() throws IOException {
+		this.row++;
+		while (this.row >= this.blockRows) {
+			if (!readBlock()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the value of a {@link ColumnarWriter#TIME},
+	 * {@link ColumnarWriter#LONG} or {@link ColumnarWriter#DOUBLE} column
+	 * of the current row
+	 * @param column Index of the column
+	 * @return The value
+	 */
+	public double getDouble(int column) {
+		switch (this.types[column]) {
+		case ColumnarWriter.TIME:
+			return this.longValues[column][this.row] / this.timeScale;
+		case ColumnarWriter.LONG:
+			return this.longValues[column][this.row];
+		case ColumnarWriter.DOUBLE:
+			return this.doubleValues[column][this.row];
+		default:
+			throw new IllegalArgumentException("Column " + column +
+					" is not numeric");
+		}
+	}
+
+	/**
+	 * Returns the value of a {@link ColumnarWriter#LONG} column of the
+	 * current row
+	 * @param column Index of the column
+	 * @return The value
+	 */
+	public long getLong(int column) {
+		if (this.types[column] != ColumnarWriter.LONG) {
+			throw new IllegalArgumentException("Column " + column +
+					" is not of type LONG");
+		}
+		return this.longValues[column][this.row];
+	}
+
+	/**
+	 * Returns the value of any column of the current row as a string
+	 * @param column Index of the column
+	 * @return The value
+	 */
+	public String getString(int column) {
+		switch (this.types[column]) {
+		case ColumnarWriter.TIME:
+			return BigDecimal.valueOf(this.longValues[column][this.row],
+					this.timeDecimals).stripTrailingZeros().toPlainString();
+		case ColumnarWriter.LONG:
+			return Long.toString(this.longValues[column][this.row]);
+		case ColumnarWriter.DOUBLE:
+			return Double.toString(this.doubleValues[column][this.row]);
+		default:
+			return this.dictionaries[column][
+				this.stringValues[column][this.row]];
+		}
+	}
+
+	/**
+	 * Writes the rest of the rows as CSV, with the column names on the
+	 * first line
+	 * @param out The writer to write to
+	 * @throws IOException if reading or writing fails
+	 */
+	public void toCsv(Writer out) throws IOException {
+		for (int i = 0; i < this.names.length; i++) {
+			out.write((i > 0 ? "," : "") + csvField(this.names[i]));
+		}
+		out.write("\n");
+		while (next()) {
+			for (int i = 0; i < this.types.length; i++) {
+				if (i > 0) {
+					out.write(',');
+				}
+				out.write(csvField(getString(i)));
+			}
+			out.write('\n');
+		}
+		out.flush();
+	}
+
+	/**
+	 * Closes the file
+	 */
+	public void close() throws IOException {
+		this.inflater.end();
+		this.in.close();
+	}
+
+	/** quotes a CSV field if needed */
+	private static String csvField(String value) {
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+				return '"' + value.replace("\"", "\"\"") + '"';
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * Reads and decodes the next block
+	 * @return False if there are no more (complete) blocks
+	 */
+	private boolean readBlock() throws IOException {
+		int rows, rawLength, length;
+		try {
+			rows = this.in.readInt();
+			rawLength = this.in.readInt();
+			length = this.in.readInt();
+			if (rows <= 0 || rawLength < 0 || length < 0) {
+				throw new IOException("Corrupted block header");
+			}
+			if (this.compressed.length < length) {
+				this.compressed = new byte[length];
+			}
+			this.in.readFully(this.compressed, 0, length);
+		} catch (EOFException e) {
+			return false; // end of file or a partially written block
+		}
+
+		if (this.raw.length < rawLength) {
+			this.raw = new byte[rawLength];
+		}
+		this.inflater.reset();
+		this.inflater.setInput(this.compressed, 0, length);
+		try {
+			int n = 0;
+			while (n < rawLength && !this.inflater.finished()) {
+				n += this.inflater.inflate(this.raw, n, rawLength - n);
+				if (this.inflater.needsInput()) {
+					break;
+				}
+			}
+			if (n != rawLength) {
+				throw new IOException("Corrupted block");
+			}
+		} catch (DataFormatException e) {
+			throw new IOException("Corrupted block: " + e.getMessage(), e);
+		}
+
+		DataInputStream data = new DataInputStream(
+				new ByteArrayInputStream(this.raw, 0, rawLength));
+		for (int i = 0; i < this.types.length; i++) {
+			switch (this.types[i]) {
+			case ColumnarWriter.TIME:
+			case ColumnarWriter.LONG:
+				long[] longs = ensureCapacity(this.longValues[i], rows);
+				long previous = 0;
+				for (int r = 0; r < rows; r++) {
+					long v = readVarLong(data);
+					previous += (v >>> 1) ^ -(v & 1);
+					longs[r] = previous;
+				}
+				this.longValues[i] = longs;
+				break;
+			case ColumnarWriter.DOUBLE:
+				double[] doubles = this.doubleValues[i];
+				if (doubles == null || doubles.length < rows) {
+					doubles = new double[rows];
+				}
+				for (int r = 0; r < rows; r++) {
+					doubles[r] = data.readDouble();
+				}
+				this.doubleValues[i] = doubles;
+				break;
+			case ColumnarWriter.STRING:
+				String[] dictionary = new String[(int)readVarLong(data)];
+				for (int j = 0; j < dictionary.length; j++) {
+					dictionary[j] = data.readUTF();
+				}
+				int[] indexes = this.stringValues[i];
+				if (indexes == null || indexes.length < rows) {
+					indexes = new int[rows];
+				}
+				for (int r = 0; r < rows; r++) {
+					indexes[r] = (int)readVarLong(data);
+					if (indexes[r] >= dictionary.length) {
+						throw new IOException("Corrupted block");
+					}
+				}
+				this.dictionaries[i] = dictionary;
+				this.stringValues[i] = indexes;
+				break;
+			default:
+				throw new IOException("Unknown type " + this.types[i] +
+						" of column " + this.names[i]);
+			}
+		}
+		this.blockRows = rows;
+		this.row = 0;
+		return true;
+	}
+
+	private static long[] ensureCapacity(long[] values, int size) {
+		return values != null && values.length >= size ? values :
+			new long[size];
+	}
+
+	private static long readVarLong(DataInputStream data) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = data.readUnsignedByte();
+			value |= (long)(b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Corrupted varint");
+	}
+
+	/**
+	 * Converts a columnar report file to CSV
+	 * @param args Name of the input file and optionally the output file
+	 */
+	public static void main(String[] args) {
+		if (args.length < 1 || args.length > 2) {
+			System.err.println("Usage: java report.ColumnarReader " +
+					"input.col [output.csv]");
+			System.exit(1);
+		}
+		try {
+			ColumnarReader reader = new ColumnarReader(args[0]);
+			Writer out = new BufferedWriter(args.length == 2 ?
+					new FileWriter(args[1]) :
+					new OutputStreamWriter(System.out), 1 << 16);
+			try {
+				reader.toCsv(out);
+			} finally {
+				reader.close();
+				out.close();
+			}
+		} catch (IOException e) {
+			System.err.println("Can't convert " + args[0] + ": " +
+					e.getMessage());
+			System.exit(1);
+		}
+	}
+}
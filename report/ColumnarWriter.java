@@ -0,0 +1,316 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * Writer of the binary columnar report format. A file starts with a
+ * header that lists the typed columns and is followed by blocks of rows.
+ * Within a block the values are stored column by column:
+ * <UL>
+ * <LI>{@link #TIME} values are stored as integer multiples of
+ * 10<sup>-{@value #TIME_DECIMALS}</sup> seconds and {@link #LONG} values
+ * as they are, both as deltas to the previous row (zigzag varints)</LI>
+ * <LI>{@link #DOUBLE} values are stored as 8 byte IEEE 754 values</LI>
+ * <LI>{@link #STRING} values (host names, message IDs, ...) are
+ * dictionary encoded: the block lists its distinct strings once and the
+ * rows refer to them by index</LI>
+ * </UL>
+ * Every block is compressed separately with deflate (at the fastest
+ * level, most of the reduction comes from the encoding) and can be decoded
+ * without the other blocks, so a file can be appended to (e.g., after a
+ * {@link core.Checkpoint} is restored) and a truncated file is readable up
+ * to its last complete block. See {@link ColumnarReader} for reading the
+ * files and converting them to CSV.
+ */
+public class ColumnarWriter implements Closeable, Flushable {
+	/** Column type of simulation times (seconds) */
+	public static final int TIME = 0;
+	/** Column type of integer values */
+	public static final int LONG = 1;
+	/** Column type of floating point values */
+	public static final int DOUBLE = 2;
+	/** Column type of strings */
+	public static final int STRING = 3;
+
+	/** Magic bytes in the beginning of a file */
+	static final byte[] MAGIC = {'O', 'N', 'E', 'C', 'O', 'L'};
+	/** Version of the format */
+	static final int VERSION = 1;
+	/** Number of decimals of the {@link #TIME} values ({@value}) */
+	public static final int TIME_DECIMALS = 6;
+	/** scale of the {@link #TIME} values */
+	static final double TIME_SCALE = Math.pow(10, TIME_DECIMALS);
+	/** Maximum number of rows in a block */
+	public static final int BLOCK_ROWS = 8192;
+
+	private final int[] types;
+	private final DataOutputStream out;
+	private final Deflater deflater;
+	private byte[] compressed;
+
+	/** values of the current block, per column */
+	private final long[][] longValues;
+	private final double[][] doubleValues;
+	private final int[][] stringValues;
+	/** the strings of the current block and their indexes, per column */
+	private final List<List<String>> dictionaries;
+	private final List<HashMap<String, Integer>> dictionaryIndexes;
+	/** which columns of the current row have been set */
+	private final boolean[] isSet;
+	private int rows;
+
+	/**
+	 * Creates a new file or opens an existing file for appending
+	 * @param fileName Name (&path) of the file
+	 * @param append If true and the file isn't empty, the rows are appended
+	 * to it (the file must have the same columns); otherwise the file is
+	 * created again
+	 * @param names Names of the columns
+	 * @param types Types of the columns
+	 * @throws IOException if the file can't be opened
+	 */
+	public ColumnarWriter(String fileName, boolean append, String[] names,
+			int[] types) throws IOException {
+		if (names.length != types.length) {
+			throw new IllegalArgumentException("Different number of " +
+					"column names and types");
+		}
+		int n = types.length;
+		this.types = types.clone();
+		this.longValues = new long[n][];
+		this.doubleValues = new double[n][];
+		this.stringValues = new int[n][];
+		this.dictionaries = new ArrayList<List<String>>(n);
+		this.dictionaryIndexes = new ArrayList<HashMap<String, Integer>>(n);
+		for (int i = 0; i < n; i++) {
+			switch (types[i]) {
+			case TIME:
+			case LONG:
+				this.longValues[i] = new long[BLOCK_ROWS];
+				break;
+			case DOUBLE:
+				this.doubleValues[i] = new double[BLOCK_ROWS];
+				break;
+			case STRING:
+				this.stringValues[i] = new int[BLOCK_ROWS];
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown type " +
+						types[i] + " of column " + names[i]);
+			}
+			this.dictionaries.add(new ArrayList<String>());
+			this.dictionaryIndexes.add(new HashMap<String, Integer>());
+		}
+		this.isSet = new boolean[n];
+		this.deflater = new Deflater(Deflater.BEST_SPEED);
+		this.compressed = new byte[1024];
+
+		boolean writeHeader = !append || new File(fileName).length() == 0;
+		this.out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(fileName, append), 1 << 16));
+		if (writeHeader) {
+			this.out.write(MAGIC);
+			this.out.writeByte(VERSION);
+			this.out.writeByte(TIME_DECIMALS);
+			this.out.writeShort(n);
+			for (int i = 0; i < n; i++) {
+				this.out.writeUTF(names[i]);
+				this.out.writeByte(types[i]);
+			}
+		}
+	}
+
+	/**
+	 * Sets the value of a {@link #TIME} column of the current row
+	 * @param column Index of the column
+	 * @param time The time (seconds)
+	 */
+	public void setTime(int column, double time) {
+		checkType(column, TIME);
+		this.longValues[column][this.rows] =
+			Math.round(time * TIME_SCALE);
+		this.isSet[column] = true;
+	}
+
+	/**
+	 * Sets the value of a {@link #LONG} column of the current row
+	 * @param column Index of the column
+	 * @param value The value
+	 */
+	public void setLong(int column, long value) {
+		checkType(column, LONG);
+		this.longValues[column][this.rows] = value;
+		this.isSet[column] = true;
+	}
+
+	/**
+	 * Sets the value of a {@link #DOUBLE} column of the current row
+	 * @param column Index of the column
+	 * @param value The value
+	 */
+	public void setDouble(int column, double value) {
+		checkType(column, DOUBLE);
+		this.doubleValues[column][this.rows] = value;
+		this.isSet[column] = true;
+	}
+
+	/**
+	 * Sets the value of a {@link #STRING} column of the current row
+	 * @param column Index of the column
+	 * @param value The value (null is written as an empty string)
+	 */
+	public void setString(int column, String value) {
+		checkType(column, STRING);
+		if (value == null) {
+			value = "";
+		}
+		HashMap<String, Integer> indexes = this.dictionaryIndexes.get(column);
+		Integer index = indexes.get(value);
+		if (index == null) {
+			List<String> dictionary = this.dictionaries.get(column);
+			index = dictionary.size();
+			dictionary.add(value);
+			indexes.put(value, index);
+		}
+		this.stringValues[column][this.rows] = index;
+		this.isSet[column] = true;
+	}
+
+	/**
+	 * Finishes the current row. All the columns must have been set.
+	 * @throws IOException if a full block couldn't be written
+	 */
+	public void endRow() throws IOException {
+		for (int i = 0; i < this.isSet.length; i++) {
+			if (!this.isSet[i]) {
+				throw new IllegalStateException("Column " + i +
+						" of the row not set");
+			}
+		}
+		Arrays.fill(this.isSet, false);
+		this.rows++;
+		if (this.rows == BLOCK_ROWS) {
+			writeBlock();
+		}
+	}
+
+	/**
+	 * Writes the rows of the current (partial) block to the file
+	 * @throws IOException if the rows couldn't be written
+	 */
+	public void flush() throws IOException {
+		writeBlock();
+		this.out.flush();
+	}
+
+	/**
+	 * Writes the rows of the current block and closes the file
+	 * @throws IOException if the rows couldn't be written
+	 */
+	public void close() throws IOException {
+		try {
+			writeBlock();
+		} finally {
+			this.deflater.end();
+			this.out.close();
+		}
+	}
+
+	private void checkType(int column, int type) {
+		if (this.types[column] != type) {
+			throw new IllegalArgumentException("Column " + column +
+					" is not of type " + type);
+		}
+	}
+
+	/**
+	 * Encodes, compresses and writes the current block. Empty blocks are
+	 * not written.
+	 */
+	private void writeBlock() throws IOException {
+		if (this.rows == 0) {
+			return;
+		}
+		ByteArrayOutputStream raw = new ByteArrayOutputStream(this.rows * 8);
+		DataOutputStream data = new DataOutputStream(raw);
+		for (int i = 0; i < this.types.length; i++) {
+			switch (this.types[i]) {
+			case TIME:
+			case LONG:
+				long previous = 0;
+				for (int row = 0; row < this.rows; row++) {
+					long value = this.longValues[i][row];
+					writeVarLong(data, zigzag(value - previous));
+					previous = value;
+				}
+				break;
+			case DOUBLE:
+				for (int row = 0; row < this.rows; row++) {
+					data.writeDouble(this.doubleValues[i][row]);
+				}
+				break;
+			case STRING:
+				List<String> dictionary = this.dictionaries.get(i);
+				writeVarLong(data, dictionary.size());
+				for (String s : dictionary) {
+					data.writeUTF(s);
+				}
+				for (int row = 0; row < this.rows; row++) {
+					writeVarLong(data, this.stringValues[i][row]);
+				}
+				dictionary.clear();
+				this.dictionaryIndexes.get(i).clear();
+				break;
+			}
+		}
+		data.flush();
+		byte[] bytes = raw.toByteArray();
+
+		this.deflater.reset();
+		this.deflater.setInput(bytes);
+		this.deflater.finish();
+		int length = 0;
+		while (!this.deflater.finished()) {
+			if (length == this.compressed.length) {
+				this.compressed = Arrays.copyOf(this.compressed, length * 2);
+			}
+			length += this.deflater.deflate(this.compressed, length,
+					this.compressed.length - length);
+		}
+
+		this.out.writeInt(this.rows);
+		this.out.writeInt(bytes.length);
+		this.out.writeInt(length);
+		this.out.write(this.compressed, 0, length);
+		this.rows = 0;
+	}
+
+	private static long zigzag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	private static void writeVarLong(DataOutputStream data, long value)
+			throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			data.writeByte((int)((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		data.writeByte((int)value);
+	}
+}
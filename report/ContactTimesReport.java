@@ -4,6 +4,7 @@
  */
 package report;
 
+import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Vector;
 
@@ -15,9 +16,11 @@ import core.Settings;
  * Reports the node contact time (i.e., how long they were in the range
  * of each other) distribution. Report file contains the count of connections
  * that lasted for certain amount of time. Syntax:<br>
- * <code>time nrofContacts</code>
+ * <code>time nrofContacts</code><br>
+ * The binary output ({@link Report#BINARY_OUTPUT_S}) has the same columns.
  */
 public class ContactTimesReport extends Report implements ConnectionListener {
+	private static final long serialVersionUID = 42L;
 	protected HashMap<ConnectionInfo, ConnectionInfo> connections;
 	private Vector<Integer> nrofContacts;
 	
@@ -26,6 +29,11 @@ public class ContactTimesReport extends Report implements ConnectionListener {
 	public static final String GRANULARITY = "granularity";
 	/** How many seconds are grouped in one group */
 	protected double granularity;
+
+	/** columns of the binary output */
+	private static final String[] COLUMNS = {"time", "contacts"};
+	private static final int[] COLUMN_TYPES = {ColumnarWriter.DOUBLE,
+		ColumnarWriter.LONG};
 	
 	/**
 	 * Constructor.
@@ -48,6 +56,16 @@ public class ContactTimesReport extends Report implements ConnectionListener {
 		this.connections = new HashMap<ConnectionInfo,ConnectionInfo>();
 		this.nrofContacts = new Vector<Integer>();
 	}
+
+	@Override
+	protected String[] getColumnNames() {
+		return COLUMNS;
+	}
+
+	@Override
+	protected int[] getColumnTypes() {
+		return COLUMN_TYPES;
+	}
 		
 	public void hostsConnected(DTNHost host1, DTNHost host2) {
 		if (isWarmup()) {
@@ -113,6 +131,13 @@ public class ContactTimesReport extends Report implements ConnectionListener {
 			if (contacts == null) {
 				contacts = 0;
 			}
+			if (isBinaryOutput()) {
+				ColumnarWriter w = getBinaryOutput();
+				w.setDouble(0, i*this.granularity);
+				w.setLong(1, contacts);
+				endBinaryRow();
+				continue;
+			}
 			//     time(interval)             nrofContacts
 			write((i*this.granularity) + " " + contacts);
 		}
@@ -124,7 +149,8 @@ public class ContactTimesReport extends Report implements ConnectionListener {
 	/**
 	 * Objects of this class store time information about contacts.
 	 */
-	protected class ConnectionInfo {
+	protected class ConnectionInfo implements Serializable {
+		private static final long serialVersionUID = 42L;
 		private double startTime;
 		private double endTime;
 		private DTNHost h1;
@@ -16,6 +16,7 @@ import core.MessageListener;
  * For output syntax, see {@link #HEADER}.
  */
 public class DeliveredMessagesReport extends Report implements MessageListener {
+	private static final long serialVersionUID = 42L;
 	public static String HEADER = "# time  ID  size  hopcount  deliveryTime  " +
 		"fromHost  toHost  remainingTtl  isResponse  path";
 
@@ -15,10 +15,13 @@ import input.StandardEventsReader;
  * like {@link input.StandardEventsReader} input. Message relying event has
  * extra one-letter identifier to tell whether that message was delivered to
  * final destination, delivered there again, or just normally relayed 
- * (see the public constants).
+ * (see the public constants). With the binary output
+ * ({@link Report#BINARY_OUTPUT_S}) the fields of the events are written to
+ * the columns time, action, host1, host2, message and extra.
  */
 public class EventLogReport extends Report 
 	implements ConnectionListener, MessageListener {
+	private static final long serialVersionUID = 42L;
 
 	/** Extra info for message relayed event ("relayed"): {@value} */
 	public static final String MESSAGE_TRANS_RELAYED = "R";
@@ -26,6 +29,23 @@ public class EventLogReport extends Report
 	public static final String MESSAGE_TRANS_DELIVERED = "D";
 	/** Extra info for message relayed event ("delivered again"): {@value} */
 	public static final String MESSAGE_TRANS_DELIVERED_AGAIN = "A";
+
+	/** columns of the binary output */
+	private static final String[] COLUMNS = {"time", "action", "host1",
+		"host2", "message", "extra"};
+	private static final int[] COLUMN_TYPES = {ColumnarWriter.TIME,
+		ColumnarWriter.STRING, ColumnarWriter.STRING, ColumnarWriter.STRING,
+		ColumnarWriter.STRING, ColumnarWriter.STRING};
+
+	@Override
+	protected String[] getColumnNames() {
+		return COLUMNS;
+	}
+
+	@Override
+	protected int[] getColumnTypes() {
+		return COLUMN_TYPES;
+	}
 	
 	/**
 	 * Processes a log event by writing a line to the report file
@@ -37,11 +57,31 @@ public class EventLogReport extends Report
 	 */
 	private void processEvent(final String action, final DTNHost host1, 
 			final DTNHost host2, final Message message, final String extra) {
+		if (isBinaryOutput()) {
+			writeRow(action, host1, host2, message, extra);
+			return;
+		}
 		write(getSimTime() + " " + action + " " + (host1 != null ? host1 : "")
 				+ (host2 != null ? (" " + host2) : "")
 				+ (message != null ? " " + message : "")
 				+ (extra != null ? " " + extra : ""));
 	}
+
+	/**
+	 * Writes an event as a row of the binary output. Missing values are
+	 * written as empty strings.
+	 */
+	private void writeRow(String action, DTNHost host1, DTNHost host2,
+			Message message, String extra) {
+		ColumnarWriter w = getBinaryOutput();
+		w.setTime(0, getSimTime());
+		w.setString(1, action);
+		w.setString(2, host1 != null ? host1.toString() : null);
+		w.setString(3, host2 != null ? host2.toString() : null);
+		w.setString(4, message != null ? message.toString() : null);
+		w.setString(5, extra);
+		endBinaryRow();
+	}
 	
 	public void hostsConnected(DTNHost host1, DTNHost host2) {
 		processEvent(StandardEventsReader.CONNECTION, host1, host2, null,
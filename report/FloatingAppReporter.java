@@ -20,6 +20,7 @@ import core.DTNHost;
  * @author jo
  */
 public class FloatingAppReporter extends Report implements ApplicationListener {
+	private static final long serialVersionUID = 42L;
 	
     public void gotEvent(String event, Object params, Application app,
 			 DTNHost host) {
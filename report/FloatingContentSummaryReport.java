@@ -132,6 +132,7 @@ class MsgEntry {
  * per message size, ttl, a, and r.  In the end, individual messages (MSG) are listed.
  */
 public class FloatingContentSummaryReport extends Report implements MessageListener {
+	private static final long serialVersionUID = 42L;
     public static final String HEADER =
 	"# FloatingContentMessageSummaryReport";
     public static final int N_ELEM = 101;
@@ -19,6 +19,7 @@ import routing.FloatingContentRouter;
  * @author jo
  */
 public class FloatingMessageReport extends Report implements MessageListener {
+	private static final long serialVersionUID = 42L;
 	public static final String HEADER =
 	    "# messages: event-type org-node (loc-x,loc-y) (anchor-x,anchor-y) r=<core> a=<availability> ttl size [node-snd ( loc-x loc-y ) [node-rcv ( loc-x loc-y)]]";
 	/** all message delays */
@@ -12,13 +12,21 @@ import core.MessageListener;
  * Report for of amount of messages delivered vs. time. A new report line
  * is created every time when either a message is created or delivered.
  * Messages created during the warm up period are ignored.
- * For output syntax, see {@link #HEADER}.
+ * For output syntax, see {@link #HEADER}. The binary output
+ * ({@link Report#BINARY_OUTPUT_S}) has the same columns without the header.
  */
 public class MessageDeliveryReport extends Report implements MessageListener {
+	private static final long serialVersionUID = 42L;
 	public static String HEADER="# time  created  delivered  delivered/created";
 	private int created;
 	private int delivered;
 
+	/** columns of the binary output */
+	private static final String[] COLUMNS = {"time", "created",
+		"delivered", "ratio"};
+	private static final int[] COLUMN_TYPES = {ColumnarWriter.TIME,
+		ColumnarWriter.LONG, ColumnarWriter.LONG, ColumnarWriter.DOUBLE};
+
 	/**
 	 * Constructor.
 	 */
@@ -31,7 +39,19 @@ public class MessageDeliveryReport extends Report implements MessageListener {
 		super.init();
 		created = 0;
 		delivered = 0;
-		write(HEADER);
+		if (!isBinaryOutput()) {
+			write(HEADER);
+		}
+	}
+
+	@Override
+	protected String[] getColumnNames() {
+		return COLUMNS;
+	}
+
+	@Override
+	protected int[] getColumnTypes() {
+		return COLUMN_TYPES;
 	}
 
 	public void messageTransferred(Message m, DTNHost from, DTNHost to, 
@@ -56,6 +76,15 @@ public class MessageDeliveryReport extends Report implements MessageListener {
 	 */
 	private void reportValues() {
 		double prob = (1.0 * delivered) / created;
+		if (isBinaryOutput()) {
+			ColumnarWriter w = getBinaryOutput();
+			w.setTime(0, getSimTime());
+			w.setLong(1, created);
+			w.setLong(2, delivered);
+			w.setDouble(3, prob);
+			endBinaryRow();
+			return;
+		}
 		write(format(getSimTime()) + " " + created + " " + delivered + 
 				" " + format(prob));
 	}
@@ -22,6 +22,7 @@ import core.MessageListener;
  * double values and zero for integer median(s).
  */
 public class MessageStatsReport extends Report implements MessageListener {
+	private static final long serialVersionUID = 42L;
 	private Map<String, Double> creationTimes;
 	private List<Double> latencies;
 	private List<Integer> hopCounts;
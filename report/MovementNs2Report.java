@@ -16,6 +16,7 @@ import core.Settings;
  * This report ignores the warm up settings.
  */
 public class MovementNs2Report extends Report implements MovementListener {
+	private static final long serialVersionUID = 42L;
 	/** node array's name -setting id ({@value})*/
 	public static final String NODE_ARR_S = "nodeArray";
 	/** ns command -setting id ({@value}) */
@@ -7,7 +7,12 @@ package report;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.PrintWriter;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
@@ -15,6 +20,7 @@ import java.util.List;
 import java.util.Set;
 
 import core.Settings;
+import core.SettingsError;
 import core.SimClock;
 import core.SimError;
 import core.SimScenario;
@@ -26,7 +32,8 @@ import core.SimScenario;
  * the reports implement warm up feature ({@link #WARMUP_S}) but the
  * implementations are always report specific.
  */
-public abstract class Report {
+public abstract class Report implements Serializable {
+	private static final long serialVersionUID = 42L;
 	/** Name space of the settings that are common to all reports ({@value}). */ 
 	public static final String REPORT_NS = "Report";
 	/** The interval (simulated seconds) of creating new settings files 
@@ -49,12 +56,34 @@ public abstract class Report {
 	 *  respective report classes for details. Default is 0. Must be a positive
 	 *  integer or 0. */
 	public static final String WARMUP_S = "warmup";
+	/** Asynchronous output -setting id ({@value}). Boolean. If true, the
+	 * report output is encoded and written to the file by a background
+	 * thread (see {@link AsyncReportWriter}). Default is false. */
+	public static final String ASYNC_OUTPUT_S = "asyncOutput";
+	/** Size of the asynchronous output buffer -setting id ({@value}).
+	 * Integer, the maximum number of pending writes before the simulation
+	 * waits for the output to catch up. Default is
+	 * {@value #DEF_ASYNC_BUFFER_SIZE}. */
+	public static final String ASYNC_BUFFER_SIZE_S = "asyncBufferSize";
+	/** Default size of the asynchronous output buffer */
+	public static final int DEF_ASYNC_BUFFER_SIZE = 65536;
+	/** Binary output -setting id ({@value}). Boolean. If true, reports that
+	 * support it write their output in the binary columnar format (see
+	 * {@link ColumnarWriter}) instead of text. {@link ColumnarReader} can
+	 * convert the files to CSV. Other reports ignore the setting. Default is
+	 * false. */
+	public static final String BINARY_OUTPUT_S = "binaryOutput";
 	/** Suffix of report files without explicit output */
 	public static final String OUT_SUFFIX = ".txt";
+	/** Suffix of binary report files without explicit output */
+	public static final String BINARY_SUFFIX = ".col";
 	/** Suffix for reports that are created on n second intervals */
 	public static final String INTERVALLED_FORMAT ="%04d" + OUT_SUFFIX; 
 	/** The print writer used to write output. See {@link #write(String)} */
-	protected PrintWriter out;
+	protected transient PrintWriter out;
+	/** The writer of the binary output or null if the output is text.
+	 * See {@link #getBinaryOutput()} */
+	protected transient ColumnarWriter binaryOut;
 	/** String value for values that could not be calculated */
 	public static final String NAN = "NaN";
 	private String prefix = "";
@@ -67,23 +96,28 @@ public abstract class Report {
 	private double lastReportTime;
 	private String outFileName;
 	private String scenarioName;
+	/** size of the asynchronous output buffer or 0 for synchronous output */
+	private int asyncBufferSize;
+	/** is the output written in the binary columnar format */
+	private boolean binaryOutput;
+	/** name of the file the output is written to */
+	private String currentOutFile;
+	/** output written so far, only set while the report is serialized */
+	private byte[] writtenOutput;
 	
 	/**
 	 * Constructor.
 	 * Looks for a className.output setting in the Settings and
 	 * if such is found, uses that as the output file name. Otherwise
-	 * scenarioname_classname.txt is used as the file name.
+	 * scenarioname_classname.txt (or .col for binary output) is used as the
+	 * file name.
 	 */
 	public Report(){
 		this.lastOutputSuffix = 0;
 		this.outputInterval = -1;
 		this.warmupIDs = null;
 
-		Settings settings = new Settings();
-		scenarioName = settings.valueFillString(settings.getSetting(
-				SimScenario.SCENARIO_NS + "." +	SimScenario.NAME_S));
-		
-		settings = getSettings();
+		Settings settings = getSettings();
 		
 		if (settings.contains(INTERVAL_SETTING)) {
 			outputInterval = settings.getDouble(INTERVAL_SETTING);
@@ -107,10 +141,84 @@ public abstract class Report {
 			precision = DEF_PRECISION;
 		}
 		
+		if (settings.getBoolean(ASYNC_OUTPUT_S, false)) {
+			this.asyncBufferSize = settings.getInt(ASYNC_BUFFER_SIZE_S,
+					DEF_ASYNC_BUFFER_SIZE);
+			if (this.asyncBufferSize < 1) {
+				throw new SettingsError("Invalid " + ASYNC_BUFFER_SIZE_S +
+						" value " + this.asyncBufferSize);
+			}
+		}
+
+		this.binaryOutput = settings.getBoolean(BINARY_OUTPUT_S, false) &&
+			getColumnNames() != null;
+
+		outFileName = createOutFileName();
+		checkDirExistence(outFileName);
+	}
+
+	/**
+	 * Returns the names of the columns of the report's binary output.
+	 * Reports that support the binary output ({@link #BINARY_OUTPUT_S})
+	 * override this and {@link #getColumnTypes()}.
+	 * @return The column names or null if the report has only text output
+	 */
+	protected String[] getColumnNames() {
+		return null;
+	}
+
+	/**
+	 * Returns the types of the columns of the report's binary output
+	 * (see {@link ColumnarWriter#TIME} etc.)
+	 * @return The column types or null if the report has only text output
+	 */
+	protected int[] getColumnTypes() {
+		return null;
+	}
+
+	/**
+	 * Returns true if the output of the report is written in the binary
+	 * columnar format
+	 * @return true if the output is binary, false if it is text
+	 */
+	protected boolean isBinaryOutput() {
+		return this.binaryOutput;
+	}
+
+	/**
+	 * Returns the suffix of the output files
+	 * @return {@link #BINARY_SUFFIX} or {@link #OUT_SUFFIX}
+	 */
+	private String getOutSuffix() {
+		return this.binaryOutput ? BINARY_SUFFIX : OUT_SUFFIX;
+	}
+
+	/**
+	 * Returns the suffix of an intervalled output file
+	 * @param index Index of the file
+	 * @return The suffix
+	 */
+	private String getIntervalSuffix(int index) {
+		return this.binaryOutput ? String.format("%04d", index) +
+			BINARY_SUFFIX : String.format(INTERVALLED_FORMAT, index);
+	}
+
+	/**
+	 * Reads the scenario name and constructs the output file name from the
+	 * settings of the current run
+	 * @return The output file name
+	 */
+	private String createOutFileName() {
+		Settings settings = new Settings();
+		scenarioName = settings.valueFillString(settings.getSetting(
+				SimScenario.SCENARIO_NS + "." +	SimScenario.NAME_S));
+		
+		settings = getSettings();
+		String name;
 		if (settings.contains(OUTPUT_SETTING)) {
-			outFileName = settings.getSetting(OUTPUT_SETTING);
+			name = settings.getSetting(OUTPUT_SETTING);
 			// fill value place holders in the name
-			outFileName = settings.valueFillString(outFileName);
+			name = settings.valueFillString(name);
 		}
 		else {
 			// no output name define -> construct one from report class' name
@@ -119,15 +227,14 @@ public abstract class Report {
 			if (!outDir.endsWith("/")) {
 				outDir += "/";	// make sure dir ends with directory delimiter
 			}
-			outFileName = outDir + scenarioName + 
+			name = outDir + scenarioName + 
 				"_" + this.getClass().getSimpleName();
 			if (outputInterval == -1) {
-				outFileName += OUT_SUFFIX; // no intervalled reports
+				name += getOutSuffix(); // no intervalled reports
 			}
 			
 		}
-				
-		checkDirExistence(outFileName);
+		return name;
 	}
 
 	/**
@@ -192,20 +299,114 @@ public abstract class Report {
 	 */
 	private void createOutput(String outFileName) {
 		try {
-			this.out = new PrintWriter(new FileWriter(outFileName));
+			if (this.binaryOutput) {
+				this.binaryOut = new ColumnarWriter(outFileName, false,
+						getColumnNames(), getColumnTypes());
+			}
+			else {
+				this.out = openWriter(outFileName, false);
+			}
+			this.currentOutFile = outFileName;
 		} catch (IOException e) {
 			throw new SimError("Couldn't open file '" + outFileName + 
 					"' for report output\n" + e.getMessage(), e);
 		}		
 	}
 	
+	/**
+	 * Opens a print writer for a file
+	 * @param fileName Name (&path) of the file
+	 * @param append If true, the output is appended to the file
+	 * @return The print writer
+	 * @throws IOException if the file can't be opened
+	 */
+	private PrintWriter openWriter(String fileName, boolean append)
+			throws IOException {
+		if (this.asyncBufferSize > 0) {
+			return new PrintWriter(new AsyncReportWriter(fileName, append,
+					this.asyncBufferSize));
+		}
+		return new PrintWriter(new FileWriter(fileName, append));
+	}
+
+	/**
+	 * Reopens the output of a report that was restored from a
+	 * {@link core.Checkpoint}. The output file name is constructed again
+	 * from the settings of the current run and the output the report had
+	 * written before the checkpoint is copied to the new file(s), so the
+	 * output continues from where it was when the checkpoint was saved.
+	 */
+	public void reopenOutput() {
+		String oldFileName = this.outFileName;
+		this.outFileName = createOutFileName();
+		checkDirExistence(this.outFileName);
+		if (this.writtenOutput == null) {
+			return; // no output created before the checkpoint
+		}
+
+		try {
+			if (outputInterval > 0) {
+				// copy the finished files of the earlier intervals
+				for (int i = 0; i < this.lastOutputSuffix - 1; i++) {
+					String suffix = getIntervalSuffix(i);
+					File old = new File(oldFileName + suffix);
+					if (old.exists() && !oldFileName.equals(outFileName)) {
+						Files.copy(old.toPath(),
+								Paths.get(outFileName + suffix),
+								StandardCopyOption.REPLACE_EXISTING);
+					}
+				}
+				this.currentOutFile = outFileName +
+					getIntervalSuffix(this.lastOutputSuffix - 1);
+			}
+			else {
+				this.currentOutFile = outFileName;
+			}
+			Files.write(Paths.get(this.currentOutFile), this.writtenOutput);
+			if (this.binaryOutput) {
+				this.binaryOut = new ColumnarWriter(currentOutFile, true,
+						getColumnNames(), getColumnTypes());
+			}
+			else {
+				this.out = openWriter(currentOutFile, true);
+			}
+		} catch (IOException e) {
+			throw new SimError("Couldn't reopen file '" + currentOutFile + 
+					"' for report output\n" + e.getMessage(), e);
+		}
+		this.writtenOutput = null;
+	}
+	
+	/**
+	 * Flushes the output and stores the output written so far with the
+	 * state of the report
+	 * @param stream The stream the report is serialized to
+	 * @throws IOException if the output can't be read
+	 */
+	private void writeObject(ObjectOutputStream stream) throws IOException {
+		if (this.out != null) {
+			this.out.flush();
+		}
+		if (this.binaryOut != null) {
+			this.binaryOut.flush();
+		}
+		if (this.out != null || this.binaryOut != null) {
+			this.writtenOutput = Files.readAllBytes(
+					Paths.get(this.currentOutFile));
+		}
+		try {
+			stream.defaultWriteObject();
+		} finally {
+			this.writtenOutput = null;
+		}
+	}
+	
 	/**
 	 * Creates a number-suffixed output file with increasing number suffix
 	 * @param outFileName Prefix of the output file's name
 	 */
 	private void createSuffixedOutput(String outFileName) {
-		String suffix = String.format(INTERVALLED_FORMAT,
-				this.lastOutputSuffix);
+		String suffix = getIntervalSuffix(this.lastOutputSuffix);
 		createOutput(outFileName+suffix);
 		this.lastOutputSuffix++;
 	}
@@ -232,12 +433,40 @@ public abstract class Report {
 	 * @see #setPrefix(String)
 	 */
 	protected void write(String txt) {
+		assert !binaryOutput : "Text written to the binary output of " +
+			this.getClass().getSimpleName();
 		if (out == null) {
 			init();
 		}
 		out.println(prefix + txt);
 	}
 	
+	/**
+	 * Returns the writer of the binary output, initializing the output
+	 * first if needed. A row is written by setting the value of every
+	 * column and calling {@link #endBinaryRow()}.
+	 * @return The writer
+	 * @see #isBinaryOutput()
+	 */
+	protected ColumnarWriter getBinaryOutput() {
+		if (binaryOut == null) {
+			init();
+		}
+		return binaryOut;
+	}
+
+	/**
+	 * Finishes a row of the binary output (see {@link #getBinaryOutput()})
+	 */
+	protected void endBinaryRow() {
+		try {
+			binaryOut.endRow();
+		} catch (IOException e) {
+			throw new SimError("Couldn't write report output to '" +
+					currentOutFile + "'\n" + e.getMessage(), e);
+		}
+	}
+
 	/**
 	 * Formats a double value according to current precision setting (see
 	 * {@link #PRECISION_SETTING}) and returns it in a string.
@@ -327,12 +556,22 @@ public abstract class Report {
 	/**
 	 * Called when the simulation is done, user requested
 	 * premature termination or intervalled report generating decided
-	 * that it's time for the next report.
+	 * that it's time for the next report. Closing the output waits until
+	 * all of it has been written to the file, also with the asynchronous
+	 * output.
 	 */
 	public void done() {
 		if (out != null) {
 			out.close();
 		}
+		if (binaryOut != null) {
+			try {
+				binaryOut.close();
+			} catch (IOException e) {
+				throw new SimError("Couldn't write report output to '" +
+						currentOutFile + "'\n" + e.getMessage(), e);
+			}
+		}
 	}
 	
 	/**
@@ -19,6 +19,7 @@ import core.UpdateListener;
  */
 public class TotalContactTimeReport extends ContactTimesReport implements
 		UpdateListener {
+	private static final long serialVersionUID = 42L;
 	
 	/** The header of every report file */
 	public static final String HEADER = "# time totalContactTime";
@@ -37,6 +38,14 @@ public class TotalContactTimeReport extends ContactTimesReport implements
 		this.lastWrite = getSimTime();
 	}
 
+	/**
+	 * Returns null; the report has only text output
+	 */
+	@Override
+	protected String[] getColumnNames() {
+		return null;
+	}
+
 	@Override
 	public void hostsDisconnected(DTNHost host1, DTNHost host2) {
 		newEvent();
@@ -29,6 +29,7 @@ import core.SimClock;
  * {@link #update()}).
  */
 public abstract class ActiveRouter extends MessageRouter {
+	private static final long serialVersionUID = 42L;
 	/** Delete delivered messages -setting id ({@value}). Boolean valued.
 	 * If set to true and final recipient of a message rejects it because it
 	 * already has it, the message is deleted from buffer. Default=false. */
@@ -36,16 +37,23 @@ public abstract class ActiveRouter extends MessageRouter {
 	/** should messages that final recipient marks as delivered be deleted
 	 * from message buffer */
 	protected boolean deleteDelivered;
+	/** Maximum number of concurrent transfers -setting id ({@value}).
+	 * Integer valued. How many connections the router can send on at the
+	 * same time (e.g., one per laser terminal). Default=1. */
+	public static final String MAX_CONCURRENT_TRANSFERS_S =
+		"maxConcurrentTransfers";
+	/** how many connections the router can send on at the same time */
+	protected int maxConcurrentTransfers;
 		
 	/** prefix of all response message IDs */
 	public static final String RESPONSE_PREFIX = "R_";
 	
-	/** how often TTL check (discarding old messages) is performed */
-	private static int ttlCheckInterval = 60;
-	/** connection(s) that are currently used for sending */
+	/** connection(s) that are currently used for sending. A connection is
+	 * in the list once per message in flight on it: connections that carry
+	 * several messages at a time (see {@link core.SatelliteLinkConnection})
+	 * are in it several times and {@link #update()} finalizes or aborts one
+	 * message per entry, the oldest one first. */
 	protected ArrayList<Connection> sendingConnections;
-	/** sim time when the last TTL check was done */
-	private double lastTtlCheck;
 	
 	private MessageTransferAcceptPolicy policy;
 	private EnergyModel energy;
@@ -61,16 +69,15 @@ public abstract class ActiveRouter extends MessageRouter {
 		this.policy = new MessageTransferAcceptPolicy(s);
 		
 		this.deleteDelivered = s.getBoolean(DELETE_DELIVERED_S, false);
+		this.maxConcurrentTransfers = s.getInt(MAX_CONCURRENT_TRANSFERS_S, 1);
+		s.ensurePositiveValue(this.maxConcurrentTransfers,
+				MAX_CONCURRENT_TRANSFERS_S);
 		
 		if (s.contains(EnergyModel.INIT_ENERGY_S)) {
 			this.energy = new EnergyModel(s);
 		} else {
 			this.energy = null; /* no energy model */
 		}
-		
-		ttlCheckInterval = 
-				(new Settings().getBoolean(Message.TTL_SECONDS_S, false) 
-						? 1 : 60);
 	}
 	
 	/**
@@ -80,6 +87,7 @@ public abstract class ActiveRouter extends MessageRouter {
 	protected ActiveRouter(ActiveRouter r) {
 		super(r);
 		this.deleteDelivered = r.deleteDelivered;
+		this.maxConcurrentTransfers = r.maxConcurrentTransfers;
 		this.policy = r.policy;
 		this.energy = (r.energy != null ? r.energy.replicate() : null);
 	}
@@ -88,13 +96,13 @@ public abstract class ActiveRouter extends MessageRouter {
 	public void init(DTNHost host, List<MessageListener> mListeners) {
 		super.init(host, mListeners);
 		this.sendingConnections = new ArrayList<Connection>(1);
-		this.lastTtlCheck = 0;
 	}
 	
 	/**
 	 * Called when a connection's state changes. If energy modeling is enabled,
 	 * and a new connection is created to this node, reduces the energy for the
-	 * device discovery (scan response) amount
+	 * device discovery (scan response) amount. Cache summaries are exchanged
+	 * over new connections (if enabled).
 	 * @param @con The connection whose state changed
 	 */
 	@Override
@@ -102,6 +110,7 @@ public abstract class ActiveRouter extends MessageRouter {
 		if (this.energy != null && con.isUp() && !con.isInitiator(getHost())) {
 			this.energy.reduceDiscoveryEnergy();
 		}
+		cacheSummaryConnectionChanged(con);
 	}
 	
 	@Override
@@ -154,7 +163,7 @@ public abstract class ActiveRouter extends MessageRouter {
 		// check if msg was for this host and a response was requested
 		if (m.getTo() == getHost() && m.getResponseSize() > 0) {
 			// generate a response message
-			Message res = new Message(this.getHost(),m.getFrom(), 
+			Message res = new Message(this.getHost(),getRequester(m), 
 					RESPONSE_PREFIX+m.getId(), m.getResponseSize());
 			this.createNewMessage(res);
 			this.getMessage(RESPONSE_PREFIX+m.getId()).setRequest(m);
@@ -182,23 +191,27 @@ public abstract class ActiveRouter extends MessageRouter {
 	protected int startTransfer(Message m, Connection con) {
 		int retVal;
 		
-		if (!con.isReadyForTransfer()) {
+		if (!con.isReadyForTransfer(getHost())) {
 			return TRY_LATER_BUSY;
 		}
+		if (!this.sendingConnections.contains(con) &&
+				getNrofSendingConnections() >= this.maxConcurrentTransfers) {
+			return TRY_LATER_BUSY; // all transmitters are in use
+		}
 		
 		if (!policy.acceptSending(getHost(), 
 				con.getOtherNode(getHost()), con, m)) {
 			return MessageRouter.DENIED_POLICY;
 		}
 		
-		retVal = con.startTransfer(getHost(), m);//CBRConnection(̶(Constant Bit Rate)),msgonflyǷڴϢûоͿʼ䣬ôռʱ
-		if (retVal == RCV_OK) { // started transfer//RCV_OK ʾ/** Receive return value for OK */
-			addToSendingConnections(con);//ArrayList<Connection> sendingConnections;ʾ connection(s) that are currently used for sending  
+		retVal = con.startTransfer(getHost(), m);//方法在CBRConnection当中(固定比特率(Constant Bit Rate)),检查msgonfly是否有在传输的信息，没有就开始传输，设置传输所占用时间
+		if (retVal == RCV_OK) { // started transfer//RCV_OK 表示/** Receive return value for OK */
+			addToSendingConnections(con);//ArrayList<Connection> sendingConnections;表示 connection(s) that are currently used for sending  
 		}
-		else if (deleteDelivered && retVal == DENIED_OLD && //DENIED_OLDʾ/** Receive return value for an old (already received) message */
+		else if (deleteDelivered && retVal == DENIED_OLD && //DENIED_OLD表示/** Receive return value for an old (already received) message */
 				m.getTo() == con.getOtherNode(this.getHost())) {
 			/* final recipient has already received the msg -> delete it */
-			this.deleteMessage(m.getId(), false);//ӱڵ·ɾϢ
+			this.deleteMessage(m.getId(), false);//从本节点路由中删除此条信息
 		}
 		
 		return retVal;
@@ -210,11 +223,11 @@ public abstract class ActiveRouter extends MessageRouter {
 	 * @return True if router can start transfer, false if not
 	 */
 	protected boolean canStartTransfer() {
-		//жϸýڵܷʼ䣬Ϣھӽڵ㣬ŷ档
-		if (this.getNrofMessages() == 0) {//ǷϢ䣬ûô
+		//判断该节点能否开始传输，缓冲区有消息，并且有邻居节点，才返回真。
+		if (this.getNrofMessages() == 0) {//缓冲区是否有信息待传输，没有则不用传
 			return false;
 		}
-		if (this.getConnections().size() == 0) {//Ƿھӽڵ㣬Ƿӽ
+		if (this.getConnections().size() == 0) {//是否有邻居节点，即是否有连接建立
 			return false;
 		}
 		
@@ -271,7 +284,7 @@ public abstract class ActiveRouter extends MessageRouter {
 	 * transferred, the transfer is aborted before message is removed
 	 * @return True if enough space could be freed, false if not
 	 */
-	protected boolean makeRoomForMessage(int size){//sizeϢĴС
+	protected boolean makeRoomForMessage(int size){//size是新消息的大小
 		if (size > this.getBufferSize()) {
 			return false; // message too big for the buffer
 		}
@@ -294,15 +307,11 @@ public abstract class ActiveRouter extends MessageRouter {
 	}
 	
 	/**
-	 * Drops messages whose TTL is less than zero.
+	 * Drops messages whose TTL has run out.
 	 */
 	protected void dropExpiredMessages() {
-		Message[] messages = getMessageCollection().toArray(new Message[0]);
-		for (int i=0; i<messages.length; i++) {
-			int ttl = messages[i].getTtl(); 
-			if (ttl <= 0) {
-				deleteMessage(messages[i].getId(), true);
-			}
+		for (Message m : getExpiredMessages()) {
+			deleteMessage(m.getId(), true);
 		}
 	}
 	
@@ -354,7 +363,7 @@ public abstract class ActiveRouter extends MessageRouter {
 	 * @return a list of message-connections tuples
 	 */
 	protected List<Tuple<Message, Connection>> getMessagesForConnected() {
-		//رڵ㻺ЩĿĽڵھӽڵϢЩϢֻҪͶݳɹͳɹﵽĿĽڵ㡣
+		//返回本节点缓冲区的那些目的节点在其邻居节点的消息，这些消息只要投递成功，就成功达到目的节点。
 		if (getNrofMessages() == 0 || getConnections().size() == 0) {
 			/* no messages -> empty list */
 			return new ArrayList<Tuple<Message, Connection>>(0); 
@@ -362,10 +371,10 @@ public abstract class ActiveRouter extends MessageRouter {
 
 		List<Tuple<Message, Connection>> forTuples = 
 			new ArrayList<Tuple<Message, Connection>>();
-		for (Message m : getMessageCollection()) {//ÿϢ
-	        for (Connection con : getConnections()) { //ÿھӽڵ
+		for (Message m : getMessageCollection()) {//遍历缓冲区每个消息
+	        for (Connection con : getConnections()) { //遍历每个邻居节点
 	            DTNHost to = con.getOtherNode(getHost());
-	            if (m.getTo() == to) { //ϢĿĽڵھӽڵ
+	            if (m.getTo() == to) { //消息的目的节点是邻居节点
 					forTuples.add(new Tuple<Message, Connection>(m,con));
 				}
 			}
@@ -378,26 +387,36 @@ public abstract class ActiveRouter extends MessageRouter {
 	 * Tries to send messages for the connections that are mentioned
 	 * in the Tuples in the order they are in the list until one of
 	 * the connections starts transferring or all tuples have been tried.
+	 * If the router can send on several connections at the same time (see
+	 * {@link #MAX_CONCURRENT_TRANSFERS_S}), the rest of the tuples are
+	 * tried as long as there are free transmitters.
 	 * @param tuples The tuples to try
-	 * @return The tuple whose connection accepted the message or null if
-	 * none of the connections accepted the message that was meant for them.
+	 * @return The (first) tuple whose connection accepted the message or
+	 * null if none of the connections accepted the message that was meant
+	 * for them.
 	 */
 	protected Tuple<Message, Connection> tryMessagesForConnected(
 			List<Tuple<Message, Connection>> tuples) {
-		//Ϣбμ飬ԴȥֻҪһɹ(ζŸŵռ)ͷء
+		//将待传输消息列表依次检查，尝试传输出去，只要有一个成功(意味着该信道被占用)，就返回。
 		if (tuples.size() == 0) {
 			return null;
 		}
 		
+		Tuple<Message, Connection> started = null;
 		for (Tuple<Message, Connection> t : tuples) {
 			Message m = t.getKey();
 			Connection con = t.getValue();
 			if (startTransfer(m, con) == RCV_OK) {//RCV_OK==0
-				return t;
+				if (started == null) {
+					started = t;
+				}
+				if (isTransferring()) {
+					break; // no free transmitters left
+				}
 			}
 		}
 		
-		return null;
+		return started;
 	}
 	
 	 /**
@@ -427,24 +446,32 @@ public abstract class ActiveRouter extends MessageRouter {
 	 * Tries to send all given messages to all given connections. Connections
 	 * are first iterated in the order they are in the list and for every
 	 * connection, the messages are tried in the order they are in the list.
-	 * Once an accepting connection is found, no other connections or messages
-	 * are tried.
+	 * Once an accepting connection is found, no other messages are tried
+	 * for it, and no other connections are tried unless the router can send
+	 * on several connections at the same time (see
+	 * {@link #MAX_CONCURRENT_TRANSFERS_S}).
 	 * @param messages The list of Messages to try
 	 * @param connections The list of Connections to try
-	 * @return The connections that started a transfer or null if no connection
-	 * accepted a message.
+	 * @return The (first) connection that started a transfer or null if no
+	 * connection accepted a message.
 	 */
 	protected Connection tryMessagesToConnections(List<Message> messages,
 			List<Connection> connections) {
+		Connection first = null;
 		for (int i=0, n=connections.size(); i<n; i++) {
 			Connection con = connections.get(i);
 			Message started = tryAllMessages(con, messages); 
 			if (started != null) { 
-				return con;
+				if (first == null) {
+					first = con;
+				}
+				if (isTransferring()) {
+					break; // no free transmitters left
+				}
 			}
 		}
 		
-		return null;
+		return first;
 	}
 	
 	/**
@@ -477,7 +504,7 @@ public abstract class ActiveRouter extends MessageRouter {
 	 * was started
 	 */
 	protected Connection exchangeDeliverableMessages() {
-		//ڽýڵھӽڵϢЩϢĿĽڵǸýڵھӽڵ㡣
+		//用于交换该节点与邻居节点间的消息，这些消息的目的节点是该节点或者其邻居节点。
 		List<Connection> connections = getConnections();
 
 		if (connections.size() == 0) {
@@ -486,16 +513,16 @@ public abstract class ActiveRouter extends MessageRouter {
 		
 		@SuppressWarnings(value = "unchecked")
 		Tuple<Message, Connection> t =
-			tryMessagesForConnected(sortByQueueMode(getMessagesForConnected()));//getMessagesForConnected()ȰĿĽڵھӽڵϢȡصԪ<message,connection>
-		//sortByQueueMode()ģʽȻԴ
+			tryMessagesForConnected(sortByQueueMode(getMessagesForConnected()));//getMessagesForConnected()先把目的节点是邻居节点的信息读取出来，返回的是元组<message,connection>
+		//sortByQueueMode()按发送模式排序，然后尝试传输
 		
 		if (t != null) {
 			return t.getValue(); // started transfer
 		}
-		 //ûͳɹھӽڵĻǷϢĿĽڵǸýڵ㣬ǣԴ
+		 //如果没发送成功，看邻居节点的缓冲区是否有消息的目的节点是该节点，若是，尝试传输
 		// didn't start transfer to any node -> ask messages from connected
 		for (Connection con : connections) {
-			if (con.getOtherNode(getHost()).requestDeliverableMessages(con)) {//ĬϷfalse
+			if (con.getOtherNode(getHost()).requestDeliverableMessages(con)) {//默认返回false
 				return con;
 			}
 		}
@@ -520,7 +547,9 @@ public abstract class ActiveRouter extends MessageRouter {
 	
 	/**
 	 * Adds a connections to sending connections which are monitored in
-	 * the update.
+	 * the update. Must be called once for every transfer that was started:
+	 * a connection that already has messages in flight is added again, so
+	 * that every message gets its own entry to be finalized or aborted.
 	 * @see #update()
 	 * @param con The connection to add
 	 */
@@ -534,23 +563,23 @@ public abstract class ActiveRouter extends MessageRouter {
 	 * @return true if this router is transferring something
 	 */
 	public boolean isTransferring() {
-		//жϸýڵܷдϢһϵģֱӷأ,ŵѱռã
-		//1ڵڴ
-		if (this.sendingConnections.size() > 0) {//protected ArrayList<Connection> sendingConnections;
-			return true; // sending something
+		//判断该节点能否进行传输消息，存在以下情况一种以上的，直接返回，不更新,即现在信道已被占用：
+		//情形1：本节点正在传输
+		if (isSendingAtCapacity()) {
+			return true; // sending something (and no room for more)
 		}
 		
 		List<Connection> connections = getConnections();
-		//2ûھӽڵ
+		//情型2：没有邻居节点
 		if (connections.size() == 0) {
 			return false; // not connected
 		}
-		//3ھӽڵ㣬·ڴ
-		//ģ߹㲥·ھӽڵ֮ͬʱֻһԽڵ㴫!!!!!!!!!!!!!!!!!!!!!!!!!!!
-		//Ҫ޸!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!
+		//情型3：有邻居节点，但有链路正在传输
+		//模拟了无线广播链路，即邻居节点之间同时只能有一对节点传输数据!!!!!!!!!!!!!!!!!!!!!!!!!!!
+		//需要修改!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!
 		/*for (int i=0, n=connections.size(); i<n; i++) {
 			Connection con = connections.get(i);
-			if (!con.isReadyForTransfer()) {//isReadyForTransferfalseʾŵڱռã˶ڹ㲥ŵԲܴ
+			if (!con.isReadyForTransfer()) {//isReadyForTransfer返回false则表示有信道在被占用，因此对于广播信道而言不能传输
 				return true;	// a connection isn't ready for new transfer
 			}
 		}*/
@@ -558,6 +587,38 @@ public abstract class ActiveRouter extends MessageRouter {
 		return false;		
 	}
 	
+	/**
+	 * Returns true if the router can't start any more transfers: none of the
+	 * connections it is sending on can take more messages and it is sending
+	 * on as many connections as it can (see
+	 * {@link #MAX_CONCURRENT_TRANSFERS_S}).
+	 * @return true if no new transfers can be started
+	 */
+	protected boolean isSendingAtCapacity() {
+		for (Connection con : this.sendingConnections) {
+			if (con.isReadyForTransfer(getHost())) {
+				return false; // room for more messages on this connection
+			}
+		}
+		return getNrofSendingConnections() >= this.maxConcurrentTransfers;
+	}
+
+	/**
+	 * Returns the number of different connections the router is sending on
+	 * (one connection can carry several transfers)
+	 * @return The number of sending connections
+	 */
+	protected int getNrofSendingConnections() {
+		int n = 0;
+		for (int i=0, size=this.sendingConnections.size(); i<size; i++) {
+			if (this.sendingConnections.indexOf(
+					this.sendingConnections.get(i)) == i) {
+				n++;
+			}
+		}
+		return n;
+	}
+
 	/**
 	 * Returns true if this router is currently sending a message with 
 	 * <CODE>msgId</CODE>.
@@ -566,10 +627,11 @@ public abstract class ActiveRouter extends MessageRouter {
 	 */
 	public boolean isSending(String msgId) {
 		for (Connection con : this.sendingConnections) {
-			if (con.getMessage() == null) {
+			Message m = con.getMessage(getHost());
+			if (m == null) {
 				continue; // transmission is finalized
 			}
-			if (con.getMessage().getId().equals(msgId)) {
+			if (m.getId().equals(msgId)) {
 				return true;
 			}
 		}
@@ -597,49 +659,47 @@ public abstract class ActiveRouter extends MessageRouter {
 		
 		/* in theory we can have multiple sending connections even though
 		  currently all routers allow only one concurrent sending connection */
-		for (int i=0; i<this.sendingConnections.size(); ) {//ûi++Ϊõarraylistÿremove(i)бᶯ̬仯
+		for (int i=0; i<this.sendingConnections.size(); ) {//没有i++，因为用的是arraylist，每次remove(i)后列表会动态变化
 			boolean removeCurrent = false;
-			Connection con = sendingConnections.get(i);//sendingconnections,¼Ŀǰռõ·ǸбΪconnection,get(i)ǻȡбеi·
+			Connection con = sendingConnections.get(i);//sendingconnections,记录目前正在占用的链路，是个列表，类型为connection,get(i)是获取列表中第i个链路
 			
-			/*** 1. ɴݰ ***/
+			/*** 1. 处理已完成传输的数据包 ***/
 			/* finalize ready transfers  */
-			if (con.isMessageTransferred()) {//Ƿɴ,ǻͨʺѾʱж
-				if (con.getMessage() != null) {
+			if (con.isMessageTransferred(getHost())) {//是否完成传输,返回是或否，通过传输速率和已经传输所用时间来判定
+				if (con.getMessage(getHost()) != null) {
 					transferDone(con);
-					con.finalizeTransfer();
+					con.finalizeTransfer(getHost());
 				} /* else: some other entity aborted transfer */
 				removeCurrent = true;
 			}
-			 /*** 2. ֹЩϿ·ϵݰ ***/
+			 /*** 2. 中止那些断开链路上的数据包 ***/
 			/* remove connections that have gone down */
 			else if (!con.isUp()) {
-				if (con.getMessage() != null) {
+				if (con.getMessage(getHost()) != null) {
 					transferAborted(con);
-					con.abortTransfer();
+					con.abortTransfer(getHost());
 				}
 				removeCurrent = true;
 			} 
-			/*** 3. ҪʱɾЩյҲڴϢ ***/
+			/*** 3. 必要时，删除那些最早接收到且不正在传输的消息 ***/
 			if (removeCurrent) {
 				// if the message being sent was holding excess buffer, free it
-				if (this.getFreeBufferSize() < 0) {//bufferϢǷѳ
-					this.makeRoomForMessage(0);//Ϣ
+				if (this.getFreeBufferSize() < 0) {//buffer中所有信息是否已超出容量
+					this.makeRoomForMessage(0);//清除旧信息
 				}
-				sendingConnections.remove(i);//һǰ·ˣƳбǰ·
+				sendingConnections.remove(i);//一旦满足前面的条件，此链路即无用了，可以移除列表最前面的链路
 			}
 			else {
 				/* index increase needed only if nothing was removed */
 				i++;
 			}
 		}
-		/*** 4. ЩTTLڵݰ(ֻûϢ͵) ***/
-		/* time to do a TTL check and drop old messages? Only if not sending */
-		if (SimClock.getTime() - lastTtlCheck >= ttlCheckInterval && 
-				sendingConnections.size() == 0) {
+		/*** 4. 丢弃那些TTL到期的数据包(只在没有消息发送的情况) ***/
+		/* drop the messages whose TTL has run out. Only if not sending */
+		if (sendingConnections.size() == 0) {
 			dropExpiredMessages();
-			lastTtlCheck = SimClock.getTime();
 		}
-		/*** 5. ģ ***/
+		/*** 5. 更新能量模板 ***/
 		if (energy != null) {
 			/* TODO: add support for other interfaces */
 			NetworkInterface iface = getHost().getInterface(1);
@@ -647,6 +707,14 @@ public abstract class ActiveRouter extends MessageRouter {
 		}
 	}
 	
+	@Override
+	public double getNextUpdateTime() {
+		if (this.sendingConnections.size() > 0 || this.energy != null) {
+			return SimClock.getTime();
+		}
+		return super.getNextUpdateTime();
+	}
+
 	/**
 	 * Method is called just before a transfer is aborted at {@link #update()} 
 	 * due connection going down. This happens on the sending host. 
@@ -659,6 +727,8 @@ public abstract class ActiveRouter extends MessageRouter {
 	 * Method is called just before a transfer is finalized 
 	 * at {@link #update()}.
 	 * Subclasses that are interested of the event may want to override this.
+	 * The finalized message is <code>con.getMessage(getHost())</code>;
+	 * a pipelined connection may carry messages of both hosts at once.
 	 * @param con The connection whose transfer was finalized
 	 */
 	protected void transferDone(Connection con) { }
@@ -14,6 +14,7 @@ import core.Settings;
  * (or fragments) and forwards it to the first available contact.
  */
 public class FirstContactRouter extends ActiveRouter {
+	private static final long serialVersionUID = 42L;
 	
 	/**
 	 * Constructor. Creates a new message router based on the settings in
@@ -63,7 +64,7 @@ public class FirstContactRouter extends ActiveRouter {
 	@Override
 	protected void transferDone(Connection con) {
 		/* don't leave a copy for the sender */
-		this.deleteMessage(con.getMessage().getId(), false);
+		this.deleteMessage(con.getMessage(getHost()).getId(), false);
 	}
 		
 	@Override
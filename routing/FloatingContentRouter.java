@@ -33,6 +33,7 @@ import core.*;
  */
 
 public class FloatingContentRouter extends ActiveRouter {
+	private static final long serialVersionUID = 42L;
 	public static final int REPL_FIFO  = 0;
 	public static final int REPL_RND   = 1;
 	public static final int REPL_SAF   = 2;
@@ -36,6 +36,7 @@ import core.Settings;
  * Protocols</I> Chants, 2008 
  */
 public class MaxPropRouter extends ActiveRouter {
+	private static final long serialVersionUID = 42L;
     /** Router's setting namespace ({@value})*/
 	public static final String MAXPROP_NS = "MaxPropRouter";
 	/**
@@ -209,7 +210,7 @@ public class MaxPropRouter extends ActiveRouter {
 	 */
 	@Override
 	protected void transferDone(Connection con) {
-		Message m = con.getMessage();
+		Message m = con.getMessage(getHost());
 		String id = m.getId();
 		DTNHost recipient = con.getOtherNode(getHost());
 		Set<String> sentMsgIds = this.sentMessages.get(recipient);
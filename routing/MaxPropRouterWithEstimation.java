@@ -44,6 +44,7 @@ import core.SimClock;
  * @version 1.0
  */
 public class MaxPropRouterWithEstimation extends ActiveRouter {
+	private static final long serialVersionUID = 42L;
 	/** probabilities of meeting hosts */
 	private MeetingProbabilitySet probs;
 	/** meeting probabilities of all hosts from this host's point of view 
@@ -349,7 +350,7 @@ public class MaxPropRouterWithEstimation extends ActiveRouter {
 	 */
 	@Override
 	protected void transferDone(Connection con) {
-		Message m = con.getMessage();
+		Message m = con.getMessage(getHost());
 		/* was the message delivered to the final recipient? */
 		if (m.getTo() == con.getOtherNode(getHost())) { 
 			this.ackedMessageIds.add(m.getId()); // yes, add to ACKed messages
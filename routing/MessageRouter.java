@@ -7,20 +7,31 @@ package routing;
 import input.ExternalEvent;
 import input.MessageCreateEvent;
 
+import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Queue;
 import java.util.Random;
 
+import routing.util.CacheSummary;
+import routing.util.CacheSummaryTable;
+import routing.util.MultiSourceFetcher;
+import routing.util.PrefetchEngine;
 import routing.util.RoutingInfo;
+import util.ExpiryIndex;
+import util.ReedSolomon;
 import util.Tuple;
 import core.Application;
+import core.CacheListener;
 import core.Connection;
+import core.ContentDirectory;
 import core.DTNHost;
 import core.Message;
 import core.MessageListener;
@@ -33,7 +44,8 @@ import core.file;
 /**
  * Superclass for message routers.
  */
-public abstract class MessageRouter {
+public abstract class MessageRouter implements Serializable {
+	private static final long serialVersionUID = 42L;
 	/** Message buffer size -setting id ({@value}). Integer value in bytes.*/
 	public static final String B_SIZE_S = "bufferSize";
 	/**
@@ -104,36 +116,120 @@ public abstract class MessageRouter {
 	
 	/** applications attached to the host */
 	private HashMap<String, Collection<Application>> applications = null;
-	/**------------------------------   MessageRouterӵı       --------------------------------*/
-	/** ļС*/
+	/**------------------------------   对MessageRouter添加的变量       --------------------------------*/
+	/** 文件缓存大小*/
 	private int filebuffersize;
-	/** bitMapڶchunkIDӳ    */
+	/** bitMap用于对chunkID进行映射    */
 	private ArrayList<Integer> bitMap = new ArrayList<Integer>();
-	/**һʱĶУڶм̽ڵõchunkϢ洢 */
+	/**定义一个临时的队列，用于对中继节点得到chunk传输消息存储 */
 	protected Queue<Message> tempQueue = new LinkedList<Message>();
-	/** Ҫάʽݽд洢 */
+	/** 需要定义多维的链表形式，来对数据进行存储 */
 	protected HashMap<String,HashMap<String,Message>> MessageHashMap = new HashMap<String,HashMap<String,Message>>();
-	/** µļ,дmessages*/
+	/** 新的文件缓存,仿写messages*/
 	private HashMap<String, Message> myMessages;
-	/** жļǷõȷϣӶǷҪش  */
+	/** 用于判断文件是否得到确认，从而决定是否需要重传  */
 	private HashMap<String, ArrayList<Object>> judgeForRetransfer 
 						= new HashMap<String, ArrayList<Object>>();	
-	/** жشʱ䣬趨Ϊ100s */
+	/** 用于判断重传时间，这里设定为100s */
 	protected double time_out = 20;
-	/** жشʼΪ0趨ش3*/
+	/** 用于判断重传次数，初始为0，设定最多重传3次*/
 	protected int reTransTimes = 3;
-	/**acktime_waitʱ */
+	/**　用于ack包的time_wait时间 */
 	protected double time_wait = 40;
-	/** Ӧĵȴʱ time_free */
+	/** 用于应答包的等待时间 time_free */
 	protected double time_free = 3.5*time_out;
-	/** ӦϢǰ׺ */
+	/** 响应消息前缀 */
 	public static final String RESPONSE_PREFIX = "R_";
-	/** жϰ */
+	/** 用于判断包的类型 */
 	public static final String SelectLabel = "SelectLabel";
-	/** ½һļbuffer */
+	/** 新建一个文件buffer */
 	public static final String F_SIZE_S = "filebuffersize";
+	/** SelectLabel value of the prefetch push messages */
+	public static final int PREFETCH_PUSH = 5;
+	/** Prefetch push message prefix */
+	public static final String PREFETCH_PREFIX = "P_";
+	/** prefetch engine (null if prefetching is disabled) */
+	private PrefetchEngine prefetch;
+	/** SelectLabel value of the cache summary messages */
+	public static final int CACHE_SUMMARY = 6;
+	/** ID prefix of the cache summary messages */
+	public static final String SUMMARY_PREFIX = "S_";
+	/** Message property key for the summary of a cache summary message */
+	public static final String CACHE_SUMMARY_PROP = "cacheSummary";
+	/** cache summaries (null if summaries are not exchanged) */
+	private CacheSummaryTable summaries;
+	/** number of cache summaries sent (used for message IDs) */
+	private int nrofSummariesSent;
+	/** Message property key for the original requester of a redirected
+	 * request */
+	public static final String REQUESTER_PROP = "requester";
+	/** number of requests redirected (used for message IDs) */
+	private int nrofRedirects;
+	/** SelectLabel value of the chunk range requests of multi-source
+	 * fetches */
+	public static final int RANGE_REQUEST = 7;
+	/** SelectLabel value of the chunks sent for chunk range requests */
+	public static final int RANGE_CHUNK = 8;
+	/** Message property key for the requested chunk indexes */
+	public static final String CHUNK_LIST_PROP = "chunkList";
+	/** Message property key for the index of a chunk */
+	public static final String CHUNK_INDEX_PROP = "chunkIndex";
+	/** Message property key that marks the chunk range request that is
+	 * counted as the cache lookup of the original request */
+	public static final String RANGE_LOOKUP_PROP = "rangeLookup";
+	/** multi-source fetcher (null if multi-source fetching is disabled) */
+	private MultiSourceFetcher fetcher;
+	/** number of chunk range requests sent (used for message IDs) */
+	private int nrofRangeRequests;
+	/** Number of erasure coded parity chunks -setting id ({@value}). If
+	 * defined (and positive), files are sent as k data chunks and this many
+	 * parity chunks of a systematic Reed-Solomon code directly to the
+	 * requester, which decodes the file from any k chunks, instead of the
+	 * hop-by-hop chunk, control and bitmap ack exchange. */
+	public static final String ERASURE_PARITY_S = "erasureParity";
+	/** SelectLabel value of the erasure coded chunks */
+	public static final int CODED_CHUNK = 9;
+	/** Message property key for the index of an erasure coded chunk */
+	public static final String CODED_INDEX_PROP = "codedIndex";
+	/** Message property key for the number of parity chunks of the code */
+	public static final String CODED_PARITY_PROP = "codedParity";
+	/** Message property key for the number of data symbols of the coded
+	 * file (the last data chunk is padded with zeros) */
+	public static final String CODED_LENGTH_PROP = "codedLength";
+	/** Coded transfer timeout -setting id ({@value}). Seconds. Default is
+	 * 20. If a requested file hasn't been decoded within this time from the
+	 * request or from the latest coded chunk, the chunks received so far are
+	 * discarded and the file is requested again (at most
+	 * {@link #reTransTimes} times). */
+	public static final String CODED_TIMEOUT_S = "codedTransferTimeout";
+	/** number of erasure coded parity chunks (0 if coding is disabled) */
+	private int erasureParity;
+	/** erasure code of the latest coded transfer */
+	private ReedSolomon erasureCode;
+	/** file id -> erasure coded chunks received so far */
+	private HashMap<String, file[]> codedChunks;
+	/** timeout of the coded transfers */
+	private double codedTimeout;
+	/** file id -> request of a coded transfer that hasn't completed */
+	private HashMap<String, Message> codedRequests;
+	/** file id -> number of times the file has been requested again */
+	private HashMap<String, Integer> codedRetries;
+	/** timeout times of the coded transfers */
+	private ExpiryIndex<String> codedTimeouts;
+	/** number of coded transfers sent (used for message IDs) */
+	private int nrofCodedTransfers;
+	/** Cached file TTL -setting id ({@value}). Seconds. If defined, files
+	 * cached by the host (other than the origin copies) are removed from the
+	 * file buffer when they have been in the buffer for this long. */
+	public static final String FILE_TTL_S = "fileTtl";
+	/** TTL of the cached files (or -1 if cached files don't expire) */
+	private double fileTtl;
+	/** expiry times of the messages in the message buffer */
+	private ExpiryIndex<String> messageExpiries;
+	/** expiry times of the cached files in the file buffer */
+	private ExpiryIndex<String> fileExpiries;
 	
-	/** ------------------------------   MessageRouterӵı       --------------------------------*/
+	/** ------------------------------   对MessageRouter添加的变量       --------------------------------*/
 	
 	/**
 	 * Constructor. Creates a new message router based on the settings in
@@ -163,6 +259,33 @@ public abstract class MessageRouter {
 			sendQueueMode = Q_MODE_RANDOM;
 		}
 		
+		this.filebuffersize = Integer.MAX_VALUE;
+		if (s.contains(F_SIZE_S)) {
+			this.filebuffersize = s.getInt(F_SIZE_S);
+		}
+		if (s.contains(PrefetchEngine.PREFETCH_BUDGET_S)) {
+			this.prefetch = new PrefetchEngine(s);
+		}
+		if (s.contains(CacheSummaryTable.SUMMARY_BITS_S)) {
+			this.summaries = new CacheSummaryTable(s);
+		}
+		if (s.contains(ERASURE_PARITY_S)) {
+			this.erasureParity = s.getInt(ERASURE_PARITY_S);
+		}
+		this.codedTimeout = 20;
+		if (s.contains(CODED_TIMEOUT_S)) {
+			this.codedTimeout = s.getDouble(CODED_TIMEOUT_S);
+			s.ensurePositiveValue(this.codedTimeout, CODED_TIMEOUT_S);
+		}
+		this.fileTtl = -1;
+		if (s.contains(FILE_TTL_S)) {
+			this.fileTtl = s.getDouble(FILE_TTL_S);
+			s.ensurePositiveValue(this.fileTtl, FILE_TTL_S);
+		}
+		if (s.contains(MultiSourceFetcher.MULTI_SOURCE_S) &&
+				s.getInt(MultiSourceFetcher.MULTI_SOURCE_S) > 1) {
+			this.fetcher = new MultiSourceFetcher(s);
+		}
 	}
 	
 	/**
@@ -179,6 +302,12 @@ public abstract class MessageRouter {
 		this.blacklistedMessages = new HashMap<String, Object>();
 		this.mListeners = mListeners;
 		this.host = host;
+		this.codedChunks = new HashMap<String, file[]>();
+		this.codedRequests = new HashMap<String, Message>();
+		this.codedRetries = new HashMap<String, Integer>();
+		this.codedTimeouts = new ExpiryIndex<String>();
+		this.messageExpiries = new ExpiryIndex<String>();
+		this.fileExpiries = new ExpiryIndex<String>();
 	}
 	
 	/**
@@ -189,6 +318,14 @@ public abstract class MessageRouter {
 		this.bufferSize = r.bufferSize;
 		this.msgTtl = r.msgTtl;
 		this.sendQueueMode = r.sendQueueMode;
+		this.filebuffersize = r.filebuffersize;
+		this.prefetch = (r.prefetch != null ? r.prefetch.replicate() : null);
+		this.summaries = (r.summaries != null ? r.summaries.replicate() :
+			null);
+		this.fetcher = (r.fetcher != null ? r.fetcher.replicate() : null);
+		this.erasureParity = r.erasureParity;
+		this.codedTimeout = r.codedTimeout;
+		this.fileTtl = r.fileTtl;
 
 		this.applications = new HashMap<String, Collection<Application>>();
 		for (Collection<Application> apps : r.applications.values()) {
@@ -209,6 +346,52 @@ public abstract class MessageRouter {
 				app.update(this.host);
 			}
 		}
+		if (this.prefetch != null) {
+			pushPopularFiles();
+		}
+		if (this.summaries != null) {
+			for (DTNHost other : this.summaries.getOutdatedNeighbors(
+					this.host.getConnections(), this.host)) {
+				sendCacheSummary(other);
+			}
+		}
+		if (this.fetcher != null) {
+			updateMultiSourceFetches();
+		}
+		if (this.fileTtl > 0) {
+			dropExpiredFiles();
+		}
+		if (!this.codedRequests.isEmpty()) {
+			updateCodedTransfers();
+		}
+	}
+
+	/**
+	 * Returns the next time this router needs to be updated if nothing
+	 * happens in the meantime, i.e., no messages are created or received and
+	 * no connections come up or go down. A router that has messages to send
+	 * to its current neighbors, incoming transfers or applications running
+	 * needs to be updated at every update interval. Used by the adaptive
+	 * time advance of the world.
+	 * @return The time of the next update or the current time if the router
+	 * should be updated on every interval
+	 */
+	public double getNextUpdateTime() {
+		double now = SimClock.getTime();
+		boolean connected = this.host.getConnections().size() > 0;
+		if (!this.incomingMessages.isEmpty() ||
+				!this.applications.isEmpty() ||
+				(this.fetcher != null && !this.fetcher.isIdle()) ||
+				(connected && (!this.messages.isEmpty() ||
+						this.prefetch != null || this.summaries != null))) {
+			return now;
+		}
+		double next = this.messageExpiries.getNextExpiryTime();
+		if (this.fileTtl > 0) {
+			next = Math.min(next, this.fileExpiries.getNextExpiryTime());
+		}
+		next = Math.min(next, this.codedTimeouts.getNextExpiryTime());
+		return next;
 	}
 	
 	/**
@@ -404,6 +587,9 @@ public abstract class MessageRouter {
 	 */
 	protected void addToMessages(Message m, boolean newMessage) {
 		this.messages.put(m.getId(), m);
+		if (m.getExpiryTime() < Double.MAX_VALUE) {
+			this.messageExpiries.schedule(m.getId(), m.getExpiryTime());
+		}
 		
 		if (newMessage) {
 			for (MessageListener ml : this.mListeners) {
@@ -421,8 +607,36 @@ public abstract class MessageRouter {
 	 */
 	protected Message removeFromMessages(String id) {
 		Message m = this.messages.remove(id);
+		this.messageExpiries.remove(id);
 		return m;
 	}
+
+	/**
+	 * Returns the messages in the message buffer whose TTL has run out.
+	 * The returned messages are no longer tracked for expiry, so they
+	 * should be removed from the buffer by the caller.
+	 * @return The expired messages (in the order of their expiry times)
+	 */
+	protected List<Message> getExpiredMessages() {
+		double now = SimClock.getTime();
+		List<Message> expired = new ArrayList<Message>();
+		if (this.messageExpiries.getNextExpiryTime() > now) {
+			return expired;
+		}
+		for (String id : this.messageExpiries.pollExpired(now)) {
+			Message m = this.messages.get(id);
+			if (m == null) {
+				continue;
+			}
+			if (m.getExpiryTime() > now) {
+				/* creation time or TTL changed after buffering */
+				this.messageExpiries.schedule(id, m.getExpiryTime());
+			} else {
+				expired.add(m);
+			}
+		}
+		return expired;
+	}
 	
 	/**
 	 * This method should be called (on the receiving host) when a message 
@@ -487,15 +701,15 @@ public abstract class MessageRouter {
 		case Q_MODE_RANDOM:
 			Collections.shuffle(list, new Random(SimClock.getIntTime()));
 			break;
-		case Q_MODE_FIFO://þ̬㷨
-			Collections.sort(list, //ڶһint͵ֵ൱һ־sortʲô˳list
-					new Comparator() {//൱ʵһ̳Comparator˽ӿڵķ
+		case Q_MODE_FIFO://调用静态算法
+			Collections.sort(list, //第二个参数返回一个int型的值，就相当于一个标志，告诉sort方法按什么顺序来对list进行排序。
+					new Comparator() {//相当于实现了一个继承Comparator此接口的方法
 				/** Compares two tuples by their messages' receiving time */
 				public int compare(Object o1, Object o2) {
 					double diff;
 					Message m1, m2;
 					
-					if (o1 instanceof Tuple) {//жǷΪTupleһʵ
+					if (o1 instanceof Tuple) {//判断是否为Tuple类的一个实例
 						m1 = ((Tuple<Message, Connection>)o1).getKey();
 						m2 = ((Tuple<Message, Connection>)o2).getKey();
 					}
@@ -508,7 +722,7 @@ public abstract class MessageRouter {
 								"the list");
 					}
 					
-					diff = m1.getReceiveTime() - m2.getReceiveTime();//receiveTimeΪж׼
+					diff = m1.getReceiveTime() - m2.getReceiveTime();//以receiveTime为判断准则
 					if (diff == 0) {
 						return 0;
 					}
@@ -635,47 +849,47 @@ public abstract class MessageRouter {
 			this.getHost().toString() + " with " + getNrofMessages() 
 			+ " messages";
 	}
-	/**  ------------------------- ʦֶԴ޸ ------------------------ */
+	/**  ------------------------- 戴师兄对代码的修改 ------------------------ */
 	
-	/** ȡдϢ*/
+	/** 获取仿写的消息缓存中内容*/
 	protected Message getmyMessage(String id) {
 		return this.myMessages.get(id);
 	}
-	/** ȡϢ*/
+	/** 获取消息缓存*/
 	public Collection<Message> getmyMessageCollection() {
 		return this.myMessages.values();
 	}
-	/** жǷϢ*/
+	/** 判断是否存在这个消息*/
 	public boolean hasmyMessages(String id) {
 		return this.myMessages.containsKey(id);
 	}
-	/** ȡϢĴС */
+	/** 获取消息缓存的大小 */
 	public int getNrofmyMessages() {
 		return this.myMessages.size();
 	}
-	/** ӵӦļ  addToFileBuffer() */
+	/** 添加到对应的文件缓冲区内  addToFileBuffer() */
 	protected void addTomyMessages(Message m, boolean newMessage) {
-		this.myMessages.put(m.getFilename(), m);								// ŵϢmessages
-		//ûм¼
+		this.myMessages.put(m.getFilename(), m);								// 放到消息缓冲区messages中
+		//这里没有加入事件监听器
 	}
-	/**Ϣ´ĻƳ*/
+	/**　将消息从新创建的缓存中移除　*/
 	protected Message removeFrommyMessages(String id) {
 		Message m = this.myMessages.remove(id);
 		return m;
 	}
-	/**  ------------------------- ʦֶԴ޸ ------------------------ */
+	/**  ------------------------- 戴师兄对代码的修改 ------------------------ */
 	
 	
-	/** -------------------------- ҶԴ޸  --------------------------- */
+	/** -------------------------- 我对代码的修改  --------------------------- */
 	
-	/** ӵӦļ  addToFileBuffer() */       
+	/** 添加到对应的文件缓冲区内  addToFileBuffer() */       
 	protected void addToFileBuffer(Message m, boolean newMessage) {
-		if ( m.getResponseSize() ==0){											//messageȡfile
+		if ( m.getResponseSize() ==0){											//从message中取出file类
 			file ee = m.getFile();				
-			this.getHost().getFileBuffer().put(m.getFilename(), ee);			// ŵϢFileBuffer
+			this.getHost().putIntoFileBuffer(ee);			// 放到消息缓冲区FileBuffer中
 		}
 	}	
-	/** chunkӦchunkBufferУ  	*/
+	/** 添加chunk到对应的chunkBuffer中，  	*/
 	protected void addToChunkBuffer(Message m, boolean newMessage){
 		if(m.getProperty(SelectLabel)== (Object)1){
 			
@@ -688,22 +902,22 @@ public abstract class MessageRouter {
 			}
 		}
 	}
-	/** bitMapԪ   */
+	/** 对bitMap中所有元素置零操作   */
 	public void setZeroForBitMap(){
 		this.bitMap.clear();
 		for(int i=0;i<10;i++)
 			bitMap.add(0);
 	}
-    /** õļĻСfilebuffersize */
+    /** 得到存放文件的缓存大小filebuffersize */
 	public int getFileBufferSize(){
 		return this.filebuffersize;
 	}
-	/** õǰ·ɵشbuffer*/
+	/** 得到当前路由的重传buffer。*/
 	public HashMap<String,ArrayList<Object>> getJudgeForRetransfer(){
 		return this.judgeForRetransfer;
 	}
 	
-	/** մϢ뵽жǷҪشbuffer */
+	/** 将刚创建的消息放入到判断是否需要重传buffer中 */
 	public void putJudgeForRetransfer(Message m){		
 		switch((int) m.getProperty(SelectLabel)){
 		case 0:{
@@ -712,6 +926,14 @@ public abstract class MessageRouter {
 			arraylist.add(1, this.time_out);
 			arraylist.add(2, this.reTransTimes);
 			this.judgeForRetransfer.put(m.getId(), arraylist);
+			if (this.erasureParity > 0) {
+				/* the holder answers with coded chunks and no control
+				 * messages, so the requester times the transfer itself */
+				this.codedRequests.put(m.getFilename(), m);
+				this.codedRetries.put(m.getFilename(), 0);
+				this.codedTimeouts.schedule(m.getFilename(),
+						SimClock.getTime() + this.codedTimeout);
+			}
 			return;
 		}
 		case 1:{
@@ -749,33 +971,33 @@ public abstract class MessageRouter {
 		}
 	}
 	
-	/** ´ȷϢbufferеϢ */
+	/** 更新待确认消息buffer中的消息 */
 	public void updateReTransfer(){
 		
-		/**	ҪԴȷϢеϢȷʱ£жǷڣش*/
+		/**	这里需要对待确认消息缓存中的消息待确认时间更新；并判断是否到期，到期重传。*/
 		
 		for( ArrayList<Object> reTrans : this.judgeForRetransfer.values()){
 			reTrans.set(1, (double)reTrans.get(1)-0.1);
 			Message n = (Message)reTrans.get(0);
 			String s = n.getId();
-			if((double)reTrans.get(1)<=0){	//жʱǷڣ
+			if((double)reTrans.get(1)<=0){	//判断生存时间是否到期？
 				Message m = (Message)reTrans.get(0);
 				switch((int) m.getProperty(SelectLabel)){
 				case 0:{
-					if(this.getHost().getFileBuffer().containsKey(m.getFilename())==false){										// УͲطϢûвŷ
-						if((int)reTrans.get(2)>0){	//жشǷ
+					if(this.getHost().getFileBuffer().containsKey(m.getFilename())==false){										// 如果缓存已有，就不再重发请求消息，没有才发
+						if((int)reTrans.get(2)>0){	//判断重传次数是否用完
 							Message reqMessage = new Message(m.getFrom(),m.getTo(),
 									m.getId(), m.getResponseSize());
 							
 							reqMessage.setInitMsgId(m.getInitMsgId());
-							reqMessage.updateProperty(SelectLabel, 0);															//	ʶΪư
+							reqMessage.updateProperty(SelectLabel, 0);															//	标识为控制包
 							reqMessage.setFilename(m.getFilename());
 							reqMessage.setZeroForBitMap();
-							reqMessage.setTime(SimClock.getTime()+0.01, SimClock.getTime()+0.01);								//	Ϣʱ
+							reqMessage.setTime(SimClock.getTime()+0.01, SimClock.getTime()+0.01);								//	更新消息生成时间
 							
 							this.judgeForRetransfer.get(m.getInitMsgId()).set(1, this.time_out);
 							int i = (int) this.judgeForRetransfer.get(m.getInitMsgId()).get(2);
-			                this.judgeForRetransfer.get(m.getInitMsgId()).set(2, i-1); 											//	شһ
+			                this.judgeForRetransfer.get(m.getInitMsgId()).set(2, i-1); 											//	重传次数减少一次
 			                this.createNewMessage(reqMessage);
 						}
 						else{
@@ -787,32 +1009,35 @@ public abstract class MessageRouter {
 					}
 					return;
 				}
-				/** Ӧtime_freeڣжڴǷжӦӦ еĻɾˣȻɾȷϢеĴϢ*/
+				/** 对于应答包的time_free到期，首先判断内存中是否有对应的应答包？ 有的话删了，然后删除待确认消息缓存中的此消息。*/
 				case 1:{ 		
 					if(this.MessageHashMap.containsKey(n.getFilename())){
 						this.MessageHashMap.remove(n.getFilename());
 					}
 					if(this.getHost().getChunkBuffer().containsKey(n.getFilename())){
 						this.getHost().getChunkBuffer().remove(n.getFilename());
+						for (CacheListener cl : this.getHost().getCacheListeners()) {
+							cl.reassemblyFailed(this.getHost(), n.getFilename());
+						}
 					}
 					this.judgeForRetransfer.remove("Chunk"+n.getInitMsgId());
 				}
 				
-				case 2:{																										// УͲطϢûвŷ
+				case 2:{																										// 如果缓存已有，就不再重发控制消息，没有才发
 					if(this.getHost().getFileBuffer().containsKey(m.getFilename())==false){
-						if((int)reTrans.get(2)>0){	//жشǷ꣬شư
+						if((int)reTrans.get(2)>0){	//判断重传次数是否用完，重传控制包
 							Message ctrMessage = new Message(m.getFrom(),m.getTo(),
 									RESPONSE_PREFIX + m.getId(), m.getResponseSize());
 							
 							ctrMessage.setInitMsgId(m.getInitMsgId());
-							ctrMessage.updateProperty(SelectLabel, 2);															//	ʶΪư
+							ctrMessage.updateProperty(SelectLabel, 2);															//	标识为控制包
 							ctrMessage.setFilename(m.getFilename());
 							ctrMessage.setZeroForBitMap();
-							ctrMessage.setTime(SimClock.getTime()+0.01, SimClock.getTime()+0.01);								//	Ϣʱ
+							ctrMessage.setTime(SimClock.getTime()+0.01, SimClock.getTime()+0.01);								//	更新消息生成时间
 							
-							this.judgeForRetransfer.get(RESPONSE_PREFIX +"ctr_"+m.getInitMsgId()).set(1, this.time_out);		//	ˢشʱ
+							this.judgeForRetransfer.get(RESPONSE_PREFIX +"ctr_"+m.getInitMsgId()).set(1, this.time_out);		//	刷新重传时间
 			                int j = (int) this.judgeForRetransfer.get(RESPONSE_PREFIX +"ctr_"+m.getInitMsgId()).get(2);
-			                this.judgeForRetransfer.get(RESPONSE_PREFIX +"ctr_"+m.getInitMsgId()).set(2, j-1); 					//	شһ
+			                this.judgeForRetransfer.get(RESPONSE_PREFIX +"ctr_"+m.getInitMsgId()).set(2, j-1); 					//	重传次数减少一次
 			                this.createNewMessage(ctrMessage);
 						}
 						else{
@@ -824,11 +1049,11 @@ public abstract class MessageRouter {
 					}			
 					return;
 				}
-				case 3:{		// ԿưȷϢ
+				case 3:{		// 对控制包的确认消息
 					this.judgeForRetransfer.remove(s);
 					return;
 				}
-				case 4:{		// ȷϢ
+				case 4:{		// 对请求包的确认消息：
 					this.judgeForRetransfer.remove(s);
 					return;
 				}
@@ -838,12 +1063,532 @@ public abstract class MessageRouter {
 		
 	}
 	
-	/** ------------------------ ҶԴ޸  ----------------------------  */
+	/**
+	 * Informs the cache listeners about a file request that is looked up
+	 * from the file buffer of this host
+	 * @param request The request message
+	 */
+	private void notifyCacheLookup(Message request) {
+		file f = this.getHost().getFileBufferForFile(request);
+		for (CacheListener cl : this.getHost().getCacheListeners()) {
+			if (f != null && f.getInitFile()) {
+				cl.originServed(this.getHost(), request.getFilename(),
+						f.getSize());
+			} else {
+				cl.cacheLookup(this.getHost(), request.getFilename(),
+						request.getResponseSize(), f != null);
+			}
+		}
+	}
+
+	/**
+	 * Informs the cache listeners about a file that was reassembled from
+	 * its chunks into the file buffer of this host
+	 * @param f The reassembled file
+	 */
+	private void notifyFileReassembled(file f) {
+		for (CacheListener cl : this.getHost().getCacheListeners()) {
+			cl.fileReassembled(this.getHost(), f.getId(), f.getSize());
+		}
+	}
+
+	/**
+	 * Returns the origin host of a file or null if the origin isn't known
+	 * @param filename Identifier of the file
+	 * @return The origin host of the file
+	 */
+	protected DTNHost getFileOrigin(String filename) {
+		Integer address = this.getHost().getFiles().get(filename);
+		if (address == null) {
+			return null;
+		}
+		for (DTNHost h : this.getHost().getNeighbors().getHosts()) {
+			if (h.getAddress() == address) {
+				return h;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Creates push messages for the files the prefetch engine wants to place
+	 * in the caches of the neighbors.
+	 */
+	protected void pushPopularFiles() {
+		for (Tuple<file, DTNHost> t : this.prefetch.selectPushes(
+				this.host, this.host.getConnections())) {
+			file f = t.getKey();
+			DTNHost to = t.getValue();
+			Message push = new Message(this.host, to, PREFETCH_PREFIX +
+					f.getId() + "_" + to.getAddress() + "_" +
+					SimClock.getIntTime(), f.getSize(), f);
+			push.setFilename(f.getId());
+			push.updateProperty(SelectLabel, PREFETCH_PUSH);
+			this.createNewMessage(push);
+		}
+	}
+	
+	/**
+	 * Puts a file pushed by the prefetch engine of a neighbor to the file
+	 * buffer (unless the file is already there or doesn't fit).
+	 * @param push The prefetch push message carrying the file
+	 */
+	protected void storePushedFile(Message push) {
+		if (this.getHost().getFileBufferForFile(push) != null) {
+			return;
+		}
+		file f = push.getFile().copyFrom(push.getFile());
+		f.copyData(push.getFile());
+		f.setInitFile(f);
+		f.setTimeRequest(SimClock.getTime());
+		if (this.getHost().makeRoomForNewFile(f.getSize())) {
+			this.getHost().putIntoFileBuffer(f);
+		}
+	}
+	
+	/**
+	 * Informs the router about a change in the file buffer of the host
+	 * @param fileId Identifier of the file that was added or removed
+	 * @param added True if the file was added, false if it was removed
+	 */
+	public void fileBufferChanged(String fileId, boolean added) {
+		if (this.fileTtl > 0) {
+			file f = this.host.getFileBuffer().get(fileId);
+			if (added && f != null && !f.getInitFile()) {
+				this.fileExpiries.schedule(fileId,
+						SimClock.getTime() + this.fileTtl);
+			} else if (!added) {
+				this.fileExpiries.remove(fileId);
+			}
+		}
+		if (this.summaries == null) {
+			return;
+		}
+		if (added) {
+			this.summaries.fileAdded(fileId);
+		} else {
+			this.summaries.fileRemoved(fileId);
+		}
+	}
+
+	/**
+	 * Removes the cached files whose TTL has run out from the file buffer
+	 */
+	private void dropExpiredFiles() {
+		double now = SimClock.getTime();
+		if (this.fileExpiries.getNextExpiryTime() > now) {
+			return;
+		}
+		for (String fileId : this.fileExpiries.pollExpired(now)) {
+			if (this.host.getFileBuffer().containsKey(fileId)) {
+				this.host.deleteFile(fileId, true);
+			}
+		}
+	}
+
+	/**
+	 * Exchanges the cache summaries when a connection comes up and forgets
+	 * the neighbor's summary when it goes down. Should be called by the
+	 * subclasses from {@link #changedConnection(Connection)}.
+	 * @param con The connection whose state changed
+	 */
+	protected void cacheSummaryConnectionChanged(Connection con) {
+		if (this.summaries == null) {
+			return;
+		}
+		DTNHost other = con.getOtherNode(this.host);
+		if (con.isUp()) {
+			sendCacheSummary(other);
+		} else {
+			this.summaries.neighborLeft(other);
+		}
+	}
+
+	/**
+	 * Sends a snapshot of the cache summary to a neighbor. The summary is
+	 * sent as a message so its size is charged on the link.
+	 * @param to The neighbor
+	 */
+	protected void sendCacheSummary(DTNHost to) {
+		Message m = new Message(this.host, to, SUMMARY_PREFIX +
+				this.host.getAddress() + "_" + to.getAddress() + "_" +
+				this.nrofSummariesSent++, this.summaries.getSummarySize());
+		m.updateProperty(SelectLabel, CACHE_SUMMARY);
+		m.addProperty(CACHE_SUMMARY_PROP, this.summaries.summarySent(to));
+		this.createNewMessage(m);
+	}
+
+	/**
+	 * Redirects a request that missed the cache of this host to a connected
+	 * neighbor whose cache summary has the requested file. Hosts already on
+	 * the request's path and its current destination are not considered.
+	 * @param request The request
+	 * @return True if the request was redirected
+	 */
+	protected boolean redirectToSummaryHolder(Message request) {
+		if (this.summaries == null) {
+			return false;
+		}
+		List<DTNHost> exclude = new ArrayList<DTNHost>(request.getHops());
+		exclude.add(request.getTo());
+		DTNHost holder = this.summaries.findHolder(request.getFilename(),
+				this.host.getConnections(), this.host, exclude);
+		if (holder == null) {
+			return false;
+		}
+		this.removeFromMessages(request.getId());
+		redirectRequest(request, holder);
+		return true;
+	}
+
+	/**
+	 * Starts a multi-source fetch of a file: the chunks are requested from
+	 * several of the nearest replica holders at once.
+	 * @param request The request for the file (not sent itself)
+	 * @param origin The origin host of the file
+	 * @return True if the fetch was started (or the file is already being
+	 * fetched), false if multi-source fetching is disabled or there are not
+	 * enough replica holders and the request should be sent as such
+	 */
+	public boolean startMultiSourceFetch(Message request, DTNHost origin) {
+		if (this.fetcher == null) {
+			return false;
+		}
+		if (this.fetcher.isFetching(request.getFilename())) {
+			return true;
+		}
+		List<DTNHost> holders = ContentDirectory.getInstance().rankReplicas(
+				this.host, request.getFilename(), request.getResponseSize(),
+				origin, this.fetcher.getNrofSources());
+		if (holders.size() < 2) {
+			return false;
+		}
+		Map<DTNHost, List<Integer>> ranges = this.fetcher.start(request,
+				holders, SimClock.getTime());
+		boolean first = true;
+		for (Map.Entry<DTNHost, List<Integer>> e : ranges.entrySet()) {
+			sendRangeRequest(request, e.getKey(), e.getValue(), first);
+			first = false;
+		}
+		return true;
+	}
+
+	/**
+	 * Re-requests the straggling chunks of the multi-source fetches and
+	 * informs the cache listeners about the abandoned fetches
+	 */
+	protected void updateMultiSourceFetches() {
+		for (Map.Entry<String, Map<DTNHost, List<Integer>>> e :
+				this.fetcher.update(SimClock.getTime()).entrySet()) {
+			Message request = this.fetcher.getRequest(e.getKey());
+			for (Map.Entry<DTNHost, List<Integer>> r :
+					e.getValue().entrySet()) {
+				sendRangeRequest(request, r.getKey(), r.getValue(), false);
+			}
+		}
+		for (String fileId : this.fetcher.removeAbandoned()) {
+			for (CacheListener cl : this.host.getCacheListeners()) {
+				cl.reassemblyFailed(this.host, fileId);
+			}
+		}
+	}
+
+	/**
+	 * Sends a request for a range of chunks of a file to a replica holder
+	 * @param request The original request for the file
+	 * @param to The replica holder
+	 * @param chunks Indexes of the requested chunks
+	 * @param lookup True if the holder should count the request as a cache
+	 * lookup, i.e., for the first range of the original request only
+	 */
+	protected void sendRangeRequest(Message request, DTNHost to,
+			List<Integer> chunks, boolean lookup) {
+		Message req = new Message(this.host, to, request.getId() + "_" +
+				to.getAddress() + "_" + this.nrofRangeRequests++,
+				request.getSize());
+		req.setInitMsgId(request.getInitMsgId());
+		req.setResponseSize(request.getResponseSize());
+		req.setFilename(request.getFilename());
+		req.updateProperty(SelectLabel, RANGE_REQUEST);
+		req.addProperty(CHUNK_LIST_PROP, new ArrayList<Integer>(chunks));
+		if (lookup) {
+			req.addProperty(RANGE_LOOKUP_PROP, true);
+		}
+		this.createNewMessage(req);
+	}
+
+	/**
+	 * Sends the chunks requested with a chunk range request to the
+	 * requester. Requests for files that aren't (anymore) in the file
+	 * buffer are ignored: the requester re-requests the chunks from other
+	 * holders after the chunk request timeout. Only the first range request
+	 * of a fetch is counted as a cache lookup.
+	 * @param request The chunk range request
+	 */
+	@SuppressWarnings("unchecked")
+	protected void serveChunkRange(Message request) {
+		if (request.getProperty(RANGE_LOOKUP_PROP) != null) {
+			notifyCacheLookup(request);
+		}
+		file f = this.getHost().getFileBufferForFile(request);
+		if (f == null) {
+			return;
+		}
+		f.setTimeRequest(SimClock.getTime());
+		int nrofChunks = MultiSourceFetcher.NROF_CHUNKS;
+		int chunkSize = (f.getSize() + nrofChunks - 1) / nrofChunks;
+		int dataSize = f.getData().size() / nrofChunks;
+		for (int i : (List<Integer>)request.getProperty(CHUNK_LIST_PROP)) {
+			file chunk = f.copyFrom(f);
+			/* the last chunk gets the remainder of the data */
+			int end = i == nrofChunks - 1 ? f.getData().size() :
+				(i + 1) * dataSize;
+			for (int j = i * dataSize; j < end; j++) {
+				chunk.getData().add(f.getData().get(j));
+			}
+			Message res = new Message(this.host, request.getFrom(),
+					RESPONSE_PREFIX + request.getId() + "_" + i, chunkSize,
+					chunk);
+			res.setInitMsgId(request.getInitMsgId());
+			res.setFilename(f.getId());
+			res.setChunkID(f.getId() + "ChunkID" + i);
+			res.updateProperty(SelectLabel, RANGE_CHUNK);
+			res.addProperty(CHUNK_INDEX_PROP, i);
+			this.createNewMessage(res);
+		}
+	}
+
+	/**
+	 * Stores a chunk of a multi-source fetch and puts the file to the file
+	 * buffer when all of its chunks have been received
+	 * @param chunk The chunk message
+	 */
+	protected void receiveRangeChunk(Message chunk) {
+		if (this.fetcher == null) {
+			return;
+		}
+		file f = this.fetcher.chunkReceived(chunk.getFilename(),
+				(Integer)chunk.getProperty(CHUNK_INDEX_PROP), chunk.getFile());
+		if (f == null || this.getHost().getFileBufferForFile(chunk) != null) {
+			return;
+		}
+		f.setInitFile(f);
+		f.setTimeRequest(SimClock.getTime());
+		this.getHost().makeRoomForNewFile(f.getSize());
+		this.getHost().putIntoFileBuffer(f);
+		notifyFileReassembled(f);
+	}
+
+	/**
+	 * Returns the Reed-Solomon code for the file chunks with the given
+	 * number of parity chunks
+	 */
+	private ReedSolomon getErasureCode(int nrofParity) {
+		if (this.erasureCode == null ||
+				this.erasureCode.getNrofParity() != nrofParity) {
+			this.erasureCode = new ReedSolomon(
+					MultiSourceFetcher.NROF_CHUNKS, nrofParity);
+		}
+		return this.erasureCode;
+	}
+
+	/**
+	 * Sends a requested file as erasure coded chunks directly to the
+	 * requester: the data chunks followed by the parity chunks. No control
+	 * message is sent; the requester decodes the file as soon as any k
+	 * chunks have arrived.
+	 * @param request The request for the file
+	 */
+	protected void sendCodedChunks(Message request) {
+		file f = this.getHost().getFileBufferForFile(request);
+		if (f == null) {
+			return;
+		}
+		f.setTimeRequest(SimClock.getTime());
+		ReedSolomon code = getErasureCode(this.erasureParity);
+		int k = code.getNrofData();
+		/* the data is padded with zeros to a multiple of k symbols */
+		int length = f.getData().size();
+		int symbols = (length + k - 1) / k;
+		int[][] shards = new int[k + this.erasureParity][];
+		for (int i = 0; i < k; i++) {
+			shards[i] = new int[symbols];
+			for (int j = 0; j < symbols && i * symbols + j < length; j++) {
+				shards[i][j] = f.getData().get(i * symbols + j);
+			}
+		}
+		int[][] parity = code.encode(Arrays.copyOf(shards, k));
+		System.arraycopy(parity, 0, shards, k, this.erasureParity);
+
+		int chunkSize = (f.getSize() + k - 1) / k;
+		String prefix = RESPONSE_PREFIX + request.getId() + "_" +
+			this.nrofCodedTransfers++ + "_";
+		for (int i = 0; i < shards.length; i++) {
+			file chunk = f.copyFrom(f);
+			for (int symbol : shards[i]) {
+				chunk.getData().add(symbol);
+			}
+			Message res = new Message(this.host, getRequester(request),
+					prefix + i, chunkSize, chunk);
+			res.setInitMsgId(request.getInitMsgId());
+			res.setFilename(f.getId());
+			res.setChunkID(f.getId() + "ChunkID" + i);
+			res.updateProperty(SelectLabel, CODED_CHUNK);
+			res.addProperty(CODED_INDEX_PROP, i);
+			res.addProperty(CODED_PARITY_PROP, this.erasureParity);
+			res.addProperty(CODED_LENGTH_PROP, length);
+			res.setTime(SimClock.getTime()+0.01*(i+1),
+					SimClock.getTime()+0.01*(i+1));
+			this.createNewMessage(res);
+		}
+	}
+
+	/**
+	 * Stores an erasure coded chunk and decodes the file into the file
+	 * buffer once enough chunks have been received
+	 * @param chunk The coded chunk message
+	 */
+	protected void receiveCodedChunk(Message chunk) {
+		String fileId = chunk.getFilename();
+		if (this.getHost().getFileBufferForFile(chunk) != null) {
+			this.codedChunks.remove(fileId);
+			endCodedTransfer(fileId);
+			return;
+		}
+		if (this.codedRequests.containsKey(fileId)) {
+			this.codedTimeouts.schedule(fileId,
+					SimClock.getTime() + this.codedTimeout);
+		}
+		ReedSolomon code = getErasureCode(
+				(Integer)chunk.getProperty(CODED_PARITY_PROP));
+		int k = code.getNrofData();
+		file[] chunks = this.codedChunks.get(fileId);
+		if (chunks == null || chunks.length != k + code.getNrofParity()) {
+			chunks = new file[k + code.getNrofParity()];
+			this.codedChunks.put(fileId, chunks);
+		}
+		chunks[(Integer)chunk.getProperty(CODED_INDEX_PROP)] = chunk.getFile();
+
+		int[][] shards = new int[chunks.length][];
+		int nrofReceived = 0;
+		for (int i = 0; i < chunks.length; i++) {
+			if (chunks[i] != null) {
+				nrofReceived++;
+				shards[i] = new int[chunks[i].getData().size()];
+				for (int j = 0; j < shards[i].length; j++) {
+					shards[i][j] = chunks[i].getData().get(j);
+				}
+			}
+		}
+		if (nrofReceived < k) {
+			return;
+		}
+
+		this.codedChunks.remove(fileId);
+		endCodedTransfer(fileId);
+		int length = (Integer)chunk.getProperty(CODED_LENGTH_PROP);
+		file f = chunk.getFile().copyFrom(chunk.getFile());
+		for (int[] shard : code.decode(shards)) {
+			for (int j = 0; j < shard.length && f.getData().size() < length;
+					j++) {
+				f.getData().add(shard[j]);
+			}
+		}
+		f.setInitFile(f);
+		f.setTimeRequest(SimClock.getTime());
+		this.getHost().makeRoomForNewFile(f.getSize());
+		this.getHost().putIntoFileBuffer(f);
+		notifyFileReassembled(f);
+	}
+
+	/**
+	 * Forgets the timeout of a coded transfer
+	 * @param fileId Identifier of the transferred file
+	 */
+	private void endCodedTransfer(String fileId) {
+		this.codedRequests.remove(fileId);
+		this.codedRetries.remove(fileId);
+		this.codedTimeouts.remove(fileId);
+	}
+
+	/**
+	 * Discards the chunks of the coded transfers that have timed out and
+	 * requests the files again, or gives up the transfers whose requests
+	 * have been repeated {@link #reTransTimes} times
+	 */
+	protected void updateCodedTransfers() {
+		double now = SimClock.getTime();
+		if (this.codedTimeouts.getNextExpiryTime() > now) {
+			return;
+		}
+		for (String fileId : this.codedTimeouts.pollExpired(now)) {
+			this.codedChunks.remove(fileId);
+			Message request = this.codedRequests.get(fileId);
+			int retries = this.codedRetries.get(fileId);
+			if (this.host.getFileBuffer().containsKey(fileId)) {
+				endCodedTransfer(fileId);
+				continue;
+			}
+			if (retries >= this.reTransTimes) {
+				endCodedTransfer(fileId);
+				for (CacheListener cl : this.host.getCacheListeners()) {
+					cl.reassemblyFailed(this.host, fileId);
+				}
+				continue;
+			}
+
+			/* a new request (and initial message id), since the hosts that
+			 * acknowledged the earlier one would only acknowledge it again */
+			retries++;
+			Message req = new Message(request.getFrom(), request.getTo(),
+					request.getId() + "_c" + retries, request.getSize());
+			req.setResponseSize(request.getResponseSize());
+			req.setFilename(fileId);
+			req.updateProperty(SelectLabel, 0);
+			this.codedRetries.put(fileId, retries);
+			this.codedTimeouts.schedule(fileId, now + this.codedTimeout);
+			this.createNewMessage(req);
+		}
+	}
+
+	/**
+	 * Sends a copy of a file request to another replica holder. The copy is
+	 * a new message of this host with an ID of its own; the requester of the
+	 * original request is kept in the {@link #REQUESTER_PROP} property, so
+	 * the new holder responds directly to it (see
+	 * {@link #getRequester(Message)}).
+	 * @param request The request to redirect
+	 * @param to The host the request is redirected to
+	 */
+	protected void redirectRequest(Message request, DTNHost to) {
+		Message req = new Message(this.host, to, request.getId() + "_r" +
+				this.nrofRedirects++, request.getSize());
+		req.addProperty(REQUESTER_PROP, getRequester(request));
+		req.setInitMsgId(request.getInitMsgId());
+		req.setResponseSize(request.getResponseSize());
+		req.setFilename(request.getFilename());
+		req.updateProperty(SelectLabel, 0);
+		req.setTime(SimClock.getTime()+0.01, SimClock.getTime()+0.01);
+		this.createNewMessage(req);
+	}
+
+	/**
+	 * Returns the host that requested a file with a request. That is the
+	 * sender of the request unless the request was redirected.
+	 * @param request The request
+	 * @return The requester
+	 */
+	protected DTNHost getRequester(Message request) {
+		DTNHost requester = (DTNHost)request.getProperty(REQUESTER_PROP);
+		return requester != null ? requester : request.getFrom();
+	}
+	
+	/** ------------------------ 我对代码的修改  ----------------------------  */
 	
 	
-	// ͬʱmessageCreate()޸
-	// update()޸
-	// MessageTransferred()޸
+	// 同时对messageCreate()函数做了修改
+	// update()函数中做了修改
+	// MessageTransferred()函数中做了修改
 	
 	/**
 	 * This method should be called (on the receiving host) after a message
@@ -854,25 +1599,20 @@ public abstract class MessageRouter {
 	 * @return The message that this host received
 	 */
 	public Message messageTransferred(String id, DTNHost from) {
-		Message incoming = removeFromIncomingBuffer(id, from);			//ϢincomingMessagesɾ
-		boolean isFinalRecipient;										//жϢݵĿĽڵ
-		boolean isFirstDelivery; 										// is this first delivered instance of the msg //Ϣݵýڵ	
+		Message incoming = removeFromIncomingBuffer(id, from);			//将消息从incomingMessages删除
+		boolean isFinalRecipient;										//判断消息传递到目的节点
+		boolean isFirstDelivery; 										// is this first delivered instance of the msg //消息传递到该节点	
 		if (incoming == null) {
 			throw new SimError("No message with ID " + id + " in the incoming "+
 					"buffer of " + this.host);
 		}
-		incoming.setReceiveTime(SimClock.getTime());					//Ϣʱ		
-		
+		incoming.setReceiveTime(SimClock.getTime());					//设置消息接收时间		
 		
-		//System.out.println(this.getHost()+"  "+"ǰڵ·ɵĴȷϻ(==============================)"+this.judgeForRetransfer);
-		
-		System.out.println("IBɹļ"+"  "+this.getHost()+"   "+incoming.getProperty(SelectLabel)+ "  "
-				+incoming.getFilename()+" "+incoming.getChunkID()+"  "
-					+incoming.getId()+" "+incoming.getFrom()+"  "+incoming.getTo()+"  "+"ʼϢƣ"+"  "+incoming.getInitMsgId());
 		
+		//System.out.println(this.getHost()+"  "+"当前节点路由的待确认缓存(==============================)："+this.judgeForRetransfer);
 		
 		// Pass the message to the application (if any) and get outgoing message
-		/*** ϢӦò㴦(еĻ) ЩӦûᶪϢ ***/
+		/*** 将消息交给应用层处理(如果有的话)， 有些应用会丢弃该消息 ***/
 		Message outgoing = incoming;
 		for (Application app : getApplications(incoming.getAppID())) {
 			// Note that the order of applications is significant		
@@ -885,29 +1625,29 @@ public abstract class MessageRouter {
 		// If the application re-targets the message (changes 'to')
 		// then the message is not considered as 'delivered' to this host.
 		isFinalRecipient = aMessage.getTo() == this.host;
-		isFirstDelivery = isFinalRecipient && !isDeliveredMessage(aMessage);  	//жǷΪĿĽڵΪһε
+		isFirstDelivery = isFinalRecipient && !isDeliveredMessage(aMessage);  	//判断是否为目的节点且为第一次到达
 		
-		/*** ϢʵӦĻ ***/
-		if (!isFinalRecipient && outgoing!=null) {								//ĿĽڵ㣬ӦòҲ붪Ϣ
+		/*** 将消息根据实际情况放入相应的缓冲区 ***/
+		if (!isFinalRecipient && outgoing!=null) {								//不是目的节点，应用层也不想丢掉这个消息
 			addToMessages(aMessage, false);       								//incomingMessages --> messages
 			
-			/**  ļתֻ
-			 *   ˼·  յϢϢж
-			 *             Ϣ鿴档
-			 *             ӦϢ鿴Ƿиļû洢  */
+			/**  添加文件储存与转发部分缓存
+			 *   思路：  这里接收到消息对消息进行判定：
+			 *             如果是请求消息则查看缓存。。
+			 *             如果是应答消息则查看缓存中是否有该文件，如果没有则存储  */
 			
 
-			/** ӦϢ 
-			 *  黺Ƿڣһظɾ󣬷Ӧò뵽messageС*/
+			/** 对应的请求消息 
+			 *  检查缓存中是否存在，存在则生成一个回复，删除请求，否则应该不做处理，放入到message中。*/
 			
-/*			System.out.println("м̽ڵ"+"  "+this.getHost()+"   "+aMessage.getProperty(SelectLabel)+ "  "
+/*			System.out.println("中继节点"+"  "+this.getHost()+"   "+aMessage.getProperty(SelectLabel)+ "  "
 								+aMessage.getFilename()+" "+aMessage.getChunkID()+"  "
 									+aMessage.getId()+" "+aMessage.getFrom()+"  "+aMessage.getTo());*/
 			
 			if(aMessage.getProperty(SelectLabel)== (Object) 0 ){	
-				// ackȷϰʧɵطҪtime_wait
+				// 如果这个请求包是由于ack确认包丢失造成的重发，需要time_wait处理
 				if(this.judgeForRetransfer.containsKey(RESPONSE_PREFIX +"ackr_" + aMessage.getInitMsgId())){
-					// Ҳackȷϰʧɵطưֱӻظȷϰ
+					// 也即是由于ack确认包丢失造成的重发控制包，这里直接回复确认包即可
 					Message m = (Message)this.judgeForRetransfer
 								.get(RESPONSE_PREFIX +"ackr_" + aMessage.getInitMsgId()).get(0);
 
@@ -915,12 +1655,12 @@ public abstract class MessageRouter {
 										RESPONSE_PREFIX + m.getId(), m.getResponseSize());
 					
 					ackMessage.setInitMsgId(m.getInitMsgId());
-					ackMessage.updateProperty(SelectLabel, 4);															//	ʶΪư
+					ackMessage.updateProperty(SelectLabel, 4);															//	标识为控制包
 					ackMessage.setFilename(m.getFilename());
 					ackMessage.setZeroForBitMap();
-					ackMessage.setTime(SimClock.getTime()+0.01, SimClock.getTime()+0.01);								//	Ϣʱ
+					ackMessage.setTime(SimClock.getTime()+0.01, SimClock.getTime()+0.01);								//	更新消息生成时间
 					
-					this.judgeForRetransfer.get(RESPONSE_PREFIX +"ackr_"+m.getInitMsgId()).set(1, this.time_wait);		//	ˢشʱ
+					this.judgeForRetransfer.get(RESPONSE_PREFIX +"ackr_"+m.getInitMsgId()).set(1, this.time_wait);		//	刷新重传时间
 	                this.createNewMessage(ackMessage);
 
 				}
@@ -928,20 +1668,26 @@ public abstract class MessageRouter {
 					Message ackMessage =new Message(this.getHost(),aMessage.getHops().get(aMessage.getHopCount()-1),
 							RESPONSE_PREFIX +"ackr_"+ aMessage.getInitMsgId(), aMessage.getResponseSize());
 					ackMessage.setInitMsgId(aMessage.getInitMsgId());
-					ackMessage.updateProperty(SelectLabel, 4);												//	ʶΪȷϰ
+					ackMessage.updateProperty(SelectLabel, 4);												//	标识为对请求的确认包
 					ackMessage.setFilename(aMessage.getFilename());
 					ackMessage.setTime(SimClock.getTime()+0, SimClock.getTime()+0);				              
 					this.putJudgeForRetransfer(ackMessage);
 					this.createNewMessage(ackMessage); 
 					
-					this.messages.get(aMessage.getId()).setTime(SimClock.getTime()+0.01, SimClock.getTime()+0.01); //  ԭϢĴʱʱ趨
+					this.messages.get(aMessage.getId()).setTime(SimClock.getTime()+0.01, SimClock.getTime()+0.01); //  对原本请求消息的创建时间与接收时间进行重新设定
 					
-					if (this.getHost().getFileBufferForFile(aMessage)!=null) {
+					notifyCacheLookup(aMessage);
+					if (this.getHost().getFileBufferForFile(aMessage)!=null && this.erasureParity > 0) {
+						/* erasure coded chunks go directly to the requester */
+						sendCodedChunks(aMessage);
+						this.removeFromMessages(aMessage.getId());
+					}
+					else if (this.getHost().getFileBufferForFile(aMessage)!=null) {
 		            	/**
-		            	 * ҪӶļƬĴȻٽӦϢ
-		            	 * ҵЧķд
+		            	 * 需要在这里加对文件分片的处理，然后再将对应的生成消息放入待发送序列中
+		            	 * 后面可以找到更高效的方法来进行处理？？？
 		            	 */
-						this.getHost().getFileBufferForFile(aMessage).setTimeRequest(SimClock.getTime());  		//Ϊļʱ					
+						this.getHost().getFileBufferForFile(aMessage).setTimeRequest(SimClock.getTime());  		//为缓存中文件更新请求时间					
 						file f = this.getHost().getFileBufferForFile(aMessage);
 						for(int i=0;i<10;i++){
 							file chunk = f.copyFrom(f);
@@ -949,46 +1695,50 @@ public abstract class MessageRouter {
 								chunk.getData().add(j-i*10,f.getData().get(j));
 							}
 							
-							//chunkIDmessageá
+							//设置chunkID，在message中设置。
 							Message res = new Message(this.getHost(),aMessage.getHops().get(aMessage.getHopCount()-1),
 									RESPONSE_PREFIX + aMessage.getId()+i, aMessage.getResponseSize(), 
 									chunk);	
 							res.setInitMsgId(aMessage.getInitMsgId());
-							res.setResponseSize(0);						//һӦû
+							res.setResponseSize(0);						//这一句应该没用
 							res.setFilename(aMessage.getFilename());
 							res.setChunkID(aMessage.getFilename()+"ChunkID"+i);
-							res.updateProperty(SelectLabel, 1);												//˵һӦ
+							res.updateProperty(SelectLabel, 1);												//说明这是一个应答包
 							
 							res.setTime(SimClock.getTime()+0.01*(i+2), SimClock.getTime()+0.01*(i+2));
 							
 							//System.out.println(res.getCreationTime()+"  "+res.getReceiveTime());
 			                
 							this.createNewMessage(res);
-			                //this.getMessage(RESPONSE_PREFIX + aMessage.getId()).setRequest(aMessage);		// ӦϢ
+			                //this.getMessage(RESPONSE_PREFIX + aMessage.getId()).setRequest(aMessage);		// 产生应答消息
 			                
 						}         	
 						
-						//ӦϢ֮Ӧ÷һư
+						//应答消息发完之后，应该发送一个控制包
 						Message ctrMessage =new Message(this.getHost(),aMessage.getHops().get(aMessage.getHopCount()-1),
 								RESPONSE_PREFIX +"ctr_"+  aMessage.getInitMsgId(), aMessage.getResponseSize());
 						ctrMessage.setInitMsgId(aMessage.getInitMsgId());
-						ctrMessage.updateProperty(SelectLabel, 2);												//ʶΪư
+						ctrMessage.updateProperty(SelectLabel, 2);												//标识为控制包
 						ctrMessage.setFilename(aMessage.getFilename());
 						ctrMessage.setZeroForBitMap();
 						ctrMessage.setTime(SimClock.getTime()+0.12, SimClock.getTime()+0.12);
 		                this.createNewMessage(ctrMessage);  	             
 	            		this.putJudgeForRetransfer(ctrMessage);
 	            		
-		                this.removeFromMessages(aMessage.getId());		                						// 濪ʼɾԭ
-						//System.out.println("+++++++++++++++һư++++++++++++++++++++");
+		                this.removeFromMessages(aMessage.getId());		                						// 下面开始删除原本的请求
+						//System.out.println("+++++++++++++++这是一个控制包++++++++++++++++++++");
 		            }
+					else {
+						/* a neighbor may have the file cached */
+						redirectToSummaryHolder(aMessage);
+					}
 				}
 			}	
 			
-			else if (aMessage.getProperty(SelectLabel)== (Object) 1) {								//һӦϢ
+			else if (aMessage.getProperty(SelectLabel)== (Object) 1) {								//这是一个应答消息
 
-				/** ΪӦϼʱ Time_free*/
-				if(this.judgeForRetransfer.containsKey("Chunk"+aMessage.getInitMsgId())){				// жӦļʱڴȷϢǷڣ ڵĻ£ڣһ
+				/** 为应答包加上计时器 Time_free*/
+				if(this.judgeForRetransfer.containsKey("Chunk"+aMessage.getInitMsgId())){				// 首先判断应答包的计时器在待确认消息中是否存在？ 存在的话更新，若不存在，则新添一个
 					this.judgeForRetransfer.get("Chunk"+aMessage.getInitMsgId()).set(1, this.time_free);
 				}
 				else{
@@ -998,12 +1748,12 @@ public abstract class MessageRouter {
 				
 				if (this.getHost().getFileBufferForFile(aMessage)==null){
 					
-					/** ӵ֮ǰҪȶԻжϣǷ δֱӼ뻺棻
-					 *  ȶԻݽɾټ뻺	 * */
+					/** 在添加到缓存中之前，需要先对缓存做判断，是否满？ 若未满，直接加入缓存；
+					 *  若满，则先对缓存中内容进行删除，再加入缓存	 * */
 					
 					addToChunkBuffer(aMessage,false);
 					
-					//öжϢд洢ͳһһάHashMapд洢
+					//不用队列对信息进行存储，统一用一个多维的HashMap进行存储。
 					if(MessageHashMap.containsKey(aMessage.getFilename())){
 						this.MessageHashMap.get(aMessage.getFilename()).put(aMessage.getChunkID(), aMessage);
 					}	else{
@@ -1011,21 +1761,21 @@ public abstract class MessageRouter {
 						NewHashMap.put(aMessage.getChunkID(), aMessage);
 						this.MessageHashMap.put(aMessage.getFilename(), NewHashMap);
 					}
-					this.removeFromMessages(aMessage.getId());		                				// 	濪ʼɾԭӦ
+					this.removeFromMessages(aMessage.getId());		                				// 	下面开始删除原本的应答包
 				}
 
 			} 
 			
-			else if(aMessage.getProperty(SelectLabel)== (Object) 2){								//	жյΪư
+			else if(aMessage.getProperty(SelectLabel)== (Object) 2){								//	判断收到的为控制包
 				if(this.getHost().getFileBuffer().containsKey(aMessage.getFilename())==false){
-					// Ҳackȷϰʧɵطưֱӻظȷϰ.ڴʱchunkBufferѾûchunkļ
+					// 也即是由于ack确认包丢失造成的重发控制包，这里直接回复确认包即可.区别在于此时的chunkBuffer中已经没有了chunk文件。
 					boolean a = false;
 					for(int i=0;i<10;i++){
 						a = this.getHost().getChunkBuffer().get(aMessage.getFilename()).containsKey(aMessage.getFilename()+"ChunkID"+i);
 						if (a == true)
 							break;
 					}
-					if(	a==false ){						//֤һļûУackʧɵġ
+					if(	a==false ){						//证明一个文件都没有，是由于ack包丢失造成的。
 						Message m = (Message)this.judgeForRetransfer
 									.get(RESPONSE_PREFIX +RESPONSE_PREFIX +"ctr_" + aMessage.getInitMsgId()).get(0);
 
@@ -1033,12 +1783,12 @@ public abstract class MessageRouter {
 											RESPONSE_PREFIX + m.getId(), m.getResponseSize());
 						
 						ackMessage.setInitMsgId(m.getInitMsgId());
-						ackMessage.updateProperty(SelectLabel, 3);															//	ʶΪư
+						ackMessage.updateProperty(SelectLabel, 3);															//	标识为控制包
 						ackMessage.setFilename(m.getFilename());
 						ackMessage.setZeroForBitMap();
-						ackMessage.setTime(SimClock.getTime()+0.01, SimClock.getTime()+0.01);									//	Ϣʱ
+						ackMessage.setTime(SimClock.getTime()+0.01, SimClock.getTime()+0.01);									//	更新消息生成时间
 						
-						this.judgeForRetransfer.get(RESPONSE_PREFIX + RESPONSE_PREFIX +"ctr_"+m.getInitMsgId()).set(1, this.time_wait);		//	ˢشʱ
+						this.judgeForRetransfer.get(RESPONSE_PREFIX + RESPONSE_PREFIX +"ctr_"+m.getInitMsgId()).set(1, this.time_wait);		//	刷新重传时间
 		                this.createNewMessage(ackMessage);
 
 					}
@@ -1053,10 +1803,10 @@ public abstract class MessageRouter {
 								NewHashMap.put(aMessage.getChunkID(), aMessage);
 								this.MessageHashMap.put(aMessage.getId(), NewHashMap);
 							}
-			            	this.removeFromMessages(aMessage.getId());		                					// 	濪ʼɾԭĿư
+			            	this.removeFromMessages(aMessage.getId());		                					// 	下面开始删除原本的控制包
 						
-			            	// chunkBufferchunkǷ
-			            	boolean b = true;						//b=1 ĬΪ
+			            	// 遍历chunkBuffer看chunk是否收齐
+			            	boolean b = true;						//b=1 默认为收齐
 			            	this.setZeroForBitMap();
 			            	for(int i=0;i<10;i++){
 								if(this.getHost().getChunkBuffer().get(aMessage.getFilename()).containsKey(aMessage.getFilename()+"ChunkID"+i))
@@ -1064,13 +1814,12 @@ public abstract class MessageRouter {
 			            		else 
 			            			b = false;
 			            	}
-			            	// жǷ룿
-			            	if(b){//  ж
+			            	// 判断是否收齐？？？
+			            	if(b){//  判断收齐的情况下
 							
-			            		//	֮ǰҪжڴǷĻҪɾڴ
+			            		//	往里面放之前，需要先判断内存是否满，若满的话需要删除内存
 			            		if (this.getHost().getFreeFileBufferSize() < 0) {
-			            			this.getHost().makeRoomForNewFile(0);       									//ҪʱɾЩյҲڴϢ
-			            			System.out.print("+++++++++++++++++++++ɾɹ++++++++++++++++++++"+"\n");
+			            			this.getHost().makeRoomForNewFile(0);       									//必要时，删除那些最早接收到且不正在传输的消息
 			            		}				
 								file NewFile = this.getHost().getChunkBuffer().get(aMessage.getFilename()).get(aMessage.getFilename()+"ChunkID"+0);
 			            		for(int i=1;i<10;i++){
@@ -1078,33 +1827,31 @@ public abstract class MessageRouter {
 			            			ArrayList<Integer> c = temp.getData();
 			            			NewFile.getData().addAll(i*10, c);
 			            		}
-								//chunkBufferȡ֮Ҫ
+								//chunkBuffer取完之后，需要将其中内容清空
 								this.getHost().getChunkBuffer().remove(aMessage.getFilename());
 			            		
-			            		//	FileBufferзļ
+			            		//	往FileBuffer中放文件
 			            		NewFile.setInitFile(NewFile);
 								NewFile.setTimeRequest(SimClock.getTime());
 								
-								System.out.println(this.getHost()+"  "+this.getHost().getFileBuffer());
 								
-			            		this.getHost().getFileBuffer().put(aMessage.getFilename(), NewFile);
+			            		this.getHost().putIntoFileBuffer(NewFile);
+			            		notifyFileReassembled(NewFile);
 
-								System.out.println(this.getHost()+"  "+this.getHost().getFileBuffer());
-								System.out.println("++++++++++м̽ڵз뻺ɹ++++++++");
 								
 			            		
-								/**	յư֮Ҫ£һظһһĿĽڵ㷢
-			            		 	1ж£MessageHashMap  Ϣ˳ȡһ 	*/
+								/**	收到控制包之后，需要做两件事，一件回复上一跳，一件是往目的节点发
+			            		 	1、判断收齐的情况下，将MessageHashMap  中消息顺序取出，往下一跳发 	*/
 			            		HashMap<String,Message> NewHashMap = MessageHashMap.get(aMessage.getFilename());
 			            		
 				            	for(int i=0;i<10;i++){
 				            		Message m = NewHashMap.get(aMessage.getFilename()+"ChunkID"+i);
 				            		
-				            		/** ҪǸıԴַ  */
-				            		DTNHost thisHost = this.getHost();						//	Դַ 
-				            		DTNHost thisto = m.getTo();								//	ǰϢĿĽڵ
+				            		/** 主要是改变源地址  */
+				            		DTNHost thisHost = this.getHost();						//	源地址 
+				            		DTNHost thisto = m.getTo();								//	当前消息的目的节点
 				            		Message newMessage = new Message(thisHost,thisto,m.getId(),m.getSize());
-				            		newMessage.copyFrom(m);									//  copyǰϢ
+				            		newMessage.copyFrom(m);									//  copy当前消息的内容
 				        			newMessage.setFilename(m.getFilename());	        			
 				        			newMessage.setBitMap(m.getBitMap());
 				        			newMessage.setInitMsgId(m.getInitMsgId());
@@ -1113,33 +1860,33 @@ public abstract class MessageRouter {
 					 		        
 				            		this.createNewMessage(newMessage);
 				            	}
-				            	Message m = NewHashMap.remove(aMessage.getId());		//  ǿư
-				            	//	ȷϵĻԽóϢ޸ģcopyFromķ
+				            	Message m = NewHashMap.remove(aMessage.getId());		//  这个是控制包
+				            	//	这里如果做逐跳确认的话，可以将拿出来的消息进行修改，可以用copyFrom的方法。
 			            		
-				            	DTNHost thisHost = this.getHost();						//	Դַ 
-			            		DTNHost thisto = m.getTo();								//	ǰϢĿĽڵ
+				            	DTNHost thisHost = this.getHost();						//	源地址 
+			            		DTNHost thisto = m.getTo();								//	当前消息的目的节点
 			            		Message newMessage = new Message(thisHost,thisto,m.getId(),m.getSize());
-			            		newMessage.copyFrom(m);									//  copyǰϢ
+			            		newMessage.copyFrom(m);									//  copy当前消息的内容
 			        			newMessage.setFilename(m.getFilename());	        			
 			        			newMessage.setBitMap(m.getBitMap());
 			        			newMessage.setInitMsgId(m.getInitMsgId());
 			        			newMessage.setTime(SimClock.getTime()+0.11, SimClock.getTime()+0.11);
 			            		
 				 		        this.createNewMessage(newMessage);
-			            		this.putJudgeForRetransfer(newMessage);					//  ɵǰڵ㷢Ŀư뵱ǰڵĴȷϻ
+			            		this.putJudgeForRetransfer(newMessage);					//  由当前节点发出的控制包，放入当前节点的待确认缓存中
 			            		
 			            		this.MessageHashMap.remove(aMessage.getFilename());
 			            		
 			            	}
-			            	// 	2ظȷϰ			
+			            	// 	2、回复确认包			
 			            	Message ackMessage =new Message(this.getHost(),aMessage.getHops().get(aMessage.getHopCount()-1),
 			            			RESPONSE_PREFIX + aMessage.getId(), aMessage.getResponseSize());
 							ackMessage.setInitMsgId(aMessage.getInitMsgId());
-			            	ackMessage.updateProperty(SelectLabel,3);													//˵һȷϰ
-							ackMessage.getBitMap().clear();             												//bitmap
-			            	ackMessage.getBitMap().addAll(this.bitMap);													//ظbitMap
+			            	ackMessage.updateProperty(SelectLabel,3);													//说明这是一个确认包
+							ackMessage.getBitMap().clear();             												//先清空bitmap
+			            	ackMessage.getBitMap().addAll(this.bitMap);													//回复bitMap
 			            	
-			            	System.out.println("мbitmapвԣ"+"  "+ ackMessage.getBitMap());
+			            	System.out.println("中继中bitmap进行测试："+"  "+ ackMessage.getBitMap());
 			            	
 			            	ackMessage.setFilename(aMessage.getFilename());
 							this.putJudgeForRetransfer(ackMessage);
@@ -1150,24 +1897,24 @@ public abstract class MessageRouter {
 
 			}
 
-			else if(aMessage.getProperty(SelectLabel)== (Object) 4){									//	֤Ƕȷϰ			
-				this.judgeForRetransfer.remove(aMessage.getInitMsgId());								//  ɾشϢ
+			else if(aMessage.getProperty(SelectLabel)== (Object) 4){									//	证明这是对请求包的确认包			
+				this.judgeForRetransfer.remove(aMessage.getInitMsgId());								//  删除保留的用于重传的请求消息
 			} 
 			
 
-		}	else if (isFirstDelivery) {																	// ĿĽڵǵһε
+		}	else if (isFirstDelivery) {																	// 这是目的节点且是第一次到达
 			this.deliveredMessages.put(id, aMessage);	
-/*			System.out.println("ĿĽڵ"+"  "+this.getHost()+"   "+aMessage.getProperty(SelectLabel)+ "  "
+/*			System.out.println("到达目的节点"+"  "+this.getHost()+"   "+aMessage.getProperty(SelectLabel)+ "  "
 								+aMessage.getFilename()+" "+aMessage.getChunkID()+"  "
 					+aMessage.getId()+" "+aMessage.getFrom()+"  "+aMessage.getTo());*/
 			
-			/** ϢǷļļӦϢ     ûиڳ	*/ 
+			/** 若是请求消息，看缓存中是否有文件，有则传文件，给应答消息；     没有给出报错处理，用于程序检错。	*/ 
 			
 			if(aMessage.getProperty(SelectLabel)== (Object) 0){					
 				
-				// ackȷϰʧɵطҪtime_wait
+				// 如果这个请求包是由于ack确认包丢失造成的重发，需要time_wait处理
 				if(this.judgeForRetransfer.containsKey(RESPONSE_PREFIX +"ackr_" + aMessage.getInitMsgId())){
-					// Ҳackȷϰʧɵطưֱӻظȷϰ
+					// 也即是由于ack确认包丢失造成的重发控制包，这里直接回复确认包即可
 					Message m = (Message)this.judgeForRetransfer
 								.get(RESPONSE_PREFIX +"ackr_" + aMessage.getInitMsgId()).get(0);
 
@@ -1175,40 +1922,44 @@ public abstract class MessageRouter {
 										RESPONSE_PREFIX + m.getId(), m.getResponseSize());
 					
 					ackMessage.setInitMsgId(m.getInitMsgId());
-					ackMessage.updateProperty(SelectLabel, 4);															//	ʶΪư
+					ackMessage.updateProperty(SelectLabel, 4);															//	标识为控制包
 					ackMessage.setFilename(m.getFilename());
 					ackMessage.setZeroForBitMap();
-					ackMessage.setTime(SimClock.getTime()+0.01, SimClock.getTime()+0.01);									//	Ϣʱ
+					ackMessage.setTime(SimClock.getTime()+0.01, SimClock.getTime()+0.01);									//	更新消息生成时间
 					
-					this.judgeForRetransfer.get(RESPONSE_PREFIX +"ackr_"+m.getInitMsgId()).set(1, this.time_wait);		//	ˢشʱ
+					this.judgeForRetransfer.get(RESPONSE_PREFIX +"ackr_"+m.getInitMsgId()).set(1, this.time_wait);		//	刷新重传时间
 	                this.createNewMessage(ackMessage);
 
 				}
 				else{
 					
-					//յϢҪϢȷ
+					//收到请求消息，需要对请求消息进行确认
 					Message ackMessage =new Message(this.getHost(),aMessage.getHops().get(aMessage.getHopCount()-1),
 							RESPONSE_PREFIX +"ackr_"+ aMessage.getId(), aMessage.getResponseSize());
 					ackMessage.setInitMsgId(aMessage.getInitMsgId());
-					ackMessage.updateProperty(SelectLabel, 4);												//	ʶΪȷϰ
+					ackMessage.updateProperty(SelectLabel, 4);												//	标识为对请求的确认包
 					ackMessage.setFilename(aMessage.getFilename());
 					ackMessage.setTime(SimClock.getTime()+0, SimClock.getTime()+0);				
 					//System.out.println(ackMessage.getCreationTime()+"  "+ackMessage.getReceiveTime());              
 					this.putJudgeForRetransfer(ackMessage);
 					this.createNewMessage(ackMessage);  
 					
-					
-					if (this.getHost().getFileBufferForFile(aMessage)!=null) {
+					notifyCacheLookup(aMessage);
+					if (this.getHost().getFileBufferForFile(aMessage)!=null && this.erasureParity > 0) {
+						/* erasure coded chunks go directly to the requester */
+						sendCodedChunks(aMessage);
+					}
+					else if (this.getHost().getFileBufferForFile(aMessage)!=null) {
 						//System.out.println(this.getHost()+"  "+aMessage.getFrom()+"  "+this.getHost().getFileBufferForFile(aMessage));	
 						
 		            	/**
-		            	 * ҪӶļƬĴȻٽӦϢ
-		            	 * ҵЧķд
+		            	 * 需要在这里加对文件分片的处理，然后再将对应的生成消息放入待发送序列中
+		            	 * 后面可以找到更高效的方法来进行处理？？？
 		            	 */
-						this.getHost().getFileBufferForFile(aMessage).setTimeRequest(SimClock.getTime());  	//ļʱ					
+						this.getHost().getFileBufferForFile(aMessage).setTimeRequest(SimClock.getTime());  	//缓存中文件更新请求时间					
 						file f = this.getHost().getFileBufferForFile(aMessage);
 						
-						//System.out.println("ʼļеݴС"+"  "+f.getData().size());
+						//System.out.println("初始化文件中的数据大小"+"  "+f.getData().size());
 						
 						for(int i=0;i<10;i++){
 							file chunk = f.copyFrom(f);
@@ -1216,14 +1967,14 @@ public abstract class MessageRouter {
 								chunk.getData().add(j-i*10,f.getData().get(j));
 							}
 							
-							Message res = new Message(this.getHost(), aMessage.getFrom(),
+							Message res = new Message(this.getHost(), getRequester(aMessage),
 									RESPONSE_PREFIX + aMessage.getId()+i, aMessage.getResponseSize(), 
 									chunk);	
 							res.setInitMsgId(aMessage.getInitMsgId());
-							res.setResponseSize(0);						//һӦû
+							res.setResponseSize(0);						//这一句应该没用
 							res.setFilename(aMessage.getFilename());
-							res.setChunkID(aMessage.getFilename()+"ChunkID"+i);									//chunkIDmessageá
-							res.updateProperty(SelectLabel,1);													//˵һӦ
+							res.setChunkID(aMessage.getFilename()+"ChunkID"+i);									//设置chunkID，在message中设置。
+							res.updateProperty(SelectLabel,1);													//说明这是一个应答包
 							
 							res.setTime(SimClock.getTime()+0.01*(i+1), SimClock.getTime()+0.01*(i+1));
 							
@@ -1232,11 +1983,11 @@ public abstract class MessageRouter {
 						}
 
 						
-						//ӦϢ֮Ӧ÷һư
-						Message ctrMessage =new Message(this.getHost(),aMessage.getFrom(),
+						//应答消息发完之后，应该发送一个控制包
+						Message ctrMessage =new Message(this.getHost(),getRequester(aMessage),
 								RESPONSE_PREFIX + "ctr_"+ aMessage.getId(), aMessage.getResponseSize());
 						ctrMessage.setInitMsgId(aMessage.getInitMsgId());
-						ctrMessage.updateProperty(SelectLabel, 2);												//ʶΪư
+						ctrMessage.updateProperty(SelectLabel, 2);												//标识为控制包
 						ctrMessage.setFilename(aMessage.getFilename());
 						ctrMessage.setZeroForBitMap();
 						ctrMessage.setTime(SimClock.getTime()+0.11, SimClock.getTime()+0.11);	              
@@ -1245,14 +1996,22 @@ public abstract class MessageRouter {
 	            		this.putJudgeForRetransfer(ctrMessage);
 		            }
 					else {
-						System.out.print("ΪĿĽڵʱִĿĽڵûжӦļ"+"\n");
+						/* the replica was evicted after the request was resolved
+						 * to this host, fall back to the origin of the file */
+						DTNHost origin = getFileOrigin(aMessage.getFilename());
+						if (origin != null && origin != this.getHost()) {
+							redirectRequest(aMessage, origin);
+						}
+						else {
+							System.out.print("当为目的节点时，出现错误，目的节点中没有对应的文件。"+"\n");
+						}
 					}
 				}
 			}	
 			
-			else if (aMessage.getProperty(SelectLabel)== (Object) 1){										// һӦϢЯchunkļ  				
+			else if (aMessage.getProperty(SelectLabel)== (Object) 1){										// 这是一个应答消息，携带的是chunk文件  				
 				
-				/** ΪӦϼʱ Time_free,жӦļʱڴȷϢǷڣ ڵĻ£ڣһ   */
+				/** 为应答包加上计时器 Time_free,首先判断应答包的计时器在待确认消息中是否存在？ 存在的话更新，若不存在，则新添一个   */
 				if(this.judgeForRetransfer.containsKey("Chunk"+aMessage.getInitMsgId())){				
 					this.judgeForRetransfer.get("Chunk"+aMessage.getInitMsgId()).set(1, this.time_free);
 				}
@@ -1261,11 +2020,11 @@ public abstract class MessageRouter {
 				}
 				
 				
-				/** chunkBufferзļ */
+				/** 往chunkBuffer中放入文件 */
 				if (this.getHost().getFileBufferForFile(aMessage)==null){
 					addToChunkBuffer(aMessage,false);
 				}
-				/** Ϣڶط м̽ڵ㵱ĿĽڵд*/
+				/** 当消息是由于丢包重发 将中继节点当做目的节点进行处理*/
 				if (this.MessageHashMap.containsKey(aMessage.getFilename())){
 					this.MessageHashMap.get(aMessage.getFilename()).put(aMessage.getChunkID(), aMessage);
 				}
@@ -1273,9 +2032,9 @@ public abstract class MessageRouter {
 				
 			} 
 			
-			else if(aMessage.getProperty(SelectLabel)== (Object) 2){										// жյΪưظȷ
-				if(this.getHost().getFileBuffer().containsKey(aMessage.getFilename())==false){				// ĿĽڵвļ
-					// Ҳackȷϰʧɵطưֱӻظȷϰ.ڴʱchunkBufferѾûchunkļ
+			else if(aMessage.getProperty(SelectLabel)== (Object) 2){										// 判断收到的为控制包，回复确认
+				if(this.getHost().getFileBuffer().containsKey(aMessage.getFilename())==false){				// 在目的节点中不存在文件的情况下
+					// 也即是由于ack确认包丢失造成的重发控制包，这里直接回复确认包即可.区别在于此时的chunkBuffer中已经没有了chunk文件。
 					boolean a = false;
 					for(int i=0;i<10;i++){
 						a = this.getHost().getChunkBuffer().get(aMessage.getFilename()).containsKey(aMessage.getFilename()+"ChunkID"+i);
@@ -1283,8 +2042,8 @@ public abstract class MessageRouter {
 							break;
 					}
 					
-					//System.out.println("%%%%%%%%%%%%%%%%%%%Ƿackʧطư"+"  "+ a);
-					if(	a==false ){						//֤һļûУackʧɵġ
+					//System.out.println("%%%%%%%%%%%%%%%%%%%测试是否是由于ack包丢失造成重发控制包："+"  "+ a);
+					if(	a==false ){						//证明一个文件都没有，是由于ack包丢失造成的。
 						Message m = (Message)this.judgeForRetransfer
 									.get(RESPONSE_PREFIX +RESPONSE_PREFIX +"ctr_" + aMessage.getInitMsgId()).get(0);
 
@@ -1292,20 +2051,20 @@ public abstract class MessageRouter {
 											RESPONSE_PREFIX + m.getId(), m.getResponseSize());
 						
 						ackMessage.setInitMsgId(m.getInitMsgId());
-						ackMessage.updateProperty(SelectLabel, 3);															//	ʶΪư
+						ackMessage.updateProperty(SelectLabel, 3);															//	标识为控制包
 						ackMessage.setFilename(m.getFilename());
 						ackMessage.setZeroForBitMap();
-						ackMessage.setTime(SimClock.getTime()+0.01, SimClock.getTime()+0.01);									//	Ϣʱ
+						ackMessage.setTime(SimClock.getTime()+0.01, SimClock.getTime()+0.01);									//	更新消息生成时间
 						
-						this.judgeForRetransfer.get(RESPONSE_PREFIX + RESPONSE_PREFIX +"ctr_"+m.getInitMsgId()).set(1, this.time_wait);		//	ˢشʱ
+						this.judgeForRetransfer.get(RESPONSE_PREFIX + RESPONSE_PREFIX +"ctr_"+m.getInitMsgId()).set(1, this.time_wait);		//	刷新重传时间
 		                this.createNewMessage(ackMessage);
 
 					}
 					
 					else{
 
-						// chunkBufferchunkǷ룬ظȷϰ
-						boolean b = true;						//b=1 ĬΪ
+						// 遍历chunkBuffer看chunk是否收齐，回复确认包
+						boolean b = true;						//b=1 默认为收齐
 						this.setZeroForBitMap();
 						for(int i=0;i<10;i++){
 							if(this.getHost().getChunkBuffer().get(aMessage.getFilename()).containsKey(aMessage.getFilename()+"ChunkID"+i))
@@ -1314,13 +2073,12 @@ public abstract class MessageRouter {
 								b = false;  
 						} 
 						
-						// жǷ룿
-						if(b){//  ж
+						// 判断是否收齐？？？
+						if(b){//  判断收齐的情况下
 							
-							//	֮ǰҪжڴǷĻҪɾڴ
+							//	往里面放之前，需要先判断内存是否满，若满的话需要删除内存
 							if (this.getHost().getFreeFileBufferSize() < 0) {
-								this.getHost().makeRoomForNewFile(0);       										//ҪʱɾЩյҲڴϢ
-								System.out.print("+++++++++++++++++++++ɾɹ++++++++++++++++++++"+"\n");
+								this.getHost().makeRoomForNewFile(0);       										//必要时，删除那些最早接收到且不正在传输的消息
 							}
 							
 							file NewFile = this.getHost().getChunkBuffer().get(aMessage.getFilename()).get(aMessage.getFilename()+"ChunkID"+0);
@@ -1331,27 +2089,25 @@ public abstract class MessageRouter {
 								ArrayList<Integer> c = temp.getData();
 								NewFile.getData().addAll(i*10, c);
 							}
-							//chunkBufferȡ֮Ҫ
+							//chunkBuffer取完之后，需要将其中内容清空
 							this.getHost().getChunkBuffer().remove(aMessage.getFilename());
 							
-							//	FileBufferзļ
+							//	往FileBuffer中放文件
 							NewFile.setInitFile(NewFile);
 							NewFile.setTimeRequest(SimClock.getTime());
 							
-							System.out.println(this.getHost()+"  "+this.getHost().getFileBuffer());
 							
-							this.getHost().getFileBuffer().put(aMessage.getFilename(), NewFile);
+							this.getHost().putIntoFileBuffer(NewFile);
+							notifyFileReassembled(NewFile);
 							
-							System.out.println(this.getHost()+"  "+this.getHost().getFileBuffer());
-							System.out.println("++++++++++ĿĽڵз뻺ɹ++++++++");
 							
-							/** ĿĽڵشļưʱbug*/
+							/** 解决当向目的节点重传文件与控制包时候的bug*/
 							if(MessageHashMap.containsKey(aMessage.getFilename())){
 								this.MessageHashMap.get(aMessage.getFilename()).put(aMessage.getId(), aMessage);
 								
-								/** ֤ĿĽڵ㣬ҪMessageHashMapϢش*/
+								/** 证明这是曾经的目的节点，接着需要对MessageHashMap中消息进行重传*/
 								HashMap<String,Message> NewHashMap = MessageHashMap.get(aMessage.getFilename());
-								// ڵһʱ
+								// 解决当节点一致时候的情况
 								DTNHost temp = null;
 								for(int i=0;i<10;i++){
 									Message m = NewHashMap.get(aMessage.getFilename()+"ChunkID"+i);
@@ -1363,16 +2119,16 @@ public abstract class MessageRouter {
 									Message m = NewHashMap.get(aMessage.getFilename()+"ChunkID"+i);
 			            		
 
-									/** ҪǸıԴַ  */
-									DTNHost thisHost = this.getHost();						//	Դַ 
-									DTNHost thisto = m.getTo();								//	ǰϢĿĽڵ
+									/** 主要是改变源地址  */
+									DTNHost thisHost = this.getHost();						//	源地址 
+									DTNHost thisto = m.getTo();								//	当前消息的目的节点
 									
 									if(thisHost == m.getTo()){
 										thisto = temp;
 									}
 									
 									Message newMessage = new Message(thisHost,thisto,m.getId(),m.getSize());
-									newMessage.copyFrom(m);									//  copyǰϢ
+									newMessage.copyFrom(m);									//  copy当前消息的内容
 									newMessage.setFilename(m.getFilename());	        			
 									newMessage.setBitMap(m.getBitMap());
 									newMessage.setInitMsgId(m.getInitMsgId());
@@ -1381,41 +2137,41 @@ public abstract class MessageRouter {
 				 		        
 									this.createNewMessage(newMessage);
 								}
-								Message m = NewHashMap.remove(aMessage.getId());		//  ǿư
-								//	ȷϵĻԽóϢ޸ģcopyFromķ
+								Message m = NewHashMap.remove(aMessage.getId());		//  这个是控制包
+								//	这里如果做逐跳确认的话，可以将拿出来的消息进行修改，可以用copyFrom的方法。
 			        		
-								DTNHost thisHost = this.getHost();						//	Դַ 
-								DTNHost thisto = m.getTo();								//	ǰϢĿĽڵ
+								DTNHost thisHost = this.getHost();						//	源地址 
+								DTNHost thisto = m.getTo();								//	当前消息的目的节点
 								
 								if(thisHost == m.getTo()){
 									thisto = temp;
 								}
 								String ID = RESPONSE_PREFIX + "ctr_"+m.getInitMsgId();
 								Message newMessage = new Message(thisHost,thisto,ID,m.getSize());
-								newMessage.copyFrom(m);									//  copyǰϢ
+								newMessage.copyFrom(m);									//  copy当前消息的内容
 								newMessage.setFilename(m.getFilename());	        			
 								newMessage.setBitMap(m.getBitMap());
 								newMessage.setInitMsgId(m.getInitMsgId());
 								newMessage.setTime(SimClock.getTime()+0.11, SimClock.getTime()+0.11);
 			        		
 								this.createNewMessage(newMessage);
-								this.putJudgeForRetransfer(newMessage);					//  ɵǰڵ㷢Ŀư뵱ǰڵĴȷϻ
+								this.putJudgeForRetransfer(newMessage);					//  由当前节点发出的控制包，放入当前节点的待确认缓存中
 			        		
 								this.MessageHashMap.remove(aMessage.getFilename());
 							}
 			
 						}
-						// ظȷϰ
+						// 回复确认包
 						
 						Message ackMessage =new Message(this.getHost(),aMessage.getFrom(),
 								RESPONSE_PREFIX + aMessage.getId(), aMessage.getResponseSize());
 						ackMessage.setInitMsgId(aMessage.getInitMsgId());
-						ackMessage.updateProperty(SelectLabel,3);													//˵һȷϰ
-						ackMessage.getBitMap().clear();             												//bitmap
-						ackMessage.getBitMap().addAll(this.bitMap);										//ظbitMap
+						ackMessage.updateProperty(SelectLabel,3);													//说明这是一个确认包
+						ackMessage.getBitMap().clear();             												//先清空bitmap
+						ackMessage.getBitMap().addAll(this.bitMap);										//回复bitMap
 						ackMessage.setFilename(aMessage.getFilename());				
 						this.putJudgeForRetransfer(ackMessage);
-						System.out.println("ĿĽڵbitmapȷϣ"+"  "+ackMessage.getBitMap());
+						System.out.println("目的节点bitmap确认："+"  "+ackMessage.getBitMap());
 		                
 						this.createNewMessage(ackMessage);  
 					}
@@ -1424,19 +2180,19 @@ public abstract class MessageRouter {
 			}
 			
 			
-			else if(aMessage.getProperty(SelectLabel)== (Object) 3){										//жյΪȷϰ
+			else if(aMessage.getProperty(SelectLabel)== (Object) 3){										//判断收到的为确认包
 				
-				//bitMapǷ룿δط
-				boolean b = true;										//жǷҪٻظһưĬΪҪ
+				//遍历bitMap是否收齐？未收齐重发。
+				boolean b = true;										//用于判断是否需要再回复一个控制包？默认为不需要。
 				file f = this.getHost().getFileBufferForFile(aMessage);				
 				
-				//System.out.print("жbitmap:"+"  ");			
+				//System.out.print("用于判断bitmap:"+"  ");			
 				for(int i=0; i<10; i++){
 					file chunk = f.copyFrom(f);
 					if(aMessage.getBitMap().get(i)!=1){
 						//System.out.print(aMessage.getBitMap().get(i)+"   ");
 
-						//طchunkIDΪiİ
+						//重发chunkID为i的包
 						for(int j=i*10;j<i*10+10;j++){
 							chunk.getData().add(j-i*10,f.getData().get(j));
 						}
@@ -1445,36 +2201,36 @@ public abstract class MessageRouter {
 								chunk);	
 
 						res.setInitMsgId(aMessage.getInitMsgId());
-						res.setResponseSize(0);						//һӦû
+						res.setResponseSize(0);						//这一句应该没用
 						res.setFilename(aMessage.getFilename());
-						res.setChunkID(aMessage.getFilename()+"ChunkID"+i);									//chunkIDmessageá
-						res.updateProperty(SelectLabel,1);													//˵һӦ
+						res.setChunkID(aMessage.getFilename()+"ChunkID"+i);									//设置chunkID，在message中设置。
+						res.updateProperty(SelectLabel,1);													//说明这是一个应答包
         				//res.getBitMap().addAll(aMessage.getBitMap());
     					
         				this.createNewMessage(res);
 						b = false;
 					
-/*						System.out.println("·ļ"+"  "+this.getHost()+"   "+res.getProperty(SelectLabel)+ "  "
+/*						System.out.println("重新发送文件："+"  "+this.getHost()+"   "+res.getProperty(SelectLabel)+ "  "
 											+res.getFilename()+" "+res.getChunkID()+"  "
 											+res.getId()+" "+res.getFrom()+"  "+res.getTo());*/
 					}	
 				}	
 				
-				if(b==false){				//b=false֤аʧʱҪٷһư
+				if(b==false){				//当b=false，证明有包丢失，此时需要再发送一个控制包
 					
 					Message ctrMessage =new Message(this.getHost(),aMessage.getFrom(),
 							RESPONSE_PREFIX + aMessage.getId(), aMessage.getResponseSize());
 					
 					ctrMessage.setInitMsgId(aMessage.getInitMsgId());
-					ctrMessage.updateProperty(SelectLabel, 2);															//	ʶΪư
+					ctrMessage.updateProperty(SelectLabel, 2);															//	标识为控制包
 					ctrMessage.setFilename(aMessage.getFilename());
 					ctrMessage.setZeroForBitMap();
-					ctrMessage.setTime(SimClock.getTime()+0.01, SimClock.getTime()+0.01);									//	Ϣʱ
+					ctrMessage.setTime(SimClock.getTime()+0.01, SimClock.getTime()+0.01);									//	更新消息生成时间
 	            
 					
-					this.judgeForRetransfer.get(RESPONSE_PREFIX +"ctr_"+aMessage.getInitMsgId()).set(1, this.time_out);	//	ˢشʱ
+					this.judgeForRetransfer.get(RESPONSE_PREFIX +"ctr_"+aMessage.getInitMsgId()).set(1, this.time_out);	//	刷新重传时间
 	                int m = (int) this.judgeForRetransfer.get(RESPONSE_PREFIX +"ctr_"+aMessage.getInitMsgId()).get(2);
-	                this.judgeForRetransfer.get(RESPONSE_PREFIX +"ctr_"+aMessage.getInitMsgId()).set(2, m-1); 			//	شһ
+	                this.judgeForRetransfer.get(RESPONSE_PREFIX +"ctr_"+aMessage.getInitMsgId()).set(2, m-1); 			//	重传次数减少一次
 	                this.createNewMessage(ctrMessage);
 	            }
 				
@@ -1483,14 +2239,37 @@ public abstract class MessageRouter {
 				}
 			}
 			
-			else if(aMessage.getProperty(SelectLabel)== (Object) 4){									//	֤Ƕȷϰ			
-				this.judgeForRetransfer.remove(aMessage.getInitMsgId());								//  ɾشϢ
+			else if(aMessage.getProperty(SelectLabel)== (Object) 4){									//	证明这是对请求包的确认包			
+				this.judgeForRetransfer.remove(aMessage.getInitMsgId());								//  删除保留的用于重传的请求消息
 			} 
 			
+			else if(aMessage.getProperty(SelectLabel)== (Object) PREFETCH_PUSH){
+				storePushedFile(aMessage);
+			}
+			
+			else if(aMessage.getProperty(SelectLabel)== (Object) RANGE_REQUEST){
+				serveChunkRange(aMessage);
+			}
+			
+			else if(aMessage.getProperty(SelectLabel)== (Object) RANGE_CHUNK){
+				receiveRangeChunk(aMessage);
+			}
+			
+			else if(aMessage.getProperty(SelectLabel)== (Object) CODED_CHUNK){
+				receiveCodedChunk(aMessage);
+			}
+			
+			else if(aMessage.getProperty(SelectLabel)== (Object) CACHE_SUMMARY){
+				if (this.summaries != null) {
+					this.summaries.summaryReceived(aMessage.getFrom(),
+							(CacheSummary)aMessage.getProperty(CACHE_SUMMARY_PROP));
+				}
+			}
+			
 		} else if (outgoing == null) {			
 			// Blacklist messages that an app wants to drop.
 			// Otherwise the peer will just try to send it back again.
-			this.blacklistedMessages.put(id, null);												//test ע͵
+			this.blacklistedMessages.put(id, null);												//（test 注释掉）
 		}		
 		for (MessageListener ml : this.mListeners) {
 			ml.messageTransferred(aMessage, from, this.host,
@@ -31,6 +31,7 @@ import util.Tuple;
  * http://tools.ietf.org/html/draft-irtf-dtnrg-prophet-09
  */
 public class ProphetV2Router extends ActiveRouter {
+	private static final long serialVersionUID = 42L;
 	/** delivery predictability initialization constant*/
 	public static final double PEncMax = 0.5;
 	/** typical interconnection time in seconds*/
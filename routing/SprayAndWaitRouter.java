@@ -19,6 +19,7 @@ import core.Settings;
  *
  */
 public class SprayAndWaitRouter extends ActiveRouter {
+	private static final long serialVersionUID = 42L;
 	/** identifier for the initial number of copies setting ({@value})*/ 
 	public static final String NROF_COPIES = "nrofCopies";
 	/** identifier for the binary-mode setting ({@value})*/ 
@@ -137,7 +138,7 @@ public class SprayAndWaitRouter extends ActiveRouter {
 	@Override
 	protected void transferDone(Connection con) {
 		Integer nrofCopies;
-		String msgId = con.getMessage().getId();
+		String msgId = con.getMessage(getHost()).getId();
 		/* get this router's copy of the message */
 		Message msg = getMessage(msgId);
 
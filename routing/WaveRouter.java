@@ -21,6 +21,7 @@ import core.SimClock;
  * Work in progress.
  */
 public class WaveRouter extends ActiveRouter {
+	private static final long serialVersionUID = 42L;
 	
 	/** 
 	 * Immunity time -setting id ({@value}). Defines how long time a node
@@ -141,7 +142,7 @@ public class WaveRouter extends ActiveRouter {
 	@Override
 	protected void transferDone(Connection con) { 
 		/* remove from custody messages (if it was there) */
-		this.custodyMessages.remove(con.getMessage().getId()); 
+		this.custodyMessages.remove(con.getMessage(getHost()).getId()); 
 	}
 	
 	@Override
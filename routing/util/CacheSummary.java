@@ -0,0 +1,148 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.io.Serializable;
+
+/**
+ * Compact summary of the contents of a file cache: a counting Bloom filter
+ * over the file identifiers. Files can be both added and removed, so the
+ * summary can be kept up to date incrementally as the cache changes. A
+ * summary can give false positives but never false negatives (unless a
+ * counter has saturated and the file was removed).
+ * <P>When a summary is sent to another host, only the bit vector (whether
+ * each counter is non-zero) is needed, so the transmitted size of a
+ * summary is {@link #getSizeInBytes()}.</P>
+ */
+public class CacheSummary implements Serializable {
+	private static final long serialVersionUID = 42L;
+	/** FNV-1a 64 bit offset basis */
+	private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+	/** FNV-1a 64 bit prime */
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	private byte[] counters;
+	private int nrofHashes;
+	private int nrofItems;
+
+	/**
+	 * Creates a new, empty summary
+	 * @param nrofBits Number of bits (counters) in the filter
+	 * @param nrofHashes Number of hash functions
+	 */
+	public CacheSummary(int nrofBits, int nrofHashes) {
+		if (nrofBits < 1 || nrofHashes < 1) {
+			throw new IllegalArgumentException("Invalid summary size " +
+					nrofBits + " bits, " + nrofHashes + " hashes");
+		}
+		this.counters = new byte[nrofBits];
+		this.nrofHashes = nrofHashes;
+	}
+
+	/**
+	 * Copy constructor.
+	 * @param proto The summary to copy
+	 */
+	protected CacheSummary(CacheSummary proto) {
+		this.counters = proto.counters.clone();
+		this.nrofHashes = proto.nrofHashes;
+		this.nrofItems = proto.nrofItems;
+	}
+
+	/**
+	 * Returns a snapshot of this summary that is not affected by the later
+	 * changes of this summary
+	 * @return A copy of this summary
+	 */
+	public CacheSummary snapshot() {
+		return new CacheSummary(this);
+	}
+
+	/**
+	 * Adds a file to the summary
+	 * @param fileId Identifier of the file
+	 */
+	public void add(String fileId) {
+		long h = hash(fileId);
+		for (int i = 0; i < this.nrofHashes; i++) {
+			int index = index(h, i);
+			if (this.counters[index] < Byte.MAX_VALUE) {
+				this.counters[index]++;
+			}
+		}
+		this.nrofItems++;
+	}
+
+	/**
+	 * Removes a file from the summary. The file must have been added.
+	 * @param fileId Identifier of the file
+	 */
+	public void remove(String fileId) {
+		long h = hash(fileId);
+		for (int i = 0; i < this.nrofHashes; i++) {
+			int index = index(h, i);
+			/* saturated counters are never decremented */
+			if (this.counters[index] > 0 &&
+					this.counters[index] < Byte.MAX_VALUE) {
+				this.counters[index]--;
+			}
+		}
+		this.nrofItems--;
+	}
+
+	/**
+	 * Returns true if the file may be in the summarized cache
+	 * @param fileId Identifier of the file
+	 * @return False if the file certainly isn't in the cache, true if it
+	 * probably is
+	 */
+	public boolean mightContain(String fileId) {
+		long h = hash(fileId);
+		for (int i = 0; i < this.nrofHashes; i++) {
+			if (this.counters[index(h, i)] == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the number of files in the summary
+	 * @return the number of files in the summary
+	 */
+	public int getNrofItems() {
+		return this.nrofItems;
+	}
+
+	/**
+	 * Returns the size of the summary's bit vector in bytes
+	 * @return the transmitted size of the summary
+	 */
+	public int getSizeInBytes() {
+		return (this.counters.length + 7) / 8;
+	}
+
+	/**
+	 * Returns the i:th index of a hash using double hashing
+	 */
+	private int index(long hash, int i) {
+		int h1 = (int)hash;
+		int h2 = (int)(hash >>> 32) | 1;
+		return Math.floorMod(h1 + i * h2, this.counters.length);
+	}
+
+	/** 64 bit FNV-1a hash of a string with a final bit mixing step */
+	private static long hash(String s) {
+		long h = FNV_OFFSET;
+		for (int i = 0; i < s.length(); i++) {
+			h ^= s.charAt(i);
+			h *= FNV_PRIME;
+		}
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		return h;
+	}
+}
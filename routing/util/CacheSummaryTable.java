@@ -0,0 +1,203 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import core.Connection;
+import core.DTNHost;
+import core.Settings;
+import core.SimClock;
+
+/**
+ * Cache summaries of a host: the summary of the host's own file buffer,
+ * which is kept up to date incrementally, and the latest summaries received
+ * from the neighbors. A host sends its summary to a neighbor when a
+ * connection comes up and again (at most once per refresh interval) when
+ * its file buffer has changed since the previous summary sent to the
+ * neighbor.
+ */
+public class CacheSummaryTable implements Serializable {
+	private static final long serialVersionUID = 42L;
+	/**
+	 * Cache summary size -setting id ({@value}). Number of bits in the
+	 * summary filter. Cache summaries are exchanged only if this setting is
+	 * defined.
+	 */
+	public static final String SUMMARY_BITS_S = "cacheSummaryBits";
+	/** Number of hash functions of the summary filter -setting id
+	 * ({@value}). Default is 4. */
+	public static final String SUMMARY_HASHES_S = "cacheSummaryHashes";
+	/** Minimum interval of the summary refreshes -setting id ({@value}).
+	 * Seconds. Default is 30. */
+	public static final String SUMMARY_INTERVAL_S = "cacheSummaryInterval";
+
+	private int nrofBits;
+	private int nrofHashes;
+	private double interval;
+
+	/** summary of the own file buffer */
+	private CacheSummary summary;
+	/** version of the own summary, incremented on each change */
+	private int version;
+	/** sim time of the latest refresh check */
+	private double lastRefresh;
+	/** neighbor -> version of the own summary last sent to it */
+	private HashMap<DTNHost, Integer> sentVersions;
+	/** neighbor -> latest summary received from it */
+	private HashMap<DTNHost, CacheSummary> neighborSummaries;
+
+	/**
+	 * Constructor. Creates a new summary table based on the settings in the
+	 * given Settings object.
+	 * @param s The settings object
+	 */
+	public CacheSummaryTable(Settings s) {
+		this.nrofBits = s.getInt(SUMMARY_BITS_S);
+		s.ensurePositiveValue(this.nrofBits, SUMMARY_BITS_S);
+		this.nrofHashes = s.contains(SUMMARY_HASHES_S) ?
+				s.getInt(SUMMARY_HASHES_S) : 4;
+		s.ensurePositiveValue(this.nrofHashes, SUMMARY_HASHES_S);
+		this.interval = s.contains(SUMMARY_INTERVAL_S) ?
+				s.getDouble(SUMMARY_INTERVAL_S) : 30;
+		init();
+	}
+
+	/**
+	 * Copy constructor.
+	 * @param proto The table prototype where setting values are copied from
+	 */
+	protected CacheSummaryTable(CacheSummaryTable proto) {
+		this.nrofBits = proto.nrofBits;
+		this.nrofHashes = proto.nrofHashes;
+		this.interval = proto.interval;
+		init();
+	}
+
+	private void init() {
+		this.summary = new CacheSummary(this.nrofBits, this.nrofHashes);
+		this.version = 0;
+		this.lastRefresh = -Double.MAX_VALUE;
+		this.sentVersions = new HashMap<DTNHost, Integer>();
+		this.neighborSummaries = new HashMap<DTNHost, CacheSummary>();
+	}
+
+	/**
+	 * Returns a replicate of this summary table
+	 * @return A replicate
+	 */
+	public CacheSummaryTable replicate() {
+		return new CacheSummaryTable(this);
+	}
+
+	/**
+	 * Updates the own summary after a file was put to the file buffer
+	 * @param fileId Identifier of the file
+	 */
+	public void fileAdded(String fileId) {
+		this.summary.add(fileId);
+		this.version++;
+	}
+
+	/**
+	 * Updates the own summary after a file was removed from the file buffer
+	 * @param fileId Identifier of the file
+	 */
+	public void fileRemoved(String fileId) {
+		this.summary.remove(fileId);
+		this.version++;
+	}
+
+	/**
+	 * Returns a snapshot of the own summary to send to a neighbor and
+	 * records that the neighbor has the current version
+	 * @param neighbor The neighbor the summary is sent to
+	 * @return The summary snapshot
+	 */
+	public CacheSummary summarySent(DTNHost neighbor) {
+		this.sentVersions.put(neighbor, this.version);
+		return this.summary.snapshot();
+	}
+
+	/**
+	 * Returns the transmitted size of a summary in bytes
+	 * @return the size of a summary
+	 */
+	public int getSummarySize() {
+		return this.summary.getSizeInBytes();
+	}
+
+	/**
+	 * Returns the neighbors the own summary should be (re)sent to now.
+	 * Calls that come sooner than the refresh interval after the previous
+	 * call return an empty list.
+	 * @param connections The current connections of the host
+	 * @param host The host whose summaries these are
+	 * @return The neighbors with an outdated summary of the host
+	 */
+	public List<DTNHost> getOutdatedNeighbors(List<Connection> connections,
+			DTNHost host) {
+		List<DTNHost> outdated = new ArrayList<DTNHost>();
+		double now = SimClock.getTime();
+		if (now - this.lastRefresh < this.interval) {
+			return outdated;
+		}
+		this.lastRefresh = now;
+		for (Connection con : connections) {
+			DTNHost other = con.getOtherNode(host);
+			Integer sent = this.sentVersions.get(other);
+			if (con.isUp() && sent != null && sent != this.version) {
+				outdated.add(other);
+			}
+		}
+		return outdated;
+	}
+
+	/**
+	 * Stores a summary received from a neighbor
+	 * @param neighbor The neighbor
+	 * @param summary The neighbor's summary
+	 */
+	public void summaryReceived(DTNHost neighbor, CacheSummary summary) {
+		this.neighborSummaries.put(neighbor, summary);
+	}
+
+	/**
+	 * Forgets the summaries exchanged with a neighbor whose connection went
+	 * down
+	 * @param neighbor The neighbor
+	 */
+	public void neighborLeft(DTNHost neighbor) {
+		this.neighborSummaries.remove(neighbor);
+		this.sentVersions.remove(neighbor);
+	}
+
+	/**
+	 * Returns a connected neighbor whose summary says it (probably) has the
+	 * file cached
+	 * @param fileId Identifier of the file
+	 * @param connections The current connections of the host
+	 * @param host The host whose summaries these are
+	 * @param exclude Neighbors that are not accepted
+	 * @return A neighbor or null if no summary has the file
+	 */
+	public DTNHost findHolder(String fileId, List<Connection> connections,
+			DTNHost host, List<DTNHost> exclude) {
+		for (Connection con : connections) {
+			DTNHost other = con.getOtherNode(host);
+			if (!con.isUp() || exclude.contains(other)) {
+				continue;
+			}
+			CacheSummary s = this.neighborSummaries.get(other);
+			if (s != null && s.mightContain(fileId)) {
+				return other;
+			}
+		}
+		return null;
+	}
+}
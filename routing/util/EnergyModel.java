@@ -4,6 +4,7 @@
  */
 package routing.util;
 
+import java.io.Serializable;
 import java.util.Random;
 
 import core.*;
@@ -14,7 +15,8 @@ import core.*;
  * often than 1/s, constant scanning is assumed (and power consumption does not
  * increase from {@link #scanEnergy} value).
  */
-public class EnergyModel implements ModuleCommunicationListener {
+public class EnergyModel implements ModuleCommunicationListener, Serializable {
+	private static final long serialVersionUID = 42L;
 	/** Initial units of energy -setting id ({@value}). Can be either a 
 	 * single value, or a range of two values. In the latter case, the used
 	 * value is a uniformly distributed random value between the two values. */
@@ -59,7 +61,6 @@ public class EnergyModel implements ModuleCommunicationListener {
 	/** sim time of the last energy updated */
 	private double lastUpdate;
 	private ModuleCommunicationBus comBus;
-	private static Random rng = null;
 
 	/**
 	 * Constructor. Creates a new message router based on the settings in
@@ -120,8 +121,11 @@ public class EnergyModel implements ModuleCommunicationListener {
 			this.currentEnergy = range[0];
 		}
 		else {
+			SimContext c = SimContext.getInstance();
+			Random rng = (Random)c.getClassState(EnergyModel.class);
 			if (rng == null) {
 				rng = new Random((int)(range[0] + range[1]));
+				c.setClassState(EnergyModel.class, rng);
 			}
 			this.currentEnergy = range[0] + 
 				rng.nextDouble() * (range[1] - range[0]);
@@ -0,0 +1,317 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import core.DTNHost;
+import core.Message;
+import core.Settings;
+import core.file;
+
+/**
+ * Multi-source fetches of files. The chunks of a file are requested from
+ * several replica holders at once, each holder serving a disjoint range of
+ * chunks, so the file is received over several links in parallel. Chunks
+ * that have not arrived within the chunk request timeout (stragglers) are
+ * re-requested from another holder. A fetch is abandoned if a chunk has
+ * been requested too many times.
+ */
+public class MultiSourceFetcher implements Serializable {
+	private static final long serialVersionUID = 42L;
+	/**
+	 * Number of replica holders a file is fetched from -setting id
+	 * ({@value}). Multi-source fetching is enabled only if this setting is
+	 * defined and greater than one.
+	 */
+	public static final String MULTI_SOURCE_S = "multiSourceFetch";
+	/** Chunk request timeout -setting id ({@value}). Seconds. Default is
+	 * 20. */
+	public static final String CHUNK_TIMEOUT_S = "chunkRequestTimeout";
+	/** Maximum number of requests per chunk -setting id ({@value}).
+	 * Default is 4. */
+	public static final String CHUNK_REQUESTS_S = "chunkRequestLimit";
+
+	/** Number of chunks a file is split to (as in the chunk transfers of
+	 * the message router) */
+	public static final int NROF_CHUNKS = 10;
+
+	private int nrofSources;
+	private double timeout;
+	private int requestLimit;
+
+	/** file id -> state of the ongoing fetch */
+	private HashMap<String, Fetch> fetches;
+	/** ids of the files whose fetch was abandoned since the last call */
+	private List<String> abandoned;
+
+	/**
+	 * Constructor. Creates a new fetcher based on the settings in the given
+	 * Settings object.
+	 * @param s The settings object
+	 */
+	public MultiSourceFetcher(Settings s) {
+		this.nrofSources = s.getInt(MULTI_SOURCE_S);
+		this.timeout = s.contains(CHUNK_TIMEOUT_S) ?
+				s.getDouble(CHUNK_TIMEOUT_S) : 20;
+		s.ensurePositiveValue(this.timeout, CHUNK_TIMEOUT_S);
+		this.requestLimit = s.contains(CHUNK_REQUESTS_S) ?
+				s.getInt(CHUNK_REQUESTS_S) : 4;
+		s.ensurePositiveValue(this.requestLimit, CHUNK_REQUESTS_S);
+		init();
+	}
+
+	/**
+	 * Copy constructor.
+	 * @param proto The fetcher prototype where setting values are copied from
+	 */
+	protected MultiSourceFetcher(MultiSourceFetcher proto) {
+		this.nrofSources = proto.nrofSources;
+		this.timeout = proto.timeout;
+		this.requestLimit = proto.requestLimit;
+		init();
+	}
+
+	private void init() {
+		this.fetches = new HashMap<String, Fetch>();
+		this.abandoned = new ArrayList<String>();
+	}
+
+	/**
+	 * Returns a replicate of this fetcher
+	 * @return A replicate
+	 */
+	public MultiSourceFetcher replicate() {
+		return new MultiSourceFetcher(this);
+	}
+
+	/**
+	 * Returns the number of replica holders a file is fetched from
+	 * @return the number of sources
+	 */
+	public int getNrofSources() {
+		return this.nrofSources;
+	}
+
+	/**
+	 * Returns true if the file is being fetched
+	 * @param fileId Identifier of the file
+	 * @return true if the file is being fetched
+	 */
+	public boolean isFetching(String fileId) {
+		return this.fetches.containsKey(fileId);
+	}
+
+	/**
+	 * Returns true if no files are being fetched
+	 * @return true if no files are being fetched
+	 */
+	public boolean isIdle() {
+		return this.fetches.isEmpty();
+	}
+
+	/**
+	 * Returns the original request of an ongoing fetch
+	 * @param fileId Identifier of the file
+	 * @return The request or null if the file isn't being fetched
+	 */
+	public Message getRequest(String fileId) {
+		Fetch f = this.fetches.get(fileId);
+		return f == null ? null : f.request;
+	}
+
+	/**
+	 * Starts fetching a file. The chunks are split to contiguous ranges of
+	 * (nearly) equal size, one for each holder.
+	 * @param request The original request for the file
+	 * @param holders The replica holders, the best one first
+	 * @param now Current simulation time
+	 * @return Holder -> chunk indexes to request from it
+	 */
+	public Map<DTNHost, List<Integer>> start(Message request,
+			List<DTNHost> holders, double now) {
+		Fetch f = new Fetch(request, holders);
+		this.fetches.put(request.getFilename(), f);
+
+		Map<DTNHost, List<Integer>> requests =
+			new LinkedHashMap<DTNHost, List<Integer>>();
+		int nrofHolders = Math.min(holders.size(), NROF_CHUNKS);
+		for (int i = 0; i < NROF_CHUNKS; i++) {
+			DTNHost holder = holders.get(i * nrofHolders / NROF_CHUNKS);
+			f.request(i, holder, now);
+			addRequest(requests, holder, i);
+		}
+		return requests;
+	}
+
+	/**
+	 * Stores a received chunk. If this was the last missing chunk, the fetch
+	 * is finished and the reassembled file returned.
+	 * @param fileId Identifier of the file
+	 * @param index Index of the chunk
+	 * @param chunk The chunk
+	 * @return The reassembled file or null if chunks are still missing
+	 */
+	public file chunkReceived(String fileId, int index, file chunk) {
+		Fetch f = this.fetches.get(fileId);
+		if (f == null || f.chunks[index] != null) {
+			return null; /* not fetched (anymore) or a duplicate */
+		}
+		f.chunks[index] = chunk;
+		f.nrofReceived++;
+		if (f.nrofReceived < NROF_CHUNKS) {
+			return null;
+		}
+
+		this.fetches.remove(fileId);
+		file assembled = f.chunks[0].copyFrom(f.chunks[0]);
+		for (file c : f.chunks) {
+			assembled.getData().addAll(c.getData());
+		}
+		return assembled;
+	}
+
+	/**
+	 * Re-requests the straggling chunks, i.e. chunks that have been
+	 * requested more than the timeout ago, from the holder with the least
+	 * outstanding chunks (other than the previous holder of the chunk).
+	 * Fetches with a straggling chunk that has reached the request limit are
+	 * abandoned without re-requesting any of their chunks.
+	 * @param now Current simulation time
+	 * @return File id -> holder -> chunk indexes to request
+	 */
+	public Map<String, Map<DTNHost, List<Integer>>> update(double now) {
+		Map<String, Map<DTNHost, List<Integer>>> requests =
+			new HashMap<String, Map<DTNHost, List<Integer>>>();
+		for (Iterator<Map.Entry<String, Fetch>> i =
+				this.fetches.entrySet().iterator(); i.hasNext();) {
+			Map.Entry<String, Fetch> e = i.next();
+			Fetch f = e.getValue();
+			if (isExhausted(f, now)) {
+				i.remove();
+				this.abandoned.add(e.getKey());
+				continue;
+			}
+
+			Map<DTNHost, List<Integer>> fileRequests = null;
+			for (int c = 0; c < NROF_CHUNKS; c++) {
+				if (!isStraggler(f, c, now)) {
+					continue;
+				}
+				DTNHost holder = f.leastLoadedHolder(f.holders[c]);
+				f.request(c, holder, now);
+				if (fileRequests == null) {
+					fileRequests = new LinkedHashMap<DTNHost, List<Integer>>();
+				}
+				addRequest(fileRequests, holder, c);
+			}
+			if (fileRequests != null) {
+				requests.put(e.getKey(), fileRequests);
+			}
+		}
+		return requests;
+	}
+
+	/**
+	 * Returns true if a chunk of a fetch hasn't been received within the
+	 * timeout of its latest request
+	 */
+	private boolean isStraggler(Fetch f, int chunk, double now) {
+		return f.chunks[chunk] == null &&
+			now - f.requestTimes[chunk] >= this.timeout;
+	}
+
+	/**
+	 * Returns true if some straggling chunk of a fetch has already been
+	 * requested the maximum number of times
+	 */
+	private boolean isExhausted(Fetch f, double now) {
+		for (int c = 0; c < NROF_CHUNKS; c++) {
+			if (isStraggler(f, c, now) &&
+					f.nrofRequests[c] >= this.requestLimit) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the files whose fetch has been abandoned since the previous
+	 * call of this method
+	 * @return Identifiers of the abandoned files
+	 */
+	public List<String> removeAbandoned() {
+		List<String> files = this.abandoned;
+		this.abandoned = new ArrayList<String>();
+		return files;
+	}
+
+	private void addRequest(Map<DTNHost, List<Integer>> requests,
+			DTNHost holder, int chunk) {
+		List<Integer> chunks = requests.get(holder);
+		if (chunks == null) {
+			chunks = new ArrayList<Integer>();
+			requests.put(holder, chunks);
+		}
+		chunks.add(chunk);
+	}
+
+	/**
+	 * State of the fetch of one file
+	 */
+	private static class Fetch implements Serializable {
+		private static final long serialVersionUID = 42L;
+		private Message request;
+		private List<DTNHost> candidates;
+		private file[] chunks = new file[NROF_CHUNKS];
+		private int nrofReceived;
+		/** holder each chunk was last requested from */
+		private DTNHost[] holders = new DTNHost[NROF_CHUNKS];
+		private double[] requestTimes = new double[NROF_CHUNKS];
+		private int[] nrofRequests = new int[NROF_CHUNKS];
+
+		private Fetch(Message request, List<DTNHost> candidates) {
+			this.request = request;
+			this.candidates = candidates;
+		}
+
+		private void request(int chunk, DTNHost holder, double now) {
+			this.holders[chunk] = holder;
+			this.requestTimes[chunk] = now;
+			this.nrofRequests[chunk]++;
+		}
+
+		/**
+		 * Returns the holder with the least outstanding chunks, preferring
+		 * other holders than the given one
+		 */
+		private DTNHost leastLoadedHolder(DTNHost previous) {
+			DTNHost best = previous;
+			int bestLoad = Integer.MAX_VALUE;
+			for (DTNHost h : this.candidates) {
+				if (h == previous && this.candidates.size() > 1) {
+					continue;
+				}
+				int load = 0;
+				for (int c = 0; c < NROF_CHUNKS; c++) {
+					if (this.chunks[c] == null && this.holders[c] == h) {
+						load++;
+					}
+				}
+				if (load < bestLoad) {
+					best = h;
+					bestLoad = load;
+				}
+			}
+			return best;
+		}
+	}
+}
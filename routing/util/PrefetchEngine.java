@@ -0,0 +1,234 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import util.Tuple;
+import core.Connection;
+import core.ContentDirectory;
+import core.DTNHost;
+import core.Neighbors;
+import core.Settings;
+import core.SimClock;
+import core.file;
+
+/**
+ * Orbit-aware prefetch and placement engine for the file caches. Popular
+ * files that a host has in its file buffer are pushed to the neighbors that
+ * are, or according to the predicted contacts of {@link Neighbors} soon will
+ * be, in contact with the hosts requesting the files. The amount of pushed
+ * data is limited by a byte budget per link (connection).
+ */
+public class PrefetchEngine implements Serializable {
+	private static final long serialVersionUID = 42L;
+	/**
+	 * Prefetch byte budget per link -setting id ({@value}). Integer value in
+	 * bytes. The engine is enabled only if this setting is defined.
+	 */
+	public static final String PREFETCH_BUDGET_S = "prefetchLinkBudget";
+	/** Interval of the prefetch decisions -setting id ({@value}). Seconds.
+	 * Default is 10. */
+	public static final String PREFETCH_INTERVAL_S = "prefetchInterval";
+	/** Horizon of the demand and contact predictions -setting id
+	 * ({@value}). Seconds. Default is 600. */
+	public static final String PREFETCH_HORIZON_S = "prefetchHorizon";
+	/** Number of the most popular files considered for prefetching
+	 * -setting id ({@value}). Default is 5. */
+	public static final String PREFETCH_FILES_S = "prefetchFiles";
+
+	/** link byte budget */
+	private int linkBudget;
+	private double interval;
+	private double horizon;
+	private int nrofFiles;
+
+	/** sim time of the latest prefetch decision */
+	private double lastUpdate;
+	/** bytes pushed during each contact that is still up, by
+	 * {@link #contactKey(DTNHost, Connection)} */
+	private HashMap<String, Integer> budgetUsed;
+	/** file id and host address of the recent pushes -> time of the push */
+	private HashMap<String, Double> pushed;
+
+	/**
+	 * Constructor. Creates a new prefetch engine based on the settings in
+	 * the given Settings object.
+	 * @param s The settings object
+	 */
+	public PrefetchEngine(Settings s) {
+		this.linkBudget = s.getInt(PREFETCH_BUDGET_S);
+		s.ensurePositiveValue(this.linkBudget, PREFETCH_BUDGET_S);
+		this.interval = s.contains(PREFETCH_INTERVAL_S) ?
+				s.getDouble(PREFETCH_INTERVAL_S) : 10;
+		this.horizon = s.contains(PREFETCH_HORIZON_S) ?
+				s.getDouble(PREFETCH_HORIZON_S) : 600;
+		this.nrofFiles = s.contains(PREFETCH_FILES_S) ?
+				s.getInt(PREFETCH_FILES_S) : 5;
+		init();
+	}
+
+	/**
+	 * Copy constructor.
+	 * @param proto The engine prototype where setting values are copied from
+	 */
+	protected PrefetchEngine(PrefetchEngine proto) {
+		this.linkBudget = proto.linkBudget;
+		this.interval = proto.interval;
+		this.horizon = proto.horizon;
+		this.nrofFiles = proto.nrofFiles;
+		init();
+	}
+
+	private void init() {
+		this.lastUpdate = -Double.MAX_VALUE;
+		this.budgetUsed = new HashMap<String, Integer>();
+		this.pushed = new HashMap<String, Double>();
+	}
+
+	/**
+	 * Returns a replicate of this prefetch engine
+	 * @return A replicate
+	 */
+	public PrefetchEngine replicate() {
+		return new PrefetchEngine(this);
+	}
+
+	/**
+	 * Selects the files the host should push to its neighbors now. Calls
+	 * that come sooner than the prefetch interval after the previous
+	 * decision return an empty list.
+	 * @param host The host whose file buffer the files are pushed from
+	 * @param connections The current connections of the host
+	 * @return (file, neighbor) tuples of the files to push
+	 */
+	public List<Tuple<file, DTNHost>> selectPushes(DTNHost host,
+			List<Connection> connections) {
+		List<Tuple<file, DTNHost>> pushes =
+			new ArrayList<Tuple<file, DTNHost>>();
+		double now = SimClock.getTime();
+		if (now - this.lastUpdate < this.interval) {
+			return pushes;
+		}
+		this.lastUpdate = now;
+
+		Set<String> contacts = new HashSet<String>();
+		for (Connection con : connections) {
+			contacts.add(contactKey(host, con));
+		}
+		this.budgetUsed.keySet().retainAll(contacts);
+		for (Iterator<Double> i = this.pushed.values().iterator();
+				i.hasNext();) {
+			if (i.next() < now - this.horizon) {
+				i.remove();
+			}
+		}
+
+		ContentDirectory directory = ContentDirectory.getInstance();
+		List<Candidate> candidates = new ArrayList<Candidate>();
+		for (String fileId : directory.getPopularFiles(this.nrofFiles)) {
+			file f = host.getFileBuffer().get(fileId);
+			if (f == null) {
+				continue;
+			}
+			List<DTNHost> requesters =
+				directory.getRequesters(fileId, now - this.horizon);
+			double popularity = directory.getPopularity(fileId);
+
+			for (Connection con : connections) {
+				DTNHost other = con.getOtherNode(host);
+				if (!con.isUp() || other.getFileBuffer().containsKey(fileId) ||
+						this.pushed.containsKey(fileId + "@" +
+								other.getAddress())) {
+					continue;
+				}
+				int served = 0;
+				for (DTNHost r : requesters) {
+					if (r != host && servesSoon(other, r, now)) {
+						served++;
+					}
+				}
+				if (served > 0) {
+					candidates.add(new Candidate(popularity * served, f,
+							other, con));
+				}
+			}
+		}
+
+		Collections.sort(candidates, new Comparator<Candidate>() {
+			public int compare(Candidate a, Candidate b) {
+				return Double.compare(b.score, a.score);
+			}
+		});
+
+		for (Candidate c : candidates) {
+			String contact = contactKey(host, c.con);
+			Integer used = this.budgetUsed.get(contact);
+			int bytes = (used == null ? 0 : used) + c.f.getSize();
+			if (bytes > this.linkBudget) {
+				continue;
+			}
+			this.budgetUsed.put(contact, bytes);
+			this.pushed.put(c.f.getId() + "@" + c.to.getAddress(), now);
+			pushes.add(new Tuple<file, DTNHost>(c.f, c.to));
+		}
+		return pushes;
+	}
+
+	/**
+	 * Returns the key of the current contact of a connection. Connections
+	 * are reused when the same hosts meet again, so the key includes the
+	 * start time of the contact.
+	 */
+	private static String contactKey(DTNHost host, Connection con) {
+		return con.getOtherNode(host).getAddress() + "@" +
+			con.getStartTime();
+	}
+
+	/**
+	 * Returns true if the cache host is in contact with the requester now
+	 * or is predicted to be within the prefetch horizon
+	 */
+	private boolean servesSoon(DTNHost cache, DTNHost requester, double now) {
+		if (cache == requester) {
+			return true;
+		}
+		Neighbors nei = cache.getNeighbors();
+		if (nei == null) {
+			return false;
+		}
+		if (nei.getNeighbors().contains(requester)) {
+			return true;
+		}
+		double[] contact = nei.getPotentialNeighborsStartTime().get(requester);
+		return contact != null && contact[0] >= now &&
+			contact[0] <= now + this.horizon;
+	}
+
+	/**
+	 * A push candidate: a file and the neighbor it could be pushed to
+	 */
+	private static class Candidate {
+		private double score;
+		private file f;
+		private DTNHost to;
+		private Connection con;
+
+		private Candidate(double score, file f, DTNHost to, Connection con) {
+			this.score = score;
+			this.f = f;
+			this.to = to;
+			this.con = con;
+		}
+	}
+}
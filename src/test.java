@@ -1,6 +1,6 @@
 
 public class test {
-	public static void main(){//Դ
+	public static void main(){//测试代码用
 		int i=0;
 		while(i==10)
 			System.out.println(i++);
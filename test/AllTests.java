@@ -49,6 +49,25 @@ public class AllTests {
 		suite.addTestSuite(ScheduledUpdatesQueueTest.class);
 		suite.addTestSuite(MessageTest.class);
 		suite.addTestSuite(ModuleCommunicationBusTest.class);
+		suite.addTestSuite(ZipfRNGTest.class);
+		suite.addTestSuite(StreamingHistogramTest.class);
+		suite.addTestSuite(CacheSummaryTest.class);
+		suite.addTestSuite(MultiSourceFetcherTest.class);
+		suite.addTestSuite(ReedSolomonTest.class);
+		suite.addTestSuite(ExpiryIndexTest.class);
+		suite.addTestSuite(CheckpointTest.class);
+		suite.addTestSuite(MergedEventQueueTest.class);
+		suite.addTestSuite(SphericalConnectivityGridTest.class);
+		suite.addTestSuite(KdTreeTest.class);
+		suite.addTestSuite(LineOfSightTest.class);
+		suite.addTestSuite(SatelliteLinkConnectionTest.class);
+		suite.addTestSuite(LongHashMapTest.class);
+		suite.addTestSuite(LaserLinkSchedulerTest.class);
+		suite.addTestSuite(LinkRateModelTest.class);
+		suite.addTestSuite(DistanceKernelTest.class);
+		suite.addTestSuite(AsyncReportWriterTest.class);
+		suite.addTestSuite(ColumnarReportTest.class);
+		suite.addTestSuite(ContactPlanTest.class);
 		//$JUnit-END$
 		return suite;
 	}
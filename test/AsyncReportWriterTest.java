@@ -0,0 +1,81 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+
+import junit.framework.TestCase;
+import report.AsyncReportWriter;
+
+/**
+ * Tests for the asynchronous report writer
+ */
+public class AsyncReportWriterTest extends TestCase {
+	private File file;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		this.file = File.createTempFile("asyncreport", ".txt");
+		this.file.deleteOnExit();
+	}
+
+	protected void tearDown() throws Exception {
+		this.file.delete();
+		super.tearDown();
+	}
+
+	private String read() throws IOException {
+		return new String(Files.readAllBytes(this.file.toPath()));
+	}
+
+	public void testFlushWritesEverything() throws IOException {
+		PrintWriter out = new PrintWriter(new AsyncReportWriter(
+				this.file.getPath(), false, 4)); // buffer fills often
+		StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < 10000; i++) {
+			out.println("line " + i);
+			expected.append("line " + i + System.lineSeparator());
+		}
+		out.flush();
+		assertEquals(expected.toString(), read());
+
+		out.print("tail");
+		out.close();
+		assertEquals(expected + "tail", read());
+	}
+
+	public void testAppendAndTruncate() throws IOException {
+		AsyncReportWriter w = new AsyncReportWriter(this.file.getPath(),
+				false, 16);
+		w.write("first");
+		w.close();
+		w.close(); // no effect
+
+		w = new AsyncReportWriter(this.file.getPath(), true, 16);
+		w.write(" second");
+		w.close();
+		assertEquals("first second", read());
+
+		w = new AsyncReportWriter(this.file.getPath(), false, 16);
+		w.write("third");
+		w.close();
+		assertEquals("third", read());
+	}
+
+	public void testWriteAfterClose() throws IOException {
+		AsyncReportWriter w = new AsyncReportWriter(this.file.getPath(),
+				false, 16);
+		w.close();
+		try {
+			w.write("x");
+			fail("Write to a closed writer should fail");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import junit.framework.TestCase;
+import routing.util.CacheSummary;
+
+/**
+ * Tests for the counting Bloom filter cache summary
+ */
+public class CacheSummaryTest extends TestCase {
+	private static final String PREFIX = "filename";
+
+	public void testAddAndRemove() {
+		CacheSummary s = new CacheSummary(1024, 4);
+		assertFalse(s.mightContain(PREFIX + 1));
+		s.add(PREFIX + 1);
+		s.add(PREFIX + 2);
+		assertTrue(s.mightContain(PREFIX + 1));
+		assertTrue(s.mightContain(PREFIX + 2));
+		assertEquals(2, s.getNrofItems());
+
+		s.remove(PREFIX + 1);
+		assertFalse(s.mightContain(PREFIX + 1));
+		assertTrue(s.mightContain(PREFIX + 2));
+		assertEquals(1, s.getNrofItems());
+	}
+
+	public void testNoFalseNegatives() {
+		CacheSummary s = new CacheSummary(4096, 4);
+		for (int i = 0; i < 300; i++) {
+			s.add(PREFIX + i);
+		}
+		for (int i = 0; i < 300; i += 2) {
+			s.remove(PREFIX + i);
+		}
+		for (int i = 1; i < 300; i += 2) {
+			assertTrue(s.mightContain(PREFIX + i));
+		}
+	}
+
+	public void testFalsePositiveRate() {
+		CacheSummary s = new CacheSummary(8 * 1024, 4);
+		for (int i = 0; i < 1000; i++) {
+			s.add(PREFIX + i);
+		}
+		int falsePositives = 0;
+		for (int i = 1000; i < 11000; i++) {
+			if (s.mightContain(PREFIX + i)) {
+				falsePositives++;
+			}
+		}
+		/* expected rate with 8 bits per item and 4 hashes is about 2.4% */
+		assertTrue("False positive rate " + falsePositives / 10000.0,
+				falsePositives < 500);
+	}
+
+	public void testSnapshot() {
+		CacheSummary s = new CacheSummary(1024, 3);
+		s.add(PREFIX + 1);
+		CacheSummary snapshot = s.snapshot();
+		s.remove(PREFIX + 1);
+		s.add(PREFIX + 2);
+		assertTrue(snapshot.mightContain(PREFIX + 1));
+		assertFalse(snapshot.mightContain(PREFIX + 2));
+		assertEquals(128, snapshot.getSizeInBytes());
+	}
+}
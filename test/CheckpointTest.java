@@ -0,0 +1,215 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+import report.ConnectivityONEReport;
+import report.MessageStatsReport;
+import core.Checkpoint;
+import core.Coord;
+import core.DTNHost;
+import core.NetworkInterface;
+import core.SimClock;
+import core.SimContext;
+import core.SimError;
+import core.SimScenario;
+import core.World;
+
+/**
+ * Tests for saving and restoring simulation checkpoints and forking runs
+ * from them
+ */
+public class CheckpointTest extends TestCase {
+	private TestSettings ts;
+	private File checkpoint;
+	private File out0;
+	private File out1;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimContext.setInstance(new SimContext(0));
+		this.ts = new TestSettings();
+		this.checkpoint = File.createTempFile("checkpoint", ".bin");
+		this.out0 = File.createTempFile("run0", ".txt");
+		this.out1 = File.createTempFile("run1", ".txt");
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		this.checkpoint.delete();
+		this.out0.delete();
+		this.out1.delete();
+		SimContext.setInstance(null);
+		super.tearDown();
+	}
+
+	/**
+	 * Creates a host in a small world (the connectivity grid of the default
+	 * test world would be too large). Replaces the current settings.
+	 */
+	private DTNHost createHost(int x) {
+		TestSettings hs = new TestSettings();
+		hs.putSetting("MovementModel.worldSize", "100,100");
+		hs.setNameSpace(TestUtils.IFACE_NS);
+		hs.putSetting(NetworkInterface.TRANSMIT_RANGE_S, "10");
+		hs.putSetting(NetworkInterface.TRANSMIT_SPEED_S, "1");
+		hs.setNameSpace(null);
+		return new TestUtils(null, null, hs).createHost(new Coord(x, 0));
+	}
+
+	public void testSaveAndRestore() {
+		SimClock.getInstance().setTime(12.5);
+		List<Integer> state = new ArrayList<Integer>(Arrays.asList(1, 2));
+		SimContext.getInstance().setClassState(CheckpointTest.class, state);
+		Checkpoint.save(this.checkpoint.getPath(), "caller state");
+
+		/* the checkpointed run goes on */
+		state.add(3);
+		SimClock.getInstance().setTime(20);
+
+		/* two forks get their own copies of the state */
+		SimContext.setInstance(new SimContext(4));
+		assertEquals("caller state",
+				Checkpoint.restore(this.checkpoint.getPath()));
+		SimContext fork = SimContext.getInstance();
+		assertEquals(4, fork.getRunIndex());
+		assertEquals(12.5, SimClock.getTime());
+		Object forkState = fork.getClassState(CheckpointTest.class);
+		assertEquals(Arrays.asList(1, 2), forkState);
+
+		SimContext.setInstance(new SimContext(5));
+		Checkpoint.restore(this.checkpoint.getPath());
+		assertEquals(5, SimContext.getInstance().getRunIndex());
+		assertNotSame(forkState,
+				SimContext.getInstance().getClassState(CheckpointTest.class));
+	}
+
+	public void testReportReopenedForRestoringRun() throws IOException {
+		DTNHost h1 = createHost(0);
+		DTNHost h2 = createHost(5);
+		/* the runs write to their own files */
+		this.ts = new TestSettings();
+		this.ts.putSetting("ConnectivityONEReport.output", "[" +
+				this.out0.getPath() + "; " + this.out1.getPath() + "]");
+		ConnectivityONEReport r = new ConnectivityONEReport();
+		SimClock.getInstance().setTime(1);
+		r.hostsConnected(h1, h2);
+		Checkpoint.save(this.checkpoint.getPath(), r);
+		SimClock.getInstance().setTime(2);
+		r.hostsDisconnected(h1, h2);
+		r.done();
+
+		SimContext.setInstance(new SimContext(1));
+		ConnectivityONEReport fork = (ConnectivityONEReport)Checkpoint.restore(
+				this.checkpoint.getPath());
+		fork.reopenOutput();
+		SimClock.getInstance().setTime(3);
+		fork.hostsDisconnected(h1, h2);
+		fork.done();
+
+		List<String> run0 = Files.readAllLines(this.out0.toPath());
+		List<String> run1 = Files.readAllLines(this.out1.toPath());
+		assertEquals(2, run0.size());
+		assertEquals(2, run1.size());
+		assertEquals(run0.get(0), run1.get(0)); // output before the checkpoint
+		assertTrue(run0.get(1).startsWith("2.0"));
+		assertTrue(run1.get(1).startsWith("3.0"));
+		assertTrue(run1.get(1).endsWith("down"));
+	}
+
+	/**
+	 * Runs a scenario of stationary hosts where the first host creates a
+	 * message every second, and checkpoints it at the half of its run time
+	 */
+	private void runToCheckpoint() {
+		this.ts.putSetting("Scenario.endTime", "20");
+		this.ts.putSetting("Scenario.simulateConnections", "false");
+		this.ts.putSetting("MovementModel.worldSize", "100,100");
+		this.ts.putSetting("userSetting.hostsMode", "normal");
+		this.ts.putSetting("userSetting.nrofPlane", "1");
+		this.ts.putSetting("userSetting.routerMode", "1");
+		this.ts.putSetting("Interface.transmitRange", "10");
+		this.ts.putSetting("Group.groupID", "h");
+		this.ts.putSetting("Group.nrofHosts", "4");
+		this.ts.putSetting("Group.movementModel", "StationaryMovement");
+		this.ts.putSetting("Group.nodeLocation", "10,10");
+		this.ts.putSetting("Group.router", "EpidemicRouter");
+		this.ts.putSetting("Group.nrofInterfaces", "1");
+		this.ts.putSetting("Group.interface1", "Interface");
+		this.ts.putSetting("Interface.type", "SimpleBroadcastInterface");
+		this.ts.putSetting("Interface.transmitSpeed", "1");
+		/* the second run's buffers have room for two messages */
+		this.ts.putSetting("Group.bufferSize", "[100M; 1k]");
+		this.ts.putSetting("Events.nrof", "1");
+		this.ts.putSetting("Events1.class", "MessageEventGenerator");
+		this.ts.putSetting("Events1.interval", "1");
+		this.ts.putSetting("Events1.size", "500");
+		this.ts.putSetting("Events1.hosts", "0,1");
+		this.ts.putSetting("Events1.tohosts", "1,4");
+		this.ts.putSetting("Events1.prefix", "M");
+		this.ts.putSetting("MessageStatsReport.output", "[" +
+				this.out0.getPath() + "; " + this.out1.getPath() + "]");
+
+		MessageStatsReport report = new MessageStatsReport();
+		SimScenario scen = SimScenario.getInstance();
+		scen.addMessageListener(report);
+		World world = scen.getWorld();
+		while (SimClock.getTime() < 10) {
+			world.update();
+		}
+		Checkpoint.save(this.checkpoint.getPath(), report);
+	}
+
+	/**
+	 * Restores a run from the checkpoint and runs it to the end
+	 */
+	private void runFork(int runIndex) {
+		SimContext.setInstance(new SimContext(runIndex));
+		MessageStatsReport report = (MessageStatsReport)Checkpoint.restore(
+				this.checkpoint.getPath());
+		report.reopenOutput();
+		SimScenario scen = SimScenario.getInstance();
+		World world = scen.getWorld();
+		while (SimClock.getTime() < scen.getEndTime()) {
+			world.update();
+		}
+		report.done();
+	}
+
+	public void testForkWithDifferentRouterSettings() throws IOException {
+		runToCheckpoint();
+		runFork(0);
+		runFork(1);
+
+		List<String> run0 = Files.readAllLines(this.out0.toPath());
+		List<String> run1 = Files.readAllLines(this.out1.toPath());
+		/* only the small buffers drop messages */
+		assertTrue(run0.contains("dropped: 0"));
+		assertFalse(run1.contains("dropped: 0"));
+		assertFalse(run0.equals(run1));
+
+		DTNHost h = SimScenario.getInstance().getHosts().get(0);
+		assertEquals(1000, h.getRouter().getBufferSize());
+		assertEquals(2, h.getNrofMessages());
+	}
+
+	public void testNotCheckpointFile() throws IOException {
+		Files.write(this.checkpoint.toPath(), "not a checkpoint".getBytes());
+		try {
+			Checkpoint.restore(this.checkpoint.getPath());
+			fail("Restoring a file that is not a checkpoint succeeded");
+		} catch (SimError e) {
+			assertTrue(e.getMessage().contains("not a checkpoint file"));
+		}
+	}
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StringWriter;
+
+import junit.framework.TestCase;
+import report.ColumnarReader;
+import report.ColumnarWriter;
+
+/**
+ * Tests for the binary columnar report format
+ */
+public class ColumnarReportTest extends TestCase {
+	private static final String[] NAMES = {"time", "host", "count", "ratio"};
+	private static final int[] TYPES = {ColumnarWriter.TIME,
+		ColumnarWriter.STRING, ColumnarWriter.LONG, ColumnarWriter.DOUBLE};
+
+	private File file;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		this.file = File.createTempFile("columnar", ".col");
+		this.file.deleteOnExit();
+	}
+
+	protected void tearDown() throws Exception {
+		this.file.delete();
+		super.tearDown();
+	}
+
+	private ColumnarWriter open(boolean append) throws IOException {
+		return new ColumnarWriter(this.file.getPath(), append, NAMES, TYPES);
+	}
+
+	private void writeRows(ColumnarWriter w, int from, int to)
+			throws IOException {
+		for (int i = from; i < to; i++) {
+			w.setTime(0, i * 0.1);
+			w.setString(1, "h" + (i % 7));
+			w.setLong(2, i % 2 == 0 ? i : -i);
+			w.setDouble(3, i / 3.0);
+			w.endRow();
+		}
+	}
+
+	public void testRoundTrip() throws IOException {
+		int n = ColumnarWriter.BLOCK_ROWS * 2 + 10; // three blocks
+		ColumnarWriter w = open(false);
+		writeRows(w, 0, n);
+		w.close();
+
+		ColumnarReader r = new ColumnarReader(this.file.getPath());
+		assertEquals(4, r.getNrofColumns());
+		assertEquals("host", r.getColumnName(1));
+		assertEquals(ColumnarWriter.LONG, r.getColumnType(2));
+		for (int i = 0; i < n; i++) {
+			assertTrue(r.next());
+			assertEquals(i * 0.1, r.getDouble(0), 1e-9);
+			assertEquals("h" + (i % 7), r.getString(1));
+			assertEquals(i % 2 == 0 ? i : -i, r.getLong(2));
+			assertEquals(i / 3.0, r.getDouble(3));
+		}
+		assertFalse(r.next());
+		r.close();
+	}
+
+	public void testAppendAndTruncatedBlock() throws IOException {
+		ColumnarWriter w = open(false);
+		writeRows(w, 0, 5);
+		w.close();
+		w = open(true);
+		writeRows(w, 5, 8);
+		w.close();
+		long complete = this.file.length();
+
+		w = open(true);
+		writeRows(w, 8, 20);
+		w.close();
+		RandomAccessFile f = new RandomAccessFile(this.file, "rw");
+		f.setLength(this.file.length() - 3); // partially written last block
+		f.close();
+
+		ColumnarReader r = new ColumnarReader(this.file.getPath());
+		int rows = 0;
+		while (r.next()) {
+			assertEquals("h" + (rows % 7), r.getString(1));
+			rows++;
+		}
+		r.close();
+		assertEquals(8, rows);
+		assertTrue(complete < this.file.length());
+	}
+
+	public void testCsv() throws IOException {
+		ColumnarWriter w = new ColumnarWriter(this.file.getPath(), false,
+				new String[] {"time", "text"},
+				new int[] {ColumnarWriter.TIME, ColumnarWriter.STRING});
+		w.setTime(0, 12.5);
+		w.setString(1, "a,\"b\"");
+		w.endRow();
+		w.setTime(0, 13);
+		w.setString(1, null);
+		w.endRow();
+		w.close();
+
+		ColumnarReader r = new ColumnarReader(this.file.getPath());
+		StringWriter csv = new StringWriter();
+		r.toCsv(csv);
+		r.close();
+		assertEquals("time,text\n12.5,\"a,\"\"b\"\"\"\n13,\n", csv.toString());
+	}
+
+	public void testNotColumnarFile() throws IOException {
+		RandomAccessFile f = new RandomAccessFile(this.file, "rw");
+		f.writeBytes("1.0 C h1 h2 up\n");
+		f.close();
+		try {
+			new ColumnarReader(this.file.getPath());
+			fail("Reading a text file should fail");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import interfaces.SphericalConnectivityGrid;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import core.ContactPlan;
+import core.Coord;
+import core.DTNHost;
+import core.ModuleCommunicationBus;
+import core.Neighbors;
+import core.NetworkInterface;
+import core.SimContext;
+import core.World;
+
+/**
+ * Tests for the orbit-predicted contact plan
+ */
+public class ContactPlanTest extends TestCase {
+	private static final double RANGE = 10;
+	private static final double[] CENTER =
+		SphericalConnectivityGrid.DEF_SPHERE_CENTER;
+
+	private TestSettings ts;
+	private List<DTNHost> hosts;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimContext.setInstance(new SimContext(0));
+		this.ts = new TestSettings();
+		this.ts.putSetting(World.USERSETTINGNAME_S + "." +
+				World.ROUTERMODENAME_S, "1");
+		this.ts.putSetting(Neighbors.INTERFACENAME_S + "." +
+				Neighbors.TRANSMIT_RANGE_S, "" + RANGE);
+		this.ts.setNameSpace(TestUtils.IFACE_NS);
+		this.ts.putSetting(NetworkInterface.TRANSMIT_RANGE_S, "" + RANGE);
+		this.ts.putSetting(NetworkInterface.TRANSMIT_SPEED_S, "1");
+		this.hosts = new ArrayList<DTNHost>();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		SimContext.setInstance(null);
+		super.tearDown();
+	}
+
+	/**
+	 * Creates a host on a circular orbit (2000 km, i.e. 200 distance units
+	 * from the center)
+	 * @param anomaly Initial anomaly of the orbit
+	 * @param loc Location of a host without an orbit or null for a host on
+	 * the orbit
+	 */
+	private DTNHost createHost(double anomaly, Coord loc) {
+		List<NetworkInterface> li = new ArrayList<NetworkInterface>();
+		li.add(new TestInterface(this.ts));
+		DTNHost host = new TestDTNHost(li, new ModuleCommunicationBus(),
+				this.ts);
+		if (loc == null) {
+			host.setSatelliteParameters(1, 1, 1, 1,
+					new double[] {2000, 0, 0, 0, 0, anomaly});
+		}
+		else {
+			host.setLocation(loc);
+		}
+		this.hosts.add(host);
+		return host;
+	}
+
+	public void testStationaryHostPredictedInPlace() {
+		/* a ground station where the satellite is after 30 seconds */
+		DTNHost sat = createHost(0, null);
+		createHost(0, sat.getCoordinate(30));
+		assertTrue(sat.getLocation().distance(sat.getCoordinate(30)) >
+				3 * RANGE);
+		ContactPlan plan = new ContactPlan(this.hosts, 1);
+
+		assertEquals(0.0, plan.getNextChange(0, 100));
+		double up = plan.getNextChange(0, 100);
+		assertTrue("Contact predicted at " + up, up > 20 && up < 30);
+		double down = plan.getNextChange(up, 100);
+		assertTrue("Contact end predicted at " + down,
+				down > 30 && down < 40);
+	}
+
+	public void testMovingHostWithoutOrbit() {
+		createHost(0, null);
+		DTNHost station = createHost(0, location(0, 100, 0));
+		ContactPlan plan = new ContactPlan(this.hosts, 1);
+		assertEquals(0.0, plan.getNextChange(0, 100));
+		assertEquals(Double.MAX_VALUE, plan.getNextChange(0, 10));
+
+		/* no prediction ahead while the host moves */
+		station.setLocation(location(0, 110, 0));
+		assertEquals(5.0, plan.getNextChange(5, 10));
+		station.setLocation(location(0, 120, 0));
+		assertEquals(6.0, plan.getNextChange(6, 10));
+		assertEquals(6.0, plan.getNextChange(6, 10));
+		assertEquals(Double.MAX_VALUE, plan.getNextChange(6, 10));
+	}
+
+	/**
+	 * Returns a location at a distance from the center of the orbits
+	 */
+	private static Coord location(double x, double y, double z) {
+		Coord c = new Coord(0, 0);
+		c.resetLocation(CENTER[0] + x, CENTER[1] + y, CENTER[2] + z);
+		return c;
+	}
+}
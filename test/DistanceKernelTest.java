@@ -0,0 +1,66 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+import util.DistanceKernel;
+
+/**
+ * Tests for the batch distance kernel
+ */
+public class DistanceKernelTest extends TestCase {
+
+	public void testWithinRange() {
+		DistanceKernel kernel = new DistanceKernel();
+		assertEquals(0, kernel.withinRange(0, 0, 0, 10));
+
+		assertEquals(0, kernel.add(3, 4, 0));
+		assertEquals(1, kernel.add(0, 0, 10));
+		assertEquals(2, kernel.add(0, 11, 0));
+		assertEquals(3, kernel.size());
+
+		assertEquals(2, kernel.withinRange(0, 0, 0, 10));
+		assertTrue(kernel.isInRange(0));
+		assertTrue(kernel.isInRange(1)); // range is inclusive
+		assertFalse(kernel.isInRange(2));
+		assertEquals(25.0, kernel.getSquaredDistance(0));
+
+		kernel.clear();
+		assertEquals(0, kernel.size());
+		kernel.add(100, 100, 100);
+		assertEquals(0, kernel.withinRange(0, 0, 0, 10));
+	}
+
+	public void testMatchesPairwiseDistances() {
+		Random rng = new Random(42);
+		DistanceKernel kernel = new DistanceKernel();
+		for (int round = 0; round < 10; round++) {
+			kernel.clear();
+			int n = rng.nextInt(200);
+			double[][] points = new double[n][3];
+			for (int i = 0; i < n; i++) {
+				for (int j = 0; j < 3; j++) {
+					points[i][j] = rng.nextDouble() * 1000;
+				}
+				kernel.add(points[i][0], points[i][1], points[i][2]);
+			}
+			double range = rng.nextDouble() * 800;
+
+			int count = kernel.withinRange(500, 500, 500, range);
+			int expectedCount = 0;
+			for (int i = 0; i < n; i++) {
+				double dx = points[i][0] - 500;
+				double dy = points[i][1] - 500;
+				double dz = points[i][2] - 500;
+				boolean expected = Math.sqrt(dx*dx + dy*dy + dz*dz) <= range;
+				assertEquals(expected, kernel.isInRange(i));
+				expectedCount += expected ? 1 : 0;
+			}
+			assertEquals(expectedCount, count);
+		}
+	}
+}
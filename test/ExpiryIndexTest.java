@@ -0,0 +1,70 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+import util.ExpiryIndex;
+
+/**
+ * Tests for the expiry time index
+ */
+public class ExpiryIndexTest extends TestCase {
+	private ExpiryIndex<String> index;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		this.index = new ExpiryIndex<String>();
+	}
+
+	public void testPollInOrder() {
+		this.index.schedule("c", 30);
+		this.index.schedule("a", 10);
+		this.index.schedule("b", 20);
+		assertEquals(10.0, this.index.getNextExpiryTime());
+		assertTrue(this.index.pollExpired(9.9).isEmpty());
+		assertEquals(Arrays.asList("a", "b"), this.index.pollExpired(20));
+		assertEquals(1, this.index.size());
+		assertEquals(Arrays.asList("c"), this.index.pollExpired(100));
+		assertEquals(Double.MAX_VALUE, this.index.getNextExpiryTime());
+	}
+
+	public void testRemove() {
+		this.index.schedule("a", 10);
+		this.index.schedule("b", 20);
+		this.index.remove("a");
+		assertFalse(this.index.contains("a"));
+		assertEquals(20.0, this.index.getNextExpiryTime());
+		assertEquals(Arrays.asList("b"), this.index.pollExpired(50));
+	}
+
+	public void testReschedule() {
+		this.index.schedule("a", 10);
+		this.index.schedule("b", 15);
+		this.index.schedule("a", 30);
+		assertEquals(Arrays.asList("b"), this.index.pollExpired(20));
+		assertEquals(Arrays.asList("a"), this.index.pollExpired(30));
+	}
+
+	public void testManyRemovals() {
+		for (int i = 0; i < 1000; i++) {
+			this.index.schedule("m" + i, i);
+		}
+		for (int i = 0; i < 1000; i++) {
+			if (i % 10 != 0) {
+				this.index.remove("m" + i);
+			}
+		}
+		assertEquals(100, this.index.size());
+		List<String> expired = this.index.pollExpired(500);
+		assertEquals(51, expired.size());
+		for (String key : expired) {
+			assertEquals(0, Integer.parseInt(key.substring(1)) % 10);
+		}
+	}
+}
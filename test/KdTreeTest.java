@@ -0,0 +1,82 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+import util.KdTree;
+
+/**
+ * Tests for the k-d tree nearest neighbor queries
+ */
+public class KdTreeTest extends TestCase {
+
+	public void testNearestInOrder() {
+		double[] x = {0, 10, 3, 0, 50};
+		double[] y = {0, 0, 0, 4, 0};
+		double[] z = {0, 0, 0, 0, 0};
+		KdTree tree = new KdTree(x, y, z);
+
+		int[] found = tree.nearest(0, 0, 0, 10, 20, 0);
+		assertEquals(3, found.length);
+		assertEquals(2, found[0]);
+		assertEquals(3, found[1]);
+		assertEquals(1, found[2]);
+
+		found = tree.nearest(0, 0, 0, 2, 100, -1);
+		assertEquals(2, found.length);
+		assertEquals(0, found[0]);
+		assertEquals(2, found[1]);
+	}
+
+	public void testMatchesBruteForce() {
+		Random rng = new Random(1);
+		int n = 300;
+		double[] x = new double[n];
+		double[] y = new double[n];
+		double[] z = new double[n];
+		for (int i = 0; i < n; i++) {
+			x[i] = rng.nextDouble() * 1000;
+			y[i] = rng.nextDouble() * 1000;
+			z[i] = rng.nextDouble() * 1000;
+		}
+		KdTree tree = new KdTree(x, y, z);
+
+		for (int i = 0; i < n; i++) {
+			int[] found = tree.nearest(x[i], y[i], z[i], 5, 200, i);
+			int within = 0;
+			double last = 0;
+			for (int j = 0; j < n; j++) {
+				if (j != i && dist(x, y, z, i, j) <= 200) {
+					within++;
+				}
+			}
+			assertEquals(Math.min(5, within), found.length);
+			for (int f : found) {
+				double d = dist(x, y, z, i, f);
+				assertTrue(d >= last);
+				last = d;
+			}
+			/* nothing outside the results is closer than the last result */
+			for (int j = 0; j < n && found.length == 5; j++) {
+				if (j != i && dist(x, y, z, i, j) < last) {
+					boolean listed = false;
+					for (int f : found) {
+						listed |= f == j;
+					}
+					assertTrue(listed);
+				}
+			}
+		}
+	}
+
+	private double dist(double[] x, double[] y, double[] z, int a, int b) {
+		double dx = x[a] - x[b];
+		double dy = y[a] - y[b];
+		double dz = z[a] - z[b];
+		return Math.sqrt(dx*dx + dy*dy + dz*dz);
+	}
+}
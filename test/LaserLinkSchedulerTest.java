@@ -0,0 +1,213 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import interfaces.LaserLinkScheduler;
+import interfaces.SatelliteLaserInterface;
+import interfaces.SphericalConnectivityGrid;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import routing.PassiveRouter;
+import junit.framework.TestCase;
+import core.Connection;
+import core.Coord;
+import core.DTNHost;
+import core.ModuleCommunicationBus;
+import core.Neighbors;
+import core.NetworkInterface;
+import core.SimClock;
+import core.SimContext;
+import core.World;
+
+/**
+ * Tests for the assignment of the laser terminals to links
+ */
+public class LaserLinkSchedulerTest extends TestCase {
+	private static final double RANGE = 10;
+	private static final double[] CENTER =
+		SphericalConnectivityGrid.DEF_SPHERE_CENTER;
+
+	private SimClock clock;
+	private List<DTNHost> hosts;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimContext.setInstance(new SimContext(0));
+		this.clock = SimClock.getInstance();
+		this.hosts = new ArrayList<DTNHost>();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		SimContext.setInstance(null);
+		super.tearDown();
+	}
+
+	/**
+	 * Creates a host with a laser interface
+	 * @param terminals Number of laser terminals
+	 * @param acquisitionTime Acquisition time of a new link
+	 * @param orbit Orbit parameters of the host or null for a host that
+	 * stays at a location
+	 * @param loc Location of the host without an orbit
+	 */
+	private DTNHost createHost(int terminals, double acquisitionTime,
+			double[] orbit, Coord loc) {
+		TestSettings ts = new TestSettings();
+		ts.putSetting(World.OPTIMIZATION_SETTINGS_NS + "." +
+				SphericalConnectivityGrid.SPHERICAL_GRID_S, "true");
+		ts.putSetting(World.USERSETTINGNAME_S + "." + World.ROUTERMODENAME_S,
+				"1");
+		ts.putSetting(World.USERSETTINGNAME_S + "." +
+				LaserLinkScheduler.PREDICTION_HORIZON_S, "60");
+		ts.putSetting(World.USERSETTINGNAME_S + "." +
+				LaserLinkScheduler.PREDICTION_STEP_S, "1");
+		ts.putSetting(Neighbors.INTERFACENAME_S + "." +
+				Neighbors.TRANSMIT_RANGE_S, "" + RANGE);
+		ts.setNameSpace(TestUtils.IFACE_NS);
+		ts.putSetting(NetworkInterface.TRANSMIT_RANGE_S, "" + RANGE);
+		ts.putSetting(NetworkInterface.TRANSMIT_SPEED_S, "1");
+		ts.putSetting(SatelliteLaserInterface.NROF_TERMINALS_S,
+				"" + terminals);
+		ts.putSetting(SatelliteLaserInterface.ACQUISITION_TIME_S,
+				"" + acquisitionTime);
+
+		NetworkInterface ni = new SatelliteLaserInterface(ts);
+		ts.setNameSpace(null);
+		ni.setGroupSettings(ts);
+		List<NetworkInterface> li = new ArrayList<NetworkInterface>();
+		li.add(ni);
+		DTNHost host = new DTNHost(null, null, "L", li,
+				new ModuleCommunicationBus(), new StationaryMovement(loc),
+				new PassiveRouter(ts));
+		if (orbit != null) {
+			host.setSatelliteParameters(1, 1, 1, 1, orbit);
+		}
+		else {
+			host.setLocation(loc);
+		}
+		this.hosts.add(host);
+		return host;
+	}
+
+	/**
+	 * Returns a location at a distance from the center of the orbits
+	 */
+	private static Coord location(double x, double y, double z) {
+		Coord c = new Coord(0, 0);
+		c.resetLocation(CENTER[0] + x, CENTER[1] + y, CENTER[2] + z);
+		return c;
+	}
+
+	/**
+	 * Returns the parameters of a circular orbit (2000 km, i.e. 200
+	 * distance units from the center)
+	 */
+	private static double[] orbit(double inclination, double anomaly) {
+		return new double[] {2000, 0, inclination, 0, 0, anomaly};
+	}
+
+	/**
+	 * Moves the hosts with an orbit to their location at a time and
+	 * updates the interfaces of all hosts
+	 */
+	private void update(double time) {
+		this.clock.setTime(time);
+		for (DTNHost h : this.hosts) {
+			if (h.getParameters()[0] != 0) {
+				h.setLocation(h.getCoordinate(time));
+			}
+		}
+		for (DTNHost h : this.hosts) {
+			h.getInterfaces().get(0).update();
+		}
+	}
+
+	private static NetworkInterface getInterface(DTNHost host) {
+		return host.getInterfaces().get(0);
+	}
+
+	private static boolean isConnected(DTNHost h1, DTNHost h2) {
+		for (Connection con : getInterface(h1).getConnections()) {
+			if (con.getOtherNode(h1) == h2) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public void testTerminalLimit() {
+		/* a chain of hosts where everyone is within range of six others */
+		for (int i = 0; i < 20; i++) {
+			createHost(2, 0, null, location(200, 3 * i, 0));
+		}
+		int links = 0;
+		for (int t = 0; t < 3; t++) {
+			update(t);
+			links = 0;
+			for (DTNHost h : this.hosts) {
+				int n = getInterface(h).getConnections().size();
+				assertTrue(h + " has " + n + " links", n <= 2);
+				links += n;
+			}
+		}
+		assertTrue("Only " + links / 2 + " links", links / 2 >= 15);
+	}
+
+	public void testAcquisitionTime() {
+		DTNHost h1 = createHost(1, 5, null, location(200, 0, 0));
+		DTNHost h2 = createHost(1, 5, null, location(200, 5, 0));
+		update(0);
+		assertFalse(isConnected(h1, h2));
+		update(4.9);
+		assertFalse(isConnected(h1, h2));
+		update(5);
+		assertTrue(isConnected(h1, h2));
+		assertTrue(isConnected(h2, h1));
+	}
+
+	public void testLongestContactFirst() {
+		/* h2 flies with h1 on the same orbit; h3 crosses the orbit of h1
+		 * and is closer to it, but only for a few seconds */
+		DTNHost h1 = createHost(1, 0, orbit(0, 0), null);
+		DTNHost h3 = createHost(1, 0, orbit(90, -1), null);
+		DTNHost h2 = createHost(1, 0, orbit(0, 2), null);
+		assertTrue(h1.getLocation().distance(h3.getLocation()) <
+				h1.getLocation().distance(h2.getLocation()));
+		assertTrue(h1.getLocation().distance(h2.getLocation()) < RANGE);
+		update(0);
+		assertTrue(isConnected(h1, h2));
+		assertFalse(isConnected(h1, h3));
+		assertFalse(isConnected(h2, h3));
+	}
+
+	public void testContactEndPredictedAgain() {
+		/* all the contacts of these hosts last the whole horizon, so equal
+		 * contacts are linked in the order of the host indexes */
+		DTNHost h1 = createHost(1, 0, null, location(200, 0, 0));
+		DTNHost h2 = createHost(1, 0, null, location(200, 5, 0));
+		DTNHost h3 = createHost(1, 0, null, location(200, -5, 0));
+		update(0);
+		assertTrue(isConnected(h1, h2));
+
+		/* the link and the contact of h1 and h3 break */
+		h2.setLocation(location(200, 50, 0));
+		h3.setLocation(location(200, -50, 0));
+		update(10);
+		assertEquals(0, getInterface(h1).getConnections().size());
+
+		/* the contact of h1 and h3 forms again, along with a new one that
+		 * ends as late; the prediction of the earlier contact would end
+		 * sooner */
+		DTNHost h4 = createHost(1, 0, null, location(200, 0, 5));
+		h3.setLocation(location(200, -5, 0));
+		update(20);
+		assertTrue(isConnected(h1, h3));
+		assertFalse(isConnected(h1, h4));
+	}
+}
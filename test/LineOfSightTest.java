@@ -0,0 +1,34 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import junit.framework.TestCase;
+import core.Coord;
+import core.LineOfSight;
+
+/**
+ * Tests for the Earth occlusion test
+ */
+public class LineOfSightTest extends TestCase {
+	private LineOfSight los = new LineOfSight(new double[] {0, 0, 0}, 10);
+
+	public void testBlockedThroughCenter() {
+		assertFalse(los.isVisible(-20, 0, 0, 20, 0, 0));
+		assertFalse(los.isVisible(0, -20, 5, 0, 20, -5));
+	}
+
+	public void testGrazing() {
+		assertTrue(los.isVisible(-20, 10.01, 0, 20, 10.01, 0));
+		assertFalse(los.isVisible(-20, 9.99, 0, 20, 9.99, 0));
+	}
+
+	public void testClosestPointAtEndpoint() {
+		/* the line passes through the sphere but the segment doesn't */
+		assertTrue(los.isVisible(20, 0, 0, 40, 0, 0));
+		assertTrue(los.isVisible(new Coord(15, 0), new Coord(15, 30)));
+		assertTrue(los.isVisible(15, 0, 0, 15, 0, 0));
+		assertFalse(los.isVisible(5, 0, 0, 5, 0, 0));
+	}
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import interfaces.SphericalConnectivityGrid;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import core.Coord;
+import core.DTNHost;
+import core.LinkRateModel;
+import core.ModuleCommunicationBus;
+import core.Neighbors;
+import core.NetworkInterface;
+import core.RateProfile;
+import core.SimClock;
+import core.SimContext;
+import core.World;
+
+/**
+ * Tests for the distance-dependent link rate model and the rate profiles
+ */
+public class LinkRateModelTest extends TestCase {
+	private static final double[] CENTER =
+		SphericalConnectivityGrid.DEF_SPHERE_CENTER;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimContext.setInstance(new SimContext(0));
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		SimContext.setInstance(null);
+		super.tearDown();
+	}
+
+	/**
+	 * Creates a model where the 0 dB scheme (factor 0.25) works up to 10
+	 * distance units and the 20 dB scheme (factor 1) up to 1 unit
+	 */
+	private static LinkRateModel createModel() {
+		return new LinkRateModel(1e9, 112.45, new double[] {0, 20},
+				new double[] {0.25, 1.0}, 1000, 600, 10);
+	}
+
+	/**
+	 * Creates a host on a circular orbit (2000 km, i.e. 200 distance units
+	 * from the center)
+	 * @param loc Location of a host without an orbit or null for a host on
+	 * the orbit
+	 */
+	private static DTNHost createHost(Coord loc) {
+		TestSettings ts = new TestSettings();
+		ts.putSetting(World.USERSETTINGNAME_S + "." +
+				World.ROUTERMODENAME_S, "1");
+		ts.putSetting(Neighbors.INTERFACENAME_S + "." +
+				Neighbors.TRANSMIT_RANGE_S, "10");
+		ts.setNameSpace(TestUtils.IFACE_NS);
+		ts.putSetting(NetworkInterface.TRANSMIT_RANGE_S, "10");
+		ts.putSetting(NetworkInterface.TRANSMIT_SPEED_S, "1");
+		List<NetworkInterface> li = new ArrayList<NetworkInterface>();
+		li.add(new TestInterface(ts));
+		DTNHost host = new TestDTNHost(li, new ModuleCommunicationBus(), ts);
+		if (loc == null) {
+			host.setSatelliteParameters(1, 1, 1, 1,
+					new double[] {2000, 0, 0, 0, 0, 0});
+		}
+		else {
+			host.setLocation(loc);
+		}
+		return host;
+	}
+
+	/**
+	 * Returns a location at a distance from the center of the orbits
+	 */
+	private static Coord location(double x, double y, double z) {
+		Coord c = new Coord(0, 0);
+		c.resetLocation(CENTER[0] + x, CENTER[1] + y, CENTER[2] + z);
+		return c;
+	}
+
+	public void testRateBands() {
+		/* free-space path loss at 1 GHz is 92.45 dB at 1 km and 112.45 dB
+		 * at 10 km, so with a 112.45 dB budget the 0 dB scheme works up to
+		 * 10 km and the 20 dB scheme up to 1 km (1 unit = 1 km) */
+		LinkRateModel model = new LinkRateModel(1e9, 112.45,
+				new double[] {0, 20}, new double[] {0.25, 1.0}, 1000,
+				600, 10);
+		assertEquals(1.0, model.getFactor(0));
+		assertEquals(1.0, model.getFactor(0.99));
+		assertEquals(0.25, model.getFactor(1.01));
+		assertEquals(0.25, model.getFactor(9.99));
+		assertEquals(0.0, model.getFactor(10.01));
+	}
+
+	public void testProfile() {
+		RateProfile p = new RateProfile(new double[] {0, 10, 20},
+				new double[] {1, 0.5, 0}, 30);
+		assertEquals(10.0, p.getFirstChange());
+		assertEquals(1.0, p.getFactor(9.9));
+		assertEquals(0.5, p.getFactor(10));
+		assertEquals(0.0, p.getFactor(100));
+
+		assertEquals(7.5, p.getBytes(5, 15, 1), 1e-9);
+		assertEquals(15.0, p.getBytes(0, 100, 1), 1e-9);
+		assertEquals(5.0, p.getTransferEnd(0, 10, 2), 1e-9);
+		assertEquals(20.0, p.getTransferEnd(0, 15, 1), 1e-9);
+		assertEquals(Double.POSITIVE_INFINITY, p.getTransferEnd(0, 16, 1));
+		assertEquals(Double.POSITIVE_INFINITY, p.getTransferEnd(25, 1, 1));
+	}
+
+	public void testStationaryHosts() {
+		SimClock.getInstance().setTime(100);
+		DTNHost h1 = createHost(location(200, 0, 0));
+		DTNHost h2 = createHost(location(200, 5, 0));
+		RateProfile p = createModel().getProfile(h1, h2);
+		assertEquals(0.25, p.getFactor(100));
+		assertEquals(110.0, p.getFirstChange());
+	}
+
+	public void testStationaryAndOrbitingHost() {
+		SimClock.getInstance().setTime(0);
+		DTNHost sat = createHost(null);
+		/* a ground station where the satellite is after 30 seconds */
+		DTNHost station = createHost(sat.getCoordinate(30));
+		RateProfile p = createModel().getProfile(station, sat);
+		assertEquals(0.0, p.getFactor(0));
+		assertTrue("Link up at " + p.getFirstChange(),
+				p.getFirstChange() > 20 && p.getFirstChange() < 30);
+		assertEquals(1.0, p.getFactor(30));
+		assertEquals(0.0, p.getFactor(60));
+	}
+}
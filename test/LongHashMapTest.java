@@ -0,0 +1,65 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.HashMap;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import util.LongHashMap;
+
+/**
+ * Tests for the primitive long key hash map
+ */
+public class LongHashMapTest extends TestCase {
+
+	public void testPutGetRemove() {
+		LongHashMap<String> map = new LongHashMap<String>();
+		assertNull(map.get(1));
+		assertNull(map.put(1, "a"));
+		assertNull(map.put(-5, "b"));
+		assertNull(map.put((3L << 32) | 7, "c"));
+		assertEquals(3, map.size());
+
+		assertEquals("a", map.put(1, "d"));
+		assertEquals(3, map.size());
+		assertEquals("d", map.get(1));
+		assertEquals("b", map.get(-5));
+		assertEquals("c", map.get((3L << 32) | 7));
+		assertNull(map.get(7));
+
+		assertEquals("b", map.remove(-5));
+		assertNull(map.remove(-5));
+		assertNull(map.get(-5));
+		assertEquals(2, map.size());
+
+		map.clear();
+		assertEquals(0, map.size());
+		assertNull(map.get(1));
+	}
+
+	public void testMatchesHashMap() {
+		Random rng = new Random(1);
+		LongHashMap<Integer> map = new LongHashMap<Integer>();
+		HashMap<Long, Integer> expected = new HashMap<Long, Integer>();
+
+		/* small key range so that there are lots of collisions, updates
+		 * and removals of existing keys */
+		for (int i = 0; i < 20000; i++) {
+			long key = rng.nextInt(500) * 31L;
+			if (rng.nextInt(3) == 0) {
+				assertEquals(expected.remove(key), map.remove(key));
+			}
+			else {
+				assertEquals(expected.put(key, i), map.put(key, i));
+			}
+			assertEquals(expected.size(), map.size());
+		}
+
+		for (long key = 0; key < 500 * 31L; key++) {
+			assertEquals(expected.get(key), map.get(key));
+		}
+	}
+}
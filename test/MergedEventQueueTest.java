@@ -0,0 +1,67 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import input.EventQueue;
+import input.MergedEventQueue;
+import input.ScheduledUpdatesQueue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for the MergedEventQueue
+ */
+public class MergedEventQueueTest extends TestCase {
+	private static double MAX = Double.MAX_VALUE;
+	private List<ScheduledUpdatesQueue> sources;
+	private MergedEventQueue merged;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		this.sources = new ArrayList<ScheduledUpdatesQueue>();
+		List<EventQueue> queues = new ArrayList<EventQueue>();
+		for (int i = 0; i < 20; i++) {
+			ScheduledUpdatesQueue q = new ScheduledUpdatesQueue();
+			for (int j = 0; j < 5; j++) {
+				q.addUpdate(j * 20 + i);
+			}
+			this.sources.add(q);
+			queues.add(q);
+		}
+		this.merged = new MergedEventQueue(queues);
+	}
+
+	public void testEventsInTimeOrder() {
+		for (int t = 0; t < 100; t++) {
+			assertEquals((double)t, merged.nextEventsTime());
+			assertEquals((double)t, merged.nextEvent().getTime());
+		}
+		assertEquals(MAX, merged.nextEventsTime());
+		assertEquals(MAX, merged.nextEvent().getTime());
+	}
+
+	public void testEarlierUpdate() {
+		merged.nextEvent();
+		assertEquals(1.0, merged.nextEventsTime());
+		sources.get(19).addUpdate(0.5);
+		merged.update(sources.get(19));
+		assertEquals(0.5, merged.nextEvent().getTime());
+		assertEquals(1.0, merged.nextEvent().getTime());
+
+		sources.get(7).addUpdate(1.5);
+		merged.updateAll();
+		assertEquals(1.5, merged.nextEvent().getTime());
+		assertEquals(2.0, merged.nextEventsTime());
+	}
+
+	public void testLaterTimeFound() {
+		merged.nextEvent(); // time 0 taken from the first source
+		sources.get(1).nextEvent(); // 1 taken past the merged queue
+		assertEquals(2.0, merged.nextEvent().getTime());
+	}
+}
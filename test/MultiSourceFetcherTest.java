@@ -0,0 +1,155 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+import routing.util.MultiSourceFetcher;
+import core.Coord;
+import core.DTNHost;
+import core.Message;
+import core.NetworkInterface;
+import core.file;
+
+/**
+ * Tests for the multi-source chunk fetches
+ */
+public class MultiSourceFetcherTest extends TestCase {
+	private static final String FILE = "filename1";
+	private static final int N = MultiSourceFetcher.NROF_CHUNKS;
+
+	private MultiSourceFetcher fetcher;
+	private DTNHost h0, h1, h2;
+	private Message request;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		TestSettings ts = new TestSettings();
+		ts.putSetting(MultiSourceFetcher.MULTI_SOURCE_S, "3");
+		ts.putSetting(MultiSourceFetcher.CHUNK_TIMEOUT_S, "20");
+		ts.putSetting(MultiSourceFetcher.CHUNK_REQUESTS_S, "2");
+		this.fetcher = new MultiSourceFetcher(ts);
+
+		this.h0 = createHost(0);
+		this.h1 = createHost(1);
+		this.h2 = createHost(2);
+		this.request = new Message(this.h0, this.h1, "M1", 10);
+		this.request.setFilename(FILE);
+	}
+
+	/**
+	 * Creates a host in a small world (the connectivity grid of the default
+	 * test world would be too large)
+	 */
+	private DTNHost createHost(int x) {
+		TestSettings ts = new TestSettings();
+		ts.putSetting("MovementModel.worldSize", "100,100");
+		ts.setNameSpace(TestUtils.IFACE_NS);
+		ts.putSetting(NetworkInterface.TRANSMIT_RANGE_S, "10");
+		ts.putSetting(NetworkInterface.TRANSMIT_SPEED_S, "1");
+		ts.setNameSpace(null);
+		return new TestUtils(null, null, ts).createHost(new Coord(x, 0));
+	}
+
+	private Map<DTNHost, List<Integer>> start(double now) {
+		return this.fetcher.start(this.request,
+				Arrays.asList(this.h0, this.h1, this.h2), now);
+	}
+
+	private file chunk() {
+		return new file(1, 0, 100);
+	}
+
+	public void testStartSplitsRanges() {
+		Map<DTNHost, List<Integer>> requests = start(0);
+		assertEquals(Arrays.asList(0, 1, 2, 3), requests.get(this.h0));
+		assertEquals(Arrays.asList(4, 5, 6), requests.get(this.h1));
+		assertEquals(Arrays.asList(7, 8, 9), requests.get(this.h2));
+		assertTrue(this.fetcher.isFetching(FILE));
+		assertSame(this.request, this.fetcher.getRequest(FILE));
+
+		MultiSourceFetcher single = this.fetcher.replicate();
+		Message other = new Message(this.h0, this.h1, "M2", 10);
+		other.setFilename("filename2");
+		requests = single.start(other, Arrays.asList(this.h2), 0);
+		assertEquals(1, requests.size());
+		assertEquals(N, requests.get(this.h2).size());
+	}
+
+	public void testStragglersReRequested() {
+		start(0);
+		for (int c : new int[] {0, 1, 2, 3, 7, 8, 9}) {
+			this.fetcher.chunkReceived(FILE, c, chunk());
+		}
+		assertTrue(this.fetcher.update(19.9).isEmpty());
+
+		/* the chunks of h1 go to the other holders, least loaded first */
+		Map<String, Map<DTNHost, List<Integer>>> requests =
+			this.fetcher.update(20);
+		Map<DTNHost, List<Integer>> fileRequests = requests.get(FILE);
+		assertEquals(Arrays.asList(4, 6), fileRequests.get(this.h0));
+		assertEquals(Arrays.asList(5), fileRequests.get(this.h2));
+		assertNull(fileRequests.get(this.h1));
+		assertTrue(this.fetcher.update(30).isEmpty());
+	}
+
+	public void testAbandonAtRequestLimit() {
+		start(0);
+		this.fetcher.chunkReceived(FILE, 5, chunk());
+		assertEquals(N - 1, countRequests(this.fetcher.update(20)));
+
+		/* every straggler has been requested twice: no more requests */
+		assertTrue(this.fetcher.update(40).isEmpty());
+		assertFalse(this.fetcher.isFetching(FILE));
+		assertEquals(Arrays.asList(FILE), this.fetcher.removeAbandoned());
+		assertTrue(this.fetcher.removeAbandoned().isEmpty());
+		assertTrue(this.fetcher.isIdle());
+
+		/* late chunks of the abandoned fetch are ignored */
+		assertNull(this.fetcher.chunkReceived(FILE, 0, chunk()));
+	}
+
+	public void testDuplicateAndLateChunks() {
+		start(0);
+		List<Integer> expected = new ArrayList<Integer>();
+		file[] chunks = new file[N];
+		for (int c = 0; c < N; c++) {
+			chunks[c] = chunk();
+			expected.addAll(chunks[c].getData());
+		}
+
+		for (int c = 0; c < N - 1; c++) {
+			assertNull(this.fetcher.chunkReceived(FILE, c, chunks[c]));
+		}
+		/* a duplicate doesn't replace the chunk or complete the file */
+		assertNull(this.fetcher.chunkReceived(FILE, 0, chunk()));
+
+		file assembled = this.fetcher.chunkReceived(FILE, N - 1,
+				chunks[N - 1]);
+		assertNotNull(assembled);
+		assertEquals(FILE, assembled.getId());
+		assertEquals(expected, assembled.getData());
+		assertFalse(this.fetcher.isFetching(FILE));
+
+		/* a re-requested copy arriving after the reassembly */
+		assertNull(this.fetcher.chunkReceived(FILE, 3, chunk()));
+		assertTrue(this.fetcher.removeAbandoned().isEmpty());
+	}
+
+	private int countRequests(Map<String, Map<DTNHost, List<Integer>>> r) {
+		int count = 0;
+		for (Map<DTNHost, List<Integer>> fileRequests : r.values()) {
+			for (List<Integer> chunks : fileRequests.values()) {
+				count += chunks.size();
+			}
+		}
+		return count;
+	}
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import util.ReedSolomon;
+
+/**
+ * Tests for the Reed-Solomon erasure code
+ */
+public class ReedSolomonTest extends TestCase {
+	private static final int K = 10;
+	private static final int R = 4;
+	private static final int LEN = 10;
+
+	private ReedSolomon rs;
+	private int[][] data;
+	private int[][] shards;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		this.rs = new ReedSolomon(K, R);
+		Random rng = new Random(1);
+		this.data = new int[K][LEN];
+		for (int i = 0; i < K; i++) {
+			for (int j = 0; j < LEN; j++) {
+				this.data[i][j] = rng.nextInt(256);
+			}
+		}
+		int[][] parity = this.rs.encode(this.data);
+		assertEquals(R, parity.length);
+		this.shards = new int[K + R][];
+		for (int i = 0; i < K; i++) {
+			this.shards[i] = this.data[i].clone();
+		}
+		for (int p = 0; p < R; p++) {
+			this.shards[K + p] = parity[p];
+		}
+	}
+
+	public void testAllShardsPresent() {
+		assertDecoded(this.rs.decode(this.shards));
+	}
+
+	public void testAnyKShardsDecode() {
+		Random rng = new Random(2);
+		for (int round = 0; round < 200; round++) {
+			int[][] received = this.shards.clone();
+			int lost = 0;
+			while (lost < R) {
+				int i = rng.nextInt(K + R);
+				if (received[i] != null) {
+					received[i] = null;
+					lost++;
+				}
+			}
+			assertDecoded(this.rs.decode(received));
+		}
+	}
+
+	public void testOnlyParityAndSomeData() {
+		int[][] received = this.shards.clone();
+		for (int i = 0; i < R; i++) {
+			received[i] = null;
+		}
+		assertDecoded(this.rs.decode(received));
+	}
+
+	public void testTooFewShards() {
+		int[][] received = this.shards.clone();
+		for (int i = 0; i <= R; i++) {
+			received[i] = null;
+		}
+		try {
+			this.rs.decode(received);
+			fail("Decoding should fail with less than k shards");
+		} catch (IllegalArgumentException e) {
+			/* expected */
+		}
+	}
+
+	public void testSymbolRange() {
+		int[][] bad = new int[K][1];
+		bad[3][0] = 256;
+		try {
+			this.rs.encode(bad);
+			fail("Symbols over 255 should not be accepted");
+		} catch (IllegalArgumentException e) {
+			/* expected */
+		}
+	}
+
+	private void assertDecoded(int[][] decoded) {
+		assertEquals(K, decoded.length);
+		for (int i = 0; i < K; i++) {
+			assertTrue("Shard " + i, Arrays.equals(this.data[i], decoded[i]));
+		}
+	}
+}
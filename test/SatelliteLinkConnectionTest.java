@@ -0,0 +1,152 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import core.Coord;
+import core.DTNHost;
+import core.Message;
+import core.ModuleCommunicationBus;
+import core.NetworkInterface;
+import core.SatelliteLinkConnection;
+import core.SimClock;
+import core.SimContext;
+
+/**
+ * Tests for the pipelined satellite link connection
+ */
+public class SatelliteLinkConnectionTest extends TestCase {
+	private static final double START_TIME = 10.0;
+	private static final int SPEED = 100;
+	private static final int WINDOW = 2;
+	/** one distance unit is 100 km */
+	private static final double METERS_PER_UNIT = 100000;
+	private static final double DISTANCE = 3000;
+	private static final double LIGHT_TIME = DISTANCE * METERS_PER_UNIT /
+		SatelliteLinkConnection.SPEED_OF_LIGHT;
+
+	private SimClock clock;
+	private TestDTNHost h1;
+	private TestDTNHost h2;
+	private SatelliteLinkConnection con;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimContext.setInstance(new SimContext(0));
+		this.clock = SimClock.getInstance();
+		this.clock.setTime(START_TIME);
+		TestSettings ts = new TestSettings();
+		ts.setNameSpace(TestUtils.IFACE_NS);
+		ts.putSetting(NetworkInterface.TRANSMIT_RANGE_S, "" + DISTANCE);
+		ts.putSetting(NetworkInterface.TRANSMIT_SPEED_S, "" + SPEED);
+		this.h1 = createHost(ts, 0);
+		this.h2 = createHost(ts, DISTANCE);
+		this.con = new SatelliteLinkConnection(this.h1,
+				this.h1.getInterfaces().get(0), this.h2,
+				this.h2.getInterfaces().get(0), SPEED, WINDOW,
+				METERS_PER_UNIT);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		SimContext.setInstance(null);
+		super.tearDown();
+	}
+
+	private static TestDTNHost createHost(TestSettings ts, double x) {
+		List<NetworkInterface> li = new ArrayList<NetworkInterface>();
+		li.add(new TestInterface(ts));
+		TestDTNHost h = new TestDTNHost(li, new ModuleCommunicationBus(), ts);
+		h.setLocation(new Coord(x, 0));
+		return h;
+	}
+
+	private Message msg(DTNHost from, DTNHost to, String id, int size) {
+		return new Message(from, to, id, size);
+	}
+
+	public void testPropagationDelay() {
+		assertEquals(LIGHT_TIME, this.con.getPropagationDelay(), 1e-9);
+		assertTrue(LIGHT_TIME > 1); // longer than the serialization below
+	}
+
+	public void testPerDirectionWindow() {
+		assertTrue(this.con.isReadyForTransfer(this.h1));
+		this.con.startTransfer(this.h1, msg(this.h1, this.h2, "M1", 100));
+		assertTrue(this.con.isReadyForTransfer(this.h1));
+		this.con.startTransfer(this.h1, msg(this.h1, this.h2, "M2", 100));
+
+		/* h1's window is full but the other direction has room */
+		assertFalse(this.con.isReadyForTransfer(this.h1));
+		assertTrue(this.con.isReadyForTransfer(this.h2));
+		assertFalse(this.con.isReadyForTransfer());
+		this.con.startTransfer(this.h2, msg(this.h2, this.h1, "M3", 100));
+		assertEquals("M3", this.h1.recvMessage.getId());
+		assertEquals("M1", this.con.getMessage(this.h1).getId());
+		assertEquals("M3", this.con.getMessage(this.h2).getId());
+
+		/* finalizing the oldest message opens the window again */
+		this.clock.setTime(START_TIME + 1.0 + LIGHT_TIME);
+		assertTrue(this.con.isMessageTransferred(this.h1));
+		this.con.finalizeTransfer(this.h1);
+		assertEquals("M1", this.h2.transferredId);
+		assertTrue(this.con.isReadyForTransfer(this.h1));
+		assertEquals("M2", this.con.getMessage(this.h1).getId());
+	}
+
+	public void testBackToBackSerializationAndArrival() {
+		this.con.startTransfer(this.h1, msg(this.h1, this.h2, "M1", 100));
+		this.clock.setTime(START_TIME + 0.5);
+		this.con.startTransfer(this.h1, msg(this.h1, this.h2, "M2", 50));
+
+		/* M1 is serialized during 10-11 and M2 right after it, 11-11.5 */
+		assertEquals(50, this.con.getRemainingByteCount());
+		assertEquals(50, this.con.getTotalBytesTransferred());
+		this.clock.setTime(START_TIME + 1.25);
+		assertEquals(125, this.con.getTotalBytesTransferred());
+
+		/* a message arrives only after the light time */
+		this.clock.setTime(START_TIME + 1.0 + LIGHT_TIME - 0.01);
+		assertFalse(this.con.isMessageTransferred(this.h1));
+		this.clock.setTime(START_TIME + 1.0 + LIGHT_TIME);
+		assertTrue(this.con.isMessageTransferred(this.h1));
+		this.con.finalizeTransfer(this.h1);
+		assertEquals("M1", this.h2.transferredId);
+
+		this.clock.setTime(START_TIME + 1.5 + LIGHT_TIME - 0.01);
+		assertFalse(this.con.isMessageTransferred(this.h1));
+		this.clock.setTime(START_TIME + 1.5 + LIGHT_TIME);
+		assertTrue(this.con.isMessageTransferred(this.h1));
+		this.con.finalizeTransfer(this.h1);
+		assertEquals("M2", this.h2.transferredId);
+		assertNull(this.con.getMessage(this.h1));
+		assertEquals(150, this.con.getTotalBytesTransferred());
+	}
+
+	public void testAbortOnLinkDown() {
+		this.con.startTransfer(this.h1, msg(this.h1, this.h2, "M1", 100));
+		this.con.startTransfer(this.h1, msg(this.h1, this.h2, "M2", 100));
+		this.clock.setTime(START_TIME + 1.5);
+		this.con.setUpState(false);
+		assertFalse(this.con.isReadyForTransfer(this.h1));
+		assertFalse(this.con.isMessageTransferred(this.h1));
+
+		/* M1 is serialized but still propagating, M2 half serialized */
+		this.con.abortTransfer(this.h1);
+		assertEquals("M1", this.h2.abortedId);
+		assertEquals(0, this.h2.abortedBytesRemaining);
+		this.con.abortTransfer(this.h1);
+		assertEquals("M2", this.h2.abortedId);
+		assertEquals(50, this.h2.abortedBytesRemaining);
+		assertNull(this.con.getMessage(this.h1));
+		assertTrue(this.con.isMessageTransferred(this.h1));
+		assertNull(this.h2.transferredId);
+		assertEquals(150, this.con.getTotalBytesTransferred());
+	}
+}
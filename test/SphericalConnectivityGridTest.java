@@ -0,0 +1,177 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import interfaces.SphericalConnectivityGrid;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+import core.Coord;
+import core.DTNHost;
+import core.Neighbors;
+import core.NetworkInterface;
+import core.SimContext;
+import core.World;
+
+/**
+ * Tests for the spherical connectivity grid. The near interfaces the grid
+ * gives are compared with an all-pairs range check.
+ */
+public class SphericalConnectivityGridTest extends TestCase {
+	private static final double RANGE = 10;
+	private static final double[] CENTER =
+		SphericalConnectivityGrid.DEF_SPHERE_CENTER;
+	/** points per cluster */
+	private static final int CLUSTER_SIZE = 60;
+
+	private Random rng;
+	private List<DTNHost> hosts;
+	private SphericalConnectivityGrid grid;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimContext.setInstance(new SimContext(0));
+		this.rng = new Random(42);
+		this.hosts = new ArrayList<DTNHost>();
+		this.grid = SphericalConnectivityGrid.SphericalConnectivityGridFactory(
+				0, RANGE);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		SimContext.setInstance(null);
+		super.tearDown();
+	}
+
+	/**
+	 * Creates a host with a neighbor database and adds it to the tested
+	 * grid
+	 */
+	private DTNHost createHost(Coord loc) {
+		TestSettings ts = new TestSettings();
+		ts.putSetting(World.OPTIMIZATION_SETTINGS_NS + "." +
+				SphericalConnectivityGrid.SPHERICAL_GRID_S, "true");
+		ts.putSetting(World.USERSETTINGNAME_S + "." + World.ROUTERMODENAME_S,
+				"1");
+		ts.putSetting(Neighbors.INTERFACENAME_S + "." +
+				Neighbors.TRANSMIT_RANGE_S, "" + RANGE);
+		ts.setNameSpace(TestUtils.IFACE_NS);
+		ts.putSetting(NetworkInterface.TRANSMIT_RANGE_S, "" + RANGE);
+		ts.putSetting(NetworkInterface.TRANSMIT_SPEED_S, "1");
+		ts.setNameSpace(null);
+		DTNHost host = new TestUtils(null, null, ts).createHost(loc);
+		host.setSatelliteParameters(1, 1, 1, 1,
+				new double[] {2000, 0, 0, 0, 0, 0});
+		host.setLocation(loc);
+		this.grid.addInterface(getInterface(host));
+		this.hosts.add(host);
+		return host;
+	}
+
+	private static NetworkInterface getInterface(DTNHost host) {
+		return host.getInterfaces().get(0);
+	}
+
+	/**
+	 * Returns the location at a distance from the center, latitude and
+	 * longitude (degrees)
+	 */
+	private static Coord location(double r, double lat, double lon) {
+		double la = Math.toRadians(lat);
+		double lo = Math.toRadians(lon);
+		Coord c = new Coord(0, 0);
+		c.resetLocation(CENTER[0] + r * Math.cos(la) * Math.cos(lo),
+				CENTER[1] + r * Math.cos(la) * Math.sin(lo),
+				CENTER[2] + r * Math.sin(la));
+		return c;
+	}
+
+	/**
+	 * Returns a random location near a latitude and longitude, at a
+	 * distance that spans several shells
+	 */
+	private Coord near(double lat, double lon) {
+		double r = 195 + this.rng.nextDouble() * 30;
+		double la = Math.max(-90, Math.min(90, lat +
+				this.rng.nextGaussian() * 3));
+		double lo = lon + this.rng.nextGaussian() * 3 /
+			Math.max(0.05, Math.cos(Math.toRadians(la)));
+		return location(r, la, lo);
+	}
+
+	/**
+	 * Checks the near interfaces of every host against an all-pairs range
+	 * check
+	 * @return The number of host pairs in range
+	 */
+	private int checkNearInterfaces() {
+		int pairs = 0;
+		for (DTNHost h : this.hosts) {
+			NetworkInterface ni = getInterface(h);
+			Set<NetworkInterface> expected = new HashSet<NetworkInterface>();
+			for (DTNHost other : this.hosts) {
+				if (other != h && h.getLocation().distance(
+						other.getLocation()) <= RANGE) {
+					expected.add(getInterface(other));
+				}
+			}
+			Set<NetworkInterface> found = new HashSet<NetworkInterface>(
+					this.grid.getNearInterfaces(ni));
+			found.remove(ni);
+			assertEquals("Near interfaces of " + h + " at " +
+					h.getLocation(), expected, found);
+			pairs += expected.size();
+		}
+		return pairs / 2;
+	}
+
+	public void testAcrossShellsAndLongitudeWrap() {
+		double[][] clusters = {{0, 180}, {40, -179.9}, {-20, 179.5},
+				{0, 0}, {60, 90}};
+		for (double[] c : clusters) {
+			for (int i = 0; i < CLUSTER_SIZE; i++) {
+				createHost(near(c[0], c[1]));
+			}
+		}
+		assertTrue(checkNearInterfaces() > 100);
+	}
+
+	public void testNearPoles() {
+		for (int pole = -1; pole <= 1; pole += 2) {
+			for (int i = 0; i < CLUSTER_SIZE; i++) {
+				createHost(near(pole * 88, this.rng.nextDouble() * 360));
+			}
+			createHost(location(200, pole * 90, 0));
+		}
+		assertTrue(checkNearInterfaces() > 100);
+	}
+
+	public void testUpdatedLocations() {
+		for (int i = 0; i < CLUSTER_SIZE * 2; i++) {
+			createHost(near(10, 178));
+		}
+		checkNearInterfaces();
+
+		/* move the hosts over the longitude wrap and between shells */
+		for (DTNHost h : this.hosts) {
+			Coord c = h.getLocation();
+			double x = c.getX() - CENTER[0];
+			double y = c.getY() - CENTER[1];
+			double z = c.getZ() - CENTER[2];
+			double r = Math.sqrt(x*x + y*y + z*z);
+			h.setLocation(location(r + this.rng.nextDouble() * 10 - 5,
+					Math.toDegrees(Math.asin(z / r)),
+					Math.toDegrees(Math.atan2(y, x)) + 4));
+			this.grid.updateLocation(getInterface(h));
+		}
+		assertTrue(checkNearInterfaces() > 100);
+	}
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import util.StreamingHistogram;
+
+/**
+ * Tests for the streaming histogram
+ */
+public class StreamingHistogramTest extends TestCase {
+
+	public void testEmpty() {
+		StreamingHistogram h = new StreamingHistogram(1000000, 3);
+		assertEquals(0, h.getTotalCount());
+		assertEquals(0, h.getValueAtPercentile(50));
+		assertEquals(0, h.getMin());
+		assertEquals(0, h.getMax());
+		assertTrue(Double.isNaN(h.getMean()));
+	}
+
+	public void testSmallValuesAreExact() {
+		StreamingHistogram h = new StreamingHistogram(1000000, 3);
+		for (int i = 1; i <= 100; i++) {
+			h.recordValue(i);
+		}
+		assertEquals(100, h.getTotalCount());
+		assertEquals(1, h.getMin());
+		assertEquals(100, h.getMax());
+		assertEquals(50.5, h.getMean(), 1e-9);
+		assertEquals(50, h.getValueAtPercentile(50));
+		assertEquals(99, h.getValueAtPercentile(99));
+		assertEquals(100, h.getValueAtPercentile(100));
+		assertEquals(1, h.getValueAtPercentile(0));
+	}
+
+	public void testPrecision() {
+		StreamingHistogram h = new StreamingHistogram(3600L * 1000 * 1000, 3);
+		Random rng = new Random(1);
+		long[] values = new long[100000];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = (long)(Math.exp(rng.nextDouble() * 20));
+			h.recordValue(values[i]);
+		}
+		Arrays.sort(values);
+		for (double p : new double[] {10, 50, 90, 99, 99.9}) {
+			long exact = values[(int)Math.ceil(p / 100 * values.length) - 1];
+			long value = h.getValueAtPercentile(p);
+			assertEquals("Percentile " + p, exact, value, exact * 0.001 + 1);
+		}
+		assertEquals(values[0], h.getMin());
+		assertEquals(values[values.length - 1], h.getMax());
+	}
+
+	public void testValuesOverRange() {
+		StreamingHistogram h = new StreamingHistogram(1000, 2);
+		h.recordValue(10);
+		h.recordValue(5000);
+		assertEquals(5000, h.getMax());
+		assertEquals(10, h.getValueAtPercentile(50));
+		assertTrue(h.getValueAtPercentile(100) >= 1000);
+	}
+
+	public void testReset() {
+		StreamingHistogram h = new StreamingHistogram(1000, 2);
+		h.recordValue(10);
+		h.reset();
+		assertEquals(0, h.getTotalCount());
+		assertEquals(0, h.getValueAtPercentile(99));
+	}
+}
@@ -20,6 +20,7 @@ import core.SimClock;
  * easily read from test cases.
  */
 public class TestDTNHost extends DTNHost {
+	private static final long serialVersionUID = 42L;
 	public double lastUpdate = 0;
 	public int nrofConnect = 0;
 	public int nrofUpdate = 0;
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+import util.ZipfRNG;
+
+/**
+ * Tests for the Zipf random number generator
+ */
+public class ZipfRNGTest extends TestCase {
+	private static final int NROF_SAMPLES = 200000;
+
+	public void testRange() {
+		ZipfRNG zipf = new ZipfRNG(new Random(1), 50, 1.2);
+		for (int i = 0; i < 10000; i++) {
+			int k = zipf.nextInt();
+			assertTrue("Rank " + k + " out of range", k >= 1 && k <= 50);
+		}
+	}
+
+	public void testSingleRank() {
+		ZipfRNG zipf = new ZipfRNG(new Random(1), 1, 0.8);
+		for (int i = 0; i < 100; i++) {
+			assertEquals(1, zipf.nextInt());
+		}
+	}
+
+	public void testFrequencies() {
+		checkFrequencies(10, 1.0);
+		checkFrequencies(100, 0.8);
+		checkFrequencies(5, 0.0);
+	}
+
+	public void testLargeCatalogue() {
+		ZipfRNG zipf = new ZipfRNG(new Random(3), 10000000, 0.9);
+		int firstRank = 0;
+		for (int i = 0; i < 10000; i++) {
+			int k = zipf.nextInt();
+			assertTrue(k >= 1 && k <= 10000000);
+			if (k == 1) {
+				firstRank++;
+			}
+		}
+		assertTrue(firstRank > 0);
+	}
+
+	private void checkFrequencies(int n, double exponent) {
+		ZipfRNG zipf = new ZipfRNG(new Random(2), n, exponent);
+		int[] counts = new int[n + 1];
+		for (int i = 0; i < NROF_SAMPLES; i++) {
+			counts[zipf.nextInt()]++;
+		}
+
+		double norm = 0;
+		for (int k = 1; k <= n; k++) {
+			norm += Math.pow(k, -exponent);
+		}
+		for (int k = 1; k <= Math.min(n, 5); k++) {
+			double expected = Math.pow(k, -exponent) / norm;
+			double observed = counts[k] / (double)NROF_SAMPLES;
+			assertEquals("Frequency of rank " + k, expected, observed, 0.01);
+		}
+	}
+}
@@ -8,6 +8,8 @@ import java.util.Vector;
 
 import report.Report;
 import core.ApplicationListener;
+import core.CacheListener;
+import core.Checkpoint;
 import core.ConnectionListener;
 import core.MessageListener;
 import core.MovementListener;
@@ -77,6 +79,50 @@ public abstract class DTNSimUI {
 		runSim();
 	}
 	
+	/**
+	 * Runs the simulation up to the given time and saves its state to a
+	 * checkpoint. The simulation is not finished, i.e., the reports are not
+	 * done, so that runs can be forked from the checkpoint with
+	 * {@link #start(String)}.
+	 * @param time The simulation time of the checkpoint
+	 * @param checkpointFile Path of the checkpoint file
+	 */
+	public void createCheckpoint(double time, String checkpointFile) {
+		initModel();
+		while (SimClock.getTime() < time && !simCancelled) {
+			world.update();
+		}
+		try {
+			Checkpoint.save(checkpointFile, this.reports);
+		} catch (SimError er) {
+			System.err.println("Can't start: " + er.getMessage());
+			System.exit(-1);
+		}
+	}
+	
+	/**
+	 * Restores the simulation from a checkpoint and runs it to the end.
+	 * @param checkpointFile Path of the checkpoint file
+	 * @see #createCheckpoint(double, String)
+	 */
+	@SuppressWarnings("unchecked")
+	public void start(String checkpointFile) {
+		try {
+			this.reports = (Vector<Report>)Checkpoint.restore(checkpointFile);
+			for (Report r : this.reports) {
+				r.reopenOutput();
+			}
+			this.scen = SimScenario.getInstance();
+			this.world = this.scen.getWorld();
+			this.lastUpdate = SimClock.getTime();
+		}
+		catch (SimError er) {
+			System.err.println("Can't start: " + er.getMessage());
+			System.exit(-1);
+		}
+		runSim();
+	}
+	
 	/**
 	 * Runs simulation after the model has been initialized.
 	 */
@@ -152,6 +198,9 @@ public abstract class DTNSimUI {
 		if (r instanceof ApplicationListener) {
 			scen.addApplicationListener((ApplicationListener)r);
 		}
+		if (r instanceof CacheListener) {
+			scen.addCacheListener((CacheListener)r);
+		}
 
 		this.reports.add(r);
 	}
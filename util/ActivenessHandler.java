@@ -4,6 +4,7 @@
  */
 package util;
 
+import java.io.Serializable;
 import java.util.LinkedList;
 import java.util.Queue;
 
@@ -15,7 +16,8 @@ import core.SimClock;
  * Object of this class tell the models when a node belonging
  * to a certain group is active and when not.
  */
-public class ActivenessHandler {
+public class ActivenessHandler implements Serializable {
+	private static final long serialVersionUID = 42L;
 	
 	/** 
 	 * <P>Active times -setting id ({@value})</P>
@@ -151,7 +153,8 @@ public class ActivenessHandler {
 	/**
 	 * Class for handling time ranges
 	 */
-	private class TimeRange {
+	private class TimeRange implements Serializable {
+		private static final long serialVersionUID = 42L;
 		private double start;
 		private double end;
 		
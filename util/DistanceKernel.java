@@ -0,0 +1,175 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package util;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Batch range test of a set of points against one location. The points
+ * are stored as a structure of arrays and the squared distances are
+ * compared against the squared range, so no square roots are taken. The
+ * loops are plain indexed loops over primitive arrays that the JIT
+ * compiler can vectorize. A kernel is reused by clearing it and adding
+ * the points of the next query.
+ */
+public class DistanceKernel implements Serializable {
+	private static final long serialVersionUID = 42L;
+	private static final int INITIAL_CAPACITY = 8;
+
+	private double[] xs;
+	private double[] ys;
+	private double[] zs;
+	/** squared distances of the last query */
+	private double[] d2;
+	/** range test results of the last query */
+	private boolean[] inRange;
+	private int size;
+
+	/**
+	 * Creates an empty kernel
+	 */
+	public DistanceKernel() {
+		this.xs = new double[INITIAL_CAPACITY];
+		this.ys = new double[INITIAL_CAPACITY];
+		this.zs = new double[INITIAL_CAPACITY];
+		this.d2 = new double[INITIAL_CAPACITY];
+		this.inRange = new boolean[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Removes all points
+	 */
+	public void clear() {
+		this.size = 0;
+	}
+
+	/**
+	 * Adds a point
+	 * @param x The x coordinate of the point
+	 * @param y The y coordinate of the point
+	 * @param z The z coordinate of the point
+	 * @return The index of the point
+	 */
+	public int add(double x, double y, double z) {
+		if (this.size == this.xs.length) {
+			grow();
+		}
+		this.xs[this.size] = x;
+		this.ys[this.size] = y;
+		this.zs[this.size] = z;
+		return this.size++;
+	}
+
+	/**
+	 * Returns the number of points
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	public double getX(int index) {
+		return this.xs[index];
+	}
+
+	public double getY(int index) {
+		return this.ys[index];
+	}
+
+	public double getZ(int index) {
+		return this.zs[index];
+	}
+
+	/**
+	 * Tests which points are within the range of a location. The results
+	 * can be read with {@link #isInRange(int)} and
+	 * {@link #getSquaredDistance(int)} until the next query.
+	 * @param x The x coordinate of the location
+	 * @param y The y coordinate of the location
+	 * @param z The z coordinate of the location
+	 * @param range The range
+	 * @return The number of points within the range
+	 */
+	public int withinRange(double x, double y, double z, double range) {
+		squaredDistances(x, y, z, this.xs, this.ys, this.zs, this.d2,
+				this.size);
+		return compare(this.d2, range * range, this.inRange, this.size);
+	}
+
+	/**
+	 * Returns true if a point was within the range in the last query
+	 * @param index The index of the point
+	 */
+	public boolean isInRange(int index) {
+		return this.inRange[index];
+	}
+
+	/**
+	 * Sets the range test result of a point, e.g. when a point in range
+	 * turns out to be unreachable for some other reason
+	 * @param index The index of the point
+	 * @param value The new result
+	 */
+	public void setInRange(int index, boolean value) {
+		this.inRange[index] = value;
+	}
+
+	/**
+	 * Returns the squared distance of a point in the last query
+	 * @param index The index of the point
+	 */
+	public double getSquaredDistance(int index) {
+		return this.d2[index];
+	}
+
+	/**
+	 * Computes the squared distances of points to a location
+	 * @param x The x coordinate of the location
+	 * @param y The y coordinate of the location
+	 * @param z The z coordinate of the location
+	 * @param xs The x coordinates of the points
+	 * @param ys The y coordinates of the points
+	 * @param zs The z coordinates of the points
+	 * @param d2 Array where the squared distances are stored
+	 * @param n Number of points
+	 */
+	public static void squaredDistances(double x, double y, double z,
+			double[] xs, double[] ys, double[] zs, double[] d2, int n) {
+		for (int i = 0; i < n; i++) {
+			double dx = xs[i] - x;
+			double dy = ys[i] - y;
+			double dz = zs[i] - z;
+			d2[i] = dx*dx + dy*dy + dz*dz;
+		}
+	}
+
+	/**
+	 * Compares squared distances against a squared range
+	 * @param d2 The squared distances
+	 * @param range2 The squared range
+	 * @param result Array where the results are stored
+	 * @param n Number of distances
+	 * @return The number of distances within the range
+	 */
+	public static int compare(double[] d2, double range2, boolean[] result,
+			int n) {
+		int count = 0;
+		for (int i = 0; i < n; i++) {
+			boolean in = d2[i] <= range2;
+			result[i] = in;
+			count += in ? 1 : 0;
+		}
+		return count;
+	}
+
+	private void grow() {
+		int capacity = this.xs.length * 2;
+		this.xs = Arrays.copyOf(this.xs, capacity);
+		this.ys = Arrays.copyOf(this.ys, capacity);
+		this.zs = Arrays.copyOf(this.zs, capacity);
+		this.d2 = new double[capacity];
+		this.inRange = new boolean[capacity];
+	}
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package util;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Index of items ordered by their expiry time. Items whose expiry time has
+ * passed are found in O(log n) time per expired item, without going through
+ * the items that have not expired. The index is a binary heap with lazy
+ * removal: removed and rescheduled items leave stale entries to the heap,
+ * which are skipped when they come up and purged when they start to
+ * dominate the heap.
+ * @param <K> Type of the item keys
+ */
+public class ExpiryIndex<K> implements Serializable {
+	private static final long serialVersionUID = 42L;
+	/** minimum heap size before stale entries are purged */
+	private static final int MIN_PURGE_SIZE = 64;
+
+	private PriorityQueue<Entry<K>> heap;
+	/** key -> current expiry time of the item */
+	private HashMap<K, Double> expiryTimes;
+
+	/**
+	 * Creates a new, empty index
+	 */
+	public ExpiryIndex() {
+		this.heap = new PriorityQueue<Entry<K>>();
+		this.expiryTimes = new HashMap<K, Double>();
+	}
+
+	/**
+	 * Sets (or changes) the expiry time of an item
+	 * @param key Key of the item
+	 * @param time Expiry time of the item
+	 */
+	public void schedule(K key, double time) {
+		this.expiryTimes.put(key, time);
+		this.heap.add(new Entry<K>(key, time));
+		purgeIfNeeded();
+	}
+
+	/**
+	 * Removes an item from the index
+	 * @param key Key of the item
+	 */
+	public void remove(K key) {
+		if (this.expiryTimes.remove(key) != null) {
+			purgeIfNeeded();
+		}
+	}
+
+	/**
+	 * Returns true if the item is in the index
+	 * @param key Key of the item
+	 * @return true if the item is in the index
+	 */
+	public boolean contains(K key) {
+		return this.expiryTimes.containsKey(key);
+	}
+
+	/**
+	 * Returns the number of items in the index
+	 * @return the number of items in the index
+	 */
+	public int size() {
+		return this.expiryTimes.size();
+	}
+
+	/**
+	 * Returns the earliest expiry time in the index
+	 * @return The earliest expiry time or Double.MAX_VALUE if the index is
+	 * empty
+	 */
+	public double getNextExpiryTime() {
+		skipStale();
+		Entry<K> e = this.heap.peek();
+		return e == null ? Double.MAX_VALUE : e.time;
+	}
+
+	/**
+	 * Removes the items that have expired by the given time from the index
+	 * and returns them
+	 * @param now The current time
+	 * @return Keys of the expired items in the order of their expiry times
+	 */
+	public List<K> pollExpired(double now) {
+		List<K> expired = new ArrayList<K>();
+		skipStale();
+		while (!this.heap.isEmpty() && this.heap.peek().time <= now) {
+			Entry<K> e = this.heap.poll();
+			this.expiryTimes.remove(e.key);
+			expired.add(e.key);
+			skipStale();
+		}
+		return expired;
+	}
+
+	/** removes the stale entries from the top of the heap */
+	private void skipStale() {
+		while (!this.heap.isEmpty() && isStale(this.heap.peek())) {
+			this.heap.poll();
+		}
+	}
+
+	private boolean isStale(Entry<K> e) {
+		Double time = this.expiryTimes.get(e.key);
+		return time == null || time != e.time;
+	}
+
+	/** rebuilds the heap if most of its entries are stale */
+	private void purgeIfNeeded() {
+		if (this.heap.size() < MIN_PURGE_SIZE ||
+				this.heap.size() <= 2 * this.expiryTimes.size()) {
+			return;
+		}
+		PriorityQueue<Entry<K>> live = new PriorityQueue<Entry<K>>(
+				Math.max(1, this.expiryTimes.size()));
+		for (Entry<K> e : this.heap) {
+			if (!isStale(e)) {
+				live.add(e);
+			}
+		}
+		this.heap = live;
+	}
+
+	/**
+	 * Heap entry: an item and its expiry time
+	 */
+	private static class Entry<K> implements Comparable<Entry<K>>, Serializable {
+		private static final long serialVersionUID = 42L;
+		private K key;
+		private double time;
+
+		private Entry(K key, double time) {
+			this.key = key;
+			this.time = time;
+		}
+
+		public int compareTo(Entry<K> other) {
+			return Double.compare(this.time, other.time);
+		}
+	}
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package util;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Static three dimensional k-d tree for nearest neighbor queries. The tree
+ * is built once from a set of points and answers k nearest neighbor
+ * queries in O(log n) expected time per found point. The points are
+ * identified by their indexes in the arrays given to the constructor.
+ */
+public class KdTree {
+	private double[][] coords;
+	/** the point indexes in tree order: each subtree is a contiguous range
+	 * whose median is the root of the subtree */
+	private int[] tree;
+
+	/**
+	 * Builds a tree of the given points
+	 * @param x The x coordinates of the points
+	 * @param y The y coordinates of the points
+	 * @param z The z coordinates of the points
+	 */
+	public KdTree(double[] x, double[] y, double[] z) {
+		this.coords = new double[][] {x, y, z};
+		Integer[] order = new Integer[x.length];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		build(order, 0, order.length, 0);
+		this.tree = new int[order.length];
+		for (int i = 0; i < order.length; i++) {
+			this.tree[i] = order[i];
+		}
+	}
+
+	/**
+	 * Orders the points of a range so that the median (by the axis of the
+	 * depth) is in the middle and builds the subtrees on both sides of it
+	 */
+	private void build(Integer[] order, int from, int to, int depth) {
+		if (to - from <= 1) {
+			return;
+		}
+		final double[] axis = this.coords[depth % 3];
+		Arrays.sort(order, from, to, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				return Double.compare(axis[a], axis[b]);
+			}
+		});
+		int mid = (from + to) >>> 1;
+		build(order, from, mid, depth + 1);
+		build(order, mid + 1, to, depth + 1);
+	}
+
+	/**
+	 * Finds the k nearest points of a location within a maximum distance
+	 * @param x The x coordinate of the location
+	 * @param y The y coordinate of the location
+	 * @param z The z coordinate of the location
+	 * @param k Maximum number of points to return
+	 * @param maxDistance Maximum distance of the returned points
+	 * @param exclude Index of a point that is not returned (e.g., the point
+	 * at the location) or -1 to return all points
+	 * @return Indexes of the found points in the order of their distance
+	 */
+	public int[] nearest(double x, double y, double z, int k,
+			double maxDistance, int exclude) {
+		Search s = new Search(new double[] {x, y, z}, k,
+				maxDistance * maxDistance, exclude);
+		search(s, 0, this.tree.length, 0);
+		return s.getResult();
+	}
+
+	private void search(Search s, int from, int to, int depth) {
+		if (from >= to) {
+			return;
+		}
+		int mid = (from + to) >>> 1;
+		int point = this.tree[mid];
+		if (point != s.exclude) {
+			s.offer(point, squaredDistance(point, s.location));
+		}
+
+		int axis = depth % 3;
+		double diff = s.location[axis] - this.coords[axis][point];
+		if (diff < 0) {
+			search(s, from, mid, depth + 1);
+			if (diff * diff <= s.getBound()) {
+				search(s, mid + 1, to, depth + 1);
+			}
+		}
+		else {
+			search(s, mid + 1, to, depth + 1);
+			if (diff * diff <= s.getBound()) {
+				search(s, from, mid, depth + 1);
+			}
+		}
+	}
+
+	private double squaredDistance(int point, double[] location) {
+		double dx = this.coords[0][point] - location[0];
+		double dy = this.coords[1][point] - location[1];
+		double dz = this.coords[2][point] - location[2];
+		return dx*dx + dy*dy + dz*dz;
+	}
+
+	/**
+	 * State of a k nearest neighbor search: the best points found so far in
+	 * the order of their distance
+	 */
+	private static class Search {
+		private double[] location;
+		private int exclude;
+		private double maxDistance;
+		private int[] points;
+		private double[] distances;
+		private int size;
+
+		private Search(double[] location, int k, double maxDistance,
+				int exclude) {
+			this.location = location;
+			this.exclude = exclude;
+			this.maxDistance = maxDistance;
+			this.points = new int[Math.max(k, 0)];
+			this.distances = new double[this.points.length];
+		}
+
+		/** returns the (squared) distance a point must be within to be
+		 * among the results */
+		private double getBound() {
+			if (size < points.length) {
+				return maxDistance;
+			}
+			return size == 0 ? -1 : distances[size - 1];
+		}
+
+		private void offer(int point, double distance) {
+			if (distance > getBound() || (size == points.length &&
+					distance == distances[size - 1])) {
+				return;
+			}
+			int pos = size < points.length ? size++ : size - 1;
+			while (pos > 0 && distances[pos - 1] > distance) {
+				points[pos] = points[pos - 1];
+				distances[pos] = distances[pos - 1];
+				pos--;
+			}
+			points[pos] = point;
+			distances[pos] = distance;
+		}
+
+		private int[] getResult() {
+			return Arrays.copyOf(points, size);
+		}
+	}
+}
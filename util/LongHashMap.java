@@ -0,0 +1,159 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package util;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Hash map with primitive long keys. The entries are stored in parallel
+ * arrays with open addressing (linear probing), so lookups don't create
+ * key objects and the map doesn't allocate entry objects. Removed entries
+ * are filled by shifting the following entries of the same probe sequence
+ * back, so no tombstones are left.
+ * @param <V> Type of the values
+ */
+public class LongHashMap<V> implements Serializable {
+	private static final long serialVersionUID = 42L;
+	/** marker of empty slots (not a valid key) */
+	public static final long EMPTY_KEY = Long.MIN_VALUE;
+	private static final int DEF_CAPACITY = 16;
+
+	private long[] keys;
+	private Object[] values;
+	private int size;
+	/** keys.length - 1 (the capacity is a power of two) */
+	private int mask;
+
+	/**
+	 * Creates a new empty map
+	 */
+	public LongHashMap() {
+		allocate(DEF_CAPACITY);
+	}
+
+	private void allocate(int capacity) {
+		this.keys = new long[capacity];
+		Arrays.fill(this.keys, EMPTY_KEY);
+		this.values = new Object[capacity];
+		this.mask = capacity - 1;
+	}
+
+	/**
+	 * Returns the value of a key
+	 * @param key The key (not {@link #EMPTY_KEY})
+	 * @return The value or null if the key is not in the map
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(long key) {
+		for (int i = slot(key); ; i = (i + 1) & this.mask) {
+			long k = this.keys[i];
+			if (k == key) {
+				return (V)this.values[i];
+			}
+			if (k == EMPTY_KEY) {
+				return null;
+			}
+		}
+	}
+
+	/**
+	 * Sets the value of a key
+	 * @param key The key (not {@link #EMPTY_KEY})
+	 * @param value The value
+	 * @return The previous value of the key or null if there was none
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(long key, V value) {
+		assert key != EMPTY_KEY : "Invalid key " + key;
+		int i = slot(key);
+		while (this.keys[i] != EMPTY_KEY) {
+			if (this.keys[i] == key) {
+				V old = (V)this.values[i];
+				this.values[i] = value;
+				return old;
+			}
+			i = (i + 1) & this.mask;
+		}
+
+		this.keys[i] = key;
+		this.values[i] = value;
+		if (++this.size * 2 > this.keys.length) {
+			rehash(this.keys.length * 2);
+		}
+		return null;
+	}
+
+	/**
+	 * Removes a key from the map
+	 * @param key The key
+	 * @return The value of the key or null if the key was not in the map
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(long key) {
+		int i = slot(key);
+		while (this.keys[i] != key) {
+			if (this.keys[i] == EMPTY_KEY) {
+				return null;
+			}
+			i = (i + 1) & this.mask;
+		}
+		V old = (V)this.values[i];
+		this.size--;
+
+		/* shift the following entries of the probe sequence back */
+		int hole = i;
+		for (int j = (i + 1) & this.mask; this.keys[j] != EMPTY_KEY;
+				j = (j + 1) & this.mask) {
+			int home = slot(this.keys[j]);
+			/* the entry can move to the hole if its home slot is not
+			 * (cyclically) between the hole and the entry */
+			if (((j - home) & this.mask) >= ((j - hole) & this.mask)) {
+				this.keys[hole] = this.keys[j];
+				this.values[hole] = this.values[j];
+				hole = j;
+			}
+		}
+		this.keys[hole] = EMPTY_KEY;
+		this.values[hole] = null;
+		return old;
+	}
+
+	/**
+	 * Returns the number of entries in the map
+	 * @return The number of entries
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Removes all entries from the map
+	 */
+	public void clear() {
+		Arrays.fill(this.keys, EMPTY_KEY);
+		Arrays.fill(this.values, null);
+		this.size = 0;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void rehash(int capacity) {
+		long[] oldKeys = this.keys;
+		Object[] oldValues = this.values;
+		allocate(capacity);
+		this.size = 0;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != EMPTY_KEY) {
+				put(oldKeys[i], (V)oldValues[i]);
+			}
+		}
+	}
+
+	/** returns the home slot of a key */
+	private int slot(long key) {
+		long h = key * 0x9E3779B97F4A7C15L; // Fibonacci hashing
+		return (int)(h ^ (h >>> 32)) & this.mask;
+	}
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package util;
+
+import java.io.Serializable;
+
+/**
+ * Systematic Reed-Solomon erasure code over GF(2^8). Data is split to k
+ * data shards and r parity shards are computed from them, so that the data
+ * can be decoded from any k of the k+r shards. The parity rows of the
+ * generator matrix form a Cauchy matrix, which makes every k x k
+ * sub-matrix of the generator invertible. Shards are arrays of symbols in
+ * range [0, 255].
+ */
+public class ReedSolomon implements Serializable {
+	private static final long serialVersionUID = 42L;
+	/** primitive polynomial of the field (x^8+x^4+x^3+x^2+1) */
+	private static final int POLYNOMIAL = 0x11d;
+	private static final int[] EXP = new int[512];
+	private static final int[] LOG = new int[256];
+
+	static {
+		int x = 1;
+		for (int i = 0; i < 255; i++) {
+			EXP[i] = x;
+			LOG[x] = i;
+			x <<= 1;
+			if (x >= 256) {
+				x ^= POLYNOMIAL;
+			}
+		}
+		for (int i = 255; i < EXP.length; i++) {
+			EXP[i] = EXP[i - 255];
+		}
+	}
+
+	private int nrofData;
+	private int nrofParity;
+	/** parity rows of the generator matrix */
+	private int[][] parityMatrix;
+
+	/**
+	 * Creates a new Reed-Solomon code
+	 * @param nrofData Number of data shards (k)
+	 * @param nrofParity Number of parity shards (r)
+	 */
+	public ReedSolomon(int nrofData, int nrofParity) {
+		if (nrofData < 1 || nrofParity < 0 || nrofData + nrofParity > 256) {
+			throw new IllegalArgumentException("Invalid code (" + nrofData +
+					" data, " + nrofParity + " parity shards)");
+		}
+		this.nrofData = nrofData;
+		this.nrofParity = nrofParity;
+		this.parityMatrix = new int[nrofParity][nrofData];
+		for (int p = 0; p < nrofParity; p++) {
+			for (int i = 0; i < nrofData; i++) {
+				/* Cauchy matrix 1/(x_p + y_i) with x_p = k+p and y_i = i */
+				this.parityMatrix[p][i] = inverse((nrofData + p) ^ i);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of data shards
+	 * @return the number of data shards
+	 */
+	public int getNrofData() {
+		return this.nrofData;
+	}
+
+	/**
+	 * Returns the number of parity shards
+	 * @return the number of parity shards
+	 */
+	public int getNrofParity() {
+		return this.nrofParity;
+	}
+
+	/**
+	 * Computes the parity shards of data shards
+	 * @param data The k data shards (of equal length)
+	 * @return The r parity shards
+	 */
+	public int[][] encode(int[][] data) {
+		if (data.length != this.nrofData) {
+			throw new IllegalArgumentException("Expected " + this.nrofData +
+					" data shards, got " + data.length);
+		}
+		int len = data[0].length;
+		int[][] parity = new int[this.nrofParity][len];
+		for (int i = 0; i < this.nrofData; i++) {
+			if (data[i].length != len) {
+				throw new IllegalArgumentException("Shards of unequal length");
+			}
+			for (int j = 0; j < len; j++) {
+				if (data[i][j] < 0 || data[i][j] > 255) {
+					throw new IllegalArgumentException("Symbol " + data[i][j] +
+							" out of range [0, 255]");
+				}
+			}
+		}
+		for (int p = 0; p < this.nrofParity; p++) {
+			for (int i = 0; i < this.nrofData; i++) {
+				int c = this.parityMatrix[p][i];
+				for (int j = 0; j < len; j++) {
+					parity[p][j] ^= multiply(c, data[i][j]);
+				}
+			}
+		}
+		return parity;
+	}
+
+	/**
+	 * Decodes the data shards from any k shards
+	 * @param shards All k+r shards, data shards first, with null for the
+	 * missing shards
+	 * @return The k data shards
+	 * @throws IllegalArgumentException if less than k shards are present
+	 */
+	public int[][] decode(int[][] shards) {
+		if (shards.length != this.nrofData + this.nrofParity) {
+			throw new IllegalArgumentException("Expected " + (this.nrofData +
+					this.nrofParity) + " shards, got " + shards.length);
+		}
+		int[] present = new int[this.nrofData];
+		int n = 0;
+		for (int i = 0; i < shards.length && n < this.nrofData; i++) {
+			if (shards[i] != null) {
+				present[n++] = i;
+			}
+		}
+		if (n < this.nrofData) {
+			throw new IllegalArgumentException("Only " + n + " of the " +
+					this.nrofData + " needed shards present");
+		}
+		if (present[this.nrofData - 1] == this.nrofData - 1) {
+			/* all data shards present */
+			int[][] data = new int[this.nrofData][];
+			for (int i = 0; i < this.nrofData; i++) {
+				data[i] = shards[i].clone();
+			}
+			return data;
+		}
+
+		/* rows of the generator matrix for the present shards */
+		int[][] m = new int[this.nrofData][];
+		for (int r = 0; r < this.nrofData; r++) {
+			if (present[r] < this.nrofData) {
+				m[r] = new int[this.nrofData];
+				m[r][present[r]] = 1;
+			} else {
+				m[r] = this.parityMatrix[present[r] - this.nrofData].clone();
+			}
+		}
+		int[][] inv = invert(m);
+
+		int len = shards[present[0]].length;
+		int[][] data = new int[this.nrofData][len];
+		for (int i = 0; i < this.nrofData; i++) {
+			for (int r = 0; r < this.nrofData; r++) {
+				int c = inv[i][r];
+				if (c == 0) {
+					continue;
+				}
+				int[] shard = shards[present[r]];
+				for (int j = 0; j < len; j++) {
+					data[i][j] ^= multiply(c, shard[j]);
+				}
+			}
+		}
+		return data;
+	}
+
+	/** inverts a square matrix with Gauss-Jordan elimination */
+	private static int[][] invert(int[][] m) {
+		int n = m.length;
+		int[][] inv = new int[n][n];
+		for (int i = 0; i < n; i++) {
+			inv[i][i] = 1;
+		}
+		for (int col = 0; col < n; col++) {
+			int pivot = col;
+			while (pivot < n && m[pivot][col] == 0) {
+				pivot++;
+			}
+			if (pivot == n) {
+				throw new IllegalArgumentException("Singular matrix");
+			}
+			int[] tmp = m[pivot];
+			m[pivot] = m[col];
+			m[col] = tmp;
+			tmp = inv[pivot];
+			inv[pivot] = inv[col];
+			inv[col] = tmp;
+
+			int scale = inverse(m[col][col]);
+			for (int j = 0; j < n; j++) {
+				m[col][j] = multiply(m[col][j], scale);
+				inv[col][j] = multiply(inv[col][j], scale);
+			}
+			for (int row = 0; row < n; row++) {
+				int factor = m[row][col];
+				if (row == col || factor == 0) {
+					continue;
+				}
+				for (int j = 0; j < n; j++) {
+					m[row][j] ^= multiply(factor, m[col][j]);
+					inv[row][j] ^= multiply(factor, inv[col][j]);
+				}
+			}
+		}
+		return inv;
+	}
+
+	private static int multiply(int a, int b) {
+		if (a == 0 || b == 0) {
+			return 0;
+		}
+		return EXP[LOG[a] + LOG[b]];
+	}
+
+	private static int inverse(int a) {
+		if (a == 0) {
+			throw new ArithmeticException("Zero has no inverse");
+		}
+		return EXP[255 - LOG[a]];
+	}
+}
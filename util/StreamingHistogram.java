@@ -0,0 +1,187 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package util;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Constant memory histogram for non-negative integer values with a fixed
+ * relative precision (the bucket layout of HdrHistogram). Values are
+ * counted in buckets whose width doubles for each power of two, and each
+ * bucket is split into linear sub-buckets, so the memory use only depends
+ * on the value range and the number of significant digits, not on the
+ * number of recorded values.
+ */
+public class StreamingHistogram implements Serializable {
+	private static final long serialVersionUID = 42L;
+	private long highestTrackableValue;
+	private int subBucketBits;
+	private int subBucketCount;
+	private int subBucketHalfCount;
+	private long subBucketMask;
+	private int leadingZeroCountBase;
+	private long[] counts;
+
+	private long totalCount;
+	private double sum;
+	private long min;
+	private long max;
+
+	/**
+	 * Creates a new histogram
+	 * @param highestTrackableValue The highest value the histogram can
+	 * tell apart. Larger values are counted as this value.
+	 * @param significantDigits Number of significant decimal digits the
+	 * values are kept with (0-5)
+	 */
+	public StreamingHistogram(long highestTrackableValue,
+			int significantDigits) {
+		if (significantDigits < 0 || significantDigits > 5) {
+			throw new IllegalArgumentException("Significant digits must be " +
+					"in range [0, 5] (was " + significantDigits + ")");
+		}
+		if (highestTrackableValue < 2) {
+			throw new IllegalArgumentException("Highest trackable value " +
+					"must be at least 2 (was " + highestTrackableValue + ")");
+		}
+		this.highestTrackableValue = highestTrackableValue;
+
+		long largestSingleUnitValue = 2 * (long)Math.pow(10,
+				significantDigits);
+		this.subBucketBits = Math.max(1, (int)Math.ceil(Math.log(
+				largestSingleUnitValue) / Math.log(2)));
+		this.subBucketCount = 1 << this.subBucketBits;
+		this.subBucketHalfCount = this.subBucketCount / 2;
+		this.subBucketMask = this.subBucketCount - 1;
+		this.leadingZeroCountBase = 64 - this.subBucketBits;
+
+		/* number of buckets needed to cover the value range */
+		long smallestUntrackable = this.subBucketCount;
+		int bucketCount = 1;
+		while (smallestUntrackable <= highestTrackableValue) {
+			if (smallestUntrackable > Long.MAX_VALUE / 2) {
+				bucketCount++;
+				break;
+			}
+			smallestUntrackable <<= 1;
+			bucketCount++;
+		}
+		this.counts = new long[(bucketCount + 1) * this.subBucketHalfCount];
+		reset();
+	}
+
+	/**
+	 * Clears all recorded values
+	 */
+	public void reset() {
+		Arrays.fill(this.counts, 0);
+		this.totalCount = 0;
+		this.sum = 0;
+		this.min = Long.MAX_VALUE;
+		this.max = 0;
+	}
+
+	/**
+	 * Records a value
+	 * @param value The value (>= 0)
+	 */
+	public void recordValue(long value) {
+		if (value < 0) {
+			throw new IllegalArgumentException("Negative value " + value);
+		}
+		this.sum += value;
+		this.totalCount++;
+		if (value < this.min) {
+			this.min = value;
+		}
+		if (value > this.max) {
+			this.max = value;
+		}
+		this.counts[countsIndex(Math.min(value,
+				this.highestTrackableValue))]++;
+	}
+
+	/**
+	 * Returns the number of recorded values
+	 * @return the number of recorded values
+	 */
+	public long getTotalCount() {
+		return this.totalCount;
+	}
+
+	/**
+	 * Returns the (exact) mean of the recorded values
+	 * @return the mean or NaN if no values have been recorded
+	 */
+	public double getMean() {
+		if (this.totalCount == 0) {
+			return Double.NaN;
+		}
+		return this.sum / this.totalCount;
+	}
+
+	/**
+	 * Returns the smallest recorded value
+	 * @return the smallest value or 0 if no values have been recorded
+	 */
+	public long getMin() {
+		return this.totalCount == 0 ? 0 : this.min;
+	}
+
+	/**
+	 * Returns the largest recorded value
+	 * @return the largest value or 0 if no values have been recorded
+	 */
+	public long getMax() {
+		return this.max;
+	}
+
+	/**
+	 * Returns the value at the given percentile. The value is the highest
+	 * value that is equivalent (within the precision of the histogram) to
+	 * the recorded value at the percentile.
+	 * @param percentile The percentile (0-100)
+	 * @return The value or 0 if no values have been recorded
+	 */
+	public long getValueAtPercentile(double percentile) {
+		if (this.totalCount == 0) {
+			return 0;
+		}
+		double p = Math.min(Math.max(percentile, 0), 100);
+		long countAtPercentile = Math.max(1,
+				(long)Math.ceil(p / 100 * this.totalCount));
+		long cumulative = 0;
+		for (int i = 0; i < this.counts.length; i++) {
+			cumulative += this.counts[i];
+			if (cumulative >= countAtPercentile) {
+				return Math.max(this.getMin(), Math.min(
+						highestEquivalentValue(i), this.max));
+			}
+		}
+		return this.max;
+	}
+
+	private int countsIndex(long value) {
+		int bucketIndex = this.leadingZeroCountBase -
+			Long.numberOfLeadingZeros(value | this.subBucketMask);
+		int subBucketIndex = (int)(value >>> bucketIndex);
+		return ((bucketIndex + 1) << (this.subBucketBits - 1)) +
+			(subBucketIndex - this.subBucketHalfCount);
+	}
+
+	/** the highest value counted in the given counts index */
+	private long highestEquivalentValue(int index) {
+		int bucketIndex = (index >> (this.subBucketBits - 1)) - 1;
+		int subBucketIndex = (index & (this.subBucketHalfCount - 1)) +
+			this.subBucketHalfCount;
+		if (bucketIndex < 0) {
+			subBucketIndex -= this.subBucketHalfCount;
+			bucketIndex = 0;
+		}
+		long lowest = ((long)subBucketIndex) << bucketIndex;
+		return lowest + (1L << bucketIndex) - 1;
+	}
+}
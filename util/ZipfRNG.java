@@ -0,0 +1,116 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package util;
+
+import java.io.Serializable;
+import java.util.Random;
+
+/**
+ * A random number generator for a Zipf distribution over the ranks
+ * 1...n. Uses the rejection-inversion method (W. Hormann and G. Derflinger:
+ * "Rejection-inversion to generate variates from monotone discrete
+ * distributions") so no per-rank tables are needed and both the memory
+ * use and the expected time per value are constant regardless of n.
+ */
+public class ZipfRNG implements Serializable {
+	private static final long serialVersionUID = 42L;
+	private Random rng;
+	/** number of ranks */
+	private int n;
+	/** exponent of the distribution */
+	private double exponent;
+	private double hIntegralX1;
+	private double hIntegralN;
+	private double s;
+
+	/**
+	 * Creates a new Zipf random number generator
+	 * @param rng The uniform random number generator to use
+	 * @param n Number of ranks (values are drawn from 1...n)
+	 * @param exponent Exponent of the distribution (>= 0). Probability of
+	 * rank k is proportional to 1/k^exponent.
+	 */
+	public ZipfRNG(Random rng, int n, double exponent) {
+		if (n < 1) {
+			throw new IllegalArgumentException("Number of ranks must be " +
+					"positive (was " + n + ")");
+		}
+		if (exponent < 0) {
+			throw new IllegalArgumentException("Exponent must not be " +
+					"negative (was " + exponent + ")");
+		}
+		this.rng = rng;
+		this.n = n;
+		this.exponent = exponent;
+		this.hIntegralX1 = hIntegral(1.5) - 1.0;
+		this.hIntegralN = hIntegral(n + 0.5);
+		this.s = 2.0 - hIntegralInverse(hIntegral(2.5) - h(2));
+	}
+
+	/**
+	 * Returns the next Zipf distributed rank
+	 * @return A rank between 1 and n (inclusive)
+	 */
+	public int nextInt() {
+		while (true) {
+			double u = hIntegralN + rng.nextDouble() * (hIntegralX1 -
+					hIntegralN);
+			double x = hIntegralInverse(u);
+			int k = (int)(x + 0.5);
+			if (k < 1) {
+				k = 1;
+			} else if (k > n) {
+				k = n;
+			}
+			if (k - x <= s || u >= hIntegral(k + 0.5) - h(k)) {
+				return k;
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of ranks
+	 * @return the number of ranks
+	 */
+	public int getNrofRanks() {
+		return this.n;
+	}
+
+	/** H(x) = integral of h(x) */
+	private double hIntegral(double x) {
+		double logX = Math.log(x);
+		return helper2((1.0 - exponent) * logX) * logX;
+	}
+
+	/** h(x) = 1/x^exponent */
+	private double h(double x) {
+		return Math.exp(-exponent * Math.log(x));
+	}
+
+	/** inverse function of H(x) */
+	private double hIntegralInverse(double x) {
+		double t = x * (1.0 - exponent);
+		if (t < -1.0) {
+			t = -1.0; /* guard against rounding errors */
+		}
+		return Math.exp(helper1(t) * x);
+	}
+
+	/** log(1+x)/x with a series expansion near zero */
+	private static double helper1(double x) {
+		if (Math.abs(x) > 1e-8) {
+			return Math.log1p(x) / x;
+		}
+		return 1.0 - x * (0.5 - x * (1.0 / 3.0 - 0.25 * x));
+	}
+
+	/** (exp(x)-1)/x with a series expansion near zero */
+	private static double helper2(double x) {
+		if (Math.abs(x) > 1e-8) {
+			return Math.expm1(x) / x;
+		}
+		return 1.0 + x * 0.5 * (1.0 + x * 1.0 / 3.0 * (1.0 + 0.25 * x));
+	}
+}